@@ -2,6 +2,7 @@ package org.tanberg.easydb;
 
 import org.tanberg.easydb.access.DatabaseTypeAccessor;
 import org.tanberg.easydb.access.memory.MemoryAccessor;
+import org.tanberg.easydb.access.memory.MemoryConfiguration;
 import org.tanberg.easydb.access.redis.RedisAccessor;
 import org.tanberg.easydb.access.redis.RedisConfiguration;
 import org.tanberg.easydb.access.sql.MySQLAccessor;
@@ -51,7 +52,7 @@ public enum DatabaseType {
 
         @Override
         public <T> DatabaseTypeAccessor<T> newAccessor(ConnectionConfiguration configuration, DatabaseRepository<T> repository, String tableName) {
-            return new MemoryAccessor<>(tableName, repository);
+            return new MemoryAccessor<>((MemoryConfiguration) configuration, tableName, repository);
         }
     };
 
@@ -65,7 +66,8 @@ public enum DatabaseType {
 
     public <T> DatabaseTypeAccessor<T> newAccessor(DatabaseRepository<T> manager, String tableName) {
         if (this == MEMORY) {
-            return this.newAccessor(null, manager, tableName);
+            // Memory storage only needs a configuration to be durable
+            return this.newAccessor(ConnectionRegistry.getInstance().getConfiguration(this), manager, tableName);
         }
 
         // Useful for testing purposes
@@ -36,4 +36,11 @@ public @interface Index {
      * in the index to apply.
      */
     boolean unique() default false;
+
+    /**
+     * @return The {@link IndexType type} of this index. Must be set to the same
+     * value for all fields in the index to apply, otherwise {@link IndexType#HASH}
+     * is used.
+     */
+    IndexType type() default IndexType.HASH;
 }
@@ -0,0 +1,70 @@
+package org.tanberg.easydb;
+
+import org.tanberg.easydb.field.PersistentField;
+
+/**
+ * The way an {@link Index index} is stored. Not all databases make use of
+ * this, e. g. MySQL will always use its own index implementation, but it
+ * is used by the in-memory database to decide which structure should back
+ * the index.
+ */
+public enum IndexType {
+    /**
+     * A hash based index. Fast for equality lookups, but any other operator
+     * requires every distinct value in the index to be checked.
+     */
+    HASH,
+    /**
+     * An ordered index, keeping the index values sorted. Equality lookups are
+     * slightly slower than for {@link #HASH}, but range operators such as
+     * {@code <} and {@code >=} on the first field of the index are answered
+     * without looking at values outside of the range.
+     */
+    ORDERED,
+    /**
+     * A bitmap index, keeping a bitmap of the matching rows for every distinct value.
+     * Best suited for fields with few distinct values, such as flags and statuses, as
+     * queries on several such fields are answered by combining the bitmaps. Hash
+     * indices of only boolean and enum fields are kept as bitmaps by the in-memory
+     * database.
+     */
+    BITMAP,
+    /**
+     * A prefix index, keeping the values of a string field in a radix trie. Queries
+     * for values {@link org.tanberg.easydb.query.Operator#STARTS_WITH starting with}
+     * a prefix only look at the prefix and the matching values. Prefix indices of
+     * several fields are kept as {@link #ORDERED} indices by the in-memory database,
+     * answering prefix queries on the first field.
+     */
+    PREFIX,
+    /**
+     * A full-text index, keeping the rows of every term in the values of a string
+     * field. Answers {@link org.tanberg.easydb.query.Operator#MATCHES searches} for
+     * terms by intersecting the rows of each term. Only used by the in-memory database.
+     */
+    FULL_TEXT;
+
+    /**
+     * Resolves the type of an index consisting of the given fields. All fields
+     * have to agree on the type, otherwise {@link #HASH} is used.
+     *
+     * @param fields The fields of the index
+     * @return The {@link IndexType type} of the index
+     */
+    public static IndexType combine(PersistentField<?>... fields) {
+        IndexType type = null;
+        for (PersistentField<?> field : fields) {
+            IndexType fieldType = field.getIndexType();
+            if (type == null) {
+                type = fieldType;
+                continue;
+            }
+
+            if (type != fieldType) {
+                return HASH;
+            }
+        }
+
+        return type == null ? HASH : type;
+    }
+}
@@ -34,4 +34,15 @@ public @interface Key {
      * creating a new entry in the database
      */
     boolean autoIncrement() default false;
+
+    /**
+     * If the keys should be kept in sorted order. This allows range
+     * operators such as {@code <} and {@code >=} on the first key field to
+     * be answered without checking every stored entry, at the cost of
+     * slightly slower lookups on exact keys. Currently only used by the
+     * in-memory database.
+     *
+     * @return If the keys should be kept in sorted order
+     */
+    boolean ordered() default false;
 }
@@ -1,22 +1,49 @@
 package org.tanberg.easydb;
 
 import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.query.req.QueryRequirement;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.function.Function;
 
 public class WrappedIndex<T> {
 
     private int id;
     private boolean unique;
+    private IndexType type;
     private PersistentField<T>[] fields;
+    private QueryRequirement filter;
+    private Function<Object, Object> expression;
 
     @SafeVarargs
     public WrappedIndex(int id, boolean unique, PersistentField<T>... fields) {
+        this(id, unique, IndexType.combine(fields), fields);
+    }
+
+    @SafeVarargs
+    public WrappedIndex(int id, boolean unique, IndexType type, PersistentField<T>... fields) {
+        this(id, unique, type, null, null, fields);
+    }
+
+    /**
+     * Creates a partial and/or expression index. These are only used by the in-memory
+     * database, where they are created on the table rather than declared on the item.
+     *
+     * @param filter     The requirement rows have to match to be indexed, or null to index every row
+     * @param expression Computes the indexed value from the value of each field, or null
+     *                   to index the values as they are
+     */
+    @SafeVarargs
+    public WrappedIndex(int id, boolean unique, IndexType type, QueryRequirement filter, Function<Object, Object> expression,
+                        PersistentField<T>... fields) {
         this.id = id;
         this.unique = unique;
+        this.type = type;
         this.fields = fields;
+        this.filter = filter;
+        this.expression = expression;
     }
 
     public int getId() {
@@ -27,10 +54,38 @@ public class WrappedIndex<T> {
         return unique;
     }
 
+    public IndexType getType() {
+        return type;
+    }
+
+    public boolean isOrdered() {
+        return this.type == IndexType.ORDERED;
+    }
+
     public PersistentField<T>[] getFields() {
         return fields;
     }
 
+    /**
+     * @return The requirement rows have to match to be in this index, or null if
+     * every row is
+     */
+    public QueryRequirement getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return The function computing the indexed value from the value of each field,
+     * or null if the values are indexed as they are
+     */
+    public Function<Object, Object> getExpression() {
+        return expression;
+    }
+
+    public boolean isPartial() {
+        return this.filter != null;
+    }
+
     public boolean isField(PersistentField<T> field) {
         for (PersistentField<T> someField : this.getFields()) {
             if (!someField.equals(field)) {
@@ -98,12 +153,15 @@ public class WrappedIndex<T> {
         WrappedIndex<?> that = (WrappedIndex<?>) o;
         return id == that.id &&
           unique == that.unique &&
-          Arrays.equals(fields, that.fields);
+          type == that.type &&
+          Arrays.equals(fields, that.fields) &&
+          Objects.equals(filter, that.filter) &&
+          Objects.equals(expression, that.expression);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(id, unique);
+        int result = Objects.hash(id, unique, type, filter, expression);
         result = 31 * result + Arrays.hashCode(fields);
         return result;
     }
@@ -113,7 +171,10 @@ public class WrappedIndex<T> {
         return "WrappedIndex{" +
           "id=" + id +
           ", unique=" + unique +
+          ", type=" + type +
           ", fields=" + Arrays.toString(fields) +
+          (filter == null ? "" : ", filter=" + filter) +
+          (expression == null ? "" : ", expression=" + expression) +
           '}';
     }
 }
@@ -1,51 +1,112 @@
 package org.tanberg.easydb.access.memory;
 
 import org.tanberg.easydb.ItemRepository;
+import org.tanberg.easydb.WrappedIndex;
 import org.tanberg.easydb.access.ListenableTypeAccessor;
 import org.tanberg.easydb.connection.configuration.ConnectionConfiguration;
+import org.tanberg.easydb.connection.memory.IndexBuild;
 import org.tanberg.easydb.connection.memory.MemoryDatabase;
-import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.MemoryStorage;
+import org.tanberg.easydb.connection.memory.MemoryView;
 import org.tanberg.easydb.connection.memory.UnsafeMemoryAccessor;
 import org.tanberg.easydb.exception.DeleteQueryException;
 import org.tanberg.easydb.exception.DropException;
 import org.tanberg.easydb.exception.FindQueryException;
 import org.tanberg.easydb.exception.SaveQueryException;
-import org.tanberg.easydb.field.FieldValue;
 import org.tanberg.easydb.field.PersistentField;
 import org.tanberg.easydb.query.Query;
 import org.tanberg.easydb.query.response.Response;
+import org.tanberg.easydb.query.response.RowResponse;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class MemoryAccessor<T> extends ListenableTypeAccessor<T> {
 
-    private final MemoryTable<T> table;
+    private final MemoryConfiguration configuration;
+    private final MemoryStorage<T> table;
 
     public MemoryAccessor(String table, ItemRepository<T> repository) {
+        this(null, table, repository);
+    }
+
+    public MemoryAccessor(MemoryConfiguration configuration, String table, ItemRepository<T> repository) {
         super(repository);
 
-        this.table = MemoryDatabase.getTable(table, this.getProfile());
+        this.configuration = configuration;
+        this.table = MemoryDatabase.getTable(table, this.getProfile(), configuration);
     }
 
     public UnsafeMemoryAccessor<T> getUnsafeAccessor() {
         return this.table.getUnsafeAccessor();
     }
 
+    /**
+     * @return The number of bytes of off-heap memory used by the table
+     * @see org.tanberg.easydb.connection.memory.MemoryLayout#OFF_HEAP
+     */
+    public long getOffHeapUsage() {
+        return this.table.getOffHeapUsage();
+    }
+
+    /**
+     * @return The share of writes to the table that had to wait for another write
+     * to a key guarded by the same lock, between 0 and 1
+     */
+    public double getLockContention() {
+        return this.table.getLockContention();
+    }
+
+    /**
+     * @return The number of rows found by reads of the table
+     */
+    public long getHits() {
+        return this.table.getHits();
+    }
+
+    /**
+     * @return The number of reads of the table that found no rows
+     */
+    public long getMisses() {
+        return this.table.getMisses();
+    }
+
+    /**
+     * @return The number of rows evicted to keep the table within its maximum weight
+     * @see org.tanberg.easydb.connection.memory.MemoryOptions#maximumWeight()
+     */
+    public long getEvictions() {
+        return this.table.getEvictions();
+    }
+
+    /**
+     * @return The number of rows of the table kept on disk rather than on the heap
+     * @see org.tanberg.easydb.connection.memory.MemoryOptions#spill()
+     */
+    public int getSpilledRows() {
+        return this.table.getSpilledRows();
+    }
+
+    /**
+     * @return The estimated size of the rows of the table, in bytes, or 0 if it has no maximum weight
+     */
+    public long getWeight() {
+        return this.table.getWeight();
+    }
+
     @Override
     protected void setUpInternal() {
     }
 
     @Override
     public ConnectionConfiguration getConfiguration() {
-        return null;
+        return configuration;
     }
 
     @Override
     protected Response<T> findFirstInternal(Query<T> query) {
         try {
-            FieldValue<T>[] values = this.table.findFirst(query.getRequirement());
-            return new Response<>(this.getProfile(), values);
+            Object[] row = this.table.findFirstRow(query.getRequirement());
+            return row == null ? new Response<>(this.getProfile()) : new RowResponse<>(this.getProfile(), row);
         } catch (Throwable t) {
             throw new FindQueryException(t, query);
         }
@@ -54,19 +115,125 @@ public class MemoryAccessor<T> extends ListenableTypeAccessor<T> {
     @Override
     public List<Response<T>> findAllInternal(Query<T> query) {
         try {
-            List<FieldValue<T>[]> allValues = this.table.findAll(query.getRequirement());
-            return allValues.stream()
-              .map(values -> new Response<>(this.getProfile(), values))
-              .collect(Collectors.toList());
+            // Responses read the stored rows as needed, instead of copying them up front
+            return this.table.findAll(query.getRequirement(), row -> new RowResponse<>(this.getProfile(), row));
+        } catch (Throwable t) {
+            throw new FindQueryException(t, query);
+        }
+    }
+
+    /**
+     * Finds the values of the given fields of every item matching the given query.
+     * Queries where these fields, and the fields required, are all part of a single
+     * index are answered from the index without reading the items.
+     *
+     * @param query  The {@link Query query}
+     * @param fields The fields
+     * @return The values of the fields of every item, in the order of the given fields
+     */
+    @SafeVarargs
+    public final List<Object[]> findValues(Query<T> query, PersistentField<T>... fields) {
+        try {
+            return this.table.findValues(query.getRequirement(), fields);
         } catch (Throwable t) {
             throw new FindQueryException(t, query);
         }
     }
 
+    /**
+     * Counts the items matching the given query. Queries where the fields required are
+     * all part of a single index are answered from the index without reading the items.
+     *
+     * @param query The {@link Query query}
+     * @return The number of items
+     */
+    public long count(Query<T> query) {
+        try {
+            return this.table.count(query.getRequirement());
+        } catch (Throwable t) {
+            throw new FindQueryException(t, query);
+        }
+    }
+
+    /**
+     * Creates a view of the items matching the given query, kept up to date as items
+     * are saved and deleted, so that reading it does not check any requirement.
+     *
+     * @param name  The name of the view
+     * @param query The {@link Query query} of the items in the view
+     * @return The view
+     * @see #createView(String, Query, PersistentField, PersistentField[])
+     */
+    public MemoryView<T> createView(String name, Query<T> query) {
+        return this.createView(name, query, null);
+    }
+
+    /**
+     * Creates a view of the items matching the given query, grouped by the given field,
+     * keeping the number of items and the sums of the given fields for every group.
+     *
+     * @param name    The name of the view
+     * @param query   The {@link Query query} of the items in the view
+     * @param groupBy The field to group the items by, or null to not group them
+     * @param summed  The numeric fields to sum over the items of every group
+     * @return The view
+     */
+    @SafeVarargs
+    public final MemoryView<T> createView(String name, Query<T> query, PersistentField<T> groupBy, PersistentField<T>... summed) {
+        return this.table.createView(name, query.getRequirement(), groupBy, summed);
+    }
+
+    /**
+     * @return The view with the given name, or null if there is none
+     */
+    public MemoryView<T> getView(String name) {
+        return this.table.getView(name);
+    }
+
+    public void dropView(String name) {
+        this.table.dropView(name);
+    }
+
+    /**
+     * Creates an index of the table, in addition to the indices of the item. The index
+     * may only hold the items matching its {@link WrappedIndex#getFilter() filter}, and
+     * may hold values computed by an {@link WrappedIndex#getExpression() expression}.
+     *
+     * @param index The index
+     * @see org.tanberg.easydb.connection.memory.MemoryTable#createIndex(WrappedIndex)
+     */
+    public void createIndex(WrappedIndex<T> index) {
+        this.table.createIndex(index);
+    }
+
+    public void dropIndex(WrappedIndex<T> index) {
+        this.table.dropIndex(index);
+    }
+
+    /**
+     * @return The progress of building the indices created on the table. An index is
+     * only used by queries once built.
+     */
+    public List<IndexBuild<T>> getIndexBuilds() {
+        return this.table.getIndexBuilds();
+    }
+
+    /**
+     * Finds the items with the given values in the given index. For expression indices
+     * these are the computed values.
+     *
+     * @param index  The index
+     * @param values The values of the fields of the index, as held by the index
+     * @return The items
+     */
+    public List<Response<T>> findByIndex(WrappedIndex<T> index, Object... values) {
+        return this.table.findByIndex(index, values, row -> new RowResponse<>(this.getProfile(), row));
+    }
+
     @Override
     public void saveOrUpdateInternal(Query<T> query) {
         try {
-            this.table.save(query.getObjectInstance(), query.getValues(), query.getRequirement());
+            this.table.save(query.getObjectInstance(), query.getValues(), query.getRequirement(), query.getTimeToLive());
         } catch (Throwable t) {
             throw new SaveQueryException(t, query);
         }
@@ -0,0 +1,56 @@
+package org.tanberg.easydb.access.memory;
+
+import org.apache.commons.lang3.Validate;
+import org.tanberg.easydb.DatabaseType;
+import org.tanberg.easydb.connection.configuration.ConnectionConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes {@link DatabaseType#MEMORY memory} tables durable. Every change to a table is
+ * appended to a write-ahead log in the given directory, and snapshots of the table are
+ * written periodically. When a table is first used, it is restored from its latest
+ * snapshot and log.
+ */
+public class MemoryConfiguration extends ConnectionConfiguration {
+
+    protected static final String DIRECTORY_KEY = "directory";
+    protected static final String SYNC_INTERVAL_KEY = "syncInterval";
+    protected static final String SNAPSHOT_INTERVAL_KEY = "snapshotInterval";
+
+    public MemoryConfiguration(String directory) {
+        this(directory, 0, TimeUnit.MINUTES.toMillis(5));
+    }
+
+    /**
+     * @param directory        The directory to keep logs and snapshots in
+     * @param syncInterval     The interval, in milliseconds, between each time the log is
+     *                         flushed to disk. If 0, every change waits for the log to be
+     *                         flushed before returning, and concurrent changes share flushes.
+     * @param snapshotInterval The interval, in milliseconds, between each snapshot. If 0,
+     *                         snapshots are only written when closing the table.
+     */
+    public MemoryConfiguration(String directory, long syncInterval, long snapshotInterval) {
+        super(DatabaseType.MEMORY);
+
+        Validate.notBlank(directory);
+        Validate.isTrue(syncInterval >= 0, "Sync interval can not be negative!");
+        Validate.isTrue(snapshotInterval >= 0, "Snapshot interval can not be negative!");
+
+        this.setValue(DIRECTORY_KEY, directory);
+        this.setValue(SYNC_INTERVAL_KEY, syncInterval);
+        this.setValue(SNAPSHOT_INTERVAL_KEY, snapshotInterval);
+    }
+
+    public String getDirectory() {
+        return this.getValue(DIRECTORY_KEY);
+    }
+
+    public long getSyncInterval() {
+        return this.getValue(SYNC_INTERVAL_KEY);
+    }
+
+    public long getSnapshotInterval() {
+        return this.getValue(SNAPSHOT_INTERVAL_KEY);
+    }
+}
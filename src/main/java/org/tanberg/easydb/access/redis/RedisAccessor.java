@@ -1,6 +1,5 @@
 package org.tanberg.easydb.access.redis;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -30,16 +29,30 @@ import org.tanberg.easydb.query.traverse.RequirementCase;
 import org.tanberg.easydb.query.traverse.RequirementTraverser;
 import org.tanberg.easydb.util.IndexHelper;
 import org.tanberg.easydb.util.UtilLog;
+import org.tanberg.easydb.util.ValueHelper;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  * Redis database type accessor
@@ -55,8 +68,124 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
 
     private static final String INDEX_HASH_FORMAT = "%s:index:(fields[%s])";
 
+    /**
+     * The format of the key of the hash counting the keys of every index value, suffixed
+     * to the key of the index hash
+     */
+    private static final String INDEX_STATS_FORMAT = "%s:stats";
+
+    /**
+     * The format of the key of the sorted set of every index, suffixed to the key of the index
+     * hash. Members are the index value and the key, split by {@link #SORTED_SEPARATOR}, all
+     * with the same score, so that they are ordered by index value and an index value, or a
+     * leading part of it, can be looked up as a range
+     */
+    private static final String INDEX_SORTED_FORMAT = "%s:sorted";
+
+    private static final char SORTED_SEPARATOR = '\u0000';
+
     private static final String STORE_FORMAT = "%s:value(%s)";
 
+    /**
+     * The format of the key counting the values stored, kept by the writers
+     */
+    private static final String ROW_COUNT_FORMAT = "%s:count";
+
+    /**
+     * The number of keys asked for by every SCAN, and fetched by every pipeline
+     */
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    /**
+     * Stores a value, counting it if it is new.
+     * <p>
+     * KEYS: the key of the value, the row count. ARGV: the field names and values.
+     */
+    private static final String INSERT_SCRIPT = ""
+      + "if redis.call('EXISTS', KEYS[1]) == 0 then\n"
+      + "  redis.call('INCR', KEYS[2])\n"
+      + "end\n"
+      + "redis.call('HMSET', KEYS[1], unpack(ARGV))\n"
+      + "return 1";
+
+    /**
+     * Deletes values, no longer counting the ones deleted.
+     * <p>
+     * KEYS: the row count, the keys of the values.
+     */
+    private static final String DELETE_SCRIPT = ""
+      + "local deleted = 0\n"
+      + "for i = 2, #KEYS do\n"
+      + "  deleted = deleted + redis.call('DEL', KEYS[i])\n"
+      + "end\n"
+      + "if deleted > 0 then\n"
+      + "  redis.call('DECRBY', KEYS[1], deleted)\n"
+      + "end\n"
+      + "return deleted";
+
+    /**
+     * Sets the index value of a key, along with the statistics and the sorted set of the
+     * index, replacing the value it had. With the third argument set, a key already in
+     * the index, or no longer stored, is left alone.
+     * <p>
+     * KEYS: the index hash, the statistics hash, the sorted set, the key of the value.
+     * ARGV: the key, the index value, '1' to only add missing keys.
+     */
+    private static final String ADD_TO_INDEX_SCRIPT = ""
+      + "local previous = redis.call('HGET', KEYS[1], ARGV[1])\n"
+      + "if ARGV[3] == '1' and (previous or redis.call('EXISTS', KEYS[4]) == 0) then\n"
+      + "  return 0\n"
+      + "end\n"
+      + "if previous == ARGV[2] then\n"
+      + "  return 0\n"
+      + "end\n"
+      + "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])\n"
+      + "redis.call('HINCRBY', KEYS[2], ARGV[2], 1)\n"
+      + "if previous and redis.call('HINCRBY', KEYS[2], previous, -1) <= 0 then\n"
+      + "  redis.call('HDEL', KEYS[2], previous)\n"
+      + "end\n"
+      + "if previous then\n"
+      + "  redis.call('ZREM', KEYS[3], previous .. string.char(0) .. ARGV[1])\n"
+      + "end\n"
+      + "redis.call('ZADD', KEYS[3], 0, ARGV[2] .. string.char(0) .. ARGV[1])\n"
+      + "return 1";
+
+    /**
+     * Removes keys from an index, along with the statistics and the sorted set of it.
+     * <p>
+     * KEYS: the index hash, the statistics hash, the sorted set. ARGV: the keys.
+     */
+    private static final String REMOVE_FROM_INDEX_SCRIPT = ""
+      + "local removed = 0\n"
+      + "for i = 1, #ARGV do\n"
+      + "  local previous = redis.call('HGET', KEYS[1], ARGV[i])\n"
+      + "  if previous then\n"
+      + "    redis.call('HDEL', KEYS[1], ARGV[i])\n"
+      + "    if redis.call('HINCRBY', KEYS[2], previous, -1) <= 0 then\n"
+      + "      redis.call('HDEL', KEYS[2], previous)\n"
+      + "    end\n"
+      + "    redis.call('ZREM', KEYS[3], previous .. string.char(0) .. ARGV[i])\n"
+      + "    removed = removed + 1\n"
+      + "  end\n"
+      + "end\n"
+      + "return removed";
+
+    /**
+     * The number of keys added to the indices being built at a time, and the pause between
+     * every batch, so that building an index does not keep Redis from serving other clients
+     */
+    private static final int INDEX_BUILD_BATCH_SIZE = 1000;
+    private static final long INDEX_BUILD_PAUSE_MILLIS = 10;
+
+    /**
+     * The number of times a failed index build is started over, after a delay doubling
+     * every time, before the failure is given up on
+     */
+    private static final int INDEX_BUILD_ATTEMPTS = 5;
+    private static final long INDEX_BUILD_RETRY_MILLIS = 1000;
+
+    private static final long INDEX_BUILDER_KEEP_ALIVE_SECONDS = 60;
+
     /*
      * Notes
      *
@@ -76,6 +205,15 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
     private final String table;
     private final RedisConfiguration configuration;
     private final RedisJoinWrapper[] joinWrappers;
+    // Indices missing keys stored before they were added, not used by queries until filled
+    private final Set<WrappedIndex<T>> buildingIndices;
+    private final AtomicLong builtKeys;
+    // Runs the index builds of this accessor, one at a time, until closed
+    private final ScheduledThreadPoolExecutor indexBuilder;
+    // The index build running or waiting to run, including a retry, or null if there is none
+    private volatile Future<?> indexBuild;
+    private volatile long totalKeys;
+    private volatile Throwable indexBuildFailure;
 
     public RedisAccessor(RedisConfiguration config, ItemRepository<T> repository, String table) {
         super(repository);
@@ -84,6 +222,16 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
         this.joinWrappers = Arrays.stream(repository.getProfile().getJoins())
           .map(wrapper -> new RedisJoinWrapper(wrapper, this))
           .toArray(RedisJoinWrapper[]::new);
+        this.buildingIndices = Sets.newConcurrentHashSet();
+        this.builtKeys = new AtomicLong();
+        this.indexBuilder = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "EasyDB Redis Index Builder - " + table);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.indexBuilder.setKeepAliveTime(INDEX_BUILDER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        this.indexBuilder.allowCoreThreadTimeOut(true);
+        this.indexBuilder.setRemoveOnCancelPolicy(true);
 
         this.setUp();
     }
@@ -111,6 +259,10 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
     @Override
     public void setUpInternal() {
         this.info("Setting up internals for redis accessor!");
+        this.setUpSortedIndices();
+        this.setUpRowCount();
+        this.setUpIndexBuilds();
+
         if (this.getRepository().getProfile().getAutoIncrementField() == null) {
             this.info("No auto increment field, thus no setup is required!");
             return;
@@ -132,6 +284,40 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
         }
     }
 
+    /**
+     * @return If an index of the item is still being filled with the keys stored before it
+     * was added, in which case queries on it scan all keys instead
+     */
+    public boolean isIndexBuilding() {
+        return !this.buildingIndices.isEmpty();
+    }
+
+    /**
+     * @return The share of the keys stored before the indices being built were added that
+     * have been looked at so far, between 0 and 1
+     */
+    public double getIndexBuildProgress() {
+        long total = this.totalKeys;
+        return total == 0 || !this.isIndexBuilding() ? 1 : Math.min((double) this.builtKeys.get() / total, 1);
+    }
+
+    /**
+     * @return Why building the indices failed, after being retried, or null if it has not.
+     * The indices are then not used by queries until the accessor is set up again.
+     */
+    public Throwable getIndexBuildFailure() {
+        return this.indexBuildFailure;
+    }
+
+    /**
+     * Stops building indices in the background, cancelling a build that is not done, and
+     * stops the thread running the builds. The indices being built are not used by
+     * queries of this accessor afterwards.
+     */
+    public void close() {
+        this.indexBuilder.shutdownNow();
+    }
+
     @Override
     public Response<T> findFirstInternal(Query<T> query) {
         try {
@@ -243,7 +429,9 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
 
         this.info("Deleting values...");
         try (Jedis jedis = this.getResource()) {
-            jedis.del(keys);
+            List<String> scriptKeys = Lists.newArrayList(String.format(ROW_COUNT_FORMAT, this.table));
+            Collections.addAll(scriptKeys, keys);
+            jedis.eval(DELETE_SCRIPT, scriptKeys, Collections.emptyList());
         } catch (Throwable t) {
             throw new DeleteQueryException(t, query);
         }
@@ -256,18 +444,22 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
     @Override
     public void dropInternal() {
         this.info("Dropping all values!");
+        this.cancelIndexBuild();
         try (Jedis jedis = this.getResource()) {
-            Set<String> keys = jedis.keys(String.format(STORE_FORMAT, this.table, "*"));
-            this.info("Found " + keys.size() + " matching key(s)!");
-            if (!keys.isEmpty()) {
-                this.info("Deleting found values!");
-                jedis.del(keys.toArray(new String[0]));
-            }
+            this.scanKeys(keys -> {
+                this.info("Deleting " + keys.size() + " found value(s)!");
+                try (Jedis batchJedis = this.getResource()) {
+                    batchJedis.del(keys.toArray(new String[0]));
+                }
+            });
+
+            jedis.del(String.format(ROW_COUNT_FORMAT, this.table));
 
             this.info("Deleting all index hashes...");
             for (WrappedIndex<T> index : this.getRepository().getProfile().getIndices()) {
                 this.info("Deleting " + index + " hash...");
-                jedis.del(this.getIndexHashKey(index.getFields()));
+                String indexKey = this.getIndexHashKey(index.getFields());
+                jedis.del(indexKey, String.format(INDEX_STATS_FORMAT, indexKey), String.format(INDEX_SORTED_FORMAT, indexKey));
             }
 
             this.info("Completed deleting index hashes.");
@@ -276,6 +468,8 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
                 jedis.del(String.format(AUTO_INCREMENT_FORMAT, this.table));
             }
 
+            // Empty indices hold every key
+            this.buildingIndices.clear();
             this.info("Query complete.");
         } catch (Throwable t) {
             throw new DropException(t);
@@ -295,29 +489,255 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
 
     // Internals
 
-    private List<Response<T>> getAll() {
-        this.info("Fetching all values stored...");
+    /**
+     * Fills the sorted sets of indices holding values stored before the sorted sets were
+     * kept, walking the index hash with HSCAN.
+     */
+    private void setUpSortedIndices() {
         try (Jedis jedis = this.getResource()) {
-            Set<String> keys = jedis.keys(String.format(STORE_FORMAT, this.table, "*"));
-            this.info("Found " + keys.size() + " key(s).");
-            return this.getAll(keys);
+            for (WrappedIndex<T> index : this.getRepository().getProfile().getIndices()) {
+                String indexKey = this.getIndexHashKey(index.getFields());
+                String sortedKey = String.format(INDEX_SORTED_FORMAT, indexKey);
+                if (jedis.zcard(sortedKey) >= jedis.hlen(indexKey)) {
+                    continue;
+                }
+
+                this.info("Building sorted set for " + index + "...");
+                String cursor = ScanParams.SCAN_POINTER_START;
+                do {
+                    ScanResult<Entry<String, String>> result = jedis.hscan(indexKey, cursor);
+                    for (Entry<String, String> entry : result.getResult()) {
+                        jedis.zadd(sortedKey, 0, entry.getValue() + SORTED_SEPARATOR + entry.getKey());
+                    }
+
+                    cursor = result.getStringCursor();
+                } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+            }
+        } catch (Throwable t) {
+            throw new SetUpException(t);
         }
     }
 
+    /**
+     * Counts the values stored before the count was kept by the writers.
+     */
+    private void setUpRowCount() {
+        String countKey = String.format(ROW_COUNT_FORMAT, this.table);
+        try (Jedis jedis = this.getResource()) {
+            if (jedis.exists(countKey)) {
+                return;
+            }
+        } catch (Throwable t) {
+            throw new SetUpException(t);
+        }
+
+        this.info("Counting stored values...");
+        int[] count = new int[1];
+        this.scanKeys(keys -> count[0] += keys.size());
+        try (Jedis jedis = this.getResource()) {
+            jedis.set(countKey, String.valueOf(count[0]));
+        } catch (Throwable t) {
+            throw new SetUpException(t);
+        }
+    }
+
+    /**
+     * @return The number of values stored, as counted by the writers
+     */
+    private long getRowCount(Jedis jedis) {
+        String count = jedis.get(String.format(ROW_COUNT_FORMAT, this.table));
+        return count == null ? 0 : Long.parseLong(count);
+    }
+
+    private ScanParams getScanParams() {
+        return new ScanParams().match(String.format(STORE_FORMAT, this.table, "*")).count(SCAN_BATCH_SIZE);
+    }
+
+    /**
+     * Hands the stored keys to the given consumer in batches, found by SCAN rather than
+     * KEYS so that Redis is not blocked while looking through every key. Keys stored or
+     * deleted while scanning may or may not be found, and keys may be found twice.
+     */
+    private void scanKeys(Consumer<List<String>> consumer) {
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result;
+            try (Jedis jedis = this.getResource()) {
+                result = jedis.scan(cursor, this.getScanParams());
+            }
+
+            if (!result.getResult().isEmpty()) {
+                consumer.accept(result.getResult());
+            }
+
+            cursor = result.getStringCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    }
+
+    /**
+     * @return Every stored key, found by {@link #scanKeys(Consumer)}
+     */
+    private List<String> scanKeys() {
+        Set<String> keys = Sets.newLinkedHashSet();
+        this.scanKeys(keys::addAll);
+        return Lists.newArrayList(keys);
+    }
+
+    /**
+     * @return The given keys with stored values matching the given predicate, fetched in
+     * pipelined batches
+     */
+    private List<String> filterKeys(Collection<String> keys, Predicate<FieldValue<T>[]> predicate) {
+        List<String> matching = Lists.newArrayList();
+        this.getValues(keys).forEach((key, stored) -> {
+            if (predicate.test(stored)) {
+                matching.add(key);
+            }
+        });
+
+        return matching;
+    }
+
+    /**
+     * Starts filling the indices holding fewer keys than are stored, being indices added
+     * after values were stored, in the background. Keys saved in the meantime are added by
+     * the writers, and the indices are used by queries once filled.
+     */
+    private void setUpIndexBuilds() {
+        long rows;
+        try (Jedis jedis = this.getResource()) {
+            rows = this.getRowCount(jedis);
+            for (WrappedIndex<T> index : this.getRepository().getProfile().getIndices()) {
+                if (jedis.hlen(this.getIndexHashKey(index.getFields())) < rows) {
+                    this.buildingIndices.add(index);
+                }
+            }
+        } catch (Throwable t) {
+            throw new SetUpException(t);
+        }
+
+        if (this.buildingIndices.isEmpty()) {
+            return;
+        }
+
+        this.info("Building " + this.buildingIndices + " for " + rows + " key(s) in the background...");
+        this.totalKeys = rows;
+        this.indexBuildFailure = null;
+        this.indexBuild = this.indexBuilder.submit(() -> this.buildIndices(1));
+    }
+
+    /**
+     * Cancels the index build running or waiting to run, interrupting it if running.
+     */
+    private void cancelIndexBuild() {
+        Future<?> build = this.indexBuild;
+        if (build != null) {
+            build.cancel(true);
+        }
+    }
+
+    /**
+     * Adds the stored keys to the indices being built, scanned in batches with a pause
+     * between them. A failed build is started over, and given up on after {@link
+     * #INDEX_BUILD_ATTEMPTS} attempts.
+     */
+    private void buildIndices(int attempt) {
+        this.builtKeys.set(0);
+        try {
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+
+                ScanResult<String> result;
+                try (Jedis jedis = this.getResource()) {
+                    result = jedis.scan(cursor, this.getScanParams());
+                }
+
+                this.buildIndices(result.getResult());
+                this.builtKeys.addAndGet(result.getResult().size());
+                cursor = result.getStringCursor();
+                if (!cursor.equals(ScanParams.SCAN_POINTER_START)) {
+                    Thread.sleep(INDEX_BUILD_PAUSE_MILLIS);
+                }
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+
+            this.info("Built " + this.buildingIndices + ".");
+            this.buildingIndices.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.indexBuildFailure = e;
+        } catch (Throwable t) {
+            if (Thread.currentThread().isInterrupted() || this.indexBuilder.isShutdown()) {
+                // Cancelled while talking to Redis
+                this.indexBuildFailure = t;
+                return;
+            }
+
+            if (attempt >= INDEX_BUILD_ATTEMPTS) {
+                UtilLog.log(Level.SEVERE, "Failed to build indices of " + this.table + ", giving up!", t);
+                this.indexBuildFailure = t;
+                return;
+            }
+
+            long delay = INDEX_BUILD_RETRY_MILLIS << (attempt - 1);
+            UtilLog.log(Level.WARNING, "Failed to build indices of " + this.table + ", retrying in " + delay + " ms!", t);
+            this.indexBuild = this.indexBuilder.schedule(() -> this.buildIndices(attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds the given keys to the indices being built, in one pipeline. Keys deleted, or
+     * saved and thus indexed, since the build started are left alone by the script.
+     */
+    private void buildIndices(List<String> keys) {
+        Map<String, FieldValue<T>[]> values = this.getValues(keys);
+        if (values.isEmpty()) {
+            return;
+        }
+
+        try (Jedis jedis = this.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (Entry<String, FieldValue<T>[]> entry : values.entrySet()) {
+                for (WrappedIndex<T> index : this.buildingIndices) {
+                    List<String> scriptKeys = this.getIndexScriptKeys(index);
+                    scriptKeys.add(entry.getKey());
+                    pipeline.eval(ADD_TO_INDEX_SCRIPT, scriptKeys,
+                      Lists.newArrayList(entry.getKey(), this.getStoredIndexValue(index, entry.getValue()), "1"));
+                }
+            }
+
+            pipeline.sync();
+        }
+    }
+
+    private List<Response<T>> getAll() {
+        this.info("Fetching all values stored...");
+        List<String> keys = this.scanKeys();
+        this.info("Found " + keys.size() + " key(s).");
+        return this.getAll(keys);
+    }
+
     private Response<T> getFirst() {
         this.info("Fetching first value stored...");
+        String cursor = ScanParams.SCAN_POINTER_START;
         try (Jedis jedis = this.getResource()) {
-            Set<String> keys = jedis.keys(String.format(STORE_FORMAT, this.table, "*"));
-            this.info("Found " + keys.size() + " key(s).");
-            String key = Iterables.getFirst(keys, null);
-            if (key == null) {
-                this.info("Returning empty result.");
-                return new Response<>(this.getRepository().getProfile());
-            }
+            do {
+                ScanResult<String> result = jedis.scan(cursor, this.getScanParams());
+                for (String key : result.getResult()) {
+                    Response<T> response = this.getObject(key);
+                    if (!response.isEmpty()) {
+                        return response;
+                    }
+                }
 
-            this.info("Getting value at \"" + key + "\"...");
-            return this.getObject(key);
+                cursor = result.getStringCursor();
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
         }
+
+        this.info("Returning empty result.");
+        return new Response<>(this.getRepository().getProfile());
     }
 
     private List<Response<T>> getAll(QueryRequirement requirement) {
@@ -328,8 +748,8 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
 
     private List<Response<T>> getAll(Collection<String> keys) {
         List<Response<T>> list = Lists.newArrayList();
-        for (String key : keys) {
-            list.add(this.getObject(key));
+        for (FieldValue<T>[] values : this.getValues(keys).values()) {
+            list.add(new Response<>(this.getRepository().getProfile(), values));
         }
 
         this.info("Completed fetching " + list.size() + " element(s)!");
@@ -361,54 +781,90 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
 
     private FieldValue<T>[] getValues(String key) {
         this.info("Getting values at \"" + key + "\"...");
-        List<FieldValue<T>> list = Lists.newArrayList();
-
+        Map<String, String> valueMap;
         try (Jedis jedis = this.getResource()) {
-            Map<String, String> valueMap = jedis.hgetAll(key);
-            if (valueMap.isEmpty()) {
-                this.info("No values found!");
-                return null;
-            }
-
-            this.info("Parsing values...");
-            for (Entry<String, String> entry : valueMap.entrySet()) {
-                PersistentField<T> field = this.getRepository().getProfile().resolveField(entry.getKey());
-                ;
-                if (field == null) {
-                    throw new IllegalArgumentException("Unknown field \"" + entry.getKey() + "\"!");
+            valueMap = jedis.hgetAll(key);
+        }
+
+        if (valueMap.isEmpty()) {
+            this.info("No values found!");
+            return null;
+        }
+
+        return this.parseValues(valueMap);
+    }
+
+    /**
+     * Gets the values stored at the given keys, fetched in pipelined batches rather than
+     * with a round trip for every key.
+     *
+     * @return The values of every key still stored, in the order of the given keys
+     */
+    private Map<String, FieldValue<T>[]> getValues(Collection<String> keys) {
+        this.info("Getting values at " + keys.size() + " key(s)...");
+        Map<String, FieldValue<T>[]> values = Maps.newLinkedHashMap();
+        for (List<String> batch : Iterables.partition(keys, SCAN_BATCH_SIZE)) {
+            List<redis.clients.jedis.Response<Map<String, String>>> responses = Lists.newArrayListWithCapacity(batch.size());
+            try (Jedis jedis = this.getResource()) {
+                Pipeline pipeline = jedis.pipelined();
+                for (String key : batch) {
+                    responses.add(pipeline.hgetAll(key));
                 }
 
-                Object value = field.getType().fromString(this.getRepository(), field, entry.getValue());
-                list.add(new FieldValue<>(field, value));
-                this.info("Value for field " + field + " is " + value + "!");
+                pipeline.sync();
             }
 
-            this.info("Handling joins...");
-            // Handle joins
-            FieldValue<T>[] values = list.toArray(new FieldValue[0]);
+            for (int i = 0; i < batch.size(); i++) {
+                Map<String, String> valueMap = responses.get(i).get();
+                if (!valueMap.isEmpty()) {
+                    values.put(batch.get(i), this.parseValues(valueMap));
+                }
+            }
+        }
+
+        return values;
+    }
 
-            // First; Get all values
-            List<FieldValue> joinValues = Lists.newArrayList();
-            for (RedisJoinWrapper joinWrapper : this.joinWrappers) {
-                Collections.addAll(joinValues, joinWrapper.getValues(values));
+    private FieldValue<T>[] parseValues(Map<String, String> valueMap) {
+        List<FieldValue<T>> list = Lists.newArrayList();
+        this.info("Parsing values...");
+        for (Entry<String, String> entry : valueMap.entrySet()) {
+            PersistentField<T> field = this.getRepository().getProfile().resolveField(entry.getKey());
+            ;
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field \"" + entry.getKey() + "\"!");
             }
 
-            // Then; Compute into usable data
-            fields:
-            for (PersistentField<T> field : this.getRepository().getProfile().getFields()) {
-                if (!field.isJoined()) {
-                    continue;
-                }
+            Object value = field.getType().fromString(this.getRepository(), field, entry.getValue());
+            list.add(new FieldValue<>(field, value));
+            this.info("Value for field " + field + " is " + value + "!");
+        }
 
-                for (FieldValue value : joinValues) {
-                    if (!value.getField().getName().equals(field.getName())) {
-                        continue;
-                    }
+        this.info("Handling joins...");
+        // Handle joins
+        FieldValue<T>[] values = list.toArray(new FieldValue[0]);
+
+        // First; Get all values
+        List<FieldValue> joinValues = Lists.newArrayList();
+        for (RedisJoinWrapper joinWrapper : this.joinWrappers) {
+            Collections.addAll(joinValues, joinWrapper.getValues(values));
+        }
 
-                    this.info("Found join value for " + field + " in " + value + "!");
-                    list.add(new FieldValue<>(field, value.getValue()));
-                    continue fields;
+        // Then; Compute into usable data
+        fields:
+        for (PersistentField<T> field : this.getRepository().getProfile().getFields()) {
+            if (!field.isJoined()) {
+                continue;
+            }
+
+            for (FieldValue value : joinValues) {
+                if (!value.getField().getName().equals(field.getName())) {
+                    continue;
                 }
+
+                this.info("Found join value for " + field + " in " + value + "!");
+                list.add(new FieldValue<>(field, value.getValue()));
+                continue fields;
             }
         }
 
@@ -477,8 +933,14 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
     }
 
     private void insertIntoHash(String key, Map<String, String> valuesByKey) {
+        List<String> args = Lists.newArrayListWithCapacity(valuesByKey.size() * 2);
+        for (Entry<String, String> entry : valuesByKey.entrySet()) {
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+
         try (Jedis jedis = this.getResource()) {
-            jedis.hmset(key, valuesByKey);
+            jedis.eval(INSERT_SCRIPT, Lists.newArrayList(key, String.format(ROW_COUNT_FORMAT, this.table)), args);
         }
     }
 
@@ -489,7 +951,13 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
         this.info("Traverser found " + traverser.getCases().size() + " case(s).");
         for (RequirementCase requirementCase : traverser.getCases()) {
             List<FieldValue<T>> values = Lists.newArrayList();
+            List<SimpleRequirement> prefixes = Lists.newArrayList();
             for (SimpleRequirement simpleRequirement : requirementCase.getRequirements()) {
+                if (simpleRequirement.getOperator() == Operator.STARTS_WITH) {
+                    prefixes.add(simpleRequirement);
+                    continue;
+                }
+
                 if (simpleRequirement.getOperator() != Operator.EQUALS) {
                     throw new IllegalArgumentException("Unsupported operation \"" + simpleRequirement.getOperator().name() + "\" by redis!");
                 }
@@ -497,7 +965,13 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
                 values.add(new FieldValue<>((PersistentField<T>) simpleRequirement.getField(), simpleRequirement.getValue()));
             }
 
-            List<String> keysFound = this.getKeys(values.toArray(new FieldValue[0]));
+            List<String> keysFound;
+            if (prefixes.isEmpty()) {
+                keysFound = this.getKeys(values.toArray(new FieldValue[0]));
+            } else {
+                keysFound = this.getKeys(prefixes, values.toArray(new FieldValue[0]));
+            }
+
             keys.addAll(keysFound);
         }
 
@@ -514,17 +988,182 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
             return Lists.newArrayList(this.getKey(values));
         }
 
-        this.info("Found " + indices.size() + " indices to use. Finding matching keys from each index...");
+        // Indices still being built are missing keys
+        indices = Lists.newArrayList(indices);
+        indices.removeAll(this.buildingIndices);
+        List<WrappedIndex<T>> chosen = indices.isEmpty() ? Collections.emptyList() : this.chooseIndices(indices, values);
+        if (chosen.isEmpty()) {
+            this.info("No index is selective enough. Scanning all values...");
+            Set<String> keys = Sets.newLinkedHashSet();
+            this.scanKeys(batch -> keys.addAll(this.filterKeys(batch, stored -> this.matches(stored, values))));
+            return Lists.newArrayList(keys);
+        }
+
+        this.info("Using " + chosen.size() + " of " + indices.size() + " indices. Finding matching keys from each index...");
         List<List<String>> keys = Lists.newArrayList();
-        for (WrappedIndex<T> index : indices) {
+        for (WrappedIndex<T> index : chosen) {
             keys.add(this.getKeys(index, values));
         }
 
         List<String> finalKeys = this.getKeys(keys);
+
+        // Values of fields not looked up in the chosen indices are checked on the values stored
+        PersistentField<T>[] fields = Arrays.stream(values).map(FieldValue::getField).toArray(PersistentField[]::new);
+        Set<PersistentField<T>> covered = Sets.newHashSet();
+        for (WrappedIndex<T> index : chosen) {
+            covered.addAll(IndexHelper.getPrefixFields(index, fields));
+        }
+
+        FieldValue<T>[] residual = Arrays.stream(values)
+          .filter(value -> !covered.contains(value.getField()))
+          .toArray(FieldValue[]::new);
+        if (residual.length > 0) {
+            this.info("Checking " + finalKeys.size() + " key(s) for " + UtilLog.format(residual) + "...");
+            finalKeys = this.filterKeys(finalKeys, stored -> this.matches(stored, residual));
+        }
+
         this.info("Successfully found " + finalKeys.size() + " key(s).");
         return finalKeys;
     }
 
+    /**
+     * Finds the keys with values starting with the given prefixes, and equal to the given
+     * values. The first prefix on the leading field of a sorted index is looked up as a
+     * lexicographical range of the sorted set, and the other requirements are checked on
+     * the keys found.
+     */
+    private List<String> getKeys(List<SimpleRequirement> prefixes, FieldValue<T>[] values) {
+        SimpleRequirement prefix = null;
+        WrappedIndex<T> index = null;
+        boolean building = false;
+        for (SimpleRequirement requirement : prefixes) {
+            List<WrappedIndex<T>> candidates = Arrays.stream(this.getRepository().getProfile().getIndices())
+              .filter(candidate -> candidate.getFields()[0].equals(requirement.getField()))
+              .collect(Collectors.toList());
+            building |= candidates.removeAll(this.buildingIndices);
+            index = candidates.stream()
+              .min(Comparator.comparingInt((WrappedIndex<T> candidate) -> candidate.getFields().length))
+              .orElse(null);
+            if (index != null) {
+                prefix = requirement;
+                break;
+            }
+        }
+
+        if (prefix == null && building) {
+            this.info("Prefix index is being built. Scanning all values...");
+            List<String> keys = values.length > 0 ? this.getKeys(values) : this.scanKeys();
+            return this.filterKeys(keys, stored -> this.startsWith(stored, prefixes));
+        }
+
+        if (prefix == null) {
+            throw new IllegalArgumentException("Operation \"" + Operator.STARTS_WITH.name() + "\" requires an index led by the field by redis!");
+        }
+
+        PersistentField<T> field = (PersistentField<T>) prefix.getField();
+        String value = field.getType().toString(this.getRepository(), field, prefix.getValue());
+        this.info("Finding keys starting with \"" + value + "\" from index " + index + "...");
+
+        List<String> keys = Lists.newArrayList();
+        try (Jedis jedis = this.getResource()) {
+            // No UTF-8 encoded string contains the byte 0xFF, so it is ordered after every value with the prefix
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            byte[] min = new byte[bytes.length + 1];
+            byte[] max = new byte[bytes.length + 2];
+            min[0] = '[';
+            max[0] = '(';
+            System.arraycopy(bytes, 0, min, 1, bytes.length);
+            System.arraycopy(bytes, 0, max, 1, bytes.length);
+            max[max.length - 1] = (byte) 0xFF;
+
+            byte[] sortedKey = String.format(INDEX_SORTED_FORMAT, this.getIndexHashKey(index.getFields())).getBytes(StandardCharsets.UTF_8);
+            for (byte[] member : jedis.zrangeByLex(sortedKey, min, max)) {
+                String memberString = new String(member, StandardCharsets.UTF_8);
+                keys.add(memberString.substring(memberString.indexOf(SORTED_SEPARATOR) + 1));
+            }
+        }
+
+        if (values.length > 0) {
+            keys.retainAll(Sets.newHashSet(this.getKeys(values)));
+        }
+
+        // Members of composite indices hold the values of the other fields as well, so the prefix is checked again
+        List<SimpleRequirement> residual = Lists.newArrayList(prefixes);
+        if (index.getFields().length == 1) {
+            residual.remove(prefix);
+        }
+
+        if (!residual.isEmpty()) {
+            this.info("Checking " + keys.size() + " key(s) for " + residual + "...");
+            keys = this.filterKeys(keys, stored -> this.startsWith(stored, residual));
+        }
+
+        this.info("Successfully found " + keys.size() + " key(s).");
+        return keys;
+    }
+
+    /**
+     * Chooses the indices to use for finding the given values, from the number of
+     * keys holding each index value as counted in the statistics of the index, or in
+     * the sorted set of the index for a leading part of its fields.
+     */
+    private List<WrappedIndex<T>> chooseIndices(Collection<WrappedIndex<T>> indices, FieldValue<T>[] values) {
+        Map<WrappedIndex<T>, Long> estimates = Maps.newHashMap();
+        long rows;
+        try (Jedis jedis = this.getResource()) {
+            for (WrappedIndex<T> index : indices) {
+                String indexKey = this.getIndexHashKey(index.getFields());
+                String indexValue = this.getIndexValue(index, values);
+                if (!this.isFullValue(index, values)) {
+                    String[] range = this.getSortedRange(index, values, indexValue);
+                    estimates.put(index, jedis.zlexcount(String.format(INDEX_SORTED_FORMAT, indexKey), range[0], range[1]));
+                    continue;
+                }
+
+                String count = jedis.hget(String.format(INDEX_STATS_FORMAT, indexKey), indexValue);
+                estimates.put(index, count == null ? 0 : Long.parseLong(count));
+            }
+
+            rows = this.getRowCount(jedis);
+        }
+
+        this.info("Estimated index matches are " + estimates + " of " + rows + " key(s).");
+        return IndexHelper.chooseIndices(indices, values, estimates::get, rows);
+    }
+
+    private boolean matches(FieldValue<T>[] stored, FieldValue<T>[] values) {
+        for (FieldValue<T> value : values) {
+            PersistentField<T> field = value.getField();
+            Object storedValue = this.getRepository().getArrayValue(field, stored);
+            if (storedValue == null || value.getValue() == null) {
+                if (storedValue != value.getValue()) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            // Compared as stored, as the parsed values may be of other types than the ones queried
+            if (!field.getType().toString(this.getRepository(), field, storedValue)
+              .equals(field.getType().toString(this.getRepository(), field, value.getValue()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean startsWith(FieldValue<T>[] stored, List<SimpleRequirement> prefixes) {
+        for (SimpleRequirement prefix : prefixes) {
+            Object storedValue = this.getRepository().getArrayValue((PersistentField<T>) prefix.getField(), stored);
+            if (!ValueHelper.matches(storedValue, prefix.getValue(), Operator.STARTS_WITH)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private List<String> getKeys(List<List<String>> lists) {
         if (lists.size() == 0) {
             throw new IllegalArgumentException("Empty list!");
@@ -542,9 +1181,41 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
     private List<String> getKeys(WrappedIndex<T> index, FieldValue<T>[] values) {
         this.info("Finding key from index " + index + " to match values " + UtilLog.format(values) + "...");
         String key = this.getIndexHashKey(index.getFields());
+        List<String> keys = Lists.newArrayList();
+
+        String matcher = this.getIndexValue(index, values);
+        this.info("Looking for keys to match \"" + matcher + "\"...");
+        try (Jedis jedis = this.getResource()) {
+            // Only the members with the index value are read, rather than the whole index
+            String[] range = this.getSortedRange(index, values, matcher);
+            for (String member : jedis.zrangeByLex(String.format(INDEX_SORTED_FORMAT, key), range[0], range[1])) {
+                keys.add(member.substring(member.indexOf(SORTED_SEPARATOR) + 1));
+            }
+        }
+
+        this.info("Found " + keys.size() + " matching key(s)");
+        return keys;
+    }
+
+    /**
+     * Gets the lexicographical range of members in the sorted set of an index
+     * matching the given index value, which may be for a leading part of the fields only.
+     *
+     * @return The inclusive minimum and exclusive maximum of the range
+     */
+    private String[] getSortedRange(WrappedIndex<T> index, FieldValue<T>[] values, String indexValue) {
+        char separator = this.isFullValue(index, values) ? SORTED_SEPARATOR : ':';
+        return new String[]{"[" + indexValue + separator, "(" + indexValue + (char) (separator + 1)};
+    }
 
+    /**
+     * Gets the index value of the given values, as stored in the index. If only a leading
+     * part of the fields of the index have values, the index value of these is given.
+     */
+    private String getIndexValue(WrappedIndex<T> index, FieldValue<T>[] values) {
+        PersistentField<T>[] fields = Arrays.stream(values).map(FieldValue::getField).toArray(PersistentField[]::new);
         StringBuilder builder = new StringBuilder();
-        for (PersistentField<T> field : index.getFields()) {
+        for (PersistentField<T> field : IndexHelper.getPrefixFields(index, fields)) {
             if (!builder.toString().isEmpty()) {
                 builder.append(":");
             }
@@ -557,33 +1228,14 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
             builder.append(field.getType().toString(this.getRepository(), field, value));
         }
 
-        List<String> keys = Lists.newArrayList();
-
-        String matcher = builder.toString();
-        this.info("Looking for keys to match \"" + matcher + "\"...");
-        try (Jedis jedis = this.getResource()) {
-            Map<String, String> indexMap = jedis.hgetAll(key);
-
-            for (Entry<String, String> entry : indexMap.entrySet()) {
-                if (!entry.getValue().equals(matcher)) {
-                    continue;
-                }
-
-                this.info("Found match at \"" + entry.getKey() + "\".");
-                keys.add(entry.getKey());
-            }
-        }
-
-        this.info("Found " + keys.size() + " matching key(s)");
-        return keys;
+        return builder.toString();
     }
 
     private void removeFromIndices(String... keys) {
         this.info("Removing " + Arrays.toString(keys) + " from indices...");
         try (Jedis jedis = this.getResource()) {
             for (WrappedIndex<T> index : this.getRepository().getProfile().getIndices()) {
-                String indexKey = this.getIndexHashKey(index.getFields());
-                jedis.hdel(indexKey, keys);
+                jedis.eval(REMOVE_FROM_INDEX_SCRIPT, this.getIndexScriptKeys(index), Arrays.asList(keys));
             }
         }
     }
@@ -591,27 +1243,53 @@ public class RedisAccessor<T> extends ListenableTypeAccessor<T> {
     private void addToIndices(String key, FieldValue<T>[] values) {
         this.info("Adding value at \"" + key + "\" to indices...");
         for (WrappedIndex<T> index : this.getRepository().getProfile().getIndices()) {
-            StringBuilder builder = new StringBuilder();
-            for (PersistentField<T> field : index.getFields()) {
-                if (!builder.toString().isEmpty()) {
-                    builder.append(":");
-                }
+            this.addToIndex(index, key, this.getStoredIndexValue(index, values));
+        }
+    }
 
-                builder.append(field.getType().toString(this.getRepository(), field, this.getRepository().getArrayValue(field, values)));
+    /**
+     * Gets the index value of the given stored values, with every field of the index.
+     */
+    private String getStoredIndexValue(WrappedIndex<T> index, FieldValue<T>[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (PersistentField<T> field : index.getFields()) {
+            if (!builder.toString().isEmpty()) {
+                builder.append(":");
             }
 
-            this.addToIndex(index.getFields(), key, builder.toString());
+            builder.append(field.getType().toString(this.getRepository(), field, this.getRepository().getArrayValue(field, values)));
         }
+
+        return builder.toString();
     }
 
-    private void addToIndex(PersistentField<T>[] fields, String key, String value) {
-        this.info("Adding \"" + key + "\" with values \"" + value + "\" to index with fields " + Arrays.toString(fields));
-        String indexKey = this.getIndexHashKey(fields);
+    private void addToIndex(WrappedIndex<T> index, String key, String value) {
+        this.info("Adding \"" + key + "\" with values \"" + value + "\" to index with fields " + Arrays.toString(index.getFields()));
+        List<String> scriptKeys = this.getIndexScriptKeys(index);
+        scriptKeys.add(key);
         try (Jedis jedis = this.getResource()) {
-            jedis.hmset(indexKey, ImmutableMap.of(key, value));
+            jedis.eval(ADD_TO_INDEX_SCRIPT, scriptKeys, Lists.newArrayList(key, value, "0"));
         }
     }
 
+    /**
+     * @return The keys of the hash, the statistics and the sorted set of the given index,
+     * as given to the index scripts
+     */
+    private List<String> getIndexScriptKeys(WrappedIndex<T> index) {
+        String indexKey = this.getIndexHashKey(index.getFields());
+        return Lists.newArrayList(indexKey, String.format(INDEX_STATS_FORMAT, indexKey), String.format(INDEX_SORTED_FORMAT, indexKey));
+    }
+
+    /**
+     * @return If the given values are for every field of the given index, rather than a
+     * leading part of them
+     */
+    private boolean isFullValue(WrappedIndex<T> index, FieldValue<T>[] values) {
+        PersistentField<T>[] fields = Arrays.stream(values).map(FieldValue::getField).toArray(PersistentField[]::new);
+        return IndexHelper.getPrefixFields(index, fields).size() == index.getFields().length;
+    }
+
     private String getIndexHashKey(PersistentField<T>[] fields) {
         StringBuilder builder = new StringBuilder();
         for (PersistentField<T> field : fields) {
@@ -16,6 +16,7 @@ import org.tanberg.easydb.exception.SetUpException;
 import org.tanberg.easydb.field.FieldValue;
 import org.tanberg.easydb.field.PersistentField;
 import org.tanberg.easydb.interact.join.JoinWrapper;
+import org.tanberg.easydb.query.Operator;
 import org.tanberg.easydb.query.Query;
 import org.tanberg.easydb.query.req.CombinedRequirement;
 import org.tanberg.easydb.query.req.QueryRequirement;
@@ -521,10 +522,28 @@ public class MySQLAccessor<T> extends ListenableTypeAccessor<T> {
         return "\"" + serialized.replace("\"", "\\\"") + "\"";
     }
 
+    /**
+     * @return A LIKE pattern matching strings starting with the given prefix, with the
+     * wildcards of the prefix escaped, and backslashes doubled for the string literal
+     */
+    private String toLikePrefix(String prefix) {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return pattern.replace("\\", "\\\\");
+    }
+
     private String toString(QueryRequirement requirement) {
         if (requirement instanceof SimpleRequirement) {
             SimpleRequirement req = (SimpleRequirement) requirement;
+            if (req.getOperator() == Operator.MATCHES) {
+                throw new IllegalArgumentException("Unsupported operation \"" + req.getOperator().name() + "\" by MySQL!");
+            }
+
             String value = req.getField().getType().toString(this.getRepository(), req.getField(), req.getValue());
+            if (req.getOperator() == Operator.STARTS_WITH) {
+                // A pattern with a constant prefix, which MySQL can look up in an index as a range
+                return "`" + req.getField().getName() + "` " + req.getOperator() + " " + this.quote(this.toLikePrefix(value), (PersistentField<T>) req.getField());
+            }
+
             return "`" + req.getField().getName() + "`" + req.getOperator() + this.quote(value, (PersistentField<T>) req.getField());
         }
 
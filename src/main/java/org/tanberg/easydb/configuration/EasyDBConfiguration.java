@@ -15,6 +15,7 @@ public class EasyDBConfiguration {
 
     private boolean verbose = false;
     private boolean inMemoryOnly = false;
+    private int parallelScanThreshold = 100000;
     private Logger logger = Logger.getLogger("EasyDB");
 
     public EasyDBConfiguration() {
@@ -62,4 +63,28 @@ public class EasyDBConfiguration {
     public void setInMemoryOnly(boolean inMemoryOnly) {
         this.inMemoryOnly = inMemoryOnly;
     }
+
+    /**
+     * @return The number of rows an in-memory table must scan before the scan is
+     * split up and run in parallel
+     */
+    public int getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    /**
+     * Sets the number of rows an in-memory table must scan, when a query can not be
+     * answered using an index, before the scan is split up and run in parallel on the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}. Set to
+     * {@link Integer#MAX_VALUE} to always scan on the calling thread.
+     *
+     * @param parallelScanThreshold The number of rows
+     */
+    public void setParallelScanThreshold(int parallelScanThreshold) {
+        if (parallelScanThreshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive!");
+        }
+
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
 }
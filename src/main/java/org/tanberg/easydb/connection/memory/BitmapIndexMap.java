@@ -0,0 +1,219 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.util.ValueContainer;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link MemoryIndexMap} keeping a {@link RowBitmap bitmap} of rows for every
+ * distinct index value. Meant for indices with few distinct values, where each
+ * value matches many rows.
+ *
+ * @see org.tanberg.easydb.IndexType#BITMAP
+ */
+public class BitmapIndexMap<T> extends MemoryIndexMap<T> {
+
+    private final int[] columns;
+    private final Map<ValueContainer, RowBitmap> bitmaps;
+    private final ReadWriteLock lock;
+
+    public BitmapIndexMap(ItemProfile<T> profile, WrappedIndex<T> index) {
+        super(profile, index);
+
+        PersistentField<T>[] fields = index.getFields();
+        this.columns = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            this.columns[i] = ArrayUtils.indexOf(profile.getStoredFields(), fields[i]);
+        }
+
+        this.bitmaps = Maps.newHashMap();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    @Override
+    public void drop() {
+        this.lock.writeLock().lock();
+        try {
+            this.bitmaps.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int row) {
+        this.lock.writeLock().lock();
+        try {
+            // There are few bitmaps, so it is cheaper to check all of them than to keep the value of every row
+            this.bitmaps.values().removeIf(bitmap -> bitmap.remove(row) && bitmap.isEmpty());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(RowStore store, int row) {
+        Object[] values = new Object[this.columns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = store.get(row, this.columns[i]);
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            this.bitmaps.computeIfAbsent(new ValueContainer(values), value -> new RowBitmap()).add(row);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    void restore(ValueContainer indexValue, Collection<Integer> rows) {
+        this.lock.writeLock().lock();
+        try {
+            RowBitmap bitmap = this.bitmaps.computeIfAbsent(indexValue, value -> new RowBitmap());
+            for (int row : rows) {
+                bitmap.add(row);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    Map<ValueContainer, List<Integer>> copy() {
+        this.lock.readLock().lock();
+        try {
+            Map<ValueContainer, List<Integer>> copy = Maps.newLinkedHashMap();
+            for (Entry<ValueContainer, RowBitmap> entry : this.bitmaps.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().toList());
+            }
+
+            return copy;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        this.lock.readLock().lock();
+        try {
+            return this.bitmaps.values().stream().mapToInt(RowBitmap::getCardinality).sum();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getCardinality() {
+        this.lock.readLock().lock();
+        try {
+            return this.bitmaps.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimate(Collection<SimpleRequirement> requirements) {
+        this.lock.readLock().lock();
+        try {
+            // There are few bitmaps, so the exact count is cheap to find
+            List<ValueContainer> indexValues = Lists.newArrayList(this.bitmaps.keySet());
+            for (SimpleRequirement requirement : requirements) {
+                this.eliminate(indexValues, requirement);
+            }
+
+            long rows = 0;
+            for (ValueContainer indexValue : indexValues) {
+                rows += this.bitmaps.get(indexValue).getCardinality();
+            }
+
+            return rows;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Integer> getRows(ValueContainer indexValue) {
+        this.lock.readLock().lock();
+        try {
+            RowBitmap bitmap = this.bitmaps.get(indexValue);
+            return bitmap == null ? Lists.newArrayList() : bitmap.toList();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Integer> getRows(Collection<SimpleRequirement> requirements) {
+        return this.getBitmap(requirements).toList();
+    }
+
+    @Override
+    public PostingList getPostingList(Collection<SimpleRequirement> requirements) {
+        return PostingList.of(this.getBitmap(requirements));
+    }
+
+    @Override
+    public void forEachEntry(Collection<SimpleRequirement> requirements, BiConsumer<Object[], int[]> consumer) {
+        this.lock.readLock().lock();
+        try {
+            List<ValueContainer> indexValues = Lists.newArrayList(this.bitmaps.keySet());
+            for (SimpleRequirement requirement : requirements) {
+                this.eliminate(indexValues, requirement);
+            }
+
+            for (ValueContainer indexValue : indexValues) {
+                consumer.accept(indexValue.getValues(), this.bitmaps.get(indexValue).toArray());
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public RowBitmap getBitmap(Collection<SimpleRequirement> requirements) {
+        this.lock.readLock().lock();
+        try {
+            // Speed up for a common case
+            if (requirements.stream().allMatch(requirement -> requirement.getOperator() == Operator.EQUALS)) {
+                ValueContainer indexValue = this.getIndexValue(requirements);
+                if (indexValue != null) {
+                    RowBitmap bitmap = this.bitmaps.get(indexValue);
+                    return bitmap == null ? new RowBitmap() : new RowBitmap(bitmap);
+                }
+            }
+
+            List<ValueContainer> indexValues = Lists.newArrayList(this.bitmaps.keySet());
+            for (SimpleRequirement requirement : requirements) {
+                this.eliminate(indexValues, requirement);
+            }
+
+            RowBitmap rows = new RowBitmap();
+            for (ValueContainer indexValue : indexValues) {
+                rows.or(this.bitmaps.get(indexValue));
+            }
+
+            return rows;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+}
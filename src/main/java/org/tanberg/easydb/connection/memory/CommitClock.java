@@ -0,0 +1,230 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The commit counter of a {@link MemoryTable memory table}. Every change to the table
+ * is given a version, and becomes visible to readers once committed. Versions are
+ * committed in order, so a reader of a version sees every change with that version or
+ * lower, and none of the changes after it.
+ * <p>
+ * Commits are ordered, not lock-free: a commit spins briefly waiting for the version
+ * before it, then blocks on the clock until that version is committed. A slow writer
+ * therefore delays the commits of later writers of the same table, though never
+ * those of other tables.
+ * <p>
+ * Readers register the version they read, so that old versions of rows are only
+ * removed once no reader can see them anymore. Reading takes no lock: the committed
+ * version is published through an atomic, and every reading thread registers its
+ * version in a slot of an atomic array, starting at a slot picked by the thread, so
+ * that readers on different threads rarely touch the same slot.
+ */
+public final class CommitClock {
+
+    private static final int SLOTS = Math.max(64, Runtime.getRuntime().availableProcessors() * 8);
+    private static final long FREE = -1;
+    private static final int COMMIT_SPINS = 64;
+
+    private final AtomicLong next;
+    private final AtomicLong committed;
+    private final AtomicLongArray readers;
+    // Pins and readers not finding a free slot, with the number of them holding every version
+    private final Map<Long, Integer> overflow;
+    private final AtomicInteger waitingCommits;
+    private final ThreadLocal<Reader> reader;
+
+    public CommitClock() {
+        this.next = new AtomicLong();
+        this.committed = new AtomicLong();
+        this.readers = new AtomicLongArray(SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            this.readers.set(i, FREE);
+        }
+
+        this.overflow = Maps.newConcurrentMap();
+        this.waitingCommits = new AtomicInteger();
+        this.reader = ThreadLocal.withInitial(Reader::new);
+    }
+
+    /**
+     * @return A new version for a change. Must always be {@link #commit(long) committed},
+     * even if the change fails, as later versions can not be committed before it.
+     */
+    public long begin() {
+        return this.next.incrementAndGet();
+    }
+
+    /**
+     * Commits the given version, waiting for all earlier versions of this table to be
+     * committed first, so that the change is visible once this returns.
+     *
+     * @param version The version, as given by {@link #begin()}
+     */
+    public void commit(long version) {
+        for (int i = 0; i < COMMIT_SPINS; i++) {
+            if (this.committed.compareAndSet(version - 1, version)) {
+                this.wakeCommits();
+                return;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        // A writer holding an earlier version is slow, so wait for it rather than spin
+        boolean interrupted = false;
+        this.waitingCommits.incrementAndGet();
+        try {
+            synchronized (this) {
+                while (!this.committed.compareAndSet(version - 1, version)) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            this.waitingCommits.decrementAndGet();
+        }
+
+        this.wakeCommits();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getCommitted() {
+        return this.committed.get();
+    }
+
+    /**
+     * Starts reading the latest committed version. Must be followed by a call to
+     * {@link #endRead(long)} on the same thread when done reading. Reads started while
+     * the thread is already reading are pinned by the first one.
+     *
+     * @return The version to read
+     */
+    public long beginRead() {
+        Reader reader = this.reader.get();
+        if (reader.depth++ > 0) {
+            // The outer read holds an older or equal version
+            return this.committed.get();
+        }
+
+        long version = this.committed.get();
+        while (true) {
+            reader.slot = this.register(version);
+            long latest = this.committed.get();
+            if (latest == version) {
+                reader.version = version;
+                return version;
+            }
+
+            // A version committed before registering may already be past the horizon, so read the newer one
+            this.unregister(reader.slot, version);
+            version = latest;
+        }
+    }
+
+    public void endRead(long version) {
+        Reader reader = this.reader.get();
+        if (--reader.depth == 0) {
+            this.unregister(reader.slot, reader.version);
+        }
+    }
+
+    /**
+     * Holds the latest committed version, like {@link #beginRead()}, until it is
+     * released by {@link #unpin(long)}, which may be called from any thread.
+     *
+     * @return The version held
+     */
+    public long pin() {
+        long version = this.committed.get();
+        while (true) {
+            this.overflow.merge(version, 1, Integer::sum);
+            long latest = this.committed.get();
+            if (latest == version) {
+                return version;
+            }
+
+            this.unpin(version);
+            version = latest;
+        }
+    }
+
+    public void unpin(long version) {
+        this.overflow.computeIfPresent(version, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * @return The oldest version that may still be read. Rows deleted in this version
+     * or earlier are not visible to any current or future reader.
+     */
+    public long getHorizon() {
+        // Read before the readers, so that a reader registering meanwhile reads this version or later
+        long horizon = this.committed.get();
+        for (int i = 0; i < SLOTS; i++) {
+            long version = this.readers.get(i);
+            if (version != FREE && version < horizon) {
+                horizon = version;
+            }
+        }
+
+        for (long version : this.overflow.keySet()) {
+            horizon = Math.min(horizon, version);
+        }
+
+        return horizon;
+    }
+
+    // Internals
+
+    /**
+     * @return The slot the given version is registered in, or -1 if there was no free
+     * slot and it is counted in the overflow instead
+     */
+    private int register(long version) {
+        int start = (int) (Thread.currentThread().getId() % SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            int slot = (start + i) % SLOTS;
+            if (this.readers.get(slot) == FREE && this.readers.compareAndSet(slot, FREE, version)) {
+                return slot;
+            }
+        }
+
+        this.overflow.merge(version, 1, Integer::sum);
+        return -1;
+    }
+
+    private void unregister(int slot, long version) {
+        if (slot != -1) {
+            this.readers.set(slot, FREE);
+        } else {
+            this.unpin(version);
+        }
+    }
+
+    private void wakeCommits() {
+        if (this.waitingCommits.get() > 0) {
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The reads of a thread
+     */
+    private static final class Reader {
+
+        private int depth;
+        private int slot;
+        private long version;
+    }
+}
@@ -0,0 +1,37 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.util.ValueContainer;
+
+/**
+ * The key of a row in a {@link MemoryTable memory table}. Unlike other value
+ * containers it can not be changed, so its hash code is computed once and kept.
+ * The values given must not be changed afterwards.
+ */
+public final class CompositeKey extends ValueContainer {
+
+    private final int hash;
+
+    public CompositeKey(Object... values) {
+        super(values);
+        this.hash = super.hashCode();
+    }
+
+    @Override
+    public void setValue(int index, Object value) {
+        throw new UnsupportedOperationException("Keys can not be changed!");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof CompositeKey && ((CompositeKey) o).hash != this.hash) {
+            return false;
+        }
+
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
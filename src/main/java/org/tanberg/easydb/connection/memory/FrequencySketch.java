@@ -0,0 +1,115 @@
+package org.tanberg.easydb.connection.memory;
+
+/**
+ * Estimates how often keys have been used recently, in little memory. Every key
+ * has four 4-bit counters, picked by hashing, and its frequency is the lowest of
+ * them. Counts are halved every time a set number of uses have been counted, so
+ * that keys that were once popular are forgotten over time.
+ * <p>
+ * Not thread safe.
+ */
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAXIMUM_COUNT = 15;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    public FrequencySketch() {
+        this.ensureCapacity(16);
+    }
+
+    /**
+     * Makes room for counting the given number of keys without too many collisions.
+     * Resizing forgets all counts.
+     *
+     * @param keys The number of keys
+     */
+    public void ensureCapacity(long keys) {
+        int length = Integer.highestOneBit((int) Math.min(Math.max(keys, 16), 1 << 30) - 1) << 1;
+        if (this.table != null && this.table.length >= length) {
+            return;
+        }
+
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+        this.size = 0;
+    }
+
+    /**
+     * @param hash The hash of the key
+     * @return The estimated number of recent uses of the key, at most 15
+     */
+    public int frequency(int hash) {
+        int start = (spread(hash) & 3) << 2;
+        int frequency = MAXIMUM_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = this.indexOf(hash, i);
+            int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Counts a use of the key.
+     *
+     * @param hash The hash of the key
+     */
+    public void increment(int hash) {
+        int start = (spread(hash) & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= this.increment(this.indexOf(hash, i), start + i);
+        }
+
+        if (added && ++this.size == this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    // Internals
+
+    private boolean increment(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((this.table[index] & mask) == mask) {
+            return false;
+        }
+
+        this.table[index] += 1L << offset;
+        return true;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            odd += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+
+        this.size = (this.size - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long value = (hash + SEEDS[i]) * SEEDS[i];
+        value += value >>> 32;
+        return ((int) value) & this.tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,365 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.util.UtilText;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link MemoryIndexMap} keeping an inverted index of the terms of a string field,
+ * as split by {@link UtilText#tokenize(String)}. Every term has a sorted list of the
+ * rows holding it, so a {@link Operator#MATCHES search} is answered by intersecting
+ * the lists of its terms, starting with the shortest, and merging the results of its
+ * alternatives.
+ *
+ * @see org.tanberg.easydb.IndexType#FULL_TEXT
+ */
+public class FullTextIndexMap<T> extends MemoryIndexMap<T> {
+
+    private final int column;
+    // Rows are removed before they are freed, so their values are read from here
+    private final RowStore store;
+    private final Map<String, Postings> termToRows;
+    private RowBitmap rows;
+    private RowBitmap nullRows;
+    private final ReadWriteLock lock;
+
+    public FullTextIndexMap(ItemProfile<T> profile, WrappedIndex<T> index, RowStore store) {
+        super(profile, index);
+
+        this.column = ArrayUtils.indexOf(profile.getStoredFields(), index.getFields()[0]);
+        this.store = store;
+        this.termToRows = Maps.newHashMap();
+        this.rows = new RowBitmap();
+        this.nullRows = new RowBitmap();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * @return The number of distinct terms
+     */
+    public int getTermCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.termToRows.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void drop() {
+        this.lock.writeLock().lock();
+        try {
+            this.termToRows.clear();
+            this.rows = new RowBitmap();
+            this.nullRows = new RowBitmap();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int row) {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.rows.remove(row)) {
+                this.nullRows.remove(row);
+                return;
+            }
+
+            String value = this.getValue(row);
+            for (String term : UtilText.tokenize(value)) {
+                Postings postings = this.termToRows.get(term);
+                if (postings != null && postings.remove(row) && postings.size == 0) {
+                    this.termToRows.remove(term);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(RowStore store, int row) {
+        this.add((String) store.get(row, this.column), row);
+    }
+
+    @Override
+    void restore(ValueContainer indexValue, Collection<Integer> rows) {
+        String value = (String) indexValue.getValues()[0];
+        for (int row : rows) {
+            this.add(value, row);
+        }
+    }
+
+    @Override
+    Map<ValueContainer, List<Integer>> copy() {
+        this.lock.readLock().lock();
+        try {
+            Map<ValueContainer, List<Integer>> copy = Maps.newLinkedHashMap();
+            if (!this.nullRows.isEmpty()) {
+                copy.put(new ValueContainer(new Object[]{null}), this.nullRows.toList());
+            }
+
+            for (int row : this.rows.toArray()) {
+                copy.computeIfAbsent(new ValueContainer(new Object[]{this.getValue(row)}), value -> Lists.newArrayList())
+                  .add(row);
+            }
+
+            return copy;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        this.lock.readLock().lock();
+        try {
+            return this.rows.getCardinality() + this.nullRows.getCardinality();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getCardinality() {
+        this.lock.readLock().lock();
+        try {
+            // Rows rarely share the same text, so the rows are a better guess than the terms
+            return this.rows.getCardinality() + (this.nullRows.isEmpty() ? 0 : 1);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimate(Collection<SimpleRequirement> requirements) {
+        this.lock.readLock().lock();
+        try {
+            long estimate = this.rows.getCardinality() + this.nullRows.getCardinality();
+            for (SimpleRequirement requirement : requirements) {
+                if (requirement.getOperator() != Operator.MATCHES) {
+                    continue;
+                }
+
+                // An alternative matches at most the rows of its rarest term
+                long rows = 0;
+                for (Set<String> terms : UtilText.parse((String) requirement.getValue())) {
+                    rows += terms.stream().mapToInt(term -> this.getPostings(term).size).min().orElse(0);
+                }
+
+                estimate = Math.min(estimate, rows);
+            }
+
+            return estimate;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isCovering() {
+        // Rows are found by their terms, not by their values
+        return false;
+    }
+
+    @Override
+    public void forEachEntry(Collection<SimpleRequirement> requirements, BiConsumer<Object[], int[]> consumer) {
+        throw new UnsupportedOperationException("Full-text indices can not answer queries on their own!");
+    }
+
+    @Override
+    public Collection<Integer> getRows(ValueContainer indexValue) {
+        String value = (String) indexValue.getValues()[0];
+        this.lock.readLock().lock();
+        try {
+            if (value == null) {
+                return this.nullRows.toList();
+            }
+
+            List<Integer> rows = Lists.newArrayList();
+            for (int row : this.rows.toArray()) {
+                if (this.getValue(row).equals(value)) {
+                    rows.add(row);
+                }
+            }
+
+            return rows;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Integer> getRows(Collection<SimpleRequirement> requirements) {
+        return this.getPostingList(requirements).toList();
+    }
+
+    @Override
+    public RowBitmap getBitmap(Collection<SimpleRequirement> requirements) {
+        return RowBitmap.of(this.getRows(requirements));
+    }
+
+    @Override
+    public PostingList getPostingList(Collection<SimpleRequirement> requirements) {
+        this.lock.readLock().lock();
+        try {
+            PostingList rows = null;
+            for (SimpleRequirement requirement : requirements) {
+                if (requirement.getOperator() != Operator.MATCHES) {
+                    continue;
+                }
+
+                PostingList matching = this.search((String) requirement.getValue());
+                rows = rows == null ? matching : PostingList.intersect(Lists.newArrayList(rows, matching));
+            }
+
+            List<SimpleRequirement> others = Lists.newArrayList(requirements);
+            others.removeIf(requirement -> requirement.getOperator() == Operator.MATCHES);
+            if (others.isEmpty()) {
+                return rows == null ? PostingList.empty() : rows;
+            }
+
+            // Other operators are checked on the values of the rows
+            int[] candidates = rows == null ? this.getAllRows() : rows.toList().stream().mapToInt(Integer::intValue).toArray();
+            int[] matching = Arrays.stream(candidates)
+              .filter(row -> others.stream()
+                .allMatch(requirement -> ValueHelper.matches(this.getValue(row), requirement.getValue(), requirement.getOperator())))
+              .toArray();
+            return PostingList.of(matching);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Internals
+
+    private void add(String value, int row) {
+        this.lock.writeLock().lock();
+        try {
+            if (value == null) {
+                this.nullRows.add(row);
+                return;
+            }
+
+            this.rows.add(row);
+            for (String term : UtilText.tokenize(value)) {
+                this.termToRows.computeIfAbsent(term, key -> new Postings()).add(row);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private int[] getAllRows() {
+        return ArrayUtils.addAll(this.rows.toArray(), this.nullRows.toArray());
+    }
+
+    /**
+     * @return The value of the given row, which must not be null
+     */
+    private String getValue(int row) {
+        return (String) this.store.get(row, this.column);
+    }
+
+    private Postings getPostings(String term) {
+        Postings postings = this.termToRows.get(term);
+        return postings == null ? Postings.EMPTY : postings;
+    }
+
+    /**
+     * @return The rows matching the given search, with the read lock held
+     */
+    private PostingList search(String search) {
+        List<PostingList> alternatives = Lists.newArrayList();
+        for (Set<String> terms : UtilText.parse(search)) {
+            List<Postings> lists = Lists.newArrayList();
+            for (String term : terms) {
+                lists.add(this.getPostings(term));
+            }
+
+            // Only the rows of the rarest term are copied, and looked up in the others
+            lists.sort(Comparator.comparingInt(postings -> postings.size));
+            Postings rarest = lists.get(0);
+            int[] rows = Arrays.copyOf(rarest.rows, rarest.size);
+            int count = rows.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                Postings postings = lists.get(i);
+                int kept = 0;
+                for (int j = 0; j < count; j++) {
+                    if (postings.contains(rows[j])) {
+                        rows[kept++] = rows[j];
+                    }
+                }
+
+                count = kept;
+            }
+
+            alternatives.add(PostingList.of(Arrays.copyOf(rows, count)));
+        }
+
+        return alternatives.size() == 1 ? alternatives.get(0) : PostingList.union(alternatives);
+    }
+
+    /**
+     * The rows holding a term, kept sorted. Rows are mostly added in increasing order,
+     * so adding is usually an append.
+     */
+    private static final class Postings {
+
+        private static final Postings EMPTY = new Postings();
+
+        private int[] rows = new int[1];
+        private int size;
+
+        private boolean contains(int row) {
+            return Arrays.binarySearch(this.rows, 0, this.size, row) >= 0;
+        }
+
+        private void add(int row) {
+            int index = Arrays.binarySearch(this.rows, 0, this.size, row);
+            if (index >= 0) {
+                return;
+            }
+
+            index = -index - 1;
+            if (this.size == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, this.size * 2);
+            }
+
+            System.arraycopy(this.rows, index, this.rows, index + 1, this.size - index);
+            this.rows[index] = row;
+            this.size++;
+        }
+
+        private boolean remove(int row) {
+            int index = Arrays.binarySearch(this.rows, 0, this.size, row);
+            if (index < 0) {
+                return false;
+            }
+
+            System.arraycopy(this.rows, index + 1, this.rows, index, this.size - index - 1);
+            this.size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.util.UtilCompare;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A {@link PrimaryKeyIndex} backed by a concurrent map on the heap, optionally
+ * ordered by the keys. Keys are stored as {@link CompositeKey composite keys}, so
+ * they can not be changed once stored.
+ */
+public class HeapPrimaryKeyIndex implements PrimaryKeyIndex {
+
+    private final Map<ValueContainer, Integer> keyToRow;
+
+    public HeapPrimaryKeyIndex(boolean ordered) {
+        if (ordered) {
+            this.keyToRow = new ConcurrentSkipListMap<>(UtilCompare.CONTAINER_ORDER);
+        } else {
+            this.keyToRow = Maps.newConcurrentMap();
+        }
+    }
+
+    @Override
+    public int get(ValueContainer key) {
+        Integer row = this.keyToRow.get(key);
+        return row == null ? NO_ROW : row;
+    }
+
+    @Override
+    public int put(ValueContainer key, int row) {
+        Integer previous = this.keyToRow.put(toKey(key), row);
+        return previous == null ? NO_ROW : previous;
+    }
+
+    @Override
+    public boolean remove(ValueContainer key, int row) {
+        return this.keyToRow.remove(key, row);
+    }
+
+    @Override
+    public int size() {
+        return this.keyToRow.size();
+    }
+
+    @Override
+    public int[] getRows() {
+        return this.keyToRow.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void clear() {
+        this.keyToRow.clear();
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return this.keyToRow instanceof NavigableMap;
+    }
+
+    @Override
+    public int[] getRows(MemoryRange range) {
+        if (!this.isOrdered()) {
+            return PrimaryKeyIndex.super.getRows(range);
+        }
+
+        return range.entries((NavigableMap<ValueContainer, Integer>) this.keyToRow).stream()
+          .map(Entry::getValue)
+          .mapToInt(Integer::intValue)
+          .toArray();
+    }
+
+    // Internals
+
+    private static CompositeKey toKey(ValueContainer key) {
+        return key instanceof CompositeKey ? (CompositeKey) key : new CompositeKey(key.getValues().clone());
+    }
+}
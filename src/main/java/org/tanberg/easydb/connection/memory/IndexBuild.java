@@ -0,0 +1,140 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.WrappedIndex;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The progress of filling an index created on a {@link MemoryTable} with the rows
+ * already in the table. Rows are added in the background, in batches with a pause
+ * between them, while rows saved in the meantime are added by the writers. The index
+ * is only used by queries once it is built. The build fails with a {@link
+ * CancellationException} if the index is dropped or the table closed before then.
+ *
+ * @see MemoryTable#createIndex(WrappedIndex)
+ * @see MemoryOptions#indexBuildBatchSize()
+ */
+public class IndexBuild<T> {
+
+    private final WrappedIndex<T> index;
+    private final int totalRows;
+    private final AtomicInteger builtRows;
+    private final CountDownLatch done;
+    private final AtomicBoolean started;
+    private volatile Throwable failure;
+
+    IndexBuild(WrappedIndex<T> index, int totalRows) {
+        this.index = index;
+        this.totalRows = totalRows;
+        this.builtRows = new AtomicInteger();
+        this.done = new CountDownLatch(1);
+        this.started = new AtomicBoolean();
+    }
+
+    public WrappedIndex<T> getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The number of rows in the table when the build started
+     */
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @return The number of those rows looked at so far
+     */
+    public int getBuiltRows() {
+        return this.builtRows.get();
+    }
+
+    /**
+     * @return The share of the rows looked at so far, between 0 and 1
+     */
+    public double getProgress() {
+        return this.totalRows == 0 ? 1 : (double) this.builtRows.get() / this.totalRows;
+    }
+
+    /**
+     * @return If the build has ended, either by completing or failing
+     */
+    public boolean isDone() {
+        return this.done.getCount() == 0;
+    }
+
+    /**
+     * @return If the build completed, and the index is used by queries
+     */
+    public boolean isBuilt() {
+        return this.isDone() && this.failure == null;
+    }
+
+    /**
+     * @return Why the build failed, or null if it has not
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Waits for the build to end.
+     */
+    public void await() throws InterruptedException {
+        this.done.await();
+    }
+
+    /**
+     * Waits for the build to end, for at most the given time.
+     *
+     * @return If the build has ended
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.done.await(timeout, unit);
+    }
+
+    // Used by the table
+
+    /**
+     * @return If the build may run, not having been cancelled before it started
+     */
+    boolean start() {
+        return this.started.compareAndSet(false, true);
+    }
+
+    /**
+     * Ends the build if it has not started yet, failing it with a {@link CancellationException}.
+     */
+    void cancel() {
+        if (this.started.compareAndSet(false, true)) {
+            this.fail(new CancellationException("Build of index " + this.index + " was cancelled!"));
+        }
+    }
+
+    void progress(int rows) {
+        this.builtRows.addAndGet(rows);
+    }
+
+    void complete() {
+        this.done.countDown();
+    }
+
+    void fail(Throwable failure) {
+        this.failure = failure;
+        this.done.countDown();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexBuild{" +
+          "index=" + index +
+          ", builtRows=" + builtRows +
+          ", totalRows=" + totalRows +
+          ", done=" + this.isDone() +
+          '}';
+    }
+}
@@ -0,0 +1,488 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.util.IndexHelper;
+import org.tanberg.easydb.util.UtilLog;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * The index maps of a {@link MemoryTable}, both those of the profile and those
+ * created on the table, and the builds filling the created ones in the background.
+ * Also picks the index maps that queries are looked up in.
+ * <p>
+ * Builds run one at a time on a thread of the table, started for the first build and
+ * stopped once idle, until the registry is {@link #close() closed}.
+ */
+class IndexRegistry<T> {
+
+    private static final long BUILDER_KEEP_ALIVE_SECONDS = 60;
+
+    private final String name;
+    private final ItemProfile<T> profile;
+    private final RowStore store;
+    private final CommitClock clock;
+    private final Map<WrappedIndex<T>, MemoryIndexMap<T>> indexMaps;
+    // Indices created on the table, in addition to those of the profile, once built
+    private final List<WrappedIndex<T>> createdIndices;
+    private final Map<WrappedIndex<T>, IndexBuild<T>> indexBuilds;
+    private final ThreadPoolExecutor builder;
+    private final int buildBatchSize;
+    private final long buildPauseMillis;
+    private volatile boolean closed;
+
+    IndexRegistry(String name, ItemProfile<T> profile, RowStore store, CommitClock clock, MemoryOptions options) {
+        this.name = name;
+        this.profile = profile;
+        this.store = store;
+        this.clock = clock;
+        this.indexMaps = Maps.newConcurrentMap();
+        this.createdIndices = Lists.newCopyOnWriteArrayList();
+        this.indexBuilds = Maps.newConcurrentMap();
+        this.builder = new ThreadPoolExecutor(1, 1, BUILDER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "EasyDB Memory Index Builder - " + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.builder.allowCoreThreadTimeOut(true);
+        this.buildBatchSize = options == null ? 1000 : Math.max(options.indexBuildBatchSize(), 1);
+        this.buildPauseMillis = options == null ? 10 : options.indexBuildPauseMillis();
+
+        for (WrappedIndex<T> index : profile.getIndices()) {
+            this.indexMaps.put(index, MemoryIndexMap.create(profile, index, store));
+        }
+    }
+
+    /**
+     * @return The index maps, by index. Changes as indices are created and dropped.
+     */
+    Map<WrappedIndex<T>, MemoryIndexMap<T>> getIndexMaps() {
+        return indexMaps;
+    }
+
+    MemoryIndexMap<T> get(WrappedIndex<T> index) {
+        return this.indexMaps.get(index);
+    }
+
+    /**
+     * Adds an index map for the given index, which rows written from now on are added
+     * to. Writers of the table must be blocked, so that every row is either written
+     * after this or visible to the {@link #build(MemoryIndexMap, int[], long) build}.
+     *
+     * @throws IllegalArgumentException If the table already has the index
+     */
+    MemoryIndexMap<T> create(WrappedIndex<T> index) {
+        MemoryIndexMap<T> indexMap = MemoryIndexMap.create(this.profile, index, this.store);
+        if (this.indexMaps.putIfAbsent(index, indexMap) != null) {
+            throw new IllegalArgumentException("Index " + index + " already exists!");
+        }
+
+        return indexMap;
+    }
+
+    /**
+     * Adds the given rows to the given index map in the background.
+     *
+     * @param version The version the rows are visible in, {@link CommitClock#pin()
+     *                pinned} until the build is done
+     */
+    void build(MemoryIndexMap<T> indexMap, int[] rows, long version) {
+        IndexBuild<T> build = new IndexBuild<>(indexMap.getIndex(), rows.length);
+        this.indexBuilds.put(indexMap.getIndex(), build);
+        try {
+            this.builder.execute(() -> this.build(indexMap, build, rows, version));
+        } catch (RejectedExecutionException e) {
+            this.clock.unpin(version);
+            build.fail(new IllegalStateException("Table " + this.name + " is closed!", e));
+        }
+    }
+
+    IndexBuild<T> getBuild(WrappedIndex<T> index) {
+        return this.indexBuilds.get(index);
+    }
+
+    List<IndexBuild<T>> getBuilds() {
+        return Lists.newArrayList(this.indexBuilds.values());
+    }
+
+    /**
+     * Drops an index created on the table, cancelling its build if it has not started.
+     * A build already running stops before its next batch.
+     *
+     * @throws IllegalArgumentException If the index was not created on the table
+     */
+    void drop(WrappedIndex<T> index) {
+        IndexBuild<T> build = this.indexBuilds.remove(index);
+        if (build == null) {
+            throw new IllegalArgumentException("Index " + index + " was not created on table " + this.name + "!");
+        }
+
+        this.createdIndices.remove(index);
+        this.indexMaps.remove(index);
+        build.cancel();
+    }
+
+    /**
+     * Cancels the builds not yet done, and stops the thread running them. Builds not
+     * started are cancelled right away, while a build already running stops before its
+     * next batch. Indices created later are never built.
+     */
+    void close() {
+        this.closed = true;
+        this.indexBuilds.values().forEach(IndexBuild::cancel);
+        // Builds left in the queue only release their version once cancelled
+        this.builder.shutdown();
+    }
+
+    /**
+     * @return If the given index is one of the profile, or is created on the table and
+     * built, and thus holds every row
+     */
+    boolean isBuilt(WrappedIndex<T> index) {
+        return !this.indexBuilds.containsKey(index) || this.createdIndices.contains(index);
+    }
+
+    void add(int row) {
+        for (MemoryIndexMap<T> index : this.indexMaps.values()) {
+            if (index.accepts(this.store, row)) {
+                index.add(this.store, row);
+            }
+        }
+    }
+
+    /**
+     * Adds the given row to the indices created on the table, including those still
+     * building, as they are not kept in snapshots.
+     */
+    void addToCreated(int row, Object[] values) {
+        for (WrappedIndex<T> index : this.indexBuilds.keySet()) {
+            MemoryIndexMap<T> indexMap = this.indexMaps.get(index);
+            if (indexMap.accepts(values)) {
+                indexMap.add(this.store, row);
+            }
+        }
+    }
+
+    void remove(int row) {
+        for (MemoryIndexMap<T> index : this.indexMaps.values()) {
+            // Rows never change, so a row not accepted was never added
+            if (index.accepts(this.store, row)) {
+                index.remove(row);
+            }
+        }
+    }
+
+    /**
+     * Removes all rows from the index maps.
+     */
+    void clear() {
+        this.indexMaps.values().forEach(MemoryIndexMap::drop);
+    }
+
+    /**
+     * @return The number of rows the given index is expected to find for the given
+     * requirements, or {@link Long#MAX_VALUE} if the index is partial or has an
+     * expression, so that it is never chosen for a lookup of the fields it indexes
+     */
+    long estimate(WrappedIndex<T> index, Collection<SimpleRequirement> requirements) {
+        // Partial indices lack rows, and expression indices lack the values of the fields
+        if (index.isPartial() || index.getExpression() != null) {
+            return Long.MAX_VALUE;
+        }
+
+        return this.indexMaps.get(index).estimate(this.getRequirements(index, requirements));
+    }
+
+    Collection<Integer> getRows(WrappedIndex<T> index, Collection<SimpleRequirement> requirements) {
+        return this.indexMaps.get(index).getRows(this.getRequirements(index, requirements));
+    }
+
+    /**
+     * @return If the given requirements are looked up in the indices of the profile,
+     * rather than by key or in an index created on the table
+     */
+    boolean isIndexed(List<SimpleRequirement> requirements) {
+        if (this.getCreatedIndex(requirements) != null) {
+            return false;
+        }
+
+        try {
+            return IndexHelper.combineIndices(this.profile, requirements) != null;
+        } catch (IllegalArgumentException e) {
+            // Some fields are not indexed by the profile
+            return false;
+        }
+    }
+
+    /**
+     * @return If the given requirements are answered by bitmap indices alone
+     */
+    boolean isBitmapCase(List<SimpleRequirement> requirements) {
+        if (!this.isIndexed(requirements)) {
+            return false;
+        }
+
+        Collection<WrappedIndex<T>> indices = IndexHelper.combineIndices(this.profile, requirements);
+        return indices != null && indices.stream().allMatch(index -> this.indexMaps.get(index) instanceof BitmapIndexMap)
+          && IndexHelper.getResidualRequirements(indices, requirements).isEmpty();
+    }
+
+    /**
+     * Gets the rows matching the given requirements in all the given indices, by
+     * intersecting their bitmaps, smallest first.
+     */
+    RowBitmap getBitmap(Collection<WrappedIndex<T>> indices, List<SimpleRequirement> requirements) {
+        List<RowBitmap> bitmaps = Lists.newArrayList();
+        for (WrappedIndex<T> index : indices) {
+            bitmaps.add(this.indexMaps.get(index).getBitmap(this.getRequirements(index, requirements)));
+        }
+
+        bitmaps.sort(Comparator.comparingInt(RowBitmap::getCardinality));
+        RowBitmap rows = bitmaps.get(0);
+        for (int i = 1; i < bitmaps.size() && !rows.isEmpty(); i++) {
+            rows.and(bitmaps.get(i));
+        }
+
+        return rows;
+    }
+
+    /**
+     * Gets the rows matching the given requirements in all the given indices. Bitmaps
+     * are intersected a word at a time, and the posting lists of other indices are
+     * intersected smallest first before checking the rows against any bitmaps.
+     */
+    PostingList getPostingList(Collection<WrappedIndex<T>> indices, List<SimpleRequirement> requirements) {
+        List<WrappedIndex<T>> bitmapIndices = Lists.newArrayList();
+        List<PostingList> lists = Lists.newArrayList();
+        for (WrappedIndex<T> index : indices) {
+            MemoryIndexMap<T> indexMap = this.indexMaps.get(index);
+            if (indexMap instanceof BitmapIndexMap) {
+                bitmapIndices.add(index);
+            } else {
+                lists.add(indexMap.getPostingList(this.getRequirements(index, requirements)));
+            }
+        }
+
+        if (lists.isEmpty()) {
+            return PostingList.of(this.getBitmap(bitmapIndices, requirements));
+        }
+
+        PostingList rows = PostingList.intersect(lists);
+        if (!bitmapIndices.isEmpty() && !rows.isEmpty()) {
+            rows = rows.retain(this.getBitmap(bitmapIndices, requirements));
+        }
+
+        return rows;
+    }
+
+    /**
+     * @return The index map keeping the values of the given fields and the fields of
+     * the given requirements, expected to match the fewest rows, or null if there is none.
+     * Partial and expression indices are never used, as they lack rows or the values of
+     * their fields.
+     */
+    MemoryIndexMap<T> getCoveringIndex(List<SimpleRequirement> requirements, Collection<PersistentField<T>> fields) {
+        MemoryIndexMap<T> covering = null;
+        long coveringEstimate = Long.MAX_VALUE;
+        for (MemoryIndexMap<T> indexMap : this.indexMaps.values()) {
+            WrappedIndex<T> index = indexMap.getIndex();
+            if (index.isPartial() || index.getExpression() != null) {
+                continue;
+            }
+
+            assert indexMap.isCovering() : "Index " + index + " should keep the values of its fields!";
+            List<PersistentField<T>> indexFields = Arrays.asList(index.getFields());
+            if (!this.isBuilt(index) || !indexFields.containsAll(fields)
+              || !requirements.stream().allMatch(requirement -> indexFields.contains(requirement.getField()))) {
+                continue;
+            }
+
+            long estimate = indexMap.estimate(this.getRequirements(index, requirements));
+            if (estimate < coveringEstimate) {
+                covering = indexMap;
+                coveringEstimate = estimate;
+            }
+        }
+
+        return covering;
+    }
+
+    /**
+     * @return The map of the index created on the table that the given requirements
+     * should be looked up in, being the one expected to match the fewest rows if that
+     * is fewer than any index of the profile, or null if there is none
+     */
+    MemoryIndexMap<T> getCreatedIndex(List<SimpleRequirement> requirements) {
+        if (this.createdIndices.isEmpty()) {
+            return null;
+        }
+
+        MemoryIndexMap<T> best = null;
+        long bestEstimate = Long.MAX_VALUE;
+        for (WrappedIndex<T> index : this.createdIndices) {
+            MemoryIndexMap<T> indexMap = this.indexMaps.get(index);
+            // May have been dropped since
+            List<SimpleRequirement> lookup = indexMap == null ? null : this.getCreatedLookup(indexMap, requirements);
+            if (lookup == null) {
+                continue;
+            }
+
+            long estimate = indexMap.estimate(lookup);
+            if (estimate < bestEstimate) {
+                best = indexMap;
+                bestEstimate = estimate;
+            }
+        }
+
+        if (best == null) {
+            return null;
+        }
+
+        Collection<WrappedIndex<T>> indices;
+        try {
+            indices = IndexHelper.combineIndices(this.profile, requirements);
+        } catch (IllegalArgumentException e) {
+            return best;
+        }
+
+        if (indices == null) {
+            // Keys are looked up directly
+            return null;
+        }
+
+        for (WrappedIndex<T> index : indices) {
+            if (this.estimate(index, requirements) <= bestEstimate) {
+                return null;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return The requirements to look up in the given index created on the table, or
+     * null if it can not be used for the given requirements. Partial indices can only
+     * be used if the requirements imply their filter, and expression indices only if
+     * every field is required to be equal to a value, which is then computed.
+     */
+    List<SimpleRequirement> getCreatedLookup(MemoryIndexMap<T> indexMap, List<SimpleRequirement> requirements) {
+        WrappedIndex<T> index = indexMap.getIndex();
+        if (!indexMap.isImpliedBy(requirements)) {
+            return null;
+        }
+
+        if (index.getExpression() == null) {
+            List<SimpleRequirement> lookup = this.getRequirements(index, requirements);
+            return lookup.isEmpty() ? null : lookup;
+        }
+
+        PersistentField<T>[] fields = index.getFields();
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            PersistentField<T> field = fields[i];
+            Optional<SimpleRequirement> equals = requirements.stream()
+              .filter(requirement -> requirement.getField().equals(field) && requirement.getOperator() == Operator.EQUALS)
+              .findFirst();
+            if (!equals.isPresent()) {
+                return null;
+            }
+
+            values[i] = equals.get().getValue();
+        }
+
+        Object[] computed = indexMap.compute(values);
+        List<SimpleRequirement> lookup = Lists.newArrayListWithCapacity(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            lookup.add(new SimpleRequirement(fields[i], Operator.EQUALS, computed[i]));
+        }
+
+        return lookup;
+    }
+
+    // Internals
+
+    /**
+     * Adds the given rows to the given index map in batches, pausing between them, and
+     * lets queries use the index once done. The rows stay readable until then, as the
+     * given version is pinned by the build.
+     */
+    private void build(MemoryIndexMap<T> indexMap, IndexBuild<T> build, int[] rows, long version) {
+        if (!build.start()) {
+            // Cancelled before it started
+            this.clock.unpin(version);
+            return;
+        }
+
+        WrappedIndex<T> index = build.getIndex();
+        Throwable failure = null;
+        try {
+            for (int start = 0; start < rows.length; start += this.buildBatchSize) {
+                if (this.indexMaps.get(index) != indexMap) {
+                    failure = new CancellationException("Index " + index + " was dropped before it was built!");
+                    break;
+                }
+
+                if (this.closed) {
+                    failure = new CancellationException("Table " + this.name + " was closed before index " + index + " was built!");
+                    break;
+                }
+
+                int end = Math.min(start + this.buildBatchSize, rows.length);
+                for (int i = start; i < end; i++) {
+                    if (indexMap.accepts(this.store, rows[i])) {
+                        indexMap.add(this.store, rows[i]);
+                    }
+                }
+
+                build.progress(end - start);
+                if (end < rows.length && this.buildPauseMillis > 0) {
+                    Thread.sleep(this.buildPauseMillis);
+                }
+            }
+
+            if (failure == null && this.indexMaps.get(index) == indexMap) {
+                this.createdIndices.add(index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } catch (Throwable t) {
+            UtilLog.log(Level.WARNING, "Failed to build index " + index + " of table " + this.name + "!", t);
+            failure = t;
+        } finally {
+            this.clock.unpin(version);
+        }
+
+        // Only once the rows are no longer held, so that they are vacuumed after the build
+        if (failure != null) {
+            build.fail(failure);
+        } else {
+            build.complete();
+        }
+    }
+
+    /**
+     * @return The requirements that can be looked up in the given index
+     */
+    private List<SimpleRequirement> getRequirements(WrappedIndex<T> index, Collection<SimpleRequirement> requirements) {
+        return IndexHelper.getIndexRequirements(index, requirements);
+    }
+}
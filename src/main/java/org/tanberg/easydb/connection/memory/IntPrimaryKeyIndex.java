@@ -0,0 +1,253 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.util.UtilCompare;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link PrimaryKeyIndex} for tables with a single integer key. Keys are kept
+ * unboxed in an open addressing table, with the key and the row packed into a
+ * single long, so lookups allocate nothing.
+ * <p>
+ * Readers do not lock, but retry with a read lock if the table was changed while
+ * they read it.
+ */
+public class IntPrimaryKeyIndex implements PrimaryKeyIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long EMPTY = 0;
+
+    private final StampedLock lock;
+    // Every slot holds the key in the upper half and the row + 1 in the lower half
+    private long[] slots;
+    private int size;
+
+    public IntPrimaryKeyIndex() {
+        this.lock = new StampedLock();
+        this.slots = new long[MIN_CAPACITY];
+    }
+
+    @Override
+    public int get(ValueContainer key) {
+        return this.getSingle(key.getValues()[0]);
+    }
+
+    @Override
+    public int getSingle(Object keyValue) {
+        if (!UtilCompare.isIntegral(keyValue)) {
+            return NO_ROW;
+        }
+
+        long value = ((Number) keyValue).longValue();
+        if (value != (int) value) {
+            return NO_ROW;
+        }
+
+        return this.get((int) value);
+    }
+
+    public int get(int key) {
+        long stamp = this.lock.tryOptimisticRead();
+        int row = find(this.slots, key);
+        if (this.lock.validate(stamp)) {
+            return row;
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            return find(this.slots, key);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int put(ValueContainer key, int row) {
+        int intKey = toInt(key);
+
+        long stamp = this.lock.writeLock();
+        try {
+            long[] slots = this.slots;
+            int mask = slots.length - 1;
+            int index = hash(intKey) & mask;
+            while (slots[index] != EMPTY) {
+                if (getKey(slots[index]) == intKey) {
+                    int previous = getRow(slots[index]);
+                    slots[index] = toSlot(intKey, row);
+                    return previous;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            slots[index] = toSlot(intKey, row);
+            if (++this.size * 2 > slots.length) {
+                this.resize(slots.length * 2);
+            }
+
+            return NO_ROW;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(ValueContainer key, int row) {
+        int intKey = toInt(key);
+
+        long stamp = this.lock.writeLock();
+        try {
+            long[] slots = this.slots;
+            int mask = slots.length - 1;
+            int index = hash(intKey) & mask;
+            while (slots[index] != EMPTY) {
+                if (getKey(slots[index]) == intKey) {
+                    if (getRow(slots[index]) != row) {
+                        return false;
+                    }
+
+                    this.removeSlot(index);
+                    this.size--;
+                    return true;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int[] getRows() {
+        long stamp = this.lock.readLock();
+        try {
+            int[] rows = new int[this.size];
+            int count = 0;
+            for (long slot : this.slots) {
+                if (slot != EMPTY) {
+                    rows[count++] = getRow(slot);
+                }
+            }
+
+            return rows;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.slots = new long[MIN_CAPACITY];
+            this.size = 0;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Internals
+
+    private void resize(int capacity) {
+        long[] slots = new long[capacity];
+        int mask = capacity - 1;
+        for (long slot : this.slots) {
+            if (slot == EMPTY) {
+                continue;
+            }
+
+            int index = hash(getKey(slot)) & mask;
+            while (slots[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+
+            slots[index] = slot;
+        }
+
+        this.slots = slots;
+    }
+
+    /**
+     * Empties the given slot, moving back later entries of the same probe sequence
+     * so that no entry is left unreachable.
+     */
+    private void removeSlot(int index) {
+        long[] slots = this.slots;
+        int mask = slots.length - 1;
+
+        int next = (index + 1) & mask;
+        while (slots[next] != EMPTY) {
+            int home = hash(getKey(slots[next])) & mask;
+            // Only move entries whose home slot is not between the empty slot and their slot
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                slots[index] = slots[next];
+                index = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        slots[index] = EMPTY;
+    }
+
+    private static int find(long[] slots, int key) {
+        int mask = slots.length - 1;
+        int index = hash(key) & mask;
+        // Bounded, as the table may change while reading it without a lock
+        for (int probes = 0; probes < slots.length; probes++) {
+            long slot = slots[index];
+            if (slot == EMPTY) {
+                return NO_ROW;
+            }
+
+            if (getKey(slot) == key) {
+                return getRow(slot);
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return NO_ROW;
+    }
+
+    private static int toInt(ValueContainer key) {
+        Object value = key.getValues()[0];
+        if (!UtilCompare.isIntegral(value)) {
+            throw new IllegalArgumentException("Key " + Arrays.toString(key.getValues()) + " is not an integer!");
+        }
+
+        return ((Number) value).intValue();
+    }
+
+    private static int hash(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long toSlot(int key, int row) {
+        return ((long) key << 32) | ((row + 1) & 0xFFFFFFFFL);
+    }
+
+    private static int getKey(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    private static int getRow(long slot) {
+        return (int) slot - 1;
+    }
+}
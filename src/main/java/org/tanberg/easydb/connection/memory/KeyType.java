@@ -0,0 +1,64 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.DataType;
+import org.tanberg.easydb.field.PersistentField;
+
+/**
+ * The types of keys a {@link MemoryTable memory table} may have. Tables with a
+ * single integer or long key keep their keys unboxed.
+ */
+public enum KeyType {
+    /**
+     * A single byte, short or integer key.
+     */
+    INT {
+        @Override
+        public PrimaryKeyIndex newIndex() {
+            return new IntPrimaryKeyIndex();
+        }
+    },
+    /**
+     * A single long key.
+     */
+    LONG {
+        @Override
+        public PrimaryKeyIndex newIndex() {
+            return new LongPrimaryKeyIndex();
+        }
+    },
+    /**
+     * Any other key, kept as a {@link CompositeKey composite key}.
+     */
+    COMPOSITE {
+        @Override
+        public PrimaryKeyIndex newIndex() {
+            return new HeapPrimaryKeyIndex(false);
+        }
+    };
+
+    /**
+     * @return A new, empty and unordered {@link PrimaryKeyIndex index} for keys of this type
+     */
+    public abstract PrimaryKeyIndex newIndex();
+
+    /**
+     * @param keys The key fields
+     * @return The type of the given keys
+     */
+    public static KeyType of(PersistentField<?>[] keys) {
+        if (keys.length != 1) {
+            return COMPOSITE;
+        }
+
+        DataType type = keys[0].getType();
+        if (type == DataType.BYTE || type == DataType.SHORT || type == DataType.INTEGER) {
+            return INT;
+        }
+
+        if (type == DataType.LONG) {
+            return LONG;
+        }
+
+        return COMPOSITE;
+    }
+}
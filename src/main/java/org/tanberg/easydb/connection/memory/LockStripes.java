@@ -0,0 +1,163 @@
+package org.tanberg.easydb.connection.memory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * A fixed set of locks, where each key is guarded by one of them. Changes to keys
+ * guarded by different locks can be made in parallel, while changes to the same key
+ * are made one at a time.
+ * <p>
+ * Locks are always taken in ascending order, so that threads taking several locks
+ * never wait for each other in a cycle.
+ */
+public class LockStripes {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final LongAdder acquisitions;
+    private final LongAdder collisions;
+
+    /**
+     * @param stripes The number of locks, rounded up to a power of two
+     */
+    public LockStripes(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Must have at least one stripe!");
+        }
+
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+
+        this.mask = size - 1;
+        this.acquisitions = new LongAdder();
+        this.collisions = new LongAdder();
+    }
+
+    public int getStripeCount() {
+        return this.locks.length;
+    }
+
+    public int getStripe(Object key) {
+        int hash = key.hashCode();
+        // Spread the higher bits, as only the lowest are used
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    /**
+     * @param keys The keys
+     * @return The stripes guarding the given keys, in ascending order and without duplicates
+     */
+    public int[] getStripes(Collection<?> keys) {
+        return keys.stream().mapToInt(this::getStripe).distinct().sorted().toArray();
+    }
+
+    public void lock(int stripe) {
+        ReentrantLock lock = this.locks[stripe];
+        if (!lock.tryLock()) {
+            this.collisions.increment();
+            lock.lock();
+        }
+
+        this.acquisitions.increment();
+    }
+
+    /**
+     * Takes the given lock only if it is free, or already held by this thread.
+     *
+     * @return If the lock was taken
+     */
+    public boolean tryLock(int stripe) {
+        if (!this.locks[stripe].tryLock()) {
+            this.collisions.increment();
+            return false;
+        }
+
+        this.acquisitions.increment();
+        return true;
+    }
+
+    /**
+     * @param stripes The stripes, in ascending order and without duplicates
+     */
+    public void lock(int[] stripes) {
+        for (int stripe : stripes) {
+            this.lock(stripe);
+        }
+    }
+
+    public void lockAll() {
+        for (int stripe = 0; stripe < this.locks.length; stripe++) {
+            this.lock(stripe);
+        }
+    }
+
+    public void unlock(int stripe) {
+        this.locks[stripe].unlock();
+    }
+
+    public void unlock(int[] stripes) {
+        for (int stripe : stripes) {
+            this.unlock(stripe);
+        }
+    }
+
+    public void unlockAll() {
+        for (ReentrantLock lock : this.locks) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of times a lock has been taken
+     */
+    public long getAcquisitions() {
+        return this.acquisitions.sum();
+    }
+
+    /**
+     * @return The number of times a lock was held by another thread when taken
+     */
+    public long getCollisions() {
+        return this.collisions.sum();
+    }
+
+    /**
+     * @return The share of lock acquisitions that had to wait for another thread,
+     * between 0 and 1
+     */
+    public double getContention() {
+        long acquisitions = this.getAcquisitions();
+        return acquisitions == 0 ? 0 : (double) this.getCollisions() / acquisitions;
+    }
+
+    /**
+     * @return If every stripe in {@code required} is also in {@code held}
+     */
+    public static boolean containsAll(int[] held, int[] required) {
+        for (int stripe : required) {
+            if (Arrays.binarySearch(held, stripe) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The stripes in either array, in ascending order and without duplicates
+     */
+    public static int[] union(int[] stripes1, int[] stripes2) {
+        return IntStream.concat(Arrays.stream(stripes1), Arrays.stream(stripes2)).distinct().sorted().toArray();
+    }
+}
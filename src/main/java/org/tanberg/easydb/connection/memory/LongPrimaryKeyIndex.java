@@ -0,0 +1,247 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.util.UtilCompare;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A {@link PrimaryKeyIndex} for tables with a single long key. Keys are kept
+ * unboxed in an open addressing table, next to the rows, so lookups allocate
+ * nothing.
+ * <p>
+ * Readers do not lock, but retry with a read lock if the table was changed while
+ * they read it.
+ */
+public class LongPrimaryKeyIndex implements PrimaryKeyIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int EMPTY = 0;
+
+    private final StampedLock lock;
+    private long[] keys;
+    // Holds the row + 1 of every slot, or 0 if the slot is empty
+    private int[] rows;
+    private int size;
+
+    public LongPrimaryKeyIndex() {
+        this.lock = new StampedLock();
+        this.keys = new long[MIN_CAPACITY];
+        this.rows = new int[MIN_CAPACITY];
+    }
+
+    @Override
+    public int get(ValueContainer key) {
+        return this.getSingle(key.getValues()[0]);
+    }
+
+    @Override
+    public int getSingle(Object keyValue) {
+        if (!UtilCompare.isIntegral(keyValue)) {
+            return NO_ROW;
+        }
+
+        return this.get(((Number) keyValue).longValue());
+    }
+
+    public int get(long key) {
+        long stamp = this.lock.tryOptimisticRead();
+        int row = find(this.keys, this.rows, key);
+        if (this.lock.validate(stamp)) {
+            return row;
+        }
+
+        stamp = this.lock.readLock();
+        try {
+            return find(this.keys, this.rows, key);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int put(ValueContainer key, int row) {
+        long longKey = toLong(key);
+
+        long stamp = this.lock.writeLock();
+        try {
+            long[] keys = this.keys;
+            int[] rows = this.rows;
+            int mask = keys.length - 1;
+            int index = hash(longKey) & mask;
+            while (rows[index] != EMPTY) {
+                if (keys[index] == longKey) {
+                    int previous = rows[index] - 1;
+                    rows[index] = row + 1;
+                    return previous;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            keys[index] = longKey;
+            rows[index] = row + 1;
+            if (++this.size * 2 > keys.length) {
+                this.resize(keys.length * 2);
+            }
+
+            return NO_ROW;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(ValueContainer key, int row) {
+        long longKey = toLong(key);
+
+        long stamp = this.lock.writeLock();
+        try {
+            long[] keys = this.keys;
+            int[] rows = this.rows;
+            int mask = keys.length - 1;
+            int index = hash(longKey) & mask;
+            while (rows[index] != EMPTY) {
+                if (keys[index] == longKey) {
+                    if (rows[index] - 1 != row) {
+                        return false;
+                    }
+
+                    this.removeSlot(index);
+                    this.size--;
+                    return true;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int[] getRows() {
+        long stamp = this.lock.readLock();
+        try {
+            int[] rows = new int[this.size];
+            int count = 0;
+            for (int row : this.rows) {
+                if (row != EMPTY) {
+                    rows[count++] = row - 1;
+                }
+            }
+
+            return rows;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.keys = new long[MIN_CAPACITY];
+            this.rows = new int[MIN_CAPACITY];
+            this.size = 0;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Internals
+
+    private void resize(int capacity) {
+        long[] keys = new long[capacity];
+        int[] rows = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.rows[i] == EMPTY) {
+                continue;
+            }
+
+            int index = hash(this.keys[i]) & mask;
+            while (rows[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+
+            keys[index] = this.keys[i];
+            rows[index] = this.rows[i];
+        }
+
+        this.keys = keys;
+        this.rows = rows;
+    }
+
+    /**
+     * Empties the given slot, moving back later entries of the same probe sequence
+     * so that no entry is left unreachable.
+     */
+    private void removeSlot(int index) {
+        long[] keys = this.keys;
+        int[] rows = this.rows;
+        int mask = keys.length - 1;
+
+        int next = (index + 1) & mask;
+        while (rows[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            // Only move entries whose home slot is not between the empty slot and their slot
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                rows[index] = rows[next];
+                index = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        rows[index] = EMPTY;
+    }
+
+    private static int find(long[] keys, int[] rows, long key) {
+        // The arrays may be from different tables if changed while reading without a lock
+        int length = Math.min(keys.length, rows.length);
+        int mask = length - 1;
+        int index = hash(key) & mask;
+        for (int probes = 0; probes < length; probes++) {
+            if (rows[index] == EMPTY) {
+                return NO_ROW;
+            }
+
+            if (keys[index] == key) {
+                return rows[index] - 1;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return NO_ROW;
+    }
+
+    private static long toLong(ValueContainer key) {
+        Object value = key.getValues()[0];
+        if (!UtilCompare.isIntegral(value)) {
+            throw new IllegalArgumentException("Key " + Arrays.toString(key.getValues()) + " is not an integer!");
+        }
+
+        return ((Number) value).longValue();
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -1,15 +1,70 @@
 package org.tanberg.easydb.connection.memory;
 
 import com.google.common.collect.Maps;
+import org.tanberg.easydb.access.memory.MemoryConfiguration;
 import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.util.UtilLog;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.logging.Level;
 
 public class MemoryDatabase {
 
-    private static final Map<String, MemoryTable<?>> NAME_TO_TABLE = Maps.newConcurrentMap();
+    private static final Map<String, MemoryStorage<?>> NAME_TO_TABLE = Maps.newConcurrentMap();
 
-    public static <T> MemoryTable<T> getTable(String table, ItemProfile<T> profile) {
-        return (MemoryTable<T>) NAME_TO_TABLE.computeIfAbsent(table, str -> new MemoryTable<>(table, profile));
+    public static <T> MemoryStorage<T> getTable(String table, ItemProfile<T> profile) {
+        return getTable(table, profile, null);
+    }
+
+    /**
+     * Gets a table, creating it if it does not exist. If a configuration is given when
+     * creating the table, the table is made durable and restored from disk. Tables
+     * of items with more than one {@link MemoryOptions#segments() segment} are split
+     * into a {@link SegmentedMemoryTable}, with every segment kept on disk on its own.
+     *
+     * @param table         The name of the table
+     * @param profile       The profile of the items in the table
+     * @param configuration The configuration, or null
+     * @return The table
+     */
+    public static <T> MemoryStorage<T> getTable(String table, ItemProfile<T> profile, MemoryConfiguration configuration) {
+        return (MemoryStorage<T>) NAME_TO_TABLE.computeIfAbsent(table, str -> {
+            MemoryOptions options = profile.getTypeClass().getAnnotation(MemoryOptions.class);
+            int segments = options == null ? 1 : options.segments();
+
+            MemoryStorage<T> storage = segments > 1 ? new SegmentedMemoryTable<>(table, profile, segments) : new MemoryTable<>(table, profile);
+            if (configuration != null) {
+                for (MemoryTable<T> memoryTable : storage.getTables()) {
+                    MemoryJournal.open(memoryTable, configuration);
+                }
+            }
+
+            return storage;
+        });
+    }
+
+    /**
+     * Stops the background work of every table, writes a final snapshot of every durable
+     * table and closes their logs. Should be called before shutting down.
+     *
+     * @see MemoryStorage#close()
+     */
+    public static void close() {
+        for (MemoryStorage<?> storage : NAME_TO_TABLE.values()) {
+            storage.close();
+            for (MemoryTable<?> table : storage.getTables()) {
+                MemoryJournal<?> journal = table.getJournal();
+                if (journal == null) {
+                    continue;
+                }
+
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    UtilLog.log(Level.SEVERE, "Failed to close journal of table " + table.getName() + "!", e);
+                }
+            }
+        }
     }
 }
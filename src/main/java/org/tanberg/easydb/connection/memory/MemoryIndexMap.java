@@ -1,30 +1,122 @@
 package org.tanberg.easydb.connection.memory;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.DataType;
+import org.tanberg.easydb.IndexType;
 import org.tanberg.easydb.WrappedIndex;
-import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.connection.memory.store.RowStore;
 import org.tanberg.easydb.field.PersistentField;
 import org.tanberg.easydb.profile.ItemProfile;
 import org.tanberg.easydb.query.Operator;
 import org.tanberg.easydb.query.req.SimpleRequirement;
-import org.tanberg.easydb.util.UniqueValueMultimap;
+import org.tanberg.easydb.query.traverse.RequirementCase;
+import org.tanberg.easydb.query.traverse.RequirementTraverser;
+import org.tanberg.easydb.util.UtilCompare;
 import org.tanberg.easydb.util.ValueContainer;
 import org.tanberg.easydb.util.ValueHelper;
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 public class MemoryIndexMap<T> {
 
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+    /**
+     * Creates a map for the given index, using {@link BitmapIndexMap bitmaps} for
+     * {@link IndexType#BITMAP bitmap indices}. Hash indices of only boolean and enum
+     * fields are kept as bitmaps as well, as they have few distinct values. {@link
+     * IndexType#PREFIX Prefix indices} of a single string field are kept in a {@link
+     * PrefixIndexMap radix trie}, and {@link IndexType#FULL_TEXT full-text indices} in
+     * an {@link FullTextIndexMap inverted index}. Indices computing their values from
+     * an {@link WrappedIndex#getExpression() expression} are always kept in a plain map.
+     *
+     * @param profile The profile of the table
+     * @param index   The index
+     * @param store   The rows of the table, which maps keeping strings read values from
+     *                rather than keeping a copy of them
+     * @return The map
+     */
+    public static <T> MemoryIndexMap<T> create(ItemProfile<T> profile, WrappedIndex<T> index, RowStore store) {
+        if (index.getExpression() != null) {
+            if (index.getType() != IndexType.HASH && index.getType() != IndexType.ORDERED) {
+                throw new IllegalArgumentException("Only hash and ordered indices can have an expression, " + index + " can not!");
+            }
+
+            return new MemoryIndexMap<>(profile, index);
+        }
+
+        if (index.getType() == IndexType.BITMAP || (index.getType() == IndexType.HASH && Arrays.stream(index.getFields())
+          .allMatch(field -> field.getType() == DataType.BOOLEAN || field.getType() == DataType.ENUM))) {
+            return new BitmapIndexMap<>(profile, index);
+        }
+
+        if (index.getType() == IndexType.PREFIX && index.getFields().length == 1) {
+            if (index.getFields()[0].getType() != DataType.STRING) {
+                throw new IllegalArgumentException("Only string fields can have a prefix index, " + index.getFields()[0].getName() + " does not!");
+            }
+
+            return new PrefixIndexMap<>(profile, index, store);
+        }
+
+        if (index.getType() == IndexType.FULL_TEXT) {
+            if (index.getFields().length != 1 || index.getFields()[0].getType() != DataType.STRING) {
+                throw new IllegalArgumentException("Full-text indices must be of a single string field, " + index + " is not!");
+            }
+
+            return new FullTextIndexMap<>(profile, index, store);
+        }
+
+        return new MemoryIndexMap<>(profile, index);
+    }
+
     private final ItemProfile<T> profile;
     private final WrappedIndex<T> index;
-    private final UniqueValueMultimap<ValueContainer, ValueContainer> indexValueToKey;
+    private final int[] columns;
+    private final RowMultimap<ValueContainer> indexValueToRow;
+    private final boolean ordered;
+    // The cases of the filter of a partial index, and the columns they check
+    private final SimpleRequirement[][] filterCases;
+    private final int[][] filterColumns;
 
     public MemoryIndexMap(ItemProfile<T> profile, WrappedIndex<T> index) {
         this.profile = profile;
         this.index = index;
-        this.indexValueToKey = new UniqueValueMultimap<>();
+
+        PersistentField<T>[] fields = index.getFields();
+        this.columns = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            this.columns[i] = ArrayUtils.indexOf(profile.getStoredFields(), fields[i]);
+        }
+
+        // Ordered indices are backed by a navigable map, letting us look up ranges of index values. So
+        // are composite indices, so that a query on the leading fields only can still use the index
+        boolean ordered = index.isOrdered() || index.getType() == IndexType.PREFIX || (fields.length > 1 && Arrays.stream(fields).allMatch(field -> isComparable(field.getType())));
+        this.indexValueToRow = new RowMultimap<>(ordered ? UtilCompare.CONTAINER_ORDER : null);
+        this.ordered = ordered;
+
+        List<RequirementCase> cases = index.isPartial() ? new RequirementTraverser(index.getFilter()).getCases() : Collections.emptyList();
+        this.filterCases = new SimpleRequirement[cases.size()][];
+        this.filterColumns = new int[cases.size()][];
+        for (int i = 0; i < this.filterCases.length; i++) {
+            this.filterCases[i] = cases.get(i).getRequirements().toArray(new SimpleRequirement[0]);
+            this.filterColumns[i] = new int[this.filterCases[i].length];
+            for (int j = 0; j < this.filterCases[i].length; j++) {
+                this.filterColumns[i][j] = ArrayUtils.indexOf(profile.getStoredFields(), this.filterCases[i][j].getField());
+                if (this.filterColumns[i][j] == -1) {
+                    throw new IllegalArgumentException("Couldn't find field " + this.filterCases[i][j].getField().getName() + "!");
+                }
+            }
+        }
     }
 
     public ItemProfile<T> getProfile() {
@@ -36,53 +128,367 @@ public class MemoryIndexMap<T> {
     }
 
     public void drop() {
-        this.indexValueToKey.clear();
+        this.indexValueToRow.clear();
+    }
+
+    public void remove(int row) {
+        this.indexValueToRow.remove(row);
     }
 
-    public void remove(FieldValue<T>[] values) {
-        ValueContainer value = ValueContainer.getKeys(this.getProfile(), values);
-        this.removeKey(value);
+    public void add(RowStore store, int row) {
+        Object[] values = new Object[this.columns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = store.get(row, this.columns[i]);
+        }
+
+        this.indexValueToRow.put(new CompositeKey(this.compute(values)), row);
     }
 
-    public void removeKey(ValueContainer key) {
-        this.indexValueToKey.removeValue(key);
+    /**
+     * @return If the given row belongs in this index, which it always does unless the
+     * index is {@link WrappedIndex#isPartial() partial}
+     */
+    public boolean accepts(RowStore store, int row) {
+        return this.accepts(column -> store.get(row, column));
     }
 
-    public void add(FieldValue<T>[] values) {
-        ValueContainer key = ValueContainer.getValues(this.getIndex().getFields(), values);
-        ValueContainer value = ValueContainer.getKeys(this.getProfile(), values);
-        this.indexValueToKey.put(key, value);
+    /**
+     * @param values The values of a row, in the order of the stored fields
+     * @return If a row with the given values belongs in this index
+     */
+    public boolean accepts(Object[] values) {
+        return this.accepts(column -> values[column]);
     }
 
-    public Collection<ValueContainer> getKeys(FieldValue<T>[] values) {
-        ValueContainer key = ValueContainer.getKeys(this.getProfile(), values);
-        return this.indexValueToKey.get(key);
+    /**
+     * @param requirements The requirements of a query
+     * @return If every row matching the given requirements matches the filter of this
+     * index, so that the index holds every row the query may find. A requirement of the
+     * filter is implied by the same requirement, or by requiring a value matching it.
+     */
+    public boolean isImpliedBy(Collection<SimpleRequirement> requirements) {
+        if (this.filterCases.length == 0) {
+            return true;
+        }
+
+        for (SimpleRequirement[] filterCase : this.filterCases) {
+            if (Arrays.stream(filterCase).allMatch(filter -> requirements.stream().anyMatch(requirement -> implies(requirement, filter)))) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
-    public Collection<ValueContainer> getKeys(Collection<SimpleRequirement> requirements) {
-        // Speed up for a common case
+    /**
+     * @param values The values of the fields of this index, in order
+     * @return The values as kept in this index, computed by the {@link
+     * WrappedIndex#getExpression() expression} of the index if it has one
+     */
+    public Object[] compute(Object[] values) {
+        Function<Object, Object> expression = this.index.getExpression();
+        if (expression == null) {
+            return values;
+        }
+
+        Object[] computed = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            computed[i] = values[i] == null ? null : expression.apply(values[i]);
+        }
+
+        return computed;
+    }
+
+    /**
+     * Adds rows for an index value without reading them from the store, used when
+     * restoring a {@link MemorySnapshot snapshot}.
+     */
+    void restore(ValueContainer indexValue, Collection<Integer> rows) {
+        CompositeKey key = new CompositeKey(indexValue.getValues());
+        for (int row : rows) {
+            this.indexValueToRow.put(key, row);
+        }
+    }
+
+    /**
+     * @return A copy of the contents of this index
+     */
+    Map<ValueContainer, List<Integer>> copy() {
+        Map<ValueContainer, List<Integer>> copy = Maps.newLinkedHashMap();
+        for (ValueContainer indexValue : this.indexValueToRow.keySet()) {
+            List<Integer> rows = this.indexValueToRow.getList(indexValue);
+            // May have been emptied since we got the keys
+            if (!rows.isEmpty()) {
+                copy.put(indexValue, rows);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return The number of rows in this index
+     */
+    public int getSize() {
+        return this.indexValueToRow.size();
+    }
+
+    /**
+     * @return The number of distinct index values
+     */
+    public int getCardinality() {
+        return this.indexValueToRow.getKeyCount();
+    }
+
+    /**
+     * Estimates how many rows match the given requirements, for choosing which
+     * indices to use. Lookups of a single index value use the size of its bucket,
+     * while other lookups assume values to be evenly spread.
+     *
+     * @param requirements The requirements
+     * @return The expected number of matching rows
+     */
+    public long estimate(Collection<SimpleRequirement> requirements) {
         if (requirements.stream().allMatch(requirement -> requirement.getOperator() == Operator.EQUALS)) {
-            return this.getKeys((FieldValue<T>[]) requirements.stream()
-              .map(requirement -> new FieldValue<>((PersistentField<T>) requirement.getField(), requirement.getValue()))
-              .toArray(FieldValue[]::new));
+            ValueContainer indexValue = this.getIndexValue(requirements);
+            if (indexValue != null) {
+                return this.indexValueToRow.size(new CompositeKey(indexValue.getValues()));
+            }
         }
 
-        List<ValueContainer> indices = Lists.newArrayList(this.indexValueToKey.keySet());
+        int cardinality = this.getCardinality();
+        if (cardinality == 0) {
+            return 0;
+        }
+
+        // Every field is assumed to contribute equally to the distinct index values
+        double fieldCardinality = Math.pow(cardinality, 1.0 / this.columns.length);
+        double selectivity = 1;
         for (SimpleRequirement requirement : requirements) {
-            this.eliminate(indices, requirement);
+            selectivity *= getSelectivity(requirement.getOperator(), fieldCardinality);
+        }
+
+        // No lookup matches less than a single index value
+        return (long) Math.ceil(this.getSize() * Math.max(selectivity, 1.0 / cardinality));
+    }
+
+    public Collection<Integer> getRows(ValueContainer indexValue) {
+        return this.indexValueToRow.getList(indexValue);
+    }
+
+    /**
+     * Gets the rows matching the given requirements as a {@link RowBitmap bitmap}.
+     *
+     * @param requirements The requirements
+     * @return The rows, in a bitmap owned by the caller
+     */
+    public RowBitmap getBitmap(Collection<SimpleRequirement> requirements) {
+        return RowBitmap.of(this.getRows(requirements));
+    }
+
+    /**
+     * Gets the rows matching the given requirements as a {@link PostingList posting list}.
+     *
+     * @param requirements The requirements
+     * @return The rows
+     */
+    public PostingList getPostingList(Collection<SimpleRequirement> requirements) {
+        // Speed up for a common case
+        if (requirements.stream().allMatch(requirement -> requirement.getOperator() == Operator.EQUALS)) {
+            ValueContainer indexValue = this.getIndexValue(requirements);
+            if (indexValue != null) {
+                return PostingList.of(this.indexValueToRow.get(indexValue));
+            }
+        }
+
+        // The rows of every value are in order, so they are merged rather than sorted
+        List<PostingList> lists = Lists.newArrayList();
+        for (ValueContainer index : this.getIndexValues(requirements)) {
+            lists.add(PostingList.of(this.indexValueToRow.get(index)));
+        }
+
+        return lists.size() == 1 ? lists.get(0) : PostingList.union(lists);
+    }
+
+    public Collection<Integer> getRows(Collection<SimpleRequirement> requirements) {
+        // Speed up for a common case
+        if (requirements.stream().allMatch(requirement -> requirement.getOperator() == Operator.EQUALS)) {
+            ValueContainer indexValue = this.getIndexValue(requirements);
+            if (indexValue != null) {
+                return this.getRows(indexValue);
+            }
         }
 
-        List<ValueContainer> values = Lists.newArrayList();
-        for (ValueContainer index : indices) {
-            values.addAll(this.indexValueToKey.get(index));
+        List<Integer> rows = Lists.newArrayList();
+        for (ValueContainer index : this.getIndexValues(requirements)) {
+            this.indexValueToRow.addTo(index, rows);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Never true for {@link WrappedIndex#isPartial() partial indices}, which lack the
+     * rows not matching their filter, or for indices with an {@link
+     * WrappedIndex#getExpression() expression}, which keep the computed values rather
+     * than the values of their fields. Lookups relying on covering indices check for
+     * both themselves as well.
+     *
+     * @return If this index keeps the values of its fields for every row, so that
+     * queries only needing those can be answered by {@link #forEachEntry(Collection, BiConsumer)}
+     */
+    public boolean isCovering() {
+        return !this.index.isPartial() && this.index.getExpression() == null;
+    }
+
+    /**
+     * Hands every index value matching the given requirements, and its rows, to the
+     * given consumer, so that queries only needing the fields of this index are
+     * answered without reading the rows.
+     *
+     * @param requirements The requirements, all on fields of this index
+     * @param consumer     The consumer of the values of the fields of the index, in
+     *                     order, and the rows holding them
+     */
+    public void forEachEntry(Collection<SimpleRequirement> requirements, BiConsumer<Object[], int[]> consumer) {
+        // Speed up for a common case
+        if (requirements.stream().allMatch(requirement -> requirement.getOperator() == Operator.EQUALS)) {
+            ValueContainer indexValue = this.getIndexValue(requirements);
+            if (indexValue != null) {
+                int[] rows = this.indexValueToRow.get(indexValue);
+                if (rows.length > 0) {
+                    consumer.accept(indexValue.getValues(), rows);
+                }
+
+                return;
+            }
         }
 
-        return values;
+        for (ValueContainer indexValue : this.getIndexValues(requirements)) {
+            int[] rows = this.indexValueToRow.get(indexValue);
+            // May have been emptied since we got the index values
+            if (rows.length > 0) {
+                consumer.accept(indexValue.getValues(), rows);
+            }
+        }
     }
 
     // Internals
 
-    private void eliminate(List<ValueContainer> containers, SimpleRequirement requirement) {
+    private static boolean implies(SimpleRequirement requirement, SimpleRequirement filter) {
+        if (!requirement.getField().equals(filter.getField())) {
+            return false;
+        }
+
+        return requirement.equals(filter) || (requirement.getOperator() == Operator.EQUALS
+          && ValueHelper.matches(requirement.getValue(), filter.getValue(), filter.getOperator()));
+    }
+
+    private boolean accepts(IntFunction<Object> values) {
+        if (this.filterCases.length == 0) {
+            return true;
+        }
+
+        for (int i = 0; i < this.filterCases.length; i++) {
+            SimpleRequirement[] requirements = this.filterCases[i];
+            boolean matches = true;
+            for (int j = 0; j < requirements.length && matches; j++) {
+                matches = ValueHelper.matches(values.apply(this.filterColumns[i][j]), requirements[j].getValue(), requirements[j].getOperator());
+            }
+
+            if (matches) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The index values matching the given requirements, found from a range of
+     * the index values if it is ordered
+     */
+    private List<ValueContainer> getIndexValues(Collection<SimpleRequirement> requirements) {
+        List<ValueContainer> indexValues;
+        MemoryRange range = this.getRange(requirements);
+        if (range != null) {
+            indexValues = Lists.newArrayList();
+            for (Entry<ValueContainer, ?> entry : range.entries(this.indexValueToRow.asNavigableMap())) {
+                indexValues.add(entry.getKey());
+            }
+        } else {
+            indexValues = Lists.newArrayList(this.indexValueToRow.keySet());
+        }
+
+        for (SimpleRequirement requirement : requirements) {
+            this.eliminate(indexValues, requirement);
+        }
+
+        return indexValues;
+    }
+
+    private static boolean isComparable(DataType type) {
+        switch (type) {
+            case STRING:
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case BOOLEAN:
+            case ENUM:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static double getSelectivity(Operator operator, double cardinality) {
+        switch (operator) {
+            case EQUALS:
+                return 1.0 / cardinality;
+            case NOT_EQUALS:
+                return 1 - 1.0 / cardinality;
+            default:
+                // Without a histogram, assume a range matches a third of the values
+                return RANGE_SELECTIVITY;
+        }
+    }
+
+    protected ValueContainer getIndexValue(Collection<SimpleRequirement> requirements) {
+        PersistentField<T>[] fields = this.getIndex().getFields();
+        if (requirements.size() != fields.length) {
+            return null;
+        }
+
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            PersistentField<T> field = fields[i];
+            SimpleRequirement requirement = requirements.stream()
+              .filter(req -> req.getField().equals(field))
+              .findFirst().orElse(null);
+            if (requirement == null) {
+                return null;
+            }
+
+            values[i] = requirement.getValue();
+        }
+
+        return new ValueContainer(values);
+    }
+
+    private MemoryRange getRange(Collection<SimpleRequirement> requirements) {
+        if (!this.ordered) {
+            return null;
+        }
+
+        // Index values are ordered field by field, so we can use a range on the leading fields
+        MemoryRange range = MemoryRange.of(this.getIndex().getFields(), requirements);
+        return range.isBounded() ? range : null;
+    }
+
+    protected void eliminate(List<ValueContainer> containers, SimpleRequirement requirement) {
         PersistentField<T> field = (PersistentField<T>) requirement.getField();
         int index = ArrayUtils.indexOf(this.getIndex().getFields(), requirement.getField());
         if (index == -1) {
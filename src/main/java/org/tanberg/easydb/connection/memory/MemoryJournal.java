@@ -0,0 +1,312 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.access.memory.MemoryConfiguration;
+import org.tanberg.easydb.connection.memory.store.RowCodec;
+import org.tanberg.easydb.exception.PersistenceException;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.util.UtilLog;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a {@link MemoryTable memory table} durable, using a {@link WriteAheadLog log}
+ * of all changes and periodic {@link MemorySnapshot snapshots}.
+ * <p>
+ * Logs and snapshots are numbered by generation. Taking a snapshot starts a new log,
+ * and the snapshot of a generation holds the contents of the table at the start of
+ * the log with the same generation. When restoring, the newest snapshot is loaded and
+ * every log of the same or a later generation is replayed. Older files are deleted
+ * once a newer snapshot has been written.
+ */
+public class MemoryJournal<T> implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte CLEAR = 3;
+
+    private static final String LOG_SUFFIX = ".wal";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EasyDB Memory Journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens the journal of the given table, restoring the table from it.
+     *
+     * @param table         The table, which should be empty
+     * @param configuration The configuration
+     * @return The journal, attached to the table
+     */
+    public static <T> MemoryJournal<T> open(MemoryTable<T> table, MemoryConfiguration configuration) {
+        try {
+            Path directory = Paths.get(configuration.getDirectory());
+            Files.createDirectories(directory);
+
+            MemoryJournal<T> journal = new MemoryJournal<>(table, directory, configuration.getSyncInterval());
+            journal.restore();
+            journal.schedule(configuration.getSyncInterval(), configuration.getSnapshotInterval());
+            table.setJournal(journal);
+            return journal;
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to open journal of table " + table.getName() + "!", e);
+        }
+    }
+
+    private final MemoryTable<T> table;
+    private final Path directory;
+    private final boolean syncOnWrite;
+    private final int fingerprint;
+    private final RowCodec rowCodec;
+    private final RowCodec keyCodec;
+    private volatile WriteAheadLog log;
+    private long generation;
+    private ScheduledFuture<?> syncTask;
+    private ScheduledFuture<?> snapshotTask;
+
+    private MemoryJournal(MemoryTable<T> table, Path directory, long syncInterval) {
+        this.table = table;
+        this.directory = directory;
+        this.syncOnWrite = syncInterval == 0;
+        this.fingerprint = fingerprint(table.getProfile().getStoredFields());
+        this.rowCodec = new RowCodec(table.getProfile().getStoredFields());
+        this.keyCodec = new RowCodec(table.getProfile().getKeys());
+    }
+
+    public MemoryTable<T> getTable() {
+        return table;
+    }
+
+    /**
+     * Logs that the given row was inserted or replaced the row with the same key.
+     *
+     * @param values The values of the row
+     * @return The position to give to {@link #sync(long)}
+     */
+    public long logPut(Object[] values) {
+        return this.log.append(PUT, this.rowCodec.encode(values));
+    }
+
+    /**
+     * Logs that the row with the given key was deleted.
+     *
+     * @param key The key of the row
+     * @return The position to give to {@link #sync(long)}
+     */
+    public long logDelete(ValueContainer key) {
+        return this.log.append(DELETE, this.keyCodec.encode(key.getValues()));
+    }
+
+    /**
+     * Logs that all rows were deleted.
+     *
+     * @return The position to give to {@link #sync(long)}
+     */
+    public long logClear() {
+        return this.log.append(CLEAR, new byte[0]);
+    }
+
+    /**
+     * Waits until everything logged up to the given position is durable, unless the
+     * log is flushed periodically instead.
+     *
+     * @param position The position
+     */
+    public void sync(long position) {
+        if (this.syncOnWrite) {
+            this.log.sync(position);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the table and starts a new log. Changes to the table are
+     * only blocked while starting the new log, as the table is copied as seen by a
+     * reader of the last version before it.
+     */
+    public synchronized void snapshot() {
+        MemorySnapshot snapshot;
+        long generation;
+        long version;
+
+        this.table.lockAll();
+        try {
+            if (this.log.isEmpty()) {
+                return;
+            }
+
+            // Close the current log first, so that everything in it is durable
+            WriteAheadLog previous = this.log;
+            generation = this.generation + 1;
+            previous.close();
+            this.log = new WriteAheadLog(this.getPath(generation, LOG_SUFFIX), this.fingerprint, previous.getPosition(), 0);
+            this.generation = generation;
+
+            // No changes are made until the lock is released, so this is the version ending the old log
+            version = this.table.getClock().beginRead();
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to start a new log for table " + this.table.getName() + "!", e);
+        } finally {
+            this.table.unlockAll();
+        }
+
+        try {
+            snapshot = MemorySnapshot.capture(this.table, this.fingerprint, version);
+        } finally {
+            this.table.getClock().endRead(version);
+        }
+
+        try {
+            snapshot.write(this.getPath(generation, SNAPSHOT_SUFFIX));
+            this.deleteBefore(generation);
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to write snapshot of table " + this.table.getName() + "!", e);
+        }
+    }
+
+    /**
+     * Writes a final snapshot and closes the log. The table is no longer durable afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.syncTask != null) {
+            this.syncTask.cancel(false);
+        }
+
+        if (this.snapshotTask != null) {
+            this.snapshotTask.cancel(false);
+        }
+
+        this.snapshot();
+        this.table.setJournal(null);
+        this.log.close();
+    }
+
+    // Internals
+
+    private static int fingerprint(PersistentField<?>[] fields) {
+        return Arrays.hashCode(Arrays.stream(fields)
+          .map(field -> field.getName() + ":" + field.getType())
+          .toArray());
+    }
+
+    private void restore() throws IOException {
+        NavigableMap<Long, Path> snapshots = this.list(SNAPSHOT_SUFFIX);
+        NavigableMap<Long, Path> logs = this.list(LOG_SUFFIX);
+
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            Entry<Long, Path> latest = snapshots.lastEntry();
+            MemorySnapshot.restore(latest.getValue(), this.fingerprint, this.table);
+            first = latest.getKey();
+        }
+
+        long length = 0;
+        for (Entry<Long, Path> entry : logs.tailMap(first, true).entrySet()) {
+            length = WriteAheadLog.read(entry.getValue(), this.fingerprint, this::replay);
+        }
+
+        if (logs.isEmpty() || logs.lastKey() < first) {
+            this.generation = first;
+            length = 0;
+        } else {
+            this.generation = logs.lastKey();
+        }
+
+        this.log = new WriteAheadLog(this.getPath(this.generation, LOG_SUFFIX), this.fingerprint, 0, length);
+        this.deleteBefore(first);
+
+        UtilLog.info("Restored " + this.table.getUnsafeAccessor().getKeyToValueMap().size() + " rows of table "
+          + this.table.getName() + " from generation " + this.generation);
+    }
+
+    private void replay(byte type, byte[] payload) {
+        switch (type) {
+            case PUT:
+                this.table.apply(this.rowCodec.decode(ByteBuffer.wrap(payload), 0));
+                break;
+            case DELETE:
+                this.table.applyDelete(new ValueContainer(this.keyCodec.decode(ByteBuffer.wrap(payload), 0)));
+                break;
+            case CLEAR:
+                this.table.clear();
+                break;
+            default:
+                throw new PersistenceException("Unknown log record type " + type + "!");
+        }
+    }
+
+    private void schedule(long syncInterval, long snapshotInterval) {
+        if (syncInterval > 0) {
+            this.syncTask = EXECUTOR.scheduleWithFixedDelay(() -> {
+                try {
+                    this.log.sync();
+                } catch (Throwable t) {
+                    UtilLog.log(Level.SEVERE, "Failed to flush log of table " + this.table.getName() + "!", t);
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+
+        if (snapshotInterval > 0) {
+            this.snapshotTask = EXECUTOR.scheduleWithFixedDelay(() -> {
+                try {
+                    this.snapshot();
+                } catch (Throwable t) {
+                    UtilLog.log(Level.SEVERE, "Failed to write snapshot of table " + this.table.getName() + "!", t);
+                }
+            }, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Path getPath(long generation, String suffix) {
+        return this.directory.resolve(this.table.getName() + "." + generation + suffix);
+    }
+
+    private NavigableMap<Long, Path> list(String suffix) throws IOException {
+        NavigableMap<Long, Path> files = Maps.newTreeMap();
+        String prefix = this.table.getName() + ".";
+
+        try (Stream<Path> stream = Files.list(this.directory)) {
+            stream.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+                    return;
+                }
+
+                String generation = name.substring(prefix.length(), name.length() - suffix.length());
+                if (!generation.isEmpty() && generation.chars().allMatch(Character::isDigit)) {
+                    files.put(Long.parseLong(generation), path);
+                }
+            });
+        }
+
+        return files;
+    }
+
+    private void deleteBefore(long generation) throws IOException {
+        for (Path path : this.list(SNAPSHOT_SUFFIX).headMap(generation, false).values()) {
+            Files.deleteIfExists(path);
+        }
+
+        for (Path path : this.list(LOG_SUFFIX).headMap(generation, false).values()) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.connection.memory.store.ColumnarRowStore;
+import org.tanberg.easydb.connection.memory.store.HeapRowStore;
+import org.tanberg.easydb.connection.memory.store.OffHeapRowStore;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.connection.memory.store.StringDictionary;
+import org.tanberg.easydb.field.PersistentField;
+
+import java.util.Arrays;
+
+/**
+ * The different ways a {@link MemoryTable memory table} may lay out its rows in memory.
+ *
+ * @see MemoryOptions
+ */
+public enum MemoryLayout {
+    /**
+     * Every row is kept as an array of objects. Cheap to read and write whole rows.
+     */
+    ROWS {
+        @Override
+        public RowStore newStore(PersistentField<?>[] fields, StringDictionary[] dictionaries) {
+            return new HeapRowStore(dictionaries);
+        }
+    },
+    /**
+     * Every field is kept in its own column, with primitive values stored in primitive
+     * arrays. Uses less memory for primitive heavy items, and speeds up scans that
+     * compare primitive values.
+     */
+    COLUMNS {
+        @Override
+        public RowStore newStore(PersistentField<?>[] fields, StringDictionary[] dictionaries) {
+            return new ColumnarRowStore(fields, dictionaries);
+        }
+    },
+    /**
+     * Every row is serialized and kept in off-heap memory, as is the index of the keys
+     * unless the keys are {@link org.tanberg.easydb.Key#ordered() ordered}. Keeps the
+     * heap small for very large tables, at the cost of deserializing every value read.
+     */
+    OFF_HEAP {
+        @Override
+        public RowStore newStore(PersistentField<?>[] fields, StringDictionary[] dictionaries) {
+            return new OffHeapRowStore(fields, dictionaries);
+        }
+
+        @Override
+        public PrimaryKeyIndex newKeyIndex(RowStore store, PersistentField<?>[] keys, int[] keyColumns) {
+            if (isOrdered(keys)) {
+                return super.newKeyIndex(store, keys, keyColumns);
+            }
+
+            return new OffHeapPrimaryKeyIndex(store, keyColumns);
+        }
+    };
+
+    /**
+     * Creates a new, empty {@link RowStore store} using this layout.
+     *
+     * @param fields       The stored fields, one for each column
+     * @param dictionaries The dictionary of every column, or null for columns that are not
+     *                     {@link MemoryOptions#dictionaryEncoded() dictionary encoded}
+     * @return The store
+     */
+    public abstract RowStore newStore(PersistentField<?>[] fields, StringDictionary[] dictionaries);
+
+    /**
+     * Creates a new, empty {@link PrimaryKeyIndex index} of the keys in the given store.
+     * Unless ordered, the index is chosen by the {@link KeyType type} of the keys.
+     *
+     * @param store      The store holding the rows
+     * @param keys       The key fields
+     * @param keyColumns The columns holding the key values, in key order
+     * @return The index
+     */
+    public PrimaryKeyIndex newKeyIndex(RowStore store, PersistentField<?>[] keys, int[] keyColumns) {
+        if (isOrdered(keys)) {
+            return new HeapPrimaryKeyIndex(true);
+        }
+
+        return KeyType.of(keys).newIndex();
+    }
+
+    // Internals
+
+    private static boolean isOrdered(PersistentField<?>[] keys) {
+        return Arrays.stream(keys).anyMatch(PersistentField::isOrderedKey);
+    }
+}
@@ -0,0 +1,83 @@
+package org.tanberg.easydb.connection.memory;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Annotate an item class with this to change how it is stored when using
+ * {@link org.tanberg.easydb.DatabaseType#MEMORY memory storage}. Has no effect
+ * on other types of databases.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MemoryOptions {
+
+    /**
+     * @return The {@link MemoryLayout layout} of the rows of this item
+     */
+    MemoryLayout layout() default MemoryLayout.ROWS;
+
+    /**
+     * @return How long rows are kept after they were last saved, in {@link #timeToLiveUnit()},
+     * or 0 to keep them until deleted. May be changed for a single save using
+     * {@link org.tanberg.easydb.query.QueryBuilder#expireAfter(long, TimeUnit)}.
+     */
+    long timeToLive() default 0;
+
+    TimeUnit timeToLiveUnit() default TimeUnit.SECONDS;
+
+    /**
+     * @return The maximum estimated size of the rows of this item, in bytes, or 0
+     * for no maximum. Once exceeded, the rows least likely to be used again are
+     * evicted.
+     * @see RowWeigher
+     */
+    long maximumWeight() default 0;
+
+    /**
+     * @return If rows over the {@link #maximumWeight() maximum weight} are moved to a
+     * file on disk instead of being evicted. Spilled rows are still found by queries,
+     * and are moved back to the heap when read by their key.
+     * @see SpillFile
+     */
+    boolean spill() default false;
+
+    /**
+     * @return The directory to keep the file of spilled rows in, or empty for the
+     * temporary directory of the system
+     */
+    String spillDirectory() default "";
+
+    /**
+     * @return The number of rows added at a time to an index created on a table with
+     * rows in it. The rows are added in the background, pausing between every batch.
+     * @see IndexBuild
+     */
+    int indexBuildBatchSize() default 1000;
+
+    /**
+     * @return How long to pause between the batches of an {@link IndexBuild index build},
+     * in milliseconds
+     */
+    long indexBuildPauseMillis() default 10;
+
+    /**
+     * @return The names of the {@link org.tanberg.easydb.DataType#STRING string} fields
+     * to keep as codes in a dictionary shared by the table, instead of as a string per
+     * row. Meant for fields with few distinct values. Strings are removed from the
+     * dictionary once no row version holds them anymore.
+     * @see org.tanberg.easydb.connection.memory.store.StringDictionary
+     */
+    String[] dictionaryEncoded() default {};
+
+    /**
+     * @return The number of segments to split the rows of this item over by the hash
+     * of their key, or 1 to keep them in a single table. Writes to different segments
+     * are made in parallel, while queries not for a single key read every segment.
+     * @see SegmentedMemoryTable
+     */
+    int segments() default 1;
+}
@@ -0,0 +1,261 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.util.UtilCompare;
+import org.tanberg.easydb.util.ValueContainer;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+
+/**
+ * A range of values for the first values of the {@link ValueContainer containers}
+ * in an ordered map, built from the requirements on the leading fields. Used to only
+ * look at the part of an ordered map that can possibly match a query.
+ * <p>
+ * A range is made of a prefix of values required to be equal, followed by a range
+ * of values for the next field. For a composite key of (a, b, c), a query with
+ * a = 1 and b > 2 gives a prefix of [1] and a range of (2, ...) for b.
+ */
+public class MemoryRange {
+
+    /**
+     * Creates a range from all the requirements on the given field. Requirements on
+     * other fields, and operators that can not be expressed as a range, are ignored.
+     *
+     * @param field        The field the range is on
+     * @param requirements The requirements
+     * @return The range
+     */
+    public static MemoryRange of(PersistentField<?> field, Collection<SimpleRequirement> requirements) {
+        return of(new PersistentField[]{field}, requirements);
+    }
+
+    /**
+     * Creates a range from the requirements on the leading fields of a composite key.
+     * The range covers the longest run of fields required to be equal, and a range on
+     * the field after them. Requirements on any other fields are ignored.
+     *
+     * @param fields       The fields of the key, in order
+     * @param requirements The requirements
+     * @return The range
+     */
+    public static MemoryRange of(PersistentField<?>[] fields, Collection<SimpleRequirement> requirements) {
+        List<Object> prefix = Lists.newArrayList();
+        for (PersistentField<?> field : fields) {
+            SimpleRequirement equal = requirements.stream()
+              .filter(requirement -> requirement.getField().equals(field) && requirement.getOperator() == Operator.EQUALS)
+              .findFirst().orElse(null);
+            if (equal == null) {
+                break;
+            }
+
+            prefix.add(equal.getValue());
+        }
+
+        MemoryRange range = new MemoryRange(prefix.toArray());
+        if (prefix.size() == fields.length) {
+            return range;
+        }
+
+        PersistentField<?> field = fields[prefix.size()];
+        for (SimpleRequirement requirement : requirements) {
+            if (!requirement.getField().equals(field)) {
+                continue;
+            }
+
+            Object value = requirement.getValue();
+            switch (requirement.getOperator()) {
+                case EQUALS:
+                    range.lower(value, true);
+                    range.upper(value, true);
+                    break;
+                case GREATER_THAN:
+                    range.lower(value, false);
+                    break;
+                case GREATER_THAN_OR_EQUAL_TO:
+                    range.lower(value, true);
+                    break;
+                case LESS_THAN:
+                    range.upper(value, false);
+                    break;
+                case LESS_THAN_OR_EQUAL_TO:
+                    range.upper(value, true);
+                    break;
+                case STARTS_WITH:
+                    // Strings starting with a prefix are ordered from the prefix up to the first string after all of them
+                    range.lower(value, true);
+                    String end = getPrefixEnd((String) value);
+                    if (end != null) {
+                        range.upper(end, false);
+                    }
+                    break;
+            }
+        }
+
+        return range;
+    }
+
+    private final Object[] prefix;
+
+    private boolean hasLower;
+    private Object lower;
+    private boolean lowerInclusive;
+
+    private boolean hasUpper;
+    private Object upper;
+    private boolean upperInclusive;
+
+    private MemoryRange(Object[] prefix) {
+        this.prefix = prefix;
+    }
+
+    public boolean isBounded() {
+        return this.prefix.length > 0 || this.hasLower || this.hasUpper;
+    }
+
+    /**
+     * @param container The container
+     * @return If the first values of the given container are within this range
+     */
+    public boolean contains(ValueContainer container) {
+        Object[] values = container.getValues();
+        if (!this.hasPrefix(values)) {
+            return false;
+        }
+
+        if (values.length == this.prefix.length) {
+            return !this.hasLower && !this.hasUpper;
+        }
+
+        Object value = values[this.prefix.length];
+        if (this.hasLower) {
+            int result = UtilCompare.compare(value, this.lower);
+            if (result < 0 || (result == 0 && !this.lowerInclusive)) {
+                return false;
+            }
+        }
+
+        if (this.hasUpper) {
+            int result = UtilCompare.compare(value, this.upper);
+            return result < 0 || (result == 0 && this.upperInclusive);
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds all the entries of the given map where the first values of the key are
+     * within this range. Only the entries within the range, and those sharing a bound
+     * value, are looked at.
+     *
+     * @param map The map
+     * @param <V> The value type of the map
+     * @return The entries within this range
+     */
+    public <V> List<Entry<ValueContainer, V>> entries(NavigableMap<ValueContainer, V> map) {
+        // A container only holding the lower bound is ordered before all other containers
+        // starting with those values, so this includes composite keys with the same first values
+        Object[] start = this.hasLower ? ArrayUtils.add(this.prefix, this.lower) : this.prefix;
+        NavigableMap<ValueContainer, V> tail = start.length == 0 ? map : map.tailMap(new ValueContainer(start), true);
+
+        List<Entry<ValueContainer, V>> entries = Lists.newArrayList();
+        for (Entry<ValueContainer, V> entry : tail.entrySet()) {
+            Object[] values = entry.getKey().getValues();
+            if (!this.hasPrefix(values)) {
+                break;
+            }
+
+            if (values.length == this.prefix.length) {
+                // Only matches without a range on the next value
+                if (!this.hasLower && !this.hasUpper) {
+                    entries.add(entry);
+                }
+
+                continue;
+            }
+
+            Object value = values[this.prefix.length];
+            if (this.hasLower && !this.lowerInclusive && UtilCompare.compare(value, this.lower) == 0) {
+                continue;
+            }
+
+            if (this.hasUpper) {
+                int result = UtilCompare.compare(value, this.upper);
+                if (result > 0 || (result == 0 && !this.upperInclusive)) {
+                    break;
+                }
+            }
+
+            entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    /**
+     * @param prefix The prefix
+     * @return The first string ordered after every string starting with the given
+     * prefix, or null if there is none
+     */
+    public static String getPrefixEnd(String prefix) {
+        // Characters that can not be increased are dropped, as no string comes between
+        int length = prefix.length();
+        while (length > 0 && prefix.charAt(length - 1) == Character.MAX_VALUE) {
+            length--;
+        }
+
+        if (length == 0) {
+            return null;
+        }
+
+        return prefix.substring(0, length - 1) + (char) (prefix.charAt(length - 1) + 1);
+    }
+
+    // Internals
+
+    private boolean hasPrefix(Object[] values) {
+        if (values.length < this.prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < this.prefix.length; i++) {
+            if (UtilCompare.compare(values[i], this.prefix[i]) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void lower(Object value, boolean inclusive) {
+        if (this.hasLower) {
+            int result = UtilCompare.compare(value, this.lower);
+            if (result < 0 || (result == 0 && inclusive)) {
+                return; // Current bound is tighter
+            }
+        }
+
+        this.hasLower = true;
+        this.lower = value;
+        this.lowerInclusive = inclusive;
+    }
+
+    private void upper(Object value, boolean inclusive) {
+        if (this.hasUpper) {
+            int result = UtilCompare.compare(value, this.upper);
+            if (result > 0 || (result == 0 && inclusive)) {
+                return; // Current bound is tighter
+            }
+        }
+
+        this.hasUpper = true;
+        this.upper = value;
+        this.upperInclusive = inclusive;
+    }
+}
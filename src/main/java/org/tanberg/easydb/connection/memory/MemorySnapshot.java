@@ -0,0 +1,340 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowCodec;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.exception.PersistenceException;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * A compact copy of the contents of a {@link MemoryTable memory table}, including its
+ * {@link MemoryIndexMap index maps}, written to and read from memory-mapped files.
+ * Rows are written in order and referred to by their position in the snapshot, so
+ * that the index maps can be restored directly instead of being rebuilt row by row.
+ * The header describes every index written, and indices not matching the indices of
+ * the table when restoring are rebuilt instead.
+ */
+public class MemorySnapshot {
+
+    private static final int MAGIC = 0x45444253;
+    private static final int VERSION = 2;
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    private final int fingerprint;
+    private final int autoIncrement;
+    private final List<byte[]> rows;
+    private final int[] definitions;
+    private final List<List<IndexEntry>> indices;
+    private final long size;
+
+    private MemorySnapshot(int fingerprint, int autoIncrement, List<byte[]> rows, int[] definitions,
+                           List<List<IndexEntry>> indices) {
+        this.fingerprint = fingerprint;
+        this.autoIncrement = autoIncrement;
+        this.rows = rows;
+        this.definitions = definitions;
+        this.indices = indices;
+
+        long size = 24 + 4L * definitions.length;
+        for (byte[] row : rows) {
+            size += 4 + row.length;
+        }
+
+        for (List<IndexEntry> entries : indices) {
+            size += 4;
+            for (IndexEntry entry : entries) {
+                size += 8 + entry.value.length + 4L * entry.rows.length;
+            }
+        }
+
+        this.size = size;
+    }
+
+    /**
+     * Copies the contents of the given table, as seen by readers of the given version.
+     * The version must be {@link CommitClock#beginRead() read} while this is running.
+     *
+     * @param table       The table
+     * @param fingerprint Identifies the layout of the rows
+     * @param version     The version
+     * @return The snapshot
+     */
+    public static <T> MemorySnapshot capture(MemoryTable<T> table, int fingerprint, long version) {
+        RowStore store = table.getStore();
+        RowCodec codec = new RowCodec(table.getProfile().getStoredFields());
+
+        int[] rowIds = table.getVisibleRows(version);
+        int capacity = 0;
+        for (int row : rowIds) {
+            capacity = Math.max(capacity, row + 1);
+        }
+
+        int[] positions = new int[capacity];
+        Arrays.fill(positions, -1);
+        List<byte[]> rows = Lists.newArrayListWithCapacity(rowIds.length);
+        for (int i = 0; i < rowIds.length; i++) {
+            positions[rowIds[i]] = i;
+            rows.add(codec.encode(store.read(rowIds[i])));
+        }
+
+        List<List<IndexEntry>> indices = Lists.newArrayList();
+        List<byte[]> spilled = table.copySpilled(version);
+        if (!spilled.isEmpty()) {
+            // Spilled rows are not in the index maps, so the indices are left out and rebuilt on restore
+            rows.addAll(spilled);
+            return new MemorySnapshot(fingerprint, table.getAutoIncrement(), rows, new int[0], indices);
+        }
+
+        WrappedIndex<T>[] tableIndices = table.getProfile().getIndices();
+        int[] definitions = new int[tableIndices.length];
+        for (int i = 0; i < tableIndices.length; i++) {
+            WrappedIndex<T> index = tableIndices[i];
+            definitions[i] = define(index);
+            RowCodec indexCodec = new RowCodec(index.getFields());
+            List<IndexEntry> entries = Lists.newArrayList();
+            for (Entry<ValueContainer, List<Integer>> entry : table.getIndexMap(index).copy().entrySet()) {
+                // The index maps also hold versions of rows not visible in this version
+                int[] indexRows = entry.getValue().stream()
+                  .mapToInt(row -> row < positions.length ? positions[row] : -1)
+                  .filter(position -> position != -1)
+                  .toArray();
+                if (indexRows.length == 0) {
+                    continue;
+                }
+
+                entries.add(new IndexEntry(indexCodec.encode(entry.getKey().getValues()), indexRows));
+            }
+
+            indices.add(entries);
+        }
+
+        return new MemorySnapshot(fingerprint, table.getAutoIncrement(), rows, definitions, indices);
+    }
+
+    /**
+     * Writes this snapshot to the given file. The snapshot is first written to a
+     * temporary file, which then replaces the given file, so the file is never left
+     * partially written.
+     *
+     * @param path The file
+     */
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedOutput out = new MappedOutput(channel, this.size);
+            out.ensure(24).putInt(MAGIC).putInt(VERSION).putInt(this.fingerprint).putInt(this.autoIncrement)
+              .putInt(this.rows.size()).putInt(this.indices.size());
+            for (int definition : this.definitions) {
+                out.ensure(4).putInt(definition);
+            }
+
+            for (byte[] row : this.rows) {
+                out.ensure(4 + row.length).putInt(row.length).put(row);
+            }
+
+            for (List<IndexEntry> entries : this.indices) {
+                out.ensure(4).putInt(entries.size());
+                for (IndexEntry entry : entries) {
+                    out.ensure(4 + entry.value.length).putInt(entry.value.length).put(entry.value);
+                    out.ensure(4).putInt(entry.rows.length);
+                    for (int row : entry.rows) {
+                        out.ensure(4).putInt(row);
+                    }
+                }
+            }
+
+            out.finish();
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the contents of the given table with the snapshot in the given file.
+     *
+     * @param path        The file
+     * @param fingerprint The fingerprint the snapshot is expected to have
+     * @param table       The table
+     */
+    public static <T> void restore(Path path, int fingerprint, MemoryTable<T> table) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            ByteBuffer header = in.ensure(24);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new PersistenceException(path + " is not a snapshot!");
+            }
+
+            if (header.getInt() != fingerprint) {
+                throw new PersistenceException("Snapshot " + path + " was written for a different version of the item!");
+            }
+
+            int autoIncrement = header.getInt();
+            int rowCount = header.getInt();
+            int indexCount = header.getInt();
+
+            // The indices written, following the header
+            int[] definitions = new int[indexCount];
+            for (int i = 0; i < indexCount; i++) {
+                definitions[i] = in.ensure(4).getInt();
+            }
+
+            table.clear();
+            table.setAutoIncrement(autoIncrement);
+
+            RowCodec codec = new RowCodec(table.getProfile().getStoredFields());
+            int[] rowIds = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rowIds[i] = table.restore(decode(in, codec));
+            }
+
+            WrappedIndex<T>[] indices = table.getProfile().getIndices();
+            if (!Arrays.equals(definitions, Arrays.stream(indices).mapToInt(MemorySnapshot::define).toArray())) {
+                // Indices were changed without changing the fingerprint, or left out, so they have to be rebuilt
+                table.rebuildIndices();
+                return;
+            }
+
+            for (WrappedIndex<T> index : indices) {
+                RowCodec indexCodec = new RowCodec(index.getFields());
+                MemoryIndexMap<T> indexMap = table.getIndexMap(index);
+
+                int entryCount = in.ensure(4).getInt();
+                for (int i = 0; i < entryCount; i++) {
+                    ValueContainer value = new ValueContainer(decode(in, indexCodec));
+                    int count = in.ensure(4).getInt();
+                    List<Integer> rows = Lists.newArrayListWithCapacity(count);
+                    for (int j = 0; j < count; j++) {
+                        rows.add(rowIds[in.ensure(4).getInt()]);
+                    }
+
+                    indexMap.restore(value, rows);
+                }
+            }
+        }
+    }
+
+    // Internals
+
+    /**
+     * @return Identifies the kind and fields of the given index, which decide how its
+     * values are written
+     */
+    private static int define(WrappedIndex<?> index) {
+        return Arrays.hashCode(new Object[]{index.getId(), index.isUnique(), index.getType().name(),
+          Arrays.hashCode(Arrays.stream(index.getFields()).map(field -> field.getName() + ":" + field.getType()).toArray())});
+    }
+
+    private static Object[] decode(MappedInput in, RowCodec codec) throws IOException {
+        ByteBuffer buffer = in.ensure(4 + in.peekInt());
+        int length = buffer.getInt();
+        Object[] values = codec.decode(buffer, buffer.position());
+        buffer.position(buffer.position() + length);
+        return values;
+    }
+
+    private static class IndexEntry {
+
+        private final byte[] value;
+        private final int[] rows;
+
+        private IndexEntry(byte[] value, int[] rows) {
+            this.value = value;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Writes to a file through a sliding memory-mapped window, as a single mapping is
+     * limited to 2 GB.
+     */
+    private static class MappedOutput {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        private MappedOutput(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (this.window != null && this.window.remaining() >= bytes) {
+                return this.window;
+            }
+
+            long start = 0;
+            if (this.window != null) {
+                start = this.windowStart + this.window.position();
+                this.window.force();
+            }
+
+            long length = Math.max(bytes, Math.min(WINDOW_SIZE, this.size - start));
+            this.window = this.channel.map(MapMode.READ_WRITE, start, length);
+            this.windowStart = start;
+            return this.window;
+        }
+
+        private void finish() throws IOException {
+            if (this.window != null) {
+                this.window.force();
+            }
+
+            this.channel.force(true);
+        }
+    }
+
+    /**
+     * Reads a file through a sliding memory-mapped window. Every call to {@link #ensure(int)}
+     * returns a buffer with at least the given number of bytes remaining.
+     */
+    private static class MappedInput {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        private MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        private int peekInt() throws IOException {
+            ByteBuffer buffer = this.ensure(4);
+            return buffer.getInt(buffer.position());
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (this.window != null && this.window.remaining() >= bytes) {
+                return this.window;
+            }
+
+            long start = this.window == null ? 0 : this.windowStart + this.window.position();
+            if (start + bytes > this.size) {
+                throw new PersistenceException("Unexpected end of snapshot!");
+            }
+
+            long length = Math.max(bytes, Math.min(WINDOW_SIZE, this.size - start));
+            this.window = this.channel.map(MapMode.READ_ONLY, start, length);
+            this.windowStart = start;
+            return this.window;
+        }
+    }
+}
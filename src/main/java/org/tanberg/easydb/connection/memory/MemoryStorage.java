@@ -0,0 +1,181 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The items of a repository kept in memory, either in a single {@link MemoryTable}
+ * or split over the segments of a {@link SegmentedMemoryTable}.
+ *
+ * @param <T> The type of the items
+ */
+public interface MemoryStorage<T> {
+
+    String getName();
+
+    ItemProfile<T> getProfile();
+
+    /**
+     * @return The tables keeping the items
+     */
+    List<MemoryTable<T>> getTables();
+
+    UnsafeMemoryAccessor<T> getUnsafeAccessor();
+
+    /**
+     * @return The number of bytes of off-heap memory used
+     */
+    long getOffHeapUsage();
+
+    /**
+     * @return The share of writes that had to wait for another write to a key guarded
+     * by the same lock, between 0 and 1
+     */
+    double getLockContention();
+
+    /**
+     * @return The number of rows found by reads
+     */
+    long getHits();
+
+    /**
+     * @return The number of reads that found no rows
+     */
+    long getMisses();
+
+    /**
+     * @return The number of rows evicted to stay within the {@link MemoryOptions#maximumWeight() maximum weight}
+     */
+    long getEvictions();
+
+    /**
+     * @return The number of rows {@link MemoryOptions#spill() spilled} to disk rather than kept on the heap
+     */
+    int getSpilledRows();
+
+    /**
+     * @return The estimated size of the rows, in bytes, or 0 if there is no maximum weight
+     */
+    long getWeight();
+
+    FieldValue<T>[] findFirst(QueryRequirement requirement);
+
+    /**
+     * Same as {@link #findFirst(QueryRequirement)}, but gives the values of the row as
+     * stored, in the order of the {@link ItemProfile#getStoredFields() stored fields}.
+     * The array may be shared with the store, and must not be changed.
+     */
+    Object[] findFirstRow(QueryRequirement requirement);
+
+    List<FieldValue<T>[]> findAll(QueryRequirement requirement);
+
+    /**
+     * Same as {@link #findAll(QueryRequirement)}, but hands the values of every row
+     * as stored, in the order of the {@link ItemProfile#getStoredFields() stored fields},
+     * to the given function. The arrays may be shared with the store, and must not be
+     * changed.
+     *
+     * @param mapper The function creating the results from the rows
+     * @return The results
+     */
+    <R> List<R> findAll(QueryRequirement requirement, Function<Object[], R> mapper);
+
+    /**
+     * Finds the values of the given fields of every row matching the given requirement.
+     * If the fields, and the fields of the requirement, are all part of a single index,
+     * the values are read from the index alone, without reading the rows.
+     *
+     * @param fields The fields
+     * @return The values of the fields of every row, in the order of the given fields
+     */
+    List<Object[]> findValues(QueryRequirement requirement, PersistentField<T>[] fields);
+
+    /**
+     * Counts the rows matching the given requirement. If the fields of the requirement
+     * are all part of a single index, the rows are counted from the index alone.
+     *
+     * @return The number of rows
+     */
+    long count(QueryRequirement requirement);
+
+    void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement);
+
+    /**
+     * Saves the given values, deleting the rows saved once the given time has passed.
+     *
+     * @param timeToLive How long to keep the rows saved, in milliseconds, or 0 to use
+     *                   the {@link MemoryOptions#timeToLive() default} of the item
+     */
+    void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement, long timeToLive);
+
+    void delete(QueryRequirement requirement);
+
+    void drop();
+
+    boolean isSearchable(PersistentField<T> field);
+
+    /**
+     * Creates a view of the rows matching the given requirement, kept up to date as
+     * rows are saved and deleted.
+     *
+     * @param name        The name of the view
+     * @param requirement The requirement of the rows in the view
+     * @param groupBy     The field to group the rows by, or null to not group them
+     * @param summed      The numeric fields to sum over the rows of every group
+     * @return The view
+     * @throws IllegalArgumentException If there already is a view with the given name
+     */
+    MemoryView<T> createView(String name, QueryRequirement requirement, PersistentField<T> groupBy, PersistentField<T>... summed);
+
+    /**
+     * @return The view with the given name, or null if there is none
+     */
+    MemoryView<T> getView(String name);
+
+    void dropView(String name);
+
+    /**
+     * Creates an index, in addition to the indices of the profile, which may be partial
+     * or index computed values.
+     *
+     * @param index The index
+     * @throws IllegalArgumentException If there already is such an index
+     * @see MemoryTable#createIndex(WrappedIndex)
+     */
+    void createIndex(WrappedIndex<T> index);
+
+    /**
+     * Drops an index created by {@link #createIndex(WrappedIndex)}, cancelling its build
+     * if it is not done.
+     */
+    void dropIndex(WrappedIndex<T> index);
+
+    /**
+     * @return The builds of the indices created on this table, including those already built
+     * @see IndexBuild
+     */
+    List<IndexBuild<T>> getIndexBuilds();
+
+    /**
+     * Stops the background work of this table, cancelling the builds of created indices
+     * that are not done, and stopping the thread running them. Indices created
+     * afterwards are never built.
+     *
+     * @see MemoryDatabase#close()
+     */
+    void close();
+
+    /**
+     * Finds the rows with the given values, as held by the given index.
+     *
+     * @see MemoryTable#findByIndex(WrappedIndex, Object[], Function)
+     */
+    <R> List<R> findByIndex(WrappedIndex<T> index, Object[] values, Function<Object[], R> mapper);
+}
@@ -1,288 +1,1488 @@
 package org.tanberg.easydb.connection.memory;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
 import org.apache.commons.lang3.ArrayUtils;
+import org.tanberg.easydb.DataType;
 import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowCodec;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.connection.memory.store.RowVersions;
+import org.tanberg.easydb.connection.memory.store.StringDictionary;
 import org.tanberg.easydb.exception.DropException;
 import org.tanberg.easydb.field.FieldValue;
 import org.tanberg.easydb.field.PersistentField;
 import org.tanberg.easydb.profile.ItemProfile;
-import org.tanberg.easydb.query.Operator;
 import org.tanberg.easydb.query.req.QueryRequirement;
-import org.tanberg.easydb.query.req.SimpleRequirement;
-import org.tanberg.easydb.query.traverse.RequirementCase;
-import org.tanberg.easydb.query.traverse.RequirementTraverser;
-import org.tanberg.easydb.util.IndexHelper;
 import org.tanberg.easydb.util.ValueContainer;
 import org.tanberg.easydb.util.ValueHelper;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-public class MemoryTable<T> {
+/**
+ * A table of items kept in memory.
+ * <p>
+ * Rows are never changed once written. Changing a row instead writes a new version
+ * of it, stamped with a version from the {@link CommitClock commit clock}, and marks
+ * the old version as deleted. Readers read the latest committed version, and only
+ * see rows visible in that version, so they never see changes that are only partially
+ * applied and never wait for writers. Old versions are removed once no reader can
+ * see them anymore.
+ * <p>
+ * Writers lock the keys they change, using {@link LockStripes lock striping}, so that
+ * changes to unrelated keys are made in parallel.
+ * <p>
+ * Rows may be given a {@link MemoryOptions#timeToLive() time to live}. Their keys are
+ * then kept by the {@link RowExpiry expiry} of the table, which deletes them once
+ * expired, looking only at the rows expiring.
+ * <p>
+ * Tables may be given a {@link MemoryOptions#maximumWeight() maximum weight}, in
+ * estimated bytes. Rows are then evicted once it is exceeded, as decided by the
+ * {@link RowEviction eviction} of the table, or moved to a {@link SpillManager spill
+ * file} if the table {@link MemoryOptions#spill() spills}.
+ * <p>
+ * Rows are found by the {@link RowFinder finder} of the table, in the index maps kept
+ * by its {@link IndexRegistry index registry} where possible.
+ */
+public class MemoryTable<T> implements MemoryStorage<T> {
+
+    private static final int STRIPES = Runtime.getRuntime().availableProcessors() * 16;
 
     private final String name;
     private final AtomicInteger autoIncrement;
+    // If a segment of a segmented table, which then hands out auto increment values
+    private final boolean segment;
     private final ItemProfile<T> profile;
-    private final Map<ValueContainer, ValueContainer> keyToValueMap;
-    private final Map<WrappedIndex<T>, MemoryIndexMap<T>> indexMaps;
+    private final int[] keyColumns;
+    private final RowStore store;
+    // The dictionary of every column, or null for columns not dictionary encoded
+    private final StringDictionary[] dictionaries;
+    private final RowVersions versions;
+    private final CommitClock clock;
+    private final PrimaryKeyIndex keyIndex;
+    private final IndexRegistry<T> indices;
+    private final ViewRegistry<T> views;
+    private final RowScanner<T> scanner;
+    private final RowFinder<T> finder;
     private final UnsafeMemoryAccessor<T> unsafeAccessor;
+    private final LockStripes locks;
+    private final Lock vacuumLock;
+    // Deleted rows, waiting until they are no longer visible to any reader
+    private final Queue<Integer> retiredRows;
+    // Rows no longer reachable by new readers, waiting for current readers to finish
+    private final Deque<Integer> unlinkedRows;
+    private final Deque<Long> unlinkedVersions;
+    private final RowExpiry expiry;
+    private final RowEviction eviction;
+    // Rows over the maximum weight, if kept on disk instead of evicted
+    private final SpillManager<T> spill;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private volatile MemoryJournal<T> journal;
 
     public MemoryTable(String name, ItemProfile<T> profile) {
+        this(name, profile, 1);
+    }
+
+    /**
+     * @param segments The number of segments of the {@link SegmentedMemoryTable segmented
+     *                 table} this is a segment of, sharing the maximum weight, or 1 if
+     *                 not a segment
+     */
+    MemoryTable(String name, ItemProfile<T> profile, int segments) {
         this.name = name;
         this.profile = profile;
+        this.segment = segments > 1;
+
+        PersistentField<T>[] keys = profile.getKeys();
+        this.keyColumns = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            this.keyColumns[i] = ArrayUtils.indexOf(profile.getStoredFields(), keys[i]);
+        }
+
+        MemoryOptions options = profile.getTypeClass().getAnnotation(MemoryOptions.class);
+        MemoryLayout layout = options == null ? MemoryLayout.ROWS : options.layout();
+        this.dictionaries = this.createDictionaries(options);
+        this.store = layout.newStore(profile.getStoredFields(), this.dictionaries);
+        this.versions = new RowVersions();
+        this.clock = new CommitClock();
+        this.keyIndex = layout.newKeyIndex(this.store, keys, this.keyColumns);
 
-        this.keyToValueMap = Maps.newConcurrentMap();
-        this.indexMaps = Maps.newConcurrentMap();
-        this.unsafeAccessor = new UnsafeMemoryAccessor<>(this.keyToValueMap, this.indexMaps);
+        this.indices = new IndexRegistry<>(name, profile, this.store, this.clock, options);
+        this.views = new ViewRegistry<>();
+        this.scanner = new RowScanner<>(profile, this.store, this.versions);
+        this.finder = new RowFinder<>(profile, this.keyIndex, this.versions, this.indices, this.scanner);
+        this.unsafeAccessor = new UnsafeMemoryAccessor<>(new KeyToValueView(), this.indices.getIndexMaps());
         this.autoIncrement = new AtomicInteger(1);
+        this.locks = new LockStripes(STRIPES);
+        this.vacuumLock = new ReentrantLock();
+        this.retiredRows = new ConcurrentLinkedQueue<>();
+        this.unlinkedRows = new ArrayDeque<>();
+        this.unlinkedVersions = new ArrayDeque<>();
+        this.expiry = new RowExpiry(this, options);
 
-        for (WrappedIndex<T> index : profile.getIndices()) {
-            MemoryIndexMap<T> indexMap = new MemoryIndexMap<>(profile, index);
-            this.indexMaps.put(index, indexMap);
+        long maximumWeight = options == null ? 0 : options.maximumWeight() / segments;
+        RowWeigher weigher = new RowWeigher(profile.getStoredFields(), this.dictionaries, profile.getIndices().length);
+        this.eviction = new RowEviction(maximumWeight, weigher);
+        if (options != null && options.spill()) {
+            if (!this.eviction.isEnabled()) {
+                throw new IllegalArgumentException("Table " + name + " can only spill rows over a maximum weight!");
+            }
+
+            this.spill = new SpillManager<>(name, profile, options);
+        } else {
+            this.spill = null;
         }
+
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
     }
 
+    @Override
     public String getName() {
         return name;
     }
 
+    @Override
     public ItemProfile<T> getProfile() {
         return profile;
     }
 
+    @Override
+    public List<MemoryTable<T>> getTables() {
+        return Collections.singletonList(this);
+    }
+
+    @Override
     public UnsafeMemoryAccessor<T> getUnsafeAccessor() {
         return unsafeAccessor;
     }
 
+    /**
+     * @return The {@link MemoryJournal journal} keeping this table durable, or null if not durable
+     */
+    public MemoryJournal<T> getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return The number of bytes of off-heap memory used by this table
+     */
+    @Override
+    public long getOffHeapUsage() {
+        return this.store.getOffHeapBytes() + this.keyIndex.getOffHeapBytes();
+    }
+
+    /**
+     * @return The locks held by writers of this table, keeping track of how often writers collide
+     */
+    public LockStripes getLocks() {
+        return locks;
+    }
+
+    @Override
+    public double getLockContention() {
+        return this.locks.getContention();
+    }
+
+    /**
+     * @return The number of rows waiting to expire
+     */
+    public int getExpiringRows() {
+        return this.expiry.size();
+    }
+
+    /**
+     * @return The number of distinct strings kept by the dictionary of this table, or 0
+     * if no fields are {@link MemoryOptions#dictionaryEncoded() dictionary encoded}
+     */
+    public int getDictionarySize() {
+        return Arrays.stream(this.dictionaries)
+          .filter(Objects::nonNull)
+          .findFirst()
+          .map(StringDictionary::size)
+          .orElse(0);
+    }
+
+    /**
+     * @return The number of rows found by reads of this table
+     */
+    @Override
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return The number of reads of this table that found no rows
+     */
+    @Override
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return The number of rows evicted to keep this table within its maximum weight
+     */
+    @Override
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return The number of rows kept in the spill file of this table, rather than on the heap
+     */
+    @Override
+    public int getSpilledRows() {
+        return this.spill == null ? 0 : this.spill.size();
+    }
+
+    /**
+     * @return The maximum weight of this table, in bytes, or 0 if it has none
+     */
+    public long getMaximumWeight() {
+        return this.eviction.getMaximum();
+    }
+
+    /**
+     * @return The estimated size of the rows of this table, in bytes, or 0 if it has no maximum weight
+     */
+    @Override
+    public long getWeight() {
+        return this.eviction.getWeight();
+    }
+
+    @Override
     public FieldValue<T>[] findFirst(QueryRequirement requirement) {
-        if (requirement == null) {
-            ValueContainer container = Iterables.getFirst(this.keyToValueMap.values(), null);
-            if (container == null) {
-                return null;
+        Object[] row = this.findFirstRow(requirement);
+        return row == null ? null : this.toValues(row);
+    }
+
+    @Override
+    public Object[] findFirstRow(QueryRequirement requirement) {
+        Map<ValueContainer, Object[]> spilled = Collections.emptyMap();
+        long version = this.clock.beginRead();
+        try {
+            int row;
+            if (requirement == null) {
+                int[] rows = this.getVisibleRows(version);
+                row = rows.length == 0 ? RowVersions.NO_ROW : rows[0];
+            } else {
+                row = this.finder.getFirstRow(requirement, version);
             }
 
-            return this.toValues(container);
-        }
+            if (row == RowVersions.NO_ROW) {
+                spilled = this.findSpilled(requirement, version);
+                if (spilled.isEmpty()) {
+                    this.misses.increment();
+                    return null;
+                }
 
-        ValueContainer container = this.getFirstKey(requirement);
-        if (container == null) {
-            return null;
-        }
+                this.hits.increment();
+                return spilled.values().iterator().next();
+            }
 
-        return this.toValues(this.keyToValueMap.get(container));
+            this.recordHit(row);
+            return this.store.view(row);
+        } finally {
+            this.clock.endRead(version);
+            this.eviction.drainReadBuffer();
+            this.faultIn(requirement, spilled);
+        }
     }
 
+    @Override
     public List<FieldValue<T>[]> findAll(QueryRequirement requirement) {
-        List<FieldValue<T>[]> list = Lists.newArrayList();
-        if (requirement == null) {
-            for (ValueContainer value : this.keyToValueMap.values()) {
-                list.add(this.toValues(value));
+        return this.findAll(requirement, this::toValues);
+    }
+
+    @Override
+    public <R> List<R> findAll(QueryRequirement requirement, Function<Object[], R> mapper) {
+        Map<ValueContainer, Object[]> spilled = Collections.emptyMap();
+        long version = this.clock.beginRead();
+        try {
+            Collection<Integer> rows;
+            if (requirement == null) {
+                rows = Ints.asList(this.getVisibleRows(version));
+            } else {
+                rows = this.finder.getRows(requirement, version);
             }
-        } else {
-            for (ValueContainer key : this.getKeys(requirement)) {
-                list.add(this.toValues(this.keyToValueMap.get(key)));
+
+            List<R> list = Lists.newArrayListWithCapacity(rows.size());
+            for (int row : rows) {
+                this.recordHit(row);
+                list.add(mapper.apply(this.store.view(row)));
             }
-        }
 
-        return list;
+            spilled = this.findSpilled(requirement, version);
+            for (Object[] values : spilled.values()) {
+                this.hits.increment();
+                list.add(mapper.apply(values));
+            }
+
+            if (list.isEmpty()) {
+                this.misses.increment();
+            }
+
+            return list;
+        } finally {
+            this.clock.endRead(version);
+            this.eviction.drainReadBuffer();
+            this.faultIn(requirement, spilled);
+        }
     }
 
-    public void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement) {
-        if (requirement == null) {
-            PersistentField<T> autoIncField = this.getProfile().getAutoIncrementField();
-            if (autoIncField != null) {
-                FieldValue<T> autoIncVal = ValueHelper.getValue(values, autoIncField);
-                autoIncVal.setValue(this.autoIncrement.getAndIncrement());
+    @Override
+    public List<Object[]> findValues(QueryRequirement requirement, PersistentField<T>[] fields) {
+        long version = this.clock.beginRead();
+        try {
+            int[] columns = this.getColumns(fields);
+            List<Object[]> list = this.finder.findCovered(requirement, fields, version);
+            if (list != null) {
+                // Not recorded by the policy, as that would read the key of every row
+                this.hits.add(list.size());
+            } else {
+                Collection<Integer> rows;
+                if (requirement == null) {
+                    rows = Ints.asList(this.getVisibleRows(version));
+                } else {
+                    rows = this.finder.getRows(requirement, version);
+                }
+
+                list = Lists.newArrayListWithCapacity(rows.size());
+                for (int row : rows) {
+                    this.recordHit(row);
+                    Object[] values = new Object[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        values[i] = this.store.get(row, columns[i]);
+                    }
 
-                instance.ifPresent(value -> autoIncField.set(value, autoIncVal.getValue()));
+                    list.add(values);
+                }
             }
 
-            ValueContainer key = ValueContainer.getKeys(this.getProfile(), values);
-            this.removeFromIndices(key);
+            for (Object[] row : this.findSpilled(requirement, version).values()) {
+                this.hits.increment();
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = row[columns[i]];
+                }
 
-            ValueContainer value = this.toValues(values);
-            this.keyToValueMap.put(key, value);
-            this.addToIndices(values);
-            return;
+                list.add(values);
+            }
+
+            if (list.isEmpty()) {
+                this.misses.increment();
+            }
+
+            return list;
+        } finally {
+            this.clock.endRead(version);
+            this.eviction.drainReadBuffer();
         }
+    }
 
-        int[] indices = new int[values.length];
+    @Override
+    public long count(QueryRequirement requirement) {
+        long version = this.clock.beginRead();
+        try {
+            long spilled = this.findSpilled(requirement, version).size();
+            if (requirement == null) {
+                return this.getVisibleRows(version).length + spilled;
+            }
 
-        PersistentField<T>[] storedFields = this.getProfile().getStoredFields();
-        for (int i = 0; i < values.length; i++) {
-            indices[i] = ArrayUtils.indexOf(storedFields, values[i].getField());
+            return this.finder.count(requirement, version) + spilled;
+        } finally {
+            this.clock.endRead(version);
         }
+    }
+
+    @Override
+    public void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement) {
+        this.save(instance, values, requirement, 0);
+    }
 
-        Collection<ValueContainer> keys = this.getKeys(requirement);
-        for (ValueContainer key : keys) {
-            ValueContainer value = this.keyToValueMap.remove(key);
-            this.removeFromIndices(key);
+    @Override
+    public void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement, long timeToLive) {
+        long position = 0;
+        long deadline = this.expiry.getDeadline(timeToLive);
 
-            for (int i = 0; i < indices.length; i++) {
-                value.setValue(indices[i], values[i].getValue());
+        // Registered as a reader, so that rows found are not freed while in use
+        long read = this.clock.beginRead();
+        try {
+            if (requirement == null) {
+                position = this.insert(instance, values, deadline);
+            } else {
+                position = this.update(values, requirement, deadline);
             }
-
-            this.keyToValueMap.put(key, value);
-            this.addToIndices(this.toValues(value));
+        } finally {
+            this.clock.endRead(read);
         }
+
+        position = Math.max(position, this.evict());
+        this.vacuum();
+        this.sync(position);
     }
 
+    @Override
     public void delete(QueryRequirement requirement) {
         if (requirement == null) {
             this.drop();
             return;
         }
 
-        Collection<ValueContainer> keys = this.getKeys(requirement);
-        for (ValueContainer key : keys) {
-            ValueContainer remove = this.keyToValueMap.remove(key);
-            this.removeFromIndices(remove);
+        long position = 0;
+
+        long read = this.clock.beginRead();
+        try {
+            int[] stripes = new int[0];
+            try {
+                Collection<Integer> rows;
+                Set<ValueContainer> spilled;
+                while (true) {
+                    rows = this.finder.getRows(requirement, RowVersions.LATEST);
+                    spilled = this.findSpilled(requirement, RowVersions.LATEST).keySet();
+                    int[] required = this.locks.getStripes(Sets.union(this.getKeys(rows), spilled));
+                    if (LockStripes.containsAll(stripes, required)) {
+                        break;
+                    }
+
+                    stripes = this.relock(stripes, required);
+                }
+
+                long version = this.clock.begin();
+                try {
+                    for (int row : rows) {
+                        ValueContainer key = this.getKey(row);
+                        this.retire(row, version);
+                        this.expiry.remove(key);
+                        this.eviction.recordRemoval(key);
+                        position = this.logDelete(key);
+                    }
+
+                    for (ValueContainer key : spilled) {
+                        if (this.spill.delete(key, version)) {
+                            this.views.remove(key);
+                            this.expiry.remove(key);
+                            position = this.logDelete(key);
+                        }
+                    }
+                } finally {
+                    this.commit(version);
+                }
+            } finally {
+                this.locks.unlock(stripes);
+            }
+        } finally {
+            this.clock.endRead(read);
         }
+
+        this.vacuum();
+        this.sync(position);
     }
 
+    @Override
     public void drop() {
+        long position;
+
+        this.locks.lockAll();
         try {
-            this.keyToValueMap.clear();
-            this.indexMaps.values().forEach(MemoryIndexMap::drop);
-        } catch (Throwable t) {
-            throw new DropException(t);
+            long version = this.clock.begin();
+            try {
+                for (int row : this.getVisibleRows(RowVersions.LATEST)) {
+                    this.retire(row, version);
+                }
+
+                if (this.spill != null) {
+                    this.spill.deleteAll(version);
+                }
+
+                this.expiry.clear();
+                this.eviction.clear();
+
+                MemoryJournal<T> journal = this.journal;
+                position = journal == null ? 0 : journal.logClear();
+            } catch (Throwable t) {
+                throw new DropException(t);
+            } finally {
+                this.commit(version);
+            }
+
+            // Spilled rows are not retired one by one, so they are removed from the views here
+            if (this.spill != null) {
+                this.views.clear();
+            }
+        } finally {
+            this.locks.unlockAll();
         }
+
+        this.vacuum();
+        this.sync(position);
     }
 
+    @Override
     public boolean isSearchable(PersistentField<T> field) {
         return field.isIndex() || field.isStorageKey();
     }
 
+    @Override
+    @SafeVarargs
+    public final MemoryView<T> createView(String name, QueryRequirement requirement, PersistentField<T> groupBy, PersistentField<T>... summed) {
+        if (requirement == null) {
+            throw new IllegalArgumentException("A view must have a requirement!");
+        }
+
+        MemoryView<T> view = new MemoryView<>(name, this.getProfile(), requirement, groupBy, summed);
+
+        // Writers are blocked while the view is filled, so that no change is missed
+        this.locks.lockAll();
+        try {
+            if (this.views.contains(name)) {
+                throw new IllegalArgumentException("View " + name + " already exists!");
+            }
+
+            for (int row : this.getVisibleRows(RowVersions.LATEST)) {
+                view.put(this.getKey(row), this.store.read(row));
+            }
+
+            this.findSpilled(null, RowVersions.LATEST).forEach(view::put);
+            this.views.add(view);
+        } finally {
+            this.locks.unlockAll();
+        }
+
+        return view;
+    }
+
+    @Override
+    public MemoryView<T> getView(String name) {
+        return this.views.get(name);
+    }
+
+    @Override
+    public void dropView(String name) {
+        this.views.drop(name);
+    }
+
+    /**
+     * Creates an index of this table, in addition to the indices of the profile. The
+     * index may be {@link WrappedIndex#isPartial() partial}, only holding the rows
+     * matching its filter, and may hold values computed by an {@link
+     * WrappedIndex#getExpression() expression} rather than the values of its fields.
+     * <p>
+     * Queries use the index when they imply its filter, and it is expected to match
+     * fewer rows than the indices of the profile. Expression indices are only used for
+     * queries requiring every field of the index to be equal to a value, with the rows
+     * found checked against the query, but can be looked up by computed value with
+     * {@link #findByIndex(WrappedIndex, Object[], Function)}.
+     * <p>
+     * The rows already in this table are added to the index in the background, while
+     * writes continue, and the index is only used by queries once that is done.
+     *
+     * @param index The index
+     * @throws IllegalArgumentException If this table already has the index
+     * @see #getIndexBuild(WrappedIndex)
+     */
+    @Override
+    public void createIndex(WrappedIndex<T> index) {
+        MemoryIndexMap<T> indexMap;
+        long version;
+        int[] rows;
+        this.locks.lockAll();
+        try {
+            // Rows written from now on are added by the writers, and the rows visible now by the build
+            indexMap = this.indices.create(index);
+            // Pinned rather than read, as the build releases it on another thread
+            version = this.clock.pin();
+            rows = this.getVisibleRows(version);
+        } finally {
+            this.locks.unlockAll();
+        }
+
+        this.indices.build(indexMap, rows, version);
+    }
+
+    /**
+     * @return The build of the given index created on this table, or null if there is none
+     */
+    public IndexBuild<T> getIndexBuild(WrappedIndex<T> index) {
+        return this.indices.getBuild(index);
+    }
+
+    @Override
+    public List<IndexBuild<T>> getIndexBuilds() {
+        return this.indices.getBuilds();
+    }
+
+    /**
+     * Drops an index created by {@link #createIndex(WrappedIndex)}, stopping its build
+     * if it is not built yet.
+     *
+     * @throws IllegalArgumentException If the index was not created on this table
+     */
+    @Override
+    public void dropIndex(WrappedIndex<T> index) {
+        this.indices.drop(index);
+    }
+
+    @Override
+    public void close() {
+        this.indices.close();
+    }
+
+    /**
+     * Finds the rows with the given values in the given index. For {@link
+     * WrappedIndex#getExpression() expression} indices these are the computed values,
+     * so that an index of the names in lower case finds rows by name in any case.
+     *
+     * @param index  The index
+     * @param values The values of the fields of the index, as held by the index
+     * @param mapper Maps the values of every row, in the order of the stored fields. The
+     *               array is only valid during the call.
+     * @return The mapped rows
+     * @throws IllegalStateException If the index is created on this table and not built yet
+     */
+    @Override
+    public <R> List<R> findByIndex(WrappedIndex<T> index, Object[] values, Function<Object[], R> mapper) {
+        MemoryIndexMap<T> indexMap = this.indices.get(index);
+        if (indexMap == null) {
+            throw new IllegalArgumentException("Unknown index " + index + "!");
+        }
+
+        if (!this.indices.isBuilt(index)) {
+            throw new IllegalStateException("Index " + index + " is not built yet!");
+        }
+
+        long version = this.clock.beginRead();
+        try {
+            List<R> list = Lists.newArrayList();
+            for (int row : indexMap.getRows(new ValueContainer(values))) {
+                if (this.versions.isVisible(row, version)) {
+                    this.recordHit(row);
+                    list.add(mapper.apply(this.store.view(row)));
+                }
+            }
+
+            if (this.spill != null && !this.spill.isEmpty()) {
+                int[] columns = this.getColumns(index.getFields());
+                for (Object[] row : this.findSpilled(null, version).values()) {
+                    Object[] indexValues = new Object[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        indexValues[i] = row[columns[i]];
+                    }
+
+                    if (indexMap.accepts(row) && Arrays.equals(indexMap.compute(indexValues), values)) {
+                        this.hits.increment();
+                        list.add(mapper.apply(row));
+                    }
+                }
+            }
+
+            if (list.isEmpty()) {
+                this.misses.increment();
+            }
+
+            return list;
+        } finally {
+            this.clock.endRead(version);
+            this.eviction.drainReadBuffer();
+        }
+    }
+
+    // Used by segmented tables
+
+    /**
+     * Blocks other writers of the rows with the given keys, until {@link
+     * #unlockKeys(int[])} is called with the stripes returned. Writes to the rows may
+     * still be made by this thread meanwhile.
+     *
+     * @param rows The values of the rows
+     * @return The stripes locked
+     */
+    int[] lockKeys(List<FieldValue<T>[]> rows) {
+        int[] stripes = this.locks.getStripes(rows.stream()
+          .map(values -> this.getKey(this.toArray(values)))
+          .collect(Collectors.toList()));
+        this.locks.lock(stripes);
+        return stripes;
+    }
+
+    void unlockKeys(int[] stripes) {
+        this.locks.unlock(stripes);
+    }
+
+    // Used by the expiry
+
+    /**
+     * Deletes the rows that have expired since the last time.
+     */
+    void expire() {
+        long now = System.currentTimeMillis();
+        List<ValueContainer> keys = this.expiry.advance(now);
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long position = 0;
+        int[] stripes = this.locks.getStripes(keys);
+        this.locks.lock(stripes);
+        try {
+            long version = this.clock.begin();
+            try {
+                for (ValueContainer key : keys) {
+                    // May have been saved again with a later deadline, or deleted, since
+                    if (!this.expiry.isExpired(key, now)) {
+                        continue;
+                    }
+
+                    this.expiry.remove(key);
+                    this.eviction.recordRemoval(key);
+                    int row = this.keyIndex.get(key);
+                    if (row == PrimaryKeyIndex.NO_ROW || !this.versions.isLive(row)) {
+                        if (this.spill != null && this.spill.delete(key, version)) {
+                            this.views.remove(key);
+                            position = this.logDelete(key);
+                        }
+
+                        continue;
+                    }
+
+                    this.retire(row, version);
+                    position = this.logDelete(key);
+                }
+            } finally {
+                this.commit(version);
+            }
+        } finally {
+            this.locks.unlock(stripes);
+        }
+
+        this.vacuum();
+        this.sync(position);
+    }
+
+    // Used by journals and snapshots
+
+    /**
+     * Blocks all writers of this table until {@link #unlockAll()} is called.
+     */
+    void lockAll() {
+        this.locks.lockAll();
+    }
+
+    void unlockAll() {
+        this.locks.unlockAll();
+    }
+
+    void setJournal(MemoryJournal<T> journal) {
+        this.journal = journal;
+    }
+
+    RowStore getStore() {
+        return store;
+    }
+
+    CommitClock getClock() {
+        return clock;
+    }
+
+    RowVersions getVersions() {
+        return versions;
+    }
+
+    MemoryIndexMap<T> getIndexMap(WrappedIndex<T> index) {
+        return this.indices.get(index);
+    }
+
+    int getAutoIncrement() {
+        return this.autoIncrement.get();
+    }
+
+    void setAutoIncrement(int autoIncrement) {
+        this.autoIncrement.set(autoIncrement);
+    }
+
+    /**
+     * Gets the rows visible in the given version.
+     *
+     * @param version The version
+     * @return The row IDs
+     */
+    int[] getVisibleRows(long version) {
+        int[] rows = this.keyIndex.getRows();
+        return this.scanner.resolve(rows, rows.length, version);
+    }
+
+    /**
+     * Gets the encoded values of the spilled rows visible in the given version, in the
+     * layout of a {@link RowCodec} of the stored fields.
+     *
+     * @param version The version
+     * @return The encoded rows
+     */
+    List<byte[]> copySpilled(long version) {
+        return this.spill == null ? Collections.emptyList() : this.spill.copy(version);
+    }
+
+    /**
+     * Removes all rows, without logging it. Must not be used while the table is read.
+     */
+    void clear() {
+        this.keyIndex.clear();
+        this.store.clear();
+        this.versions.clear();
+        this.retiredRows.clear();
+        this.unlinkedRows.clear();
+        this.unlinkedVersions.clear();
+        this.expiry.clear();
+        this.eviction.clear();
+        this.indices.clear();
+        this.views.clear();
+        if (this.spill != null) {
+            this.spill.clear();
+        }
+    }
+
+    /**
+     * Inserts a row without adding it to the index maps, which are expected to be
+     * restored separately. Must not be used while the table is read.
+     *
+     * @param values The values of the row
+     * @return The ID of the row
+     */
+    int restore(Object[] values) {
+        int row = this.store.allocate();
+        this.store.write(row, values);
+        this.versions.begin(row, 0, RowVersions.NO_ROW);
+        this.keyIndex.put(this.getKey(row), row);
+        this.views.put(this.getKey(row), values);
+        this.views.apply();
+        this.indices.addToCreated(row, values);
+
+        // Deadlines are not kept on disk, so restored rows get a new one
+        this.expiry.schedule(this.getKey(row), this.expiry.getDeadline(0));
+        this.eviction.recordWrite(this.getKey(row), values);
+        return row;
+    }
+
+    void rebuildIndices() {
+        this.indices.clear();
+        for (int row : this.getVisibleRows(RowVersions.LATEST)) {
+            this.indices.add(row);
+        }
+    }
+
+    /**
+     * Inserts a row, or replaces the row with the same key, without logging it. Must
+     * not be used while the table is read.
+     *
+     * @param values The values of the row
+     */
+    void apply(Object[] values) {
+        ValueContainer key = this.getKey(values);
+        int row = this.keyIndex.get(key);
+        if (row != PrimaryKeyIndex.NO_ROW) {
+            this.indices.remove(row);
+        } else {
+            row = this.store.allocate();
+        }
+
+        this.store.write(row, values);
+        this.versions.begin(row, 0, RowVersions.NO_ROW);
+        this.keyIndex.put(key, row);
+        this.indices.add(row);
+        this.views.put(key, values);
+        this.views.apply();
+        this.expiry.schedule(key, this.expiry.getDeadline(0));
+        this.eviction.recordWrite(key, values);
+
+        PersistentField<T> autoIncField = this.getProfile().getAutoIncrementField();
+        if (autoIncField != null) {
+            Object value = values[ArrayUtils.indexOf(this.getProfile().getStoredFields(), autoIncField)];
+            if (value != null) {
+                this.autoIncrement.accumulateAndGet(((Number) value).intValue() + 1, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Deletes the row with the given key, without logging it. Must not be used while
+     * the table is read.
+     *
+     * @param key The key
+     */
+    void applyDelete(ValueContainer key) {
+        int row = this.keyIndex.get(key);
+        if (row == PrimaryKeyIndex.NO_ROW) {
+            return;
+        }
+
+        this.keyIndex.remove(key, row);
+        this.indices.remove(row);
+        this.views.remove(key);
+        this.views.apply();
+        this.store.free(row);
+        this.expiry.remove(key);
+        this.eviction.recordRemoval(key);
+    }
+
     // Internals
 
-    private void addToIndices(FieldValue<T>[] values) {
-        for (MemoryIndexMap<T> index : this.indexMaps.values()) {
-            index.add(values);
+    /**
+     * Creates the dictionary of the dictionary encoded fields, shared by all of them.
+     *
+     * @return The dictionary of every column, or null for columns not dictionary encoded
+     */
+    private StringDictionary[] createDictionaries(MemoryOptions options) {
+        PersistentField<T>[] fields = this.profile.getStoredFields();
+        StringDictionary[] dictionaries = new StringDictionary[fields.length];
+        if (options == null || options.dictionaryEncoded().length == 0) {
+            return dictionaries;
+        }
+
+        StringDictionary dictionary = new StringDictionary();
+        for (String name : options.dictionaryEncoded()) {
+            PersistentField<T> field = this.profile.resolveField(name);
+            int column = ArrayUtils.indexOf(fields, field);
+            if (field == null || column == ArrayUtils.INDEX_NOT_FOUND) {
+                throw new IllegalArgumentException("Unknown dictionary encoded field " + name + "!");
+            }
+
+            if (field.getType() != DataType.STRING) {
+                throw new IllegalArgumentException("Only string fields can be dictionary encoded, " + name + " is not!");
+            }
+
+            dictionaries[column] = dictionary;
         }
+
+        return dictionaries;
     }
 
-    private void removeFromIndices(ValueContainer container) {
-        for (MemoryIndexMap<T> index : this.indexMaps.values()) {
-            index.removeKey(container);
+    private long insert(Optional<T> instance, FieldValue<T>[] values, long deadline) {
+        PersistentField<T> autoIncField = this.getProfile().getAutoIncrementField();
+        if (autoIncField != null && this.segment) {
+            // Already handed out by the segmented table, as the key decides the segment
+            Object value = ValueHelper.getValue(values, autoIncField).getValue();
+            this.autoIncrement.accumulateAndGet(((Number) value).intValue() + 1, Math::max);
+        } else if (autoIncField != null) {
+            FieldValue<T> autoIncVal = ValueHelper.getValue(values, autoIncField);
+            autoIncVal.setValue(this.autoIncrement.getAndIncrement());
+
+            instance.ifPresent(value -> autoIncField.set(value, autoIncVal.getValue()));
+        }
+
+        Object[] valueArray = this.toArray(values);
+        int stripe = this.locks.getStripe(this.getKey(valueArray));
+
+        this.locks.lock(stripe);
+        try {
+            long version = this.clock.begin();
+            try {
+                this.insert(valueArray, version, deadline);
+                return this.logPut(valueArray);
+            } finally {
+                this.commit(version);
+            }
+        } finally {
+            this.locks.unlock(stripe);
         }
     }
 
-    private FieldValue<T>[] toValues(ValueContainer container) {
-        if (container == null) {
-            return null;
+    private long update(FieldValue<T>[] values, QueryRequirement requirement, long deadline) {
+        long position = 0;
+        int[] columns = new int[values.length];
+
+        PersistentField<T>[] storedFields = this.getProfile().getStoredFields();
+        for (int i = 0; i < values.length; i++) {
+            columns[i] = ArrayUtils.indexOf(storedFields, values[i].getField());
         }
 
-        PersistentField<T>[] fields = this.getProfile().getStoredFields();
-        FieldValue<T>[] values = new FieldValue[fields.length];
+        int[] stripes = new int[0];
+        try {
+            // Both the old and the new keys of the rows are locked. Rows never change, so
+            // the new key of a row is known before locking it.
+            Collection<Integer> rows;
+            Map<ValueContainer, Object[]> spilled;
+            while (true) {
+                rows = this.finder.getRows(requirement, RowVersions.LATEST);
+                spilled = this.findSpilled(requirement, RowVersions.LATEST);
+                Set<ValueContainer> keys = this.getKeys(rows);
+                for (int row : rows) {
+                    keys.add(this.getKey(this.update(row, values, columns)));
+                }
 
-        for (int i = 0; i < fields.length; i++) {
-            PersistentField<T> field = fields[i];
-            values[i] = new FieldValue<>(field, container.getValues()[i]);
+                for (Entry<ValueContainer, Object[]> entry : spilled.entrySet()) {
+                    keys.add(entry.getKey());
+                    keys.add(this.getKey(this.update(entry.getValue(), values, columns)));
+                }
+
+                int[] required = this.locks.getStripes(keys);
+                if (LockStripes.containsAll(stripes, required)) {
+                    break;
+                }
+
+                stripes = this.relock(stripes, required);
+            }
+
+            long version = this.clock.begin();
+            try {
+                for (int row : rows) {
+                    // May have been replaced by an earlier row in this change getting the same key
+                    if (!this.versions.isLive(row)) {
+                        continue;
+                    }
+
+                    Object[] valueArray = this.update(row, values, columns);
+                    ValueContainer oldKey = this.getKey(row);
+                    if (!this.getKey(valueArray).equals(oldKey)) {
+                        // The old key is deleted, and this row replaces any other row with the new key
+                        this.retire(row, version);
+                        this.expiry.remove(oldKey);
+                        this.eviction.recordRemoval(oldKey);
+                        this.logDelete(oldKey);
+                    }
+
+                    this.insert(valueArray, version, deadline);
+                    position = this.logPut(valueArray);
+                }
+
+                // Updated rows are moved back to the heap, and may be spilled again later
+                for (Entry<ValueContainer, Object[]> entry : spilled.entrySet()) {
+                    ValueContainer oldKey = entry.getKey();
+                    if (!this.spill.delete(oldKey, version)) {
+                        continue;
+                    }
+
+                    Object[] valueArray = this.update(entry.getValue(), values, columns);
+                    if (!this.getKey(valueArray).equals(oldKey)) {
+                        this.views.remove(oldKey);
+                        this.expiry.remove(oldKey);
+                        this.logDelete(oldKey);
+                    }
+
+                    this.insert(valueArray, version, deadline);
+                    position = this.logPut(valueArray);
+                }
+            } finally {
+                this.commit(version);
+            }
+        } finally {
+            this.locks.unlock(stripes);
         }
 
-        return values;
+        return position;
     }
 
-    private ValueContainer toValues(FieldValue<T>[] values) {
-        PersistentField<T>[] fields = this.getProfile().getStoredFields();
-        Object[] valueArray = new Object[fields.length];
-        for (int i = 0; i < fields.length; i++) {
-            PersistentField<T> field = fields[i];
-            valueArray[i] = ValueHelper.getValue(values, field);
+    /**
+     * @return The values of the given row, with the given values applied
+     */
+    private Object[] update(int row, FieldValue<T>[] values, int[] columns) {
+        return this.update(this.store.read(row), values, columns);
+    }
+
+    /**
+     * @return A copy of the given values, with the given values applied
+     */
+    private Object[] update(Object[] current, FieldValue<T>[] values, int[] columns) {
+        Object[] valueArray = current.clone();
+        for (int i = 0; i < columns.length; i++) {
+            valueArray[columns[i]] = values[i].getValue();
         }
 
-        return new ValueContainer(valueArray);
+        return valueArray;
     }
 
-    private ValueContainer getFirstKey(QueryRequirement requirement) {
-        RequirementTraverser traverser = new RequirementTraverser(requirement);
+    /**
+     * Releases the given stripes, and locks them again together with the required
+     * stripes. Stripes are always taken in order, so the held stripes can not be kept
+     * while taking the others.
+     *
+     * @return The stripes now held
+     */
+    private int[] relock(int[] held, int[] required) {
+        int[] stripes = LockStripes.union(held, required);
+        this.locks.unlock(held);
+        this.locks.lock(stripes);
+        return stripes;
+    }
+
+    /**
+     * Writes a new version of the row with the same key as the given values. The
+     * stripe of the key must be locked.
+     *
+     * @param deadline The time the row expires at, or 0 if it does not
+     */
+    private void insert(Object[] values, long version, long deadline) {
+        ValueContainer key = this.getKey(values);
+        int previous = this.keyIndex.get(key);
+        if (this.spill != null) {
+            this.spill.delete(key, version);
+        }
+
+        int row = this.store.allocate();
+        this.store.write(row, values);
+        this.versions.begin(row, version, previous);
+        this.keyIndex.put(key, row);
+
+        if (previous != PrimaryKeyIndex.NO_ROW && this.versions.isLive(previous)) {
+            this.retire(previous, version);
+        }
+
+        this.indices.add(row);
+        this.views.put(key, values);
+        this.expiry.schedule(key, deadline);
+        this.eviction.recordWrite(key, values);
+    }
 
-        for (RequirementCase requirementCase : traverser.getCases()) {
-            Collection<ValueContainer> keysFound = this.getKeys(requirementCase.getRequirements());
-            if (keysFound.isEmpty()) {
-                continue;
+    private void recordHit(int row) {
+        this.hits.increment();
+        if (this.eviction.isEnabled()) {
+            this.eviction.recordRead(this.getKey(row));
+        }
+    }
+
+    /**
+     * Deletes the rows of the keys evicted since the last time.
+     *
+     * @return The position of the last delete in the journal, or 0 if none
+     */
+    private long evict() {
+        List<ValueContainer> keys = this.eviction.pollEvicted();
+        if (keys.isEmpty()) {
+            return 0;
+        }
+
+        long position = 0;
+        int[] stripes = this.locks.getStripes(keys);
+        this.locks.lock(stripes);
+        try {
+            long version = this.clock.begin();
+            try {
+                for (ValueContainer key : keys) {
+                    // May have been saved again, and admitted anew, since
+                    if (this.eviction.isKept(key)) {
+                        continue;
+                    }
+
+                    int row = this.keyIndex.get(key);
+                    if (row == PrimaryKeyIndex.NO_ROW || !this.versions.isLive(row)) {
+                        continue;
+                    }
+
+                    this.evictions.increment();
+                    if (this.spill != null && this.spill.write(key, this.store.read(row), version)) {
+                        // Still in the table, so it is kept in the views and the journal, and keeps its deadline
+                        this.versions.end(row, version);
+                        this.retiredRows.add(row);
+                        continue;
+                    }
+
+                    this.retire(row, version);
+                    this.expiry.remove(key);
+                    position = this.logDelete(key);
+                }
+            } finally {
+                this.commit(version);
             }
+        } finally {
+            this.locks.unlock(stripes);
+        }
 
-            return Iterables.getFirst(keysFound, null);
+        return position;
+    }
+
+    /**
+     * Marks the given row as deleted. It is kept in the key index and the index maps
+     * until no reader can see it anymore.
+     */
+    private void retire(int row, long version) {
+        this.versions.end(row, version);
+        this.retiredRows.add(row);
+        if (!this.views.isEmpty()) {
+            this.views.remove(this.getKey(row));
         }
+    }
+
+    /**
+     * Removes rows that are no longer visible to any reader. This happens in two steps.
+     * First the rows are removed from the key index and the index maps, so that new
+     * readers can no longer find them. They are then freed once every reader that may
+     * have found them before that is done.
+     * <p>
+     * Only one thread vacuums at a time, others return right away.
+     */
+    private void vacuum() {
+        if (!this.vacuumLock.tryLock()) {
+            return;
+        }
+
+        try {
+            long horizon = this.clock.getHorizon();
+            if (this.spill != null) {
+                this.spill.vacuum(horizon);
+            }
+
+            while (!this.unlinkedRows.isEmpty() && this.unlinkedVersions.peek() < horizon) {
+                this.unlinkedVersions.poll();
+                this.store.free(this.unlinkedRows.poll());
+            }
+
+            long committed = this.clock.getCommitted();
+            Integer row;
+            while ((row = this.retiredRows.peek()) != null && this.versions.getDeleted(row) <= horizon) {
+                // Left for a later vacuum if the key is held, as the holder may be waiting for a lock held by this thread
+                int stripe = this.locks.getStripe(this.getKey(row));
+                if (!this.locks.tryLock(stripe)) {
+                    break;
+                }
+
+                this.retiredRows.poll();
+                try {
+                    this.unlink(row);
+                    this.indices.remove(row);
+                } finally {
+                    this.locks.unlock(stripe);
+                }
 
-        return null;
+                this.unlinkedRows.add(row);
+                this.unlinkedVersions.add(committed);
+            }
+        } finally {
+            this.vacuumLock.unlock();
+        }
     }
 
-    private Collection<ValueContainer> getKeys(QueryRequirement requirement) {
-        Set<ValueContainer> keys = Sets.newHashSet();
-        RequirementTraverser traverser = new RequirementTraverser(requirement);
+    private void unlink(int row) {
+        ValueContainer key = this.getKey(row);
+        int current = this.keyIndex.get(key);
+        if (current == row) {
+            this.keyIndex.remove(key, row);
+            return;
+        }
 
-        for (RequirementCase requirementCase : traverser.getCases()) {
-            Collection<ValueContainer> keysFound = this.getKeys(requirementCase.getRequirements());
-            keys.addAll(keysFound);
+        // Older versions are removed first, so this is the last version of the key
+        while (current != RowVersions.NO_ROW) {
+            int previous = this.versions.getPrevious(current);
+            if (previous == row) {
+                this.versions.setPrevious(current, RowVersions.NO_ROW);
+                return;
+            }
+
+            current = previous;
         }
+    }
 
-        return keys;
+    /**
+     * @param requirement The requirement, or null for every row
+     * @return The values of the spilled rows matching the given requirement, by their keys
+     */
+    private Map<ValueContainer, Object[]> findSpilled(QueryRequirement requirement, long version) {
+        return this.spill == null ? Collections.emptyMap() : this.spill.find(requirement, version);
     }
 
-    private Collection<ValueContainer> getKeys(List<SimpleRequirement> requirements) {
-        ItemProfile<T> profile = this.getProfile();
+    /**
+     * Moves the spilled row found by a read back to the heap, if the read was for a
+     * single key. Rows found by other reads are left in the spill file, so that a scan
+     * does not evict the rows read the most.
+     */
+    private void faultIn(QueryRequirement requirement, Map<ValueContainer, Object[]> spilled) {
+        if (spilled.size() != 1 || !this.spill.isKeyLookup(requirement)) {
+            return;
+        }
 
-        Collection<WrappedIndex<T>> indices = IndexHelper.combineIndices(profile, requirements);
-        if (indices == null) {
-            List<ValueContainer> localMappingIndices = Lists.newArrayList(this.keyToValueMap.keySet());
-            for (SimpleRequirement requirement : requirements) {
-                this.eliminate(localMappingIndices, requirement);
+        ValueContainer key = spilled.keySet().iterator().next();
+        int stripe = this.locks.getStripe(key);
+        this.locks.lock(stripe);
+        try {
+            // May have been deleted, or moved back, since
+            Object[] values = this.spill.read(key, RowVersions.LATEST);
+            if (values == null) {
+                return;
             }
 
-            List<ValueContainer> values = Lists.newArrayList();
-            for (ValueContainer index : localMappingIndices) {
-                values.add(this.keyToValueMap.get(index));
+            long version = this.clock.begin();
+            try {
+                // Counted as a read, so that the policy is more likely to keep it this time
+                this.eviction.recordRead(key);
+                this.insert(values, version, this.expiry.getDeadline(key));
+            } finally {
+                this.commit(version);
             }
+        } finally {
+            this.locks.unlock(stripe);
+        }
+
+        this.sync(this.evict());
+        this.vacuum();
+    }
+
+    private long logPut(Object[] values) {
+        MemoryJournal<T> journal = this.journal;
+        return journal == null ? 0 : journal.logPut(values);
+    }
+
+    private long logDelete(ValueContainer key) {
+        MemoryJournal<T> journal = this.journal;
+        return journal == null ? 0 : journal.logDelete(key);
+    }
+
+    private void sync(long position) {
+        MemoryJournal<T> journal = this.journal;
+        if (journal != null && position != 0) {
+            journal.sync(position);
+        }
+    }
+
+    /**
+     * Commits the given version, and then applies the changes made in it to the views,
+     * so that views never show changes that readers of the table can not see yet. The
+     * stripes of the changed keys must still be locked, so that later changes to the
+     * same keys are applied after these.
+     */
+    private void commit(long version) {
+        this.clock.commit(version);
+        this.views.apply();
+    }
 
-            return values;
+    private Set<ValueContainer> getKeys(Collection<Integer> rows) {
+        Set<ValueContainer> keys = Sets.newHashSet();
+        for (int row : rows) {
+            keys.add(this.getKey(row));
         }
 
-        List<Collection<ValueContainer>> keys = Lists.newArrayList();
-        for (WrappedIndex<T> index : indices) {
-            keys.add(this.getKeys(index, requirements));
+        return keys;
+    }
+
+    private ValueContainer getKey(int row) {
+        Object[] values = new Object[this.keyColumns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.store.get(row, this.keyColumns[i]);
         }
 
-        return this.allMatch(keys);
+        return new CompositeKey(values);
     }
 
-    private void eliminate(List<ValueContainer> containers, SimpleRequirement requirement) {
-        PersistentField<T> field = (PersistentField<T>) requirement.getField();
-        int index = ArrayUtils.indexOf(this.getProfile().getKeys(), requirement.getField());
-        if (index == -1) {
-            throw new IllegalArgumentException("Couldn't find key " + field + "!");
+    private ValueContainer getKey(Object[] values) {
+        Object[] keyValues = new Object[this.keyColumns.length];
+        for (int i = 0; i < keyValues.length; i++) {
+            keyValues[i] = values[this.keyColumns[i]];
         }
 
-        Object reqValue = requirement.getValue();
-        Operator operator = requirement.getOperator();
-        ValueHelper.eliminateUnmatching(containers, index, reqValue, operator);
+        return new CompositeKey(keyValues);
     }
 
-    private Collection<ValueContainer> allMatch(List<Collection<ValueContainer>> lists) {
-        if (lists.size() == 0) {
-            throw new IllegalArgumentException("Empty list!");
+    private FieldValue<T>[] toValues(Object[] row) {
+        PersistentField<T>[] fields = this.getProfile().getStoredFields();
+        FieldValue<T>[] values = new FieldValue[fields.length];
+
+        for (int i = 0; i < fields.length; i++) {
+            PersistentField<T> field = fields[i];
+            Object value = row[i];
+            values[i] = value == null ? new FieldValue<>(field) : new FieldValue<>(field, value);
         }
 
-        if (lists.size() == 1) {
-            return lists.get(0);
+        return values;
+    }
+
+    private int[] getColumns(PersistentField<T>[] fields) {
+        int[] columns = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = ArrayUtils.indexOf(this.getProfile().getStoredFields(), fields[i]);
+            if (columns[i] == -1) {
+                throw new IllegalArgumentException("Couldn't find field " + fields[i].getName() + "!");
+            }
         }
 
-        Collection<ValueContainer> baseList = lists.remove(0);
-        baseList.removeIf(item -> !lists.stream().allMatch(list -> list.contains(item)));
-        return baseList;
+        return columns;
     }
 
-    private Collection<ValueContainer> getKeys(WrappedIndex<T> index, Collection<SimpleRequirement> values) {
-        MemoryIndexMap<T> indexMap = this.indexMaps.get(index);
-        return indexMap.getKeys(values);
+    private Object[] toArray(FieldValue<T>[] values) {
+        PersistentField<T>[] fields = this.getProfile().getStoredFields();
+        Object[] valueArray = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            PersistentField<T> field = fields[i];
+            FieldValue<T> value = ValueHelper.getValue(values, field);
+            valueArray[i] = value == null ? null : value.getValue();
+        }
+
+        return valueArray;
+    }
+
+    /**
+     * A read-only view of the latest committed rows of this table, mapping keys to
+     * row values.
+     */
+    private class KeyToValueView extends AbstractMap<ValueContainer, ValueContainer> {
+
+        @Override
+        public ValueContainer get(Object key) {
+            if (!(key instanceof ValueContainer)) {
+                return null;
+            }
+
+            long version = clock.beginRead();
+            try {
+                int row = keyIndex.get((ValueContainer) key);
+                row = row == PrimaryKeyIndex.NO_ROW ? row : versions.resolve(row, version);
+                return row == RowVersions.NO_ROW ? null : new ValueContainer(store.read(row));
+            } finally {
+                clock.endRead(version);
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<ValueContainer, ValueContainer>> entrySet() {
+            List<Entry<ValueContainer, ValueContainer>> entries = Lists.newArrayList();
+
+            long version = clock.beginRead();
+            try {
+                for (int row : getVisibleRows(version)) {
+                    entries.add(Maps.immutableEntry(getKey(row), new ValueContainer(store.read(row))));
+                }
+            } finally {
+                clock.endRead(version);
+            }
+
+            return new AbstractSet<Entry<ValueContainer, ValueContainer>>() {
+                @Override
+                public Iterator<Entry<ValueContainer, ValueContainer>> iterator() {
+                    return entries.iterator();
+                }
+
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
     }
 }
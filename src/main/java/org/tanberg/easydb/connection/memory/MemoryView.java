@@ -0,0 +1,318 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.DataType;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.query.traverse.RequirementCase;
+import org.tanberg.easydb.query.traverse.RequirementTraverser;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The rows of a {@link MemoryTable} matching a requirement, kept up to date by the
+ * table as rows are saved and deleted. Reading a view takes time in proportion to
+ * the rows in it, as the requirement is only checked when rows change.
+ * <p>
+ * A view may also group its rows by the value of a field, counting the rows of every
+ * group and summing chosen numeric fields over them.
+ * <p>
+ * Changes are applied to a view once committed, so a view never shows changes that
+ * readers of the table do not see yet, though it may briefly lag behind them.
+ *
+ * @see MemoryTable#createView(String, QueryRequirement, PersistentField, PersistentField[])
+ */
+public class MemoryView<T> {
+
+    private final String name;
+    private final QueryRequirement requirement;
+    private final int[][] caseColumns;
+    private final SimpleRequirement[][] cases;
+    private final Map<ValueContainer, Object[]> rows;
+
+    private final PersistentField<T> groupBy;
+    private final int groupColumn;
+    private final PersistentField<T>[] summed;
+    private final int[] sumColumns;
+    private final Map<Object, Group> groups;
+    private final ReadWriteLock lock;
+
+    MemoryView(String name, ItemProfile<T> profile, QueryRequirement requirement, PersistentField<T> groupBy, PersistentField<T>[] summed) {
+        if (groupBy == null && summed.length > 0) {
+            throw new IllegalArgumentException("Fields can only be summed by a view grouping its rows!");
+        }
+
+        this.name = name;
+        this.requirement = requirement;
+
+        PersistentField<T>[] storedFields = profile.getStoredFields();
+        List<RequirementCase> requirementCases = new RequirementTraverser(requirement).getCases();
+        this.cases = new SimpleRequirement[requirementCases.size()][];
+        this.caseColumns = new int[requirementCases.size()][];
+        for (int i = 0; i < this.cases.length; i++) {
+            this.cases[i] = requirementCases.get(i).getRequirements().toArray(new SimpleRequirement[0]);
+            this.caseColumns[i] = new int[this.cases[i].length];
+            for (int j = 0; j < this.cases[i].length; j++) {
+                this.caseColumns[i][j] = getColumn(storedFields, (PersistentField<T>) this.cases[i][j].getField());
+            }
+        }
+
+        this.rows = Maps.newHashMap();
+        this.groupBy = groupBy;
+        this.groupColumn = groupBy == null ? -1 : getColumn(storedFields, groupBy);
+        this.summed = summed;
+        this.sumColumns = new int[summed.length];
+        for (int i = 0; i < summed.length; i++) {
+            if (!isNumeric(summed[i].getType())) {
+                throw new IllegalArgumentException("Only numeric fields can be summed, " + summed[i].getName() + " is not!");
+            }
+
+            this.sumColumns[i] = getColumn(storedFields, summed[i]);
+        }
+
+        this.groups = Maps.newHashMap();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public QueryRequirement getRequirement() {
+        return requirement;
+    }
+
+    /**
+     * @return The field the rows are grouped by, or null if they are not grouped
+     */
+    public PersistentField<T> getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @return The number of rows in this view
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.rows.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The values of every row in this view, in the order of the {@link
+     * ItemProfile#getStoredFields() stored fields}. The arrays are shared with the
+     * view, and must not be changed.
+     */
+    public List<Object[]> getRows() {
+        this.lock.readLock().lock();
+        try {
+            return Lists.newArrayList(this.rows.values());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of rows in every group
+     * @throws IllegalStateException If this view does not group its rows
+     */
+    public Map<Object, Long> getCounts() {
+        this.checkGrouped();
+
+        this.lock.readLock().lock();
+        try {
+            Map<Object, Long> counts = Maps.newHashMap();
+            for (Entry<Object, Group> entry : this.groups.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().count);
+            }
+
+            return counts;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param field The summed field
+     * @return The sum of the given field over the rows of every group. Nulls are left out.
+     * @throws IllegalStateException    If this view does not group its rows
+     * @throws IllegalArgumentException If the field is not summed by this view
+     */
+    public Map<Object, Double> getSums(PersistentField<T> field) {
+        this.checkGrouped();
+        int index = ArrayUtils.indexOf(this.summed, field);
+        if (index == -1) {
+            throw new IllegalArgumentException("Field " + field.getName() + " is not summed by view " + this.name + "!");
+        }
+
+        this.lock.readLock().lock();
+        try {
+            Map<Object, Double> sums = Maps.newHashMap();
+            for (Entry<Object, Group> entry : this.groups.entrySet()) {
+                sums.put(entry.getKey(), entry.getValue().sums[index]);
+            }
+
+            return sums;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Used by the table
+
+    /**
+     * Adds or replaces the row with the given key, or removes it if the new values do
+     * not match the requirement of this view.
+     */
+    void put(ValueContainer key, Object[] values) {
+        boolean matches = this.matches(values);
+
+        this.lock.writeLock().lock();
+        try {
+            Object[] previous = matches ? this.rows.put(key, values) : this.rows.remove(key);
+            if (previous != null) {
+                this.removeFromGroup(previous);
+            }
+
+            if (matches) {
+                this.addToGroup(values);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    void remove(ValueContainer key) {
+        this.lock.writeLock().lock();
+        try {
+            Object[] previous = this.rows.remove(key);
+            if (previous != null) {
+                this.removeFromGroup(previous);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.rows.clear();
+            this.groups.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Internals
+
+    private static <T> int getColumn(PersistentField<T>[] storedFields, PersistentField<T> field) {
+        int column = ArrayUtils.indexOf(storedFields, field);
+        if (column == -1) {
+            throw new IllegalArgumentException("Couldn't find field " + field.getName() + "!");
+        }
+
+        return column;
+    }
+
+    private static boolean isNumeric(DataType type) {
+        switch (type) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean matches(Object[] values) {
+        for (int i = 0; i < this.cases.length; i++) {
+            if (this.matches(values, i)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean matches(Object[] values, int requirementCase) {
+        SimpleRequirement[] requirements = this.cases[requirementCase];
+        int[] columns = this.caseColumns[requirementCase];
+        for (int i = 0; i < requirements.length; i++) {
+            if (!ValueHelper.matches(values[columns[i]], requirements[i].getValue(), requirements[i].getOperator())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void checkGrouped() {
+        if (this.groupBy == null) {
+            throw new IllegalStateException("View " + this.name + " does not group its rows!");
+        }
+    }
+
+    private void addToGroup(Object[] values) {
+        if (this.groupBy == null) {
+            return;
+        }
+
+        Group group = this.groups.computeIfAbsent(values[this.groupColumn], value -> new Group(this.sumColumns.length));
+        group.count++;
+        for (int i = 0; i < this.sumColumns.length; i++) {
+            Object value = values[this.sumColumns[i]];
+            if (value != null) {
+                group.sums[i] += ((Number) value).doubleValue();
+            }
+        }
+    }
+
+    private void removeFromGroup(Object[] values) {
+        if (this.groupBy == null) {
+            return;
+        }
+
+        Object groupValue = values[this.groupColumn];
+        Group group = this.groups.get(groupValue);
+        if (--group.count == 0) {
+            // Removed rather than left at zero, so that sums do not keep rounding errors
+            this.groups.remove(groupValue);
+            return;
+        }
+
+        for (int i = 0; i < this.sumColumns.length; i++) {
+            Object value = values[this.sumColumns[i]];
+            if (value != null) {
+                group.sums[i] -= ((Number) value).doubleValue();
+            }
+        }
+    }
+
+    private static final class Group {
+
+        private long count;
+        private final double[] sums;
+
+        private Group(int sums) {
+            this.sums = new double[sums];
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link PrimaryKeyIndex} stored as an open addressing hash table in off-heap
+ * memory. Every slot holds the hash of a key and the row holding it, and the key
+ * values themselves are read from the {@link RowStore store} when comparing, so
+ * keys are never kept on the heap.
+ */
+public class OffHeapPrimaryKeyIndex implements PrimaryKeyIndex {
+
+    private static final int SLOT_SIZE = 8;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    // Stored rows are offset by one, so that a zeroed slot is empty
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private final RowStore store;
+    private final int[] keyColumns;
+    private final ReadWriteLock lock;
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+    private int used;
+
+    public OffHeapPrimaryKeyIndex(RowStore store, int[] keyColumns) {
+        this.store = store;
+        this.keyColumns = keyColumns;
+        this.lock = new ReentrantReadWriteLock();
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public int get(ValueContainer key) {
+        this.lock.readLock().lock();
+        try {
+            int slot = this.find(key, hash(key));
+            return slot == -1 ? NO_ROW : this.getRow(slot);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int put(ValueContainer key, int row) {
+        this.lock.writeLock().lock();
+        try {
+            int hash = hash(key);
+            int slot = this.find(key, hash);
+            if (slot != -1) {
+                int previous = this.getRow(slot);
+                this.setSlot(slot, hash, row + 1);
+                return previous;
+            }
+
+            if ((this.used + 1) * 2 > this.capacity) {
+                // Grow if mostly live entries, otherwise just get rid of removed slots
+                this.rehash(this.size * 4 > this.capacity ? this.capacity * 2 : this.capacity);
+            }
+
+            this.insert(hash, row + 1);
+            this.size++;
+            return NO_ROW;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(ValueContainer key, int row) {
+        this.lock.writeLock().lock();
+        try {
+            int hash = hash(key);
+            int mask = this.capacity - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int stored = this.table.getInt(slot * SLOT_SIZE + 4);
+                if (stored == EMPTY) {
+                    return false;
+                }
+
+                if (stored == row + 1 && this.table.getInt(slot * SLOT_SIZE) == hash) {
+                    this.setSlot(slot, 0, REMOVED);
+                    this.size--;
+                    return true;
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] getRows() {
+        this.lock.readLock().lock();
+        try {
+            int[] rows = new int[this.size];
+            int count = 0;
+            for (int slot = 0; slot < this.capacity; slot++) {
+                int stored = this.table.getInt(slot * SLOT_SIZE + 4);
+                if (stored != EMPTY && stored != REMOVED) {
+                    rows[count++] = stored - 1;
+                }
+            }
+
+            return rows;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.allocate(INITIAL_CAPACITY);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long getOffHeapBytes() {
+        this.lock.readLock().lock();
+        try {
+            return (long) this.capacity * SLOT_SIZE;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Internals
+
+    private static int hash(ValueContainer key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private int find(ValueContainer key, int hash) {
+        int mask = this.capacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int stored = this.table.getInt(slot * SLOT_SIZE + 4);
+            if (stored == EMPTY) {
+                return -1;
+            }
+
+            if (stored != REMOVED && this.table.getInt(slot * SLOT_SIZE) == hash && this.matches(stored - 1, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean matches(int row, ValueContainer key) {
+        Object[] values = key.getValues();
+        for (int i = 0; i < this.keyColumns.length; i++) {
+            if (!Objects.equals(this.store.get(row, this.keyColumns[i]), values[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int getRow(int slot) {
+        return this.table.getInt(slot * SLOT_SIZE + 4) - 1;
+    }
+
+    private void setSlot(int slot, int hash, int stored) {
+        this.table.putInt(slot * SLOT_SIZE, hash);
+        this.table.putInt(slot * SLOT_SIZE + 4, stored);
+    }
+
+    private void insert(int hash, int stored) {
+        int mask = this.capacity - 1;
+        int slot = hash & mask;
+        while (true) {
+            int current = this.table.getInt(slot * SLOT_SIZE + 4);
+            if (current == EMPTY || current == REMOVED) {
+                break;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.table.getInt(slot * SLOT_SIZE + 4) == EMPTY) {
+            this.used++;
+        }
+
+        this.setSlot(slot, hash, stored);
+    }
+
+    private void rehash(int capacity) {
+        ByteBuffer old = this.table;
+        int oldCapacity = this.capacity;
+        this.allocate(capacity);
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int stored = old.getInt(slot * SLOT_SIZE + 4);
+            if (stored != EMPTY && stored != REMOVED) {
+                this.insert(old.getInt(slot * SLOT_SIZE), stored);
+                this.size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        this.capacity = capacity;
+        this.size = 0;
+        this.used = 0;
+    }
+}
@@ -0,0 +1,198 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A sorted list of row IDs without duplicates, as found in an index. Lists are
+ * intersected and merged without looking at every row of the larger lists.
+ */
+public final class PostingList {
+
+    private static final PostingList EMPTY = new PostingList(new int[0], 0);
+
+    private final int[] rows;
+    private final int size;
+
+    private PostingList(int[] rows, int size) {
+        this.rows = rows;
+        this.size = size;
+    }
+
+    public static PostingList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param rows The row IDs, without duplicates, in any order. The array is sorted
+     *             if not already in order, and kept by the list.
+     * @return The list
+     */
+    public static PostingList of(int[] rows) {
+        for (int i = 1; i < rows.length; i++) {
+            if (rows[i - 1] > rows[i]) {
+                Arrays.sort(rows);
+                break;
+            }
+        }
+
+        return new PostingList(rows, rows.length);
+    }
+
+    public static PostingList of(RowBitmap bitmap) {
+        int[] rows = bitmap.toArray();
+        return new PostingList(rows, rows.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int get(int index) {
+        return this.rows[index];
+    }
+
+    public List<Integer> toList() {
+        List<Integer> list = Lists.newArrayListWithCapacity(this.size);
+        for (int i = 0; i < this.size; i++) {
+            list.add(this.rows[i]);
+        }
+
+        return list;
+    }
+
+    /**
+     * @param bitmap The bitmap
+     * @return The rows of this list that are also in the given bitmap
+     */
+    public PostingList retain(RowBitmap bitmap) {
+        int[] rows = new int[this.size];
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (bitmap.contains(this.rows[i])) {
+                rows[count++] = this.rows[i];
+            }
+        }
+
+        return new PostingList(rows, count);
+    }
+
+    /**
+     * Intersects the given lists, starting with the smallest ones. Each step looks up
+     * the rows of the smaller list in the larger one by galloping, so the cost depends
+     * mostly on the size of the smallest list.
+     *
+     * @param lists The lists
+     * @return The rows in all the lists
+     */
+    public static PostingList intersect(List<PostingList> lists) {
+        if (lists.isEmpty()) {
+            throw new IllegalArgumentException("Empty list!");
+        }
+
+        List<PostingList> sorted = Lists.newArrayList(lists);
+        sorted.sort(Comparator.comparingInt(PostingList::size));
+
+        PostingList result = sorted.get(0);
+        for (int i = 1; i < sorted.size() && !result.isEmpty(); i++) {
+            result = intersect(result, sorted.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Merges the given lists, taking the lowest row of all lists at a time.
+     *
+     * @param lists The lists
+     * @return The rows in any of the lists
+     */
+    public static PostingList union(List<PostingList> lists) {
+        int total = 0;
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, lists.size()), Comparator.comparingInt(Cursor::current));
+        for (PostingList list : lists) {
+            if (!list.isEmpty()) {
+                queue.add(new Cursor(list));
+                total += list.size;
+            }
+        }
+
+        int[] rows = new int[total];
+        int count = 0;
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            int row = cursor.current();
+            if (count == 0 || rows[count - 1] != row) {
+                rows[count++] = row;
+            }
+
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+
+        return new PostingList(rows, count);
+    }
+
+    // Internals
+
+    private static PostingList intersect(PostingList smaller, PostingList larger) {
+        int[] rows = new int[smaller.size];
+        int count = 0;
+        int position = 0;
+        for (int i = 0; i < smaller.size && position < larger.size; i++) {
+            int row = smaller.rows[i];
+            position = larger.gallop(row, position);
+            if (position < larger.size && larger.rows[position] == row) {
+                rows[count++] = row;
+            }
+        }
+
+        return new PostingList(rows, count);
+    }
+
+    /**
+     * Finds the first position at or after the given one holding a row at least as
+     * high as the given row, by doubling the step until passing it and then searching
+     * the last step.
+     */
+    private int gallop(int row, int from) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < this.size && this.rows[high] < row) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+
+        int index = Arrays.binarySearch(this.rows, low, Math.min(high, this.size - 1) + 1, row);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static final class Cursor {
+
+        private final PostingList list;
+        private int position;
+
+        private Cursor(PostingList list) {
+            this.list = list;
+        }
+
+        private int current() {
+            return this.list.rows[this.position];
+        }
+
+        private boolean advance() {
+            return ++this.position < this.list.size;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link MemoryIndexMap} keeping the rows of a string field in a {@link RadixTrie},
+ * so that the rows with values {@link Operator#STARTS_WITH starting with} a prefix
+ * are found by looking at the prefix and the matching values only.
+ *
+ * @see org.tanberg.easydb.IndexType#PREFIX
+ */
+public class PrefixIndexMap<T> extends MemoryIndexMap<T> {
+
+    private final int column;
+    // Rows are removed before they are freed, so their values are read from here
+    private final RowStore store;
+    private final RadixTrie trie;
+    // The trie can not hold nulls
+    private RowBitmap nullRows;
+    private final ReadWriteLock lock;
+
+    public PrefixIndexMap(ItemProfile<T> profile, WrappedIndex<T> index, RowStore store) {
+        super(profile, index);
+
+        this.column = ArrayUtils.indexOf(profile.getStoredFields(), index.getFields()[0]);
+        this.store = store;
+        this.trie = new RadixTrie();
+        this.nullRows = new RowBitmap();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    @Override
+    public void drop() {
+        this.lock.writeLock().lock();
+        try {
+            this.trie.clear();
+            this.nullRows = new RowBitmap();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int row) {
+        this.lock.writeLock().lock();
+        try {
+            String value = (String) this.store.get(row, this.column);
+            if (value != null) {
+                this.trie.remove(value, row);
+            } else {
+                this.nullRows.remove(row);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(RowStore store, int row) {
+        this.add((String) store.get(row, this.column), row);
+    }
+
+    @Override
+    void restore(ValueContainer indexValue, Collection<Integer> rows) {
+        String value = (String) indexValue.getValues()[0];
+        for (int row : rows) {
+            this.add(value, row);
+        }
+    }
+
+    @Override
+    Map<ValueContainer, List<Integer>> copy() {
+        this.lock.readLock().lock();
+        try {
+            Map<ValueContainer, List<Integer>> copy = Maps.newLinkedHashMap();
+            if (!this.nullRows.isEmpty()) {
+                copy.put(new ValueContainer(new Object[]{null}), this.nullRows.toList());
+            }
+
+            this.trie.forEach("", (value, rows) -> copy.put(new ValueContainer(new Object[]{value}), toList(rows)));
+            return copy;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        this.lock.readLock().lock();
+        try {
+            return this.trie.size() + this.nullRows.getCardinality();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getCardinality() {
+        this.lock.readLock().lock();
+        try {
+            return this.trie.getKeyCount() + (this.nullRows.isEmpty() ? 0 : 1);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long estimate(Collection<SimpleRequirement> requirements) {
+        SimpleRequirement narrowest = this.getNarrowest(requirements);
+        if (narrowest == null) {
+            return super.estimate(requirements);
+        }
+
+        this.lock.readLock().lock();
+        try {
+            // The count of a prefix is exact, and other requirements only narrow it down further
+            String value = (String) narrowest.getValue();
+            return narrowest.getOperator() == Operator.EQUALS ? this.trie.get(value).length : this.trie.count(value);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Integer> getRows(ValueContainer indexValue) {
+        this.lock.readLock().lock();
+        try {
+            String value = (String) indexValue.getValues()[0];
+            return value == null ? this.nullRows.toList() : toList(this.trie.get(value));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Integer> getRows(Collection<SimpleRequirement> requirements) {
+        List<Integer> rows = Lists.newArrayList();
+        this.forEachMatching(requirements, (value, matching) -> {
+            for (int row : matching) {
+                rows.add(row);
+            }
+        });
+
+        return rows;
+    }
+
+    @Override
+    public PostingList getPostingList(Collection<SimpleRequirement> requirements) {
+        return PostingList.of(this.getBitmap(requirements));
+    }
+
+    @Override
+    public RowBitmap getBitmap(Collection<SimpleRequirement> requirements) {
+        RowBitmap bitmap = new RowBitmap();
+        this.forEachMatching(requirements, (value, matching) -> {
+            for (int row : matching) {
+                bitmap.add(row);
+            }
+        });
+
+        return bitmap;
+    }
+
+    @Override
+    public void forEachEntry(Collection<SimpleRequirement> requirements, BiConsumer<Object[], int[]> consumer) {
+        this.forEachMatching(requirements, (value, rows) -> consumer.accept(new Object[]{value}, rows));
+    }
+
+    // Internals
+
+    private void add(String value, int row) {
+        this.lock.writeLock().lock();
+        try {
+            if (value == null) {
+                this.nullRows.add(row);
+                return;
+            }
+
+            this.trie.add(value, row);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hands every value matching the given requirements, and its rows, to the given consumer.
+     * Only the values starting with the longest prefix required, or the value required
+     * to be equal, are looked at.
+     */
+    private void forEachMatching(Collection<SimpleRequirement> requirements, BiConsumer<String, int[]> consumer) {
+        SimpleRequirement narrowest = this.getNarrowest(requirements);
+
+        this.lock.readLock().lock();
+        try {
+            if (narrowest == null || narrowest.getOperator() == Operator.STARTS_WITH) {
+                String prefix = narrowest == null ? "" : (String) narrowest.getValue();
+                this.trie.forEach(prefix, (value, rows) -> {
+                    if (matches(value, requirements)) {
+                        consumer.accept(value, rows);
+                    }
+                });
+            } else {
+                String value = (String) narrowest.getValue();
+                if (matches(value, requirements)) {
+                    int[] rows = this.trie.get(value);
+                    if (rows.length > 0) {
+                        consumer.accept(value, rows);
+                    }
+                }
+            }
+
+            // Nulls are never equal to, nor start with, a value
+            if (narrowest == null && matches(null, requirements)) {
+                consumer.accept(null, this.nullRows.toArray());
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The requirement narrowing down the values the most, being an equality
+     * requirement or the longest prefix, or null if there is none of either
+     */
+    private SimpleRequirement getNarrowest(Collection<SimpleRequirement> requirements) {
+        SimpleRequirement narrowest = null;
+        for (SimpleRequirement requirement : requirements) {
+            if (requirement.getOperator() == Operator.EQUALS) {
+                return requirement;
+            }
+
+            if (requirement.getOperator() == Operator.STARTS_WITH && (narrowest == null
+              || ((String) requirement.getValue()).length() > ((String) narrowest.getValue()).length())) {
+                narrowest = requirement;
+            }
+        }
+
+        return narrowest;
+    }
+
+    private static boolean matches(String value, Collection<SimpleRequirement> requirements) {
+        for (SimpleRequirement requirement : requirements) {
+            if (!ValueHelper.matches(value, requirement.getValue(), requirement.getOperator())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static List<Integer> toList(int[] rows) {
+        List<Integer> list = Lists.newArrayListWithCapacity(rows.length);
+        for (int row : rows) {
+            list.add(row);
+        }
+
+        return list;
+    }
+}
@@ -0,0 +1,79 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.util.ValueContainer;
+
+/**
+ * Maps the keys of a {@link MemoryTable memory table} to the IDs of the rows
+ * holding them.
+ */
+public interface PrimaryKeyIndex {
+
+    /**
+     * Returned when there is no row for a key.
+     */
+    int NO_ROW = -1;
+
+    int get(ValueContainer key);
+
+    /**
+     * Gets the row of a key with a single value, without wrapping the value first.
+     *
+     * @param keyValue The value of the key
+     * @return The row ID, or {@link #NO_ROW}
+     */
+    default int getSingle(Object keyValue) {
+        return this.get(new CompositeKey(keyValue));
+    }
+
+    /**
+     * Maps the given key to the given row.
+     *
+     * @param key The key
+     * @param row The row ID
+     * @return The row previously mapped to the key, or {@link #NO_ROW}
+     */
+    int put(ValueContainer key, int row);
+
+    /**
+     * Removes the given key, if it is mapped to the given row. The row is used to
+     * identify the entry, as its key values may already have been changed.
+     *
+     * @param key The key
+     * @param row The row ID
+     * @return If the key was removed
+     */
+    boolean remove(ValueContainer key, int row);
+
+    int size();
+
+    /**
+     * @return The IDs of all rows in this index, in key order if {@link #isOrdered() ordered}
+     */
+    int[] getRows();
+
+    void clear();
+
+    /**
+     * @return If the keys are ordered, allowing lookups using {@link #getRows(MemoryRange)}
+     */
+    default boolean isOrdered() {
+        return false;
+    }
+
+    /**
+     * Gets all rows with a key within the given range of the leading key fields.
+     *
+     * @param range The range
+     * @return The row IDs, in key order
+     */
+    default int[] getRows(MemoryRange range) {
+        throw new UnsupportedOperationException("Index is not ordered!");
+    }
+
+    /**
+     * @return The number of bytes of off-heap memory used by this index
+     */
+    default long getOffHeapBytes() {
+        return 0;
+    }
+}
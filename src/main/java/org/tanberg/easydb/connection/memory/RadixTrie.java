@@ -0,0 +1,358 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A radix trie of strings, keeping the rows of every string. Strings sharing a
+ * prefix share the nodes of that prefix, and nodes with a single child are merged
+ * with it, so the trie has at most twice as many nodes as strings. Every node
+ * counts the rows below it, so the rows of all strings with a prefix are found,
+ * and counted, by walking down the prefix only.
+ * <p>
+ * Not thread safe.
+ */
+public class RadixTrie {
+
+    private final Node root;
+    private int keyCount;
+
+    public RadixTrie() {
+        this.root = new Node("");
+    }
+
+    /**
+     * @return The number of rows in this trie
+     */
+    public int size() {
+        return this.root.count;
+    }
+
+    /**
+     * @return The number of distinct strings in this trie
+     */
+    public int getKeyCount() {
+        return this.keyCount;
+    }
+
+    /**
+     * @param key The string
+     * @param row The row ID
+     * @return If the row was not already kept for the string
+     */
+    public boolean add(String key, int row) {
+        List<Node> path = Lists.newArrayList();
+        Node node = this.root;
+        path.add(node);
+
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.indexOf(key.charAt(position));
+            if (index < 0) {
+                Node child = new Node(key.substring(position));
+                node.insert(child);
+                node = child;
+                path.add(node);
+                break;
+            }
+
+            Node child = node.children[index];
+            int common = commonLength(child.label, key, position);
+            if (common < child.label.length()) {
+                // Only part of the label is shared, so the child is split where they differ
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.insert(child);
+                split.count = child.count;
+                node.children[index] = split;
+                child = split;
+            }
+
+            node = child;
+            path.add(node);
+            position += common;
+        }
+
+        if (node.rowCount == 0) {
+            this.keyCount++;
+        } else if (node.indexOfRow(row) >= 0) {
+            return false;
+        }
+
+        node.addRow(row);
+        for (Node onPath : path) {
+            onPath.count++;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param key The string
+     * @param row The row ID
+     * @return If the row was kept for the string
+     */
+    public boolean remove(String key, int row) {
+        List<Node> path = Lists.newArrayList();
+        Node node = this.root;
+        path.add(node);
+
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.indexOf(key.charAt(position));
+            if (index < 0) {
+                return false;
+            }
+
+            node = node.children[index];
+            if (!key.startsWith(node.label, position)) {
+                return false;
+            }
+
+            path.add(node);
+            position += node.label.length();
+        }
+
+        if (!node.removeRow(row)) {
+            return false;
+        }
+
+        for (Node onPath : path) {
+            onPath.count--;
+        }
+
+        if (node.rowCount == 0) {
+            this.keyCount--;
+            this.prune(path);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param key The string
+     * @return The rows kept for the string
+     */
+    public int[] get(String key) {
+        Node node = this.find(key, false);
+        return node == null ? new int[0] : Arrays.copyOf(node.rows, node.rowCount);
+    }
+
+    /**
+     * @param prefix The prefix
+     * @return The number of rows of strings starting with the given prefix
+     */
+    public int count(String prefix) {
+        Node node = this.find(prefix, true);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Hands every string starting with the given prefix, and its rows, to the given
+     * consumer, in order.
+     *
+     * @param prefix   The prefix
+     * @param consumer The consumer
+     */
+    public void forEach(String prefix, BiConsumer<String, int[]> consumer) {
+        int[] length = new int[1];
+        Node node = this.find(prefix, true, length);
+        if (node == null) {
+            return;
+        }
+
+        // The label of the node found may go beyond the prefix
+        StringBuilder builder = new StringBuilder(prefix.substring(0, length[0])).append(node.label);
+        this.forEach(node, builder, consumer);
+    }
+
+    public void clear() {
+        this.root.children = new Node[0];
+        this.root.firsts = new char[0];
+        this.root.rows = new int[0];
+        this.root.rowCount = 0;
+        this.root.count = 0;
+        this.keyCount = 0;
+    }
+
+    // Internals
+
+    private Node find(String key, boolean prefix) {
+        return this.find(key, prefix, new int[1]);
+    }
+
+    /**
+     * Finds the node of the given string, or the highest node of the strings
+     * starting with the given prefix.
+     *
+     * @param length Set to the length of the key matched by the nodes above the one found
+     * @return The node, or null if there is none
+     */
+    private Node find(String key, boolean prefix, int[] length) {
+        Node node = this.root;
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.indexOf(key.charAt(position));
+            if (index < 0) {
+                return null;
+            }
+
+            Node child = node.children[index];
+            int remaining = key.length() - position;
+            if (prefix && child.label.length() >= remaining) {
+                length[0] = position;
+                return child.label.startsWith(key.substring(position)) ? child : null;
+            }
+
+            if (!key.startsWith(child.label, position)) {
+                return null;
+            }
+
+            node = child;
+            position += child.label.length();
+        }
+
+        length[0] = key.length() - node.label.length();
+        return node;
+    }
+
+    private void forEach(Node node, StringBuilder builder, BiConsumer<String, int[]> consumer) {
+        if (node.rowCount > 0) {
+            consumer.accept(builder.toString(), Arrays.copyOf(node.rows, node.rowCount));
+        }
+
+        for (Node child : node.children) {
+            int length = builder.length();
+            builder.append(child.label);
+            this.forEach(child, builder, consumer);
+            builder.setLength(length);
+        }
+    }
+
+    /**
+     * Removes the node at the end of the given path, left without rows, if it has no
+     * children, and merges any node left without rows and with a single child into it.
+     */
+    private void prune(List<Node> path) {
+        if (path.size() < 2) {
+            return; // The root is always kept
+        }
+
+        Node node = path.get(path.size() - 1);
+        Node parent = path.get(path.size() - 2);
+        if (node.children.length == 0) {
+            parent.remove(node);
+            if (path.size() > 2 && parent.rowCount == 0 && parent.children.length == 1) {
+                merge(path.get(path.size() - 3), parent);
+            }
+        } else if (node.children.length == 1) {
+            merge(parent, node);
+        }
+    }
+
+    private static void merge(Node parent, Node node) {
+        Node child = node.children[0];
+        child.label = node.label + child.label;
+        parent.children[parent.indexOf(node.label.charAt(0))] = child;
+    }
+
+    private static int commonLength(String label, String key, int position) {
+        int length = Math.min(label.length(), key.length() - position);
+        for (int i = 0; i < length; i++) {
+            if (label.charAt(i) != key.charAt(position + i)) {
+                return i;
+            }
+        }
+
+        return length;
+    }
+
+    private static final class Node {
+
+        private String label;
+        // The first character of the label of every child, in order
+        private char[] firsts;
+        private Node[] children;
+        private int[] rows;
+        private int rowCount;
+        // The number of rows of this node and all nodes below it
+        private int count;
+
+        private Node(String label) {
+            this.label = label;
+            this.firsts = new char[0];
+            this.children = new Node[0];
+            this.rows = new int[0];
+        }
+
+        private int indexOf(char first) {
+            return Arrays.binarySearch(this.firsts, first);
+        }
+
+        private void insert(Node child) {
+            char first = child.label.charAt(0);
+            int index = -Arrays.binarySearch(this.firsts, first) - 1;
+
+            char[] firsts = new char[this.firsts.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.firsts, 0, firsts, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            firsts[index] = first;
+            children[index] = child;
+            System.arraycopy(this.firsts, index, firsts, index + 1, this.firsts.length - index);
+            System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        private void remove(Node child) {
+            int index = this.indexOf(child.label.charAt(0));
+            char[] firsts = new char[this.firsts.length - 1];
+            Node[] children = new Node[this.children.length - 1];
+            System.arraycopy(this.firsts, 0, firsts, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.firsts, index + 1, firsts, index, firsts.length - index);
+            System.arraycopy(this.children, index + 1, children, index, children.length - index);
+
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        private int indexOfRow(int row) {
+            for (int i = 0; i < this.rowCount; i++) {
+                if (this.rows[i] == row) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private void addRow(int row) {
+            if (this.rowCount == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, Math.max(2, this.rowCount * 2));
+            }
+
+            this.rows[this.rowCount++] = row;
+        }
+
+        private boolean removeRow(int row) {
+            int index = this.indexOfRow(row);
+            if (index < 0) {
+                return false;
+            }
+
+            // Order of rows does not matter, so the last row takes its place
+            this.rows[index] = this.rows[--this.rowCount];
+            if (this.rowCount == 0) {
+                this.rows = new int[0];
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of row IDs kept as a bitmap. The bitmap is split into chunks of 4096 rows,
+ * and chunks without any rows are not allocated, so sparse bitmaps stay small.
+ * Combining bitmaps is done one word of 64 rows at a time.
+ * <p>
+ * Not thread safe.
+ */
+public class RowBitmap {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_SHIFT) >>> 6;
+
+    private long[][] chunks;
+    private int cardinality;
+
+    public RowBitmap() {
+        this.chunks = new long[0][];
+    }
+
+    public RowBitmap(RowBitmap other) {
+        this.chunks = new long[other.chunks.length][];
+        for (int i = 0; i < this.chunks.length; i++) {
+            long[] chunk = other.chunks[i];
+            this.chunks[i] = chunk == null ? null : chunk.clone();
+        }
+
+        this.cardinality = other.cardinality;
+    }
+
+    public static RowBitmap of(Collection<Integer> rows) {
+        RowBitmap bitmap = new RowBitmap();
+        for (int row : rows) {
+            bitmap.add(row);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * @param row The row ID
+     * @return If the row was not already in this bitmap
+     */
+    public boolean add(int row) {
+        int chunkIndex = row >>> CHUNK_SHIFT;
+        if (chunkIndex >= this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, Math.max(chunkIndex + 1, this.chunks.length * 2));
+        }
+
+        long[] chunk = this.chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = this.chunks[chunkIndex] = new long[WORDS_PER_CHUNK];
+        }
+
+        int word = (row & CHUNK_MASK) >>> 6;
+        long bit = 1L << row;
+        if ((chunk[word] & bit) != 0) {
+            return false;
+        }
+
+        chunk[word] |= bit;
+        this.cardinality++;
+        return true;
+    }
+
+    /**
+     * @param row The row ID
+     * @return If the row was in this bitmap
+     */
+    public boolean remove(int row) {
+        long[] chunk = this.getChunk(row >>> CHUNK_SHIFT);
+        if (chunk == null) {
+            return false;
+        }
+
+        int word = (row & CHUNK_MASK) >>> 6;
+        long bit = 1L << row;
+        if ((chunk[word] & bit) == 0) {
+            return false;
+        }
+
+        chunk[word] &= ~bit;
+        this.cardinality--;
+        return true;
+    }
+
+    public boolean contains(int row) {
+        long[] chunk = this.getChunk(row >>> CHUNK_SHIFT);
+        return chunk != null && (chunk[(row & CHUNK_MASK) >>> 6] & (1L << row)) != 0;
+    }
+
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return this.cardinality == 0;
+    }
+
+    /**
+     * Removes all rows not in the given bitmap from this bitmap.
+     *
+     * @param other The other bitmap
+     */
+    public void and(RowBitmap other) {
+        int cardinality = 0;
+        for (int i = 0; i < this.chunks.length; i++) {
+            long[] chunk = this.chunks[i];
+            if (chunk == null) {
+                continue;
+            }
+
+            long[] otherChunk = other.getChunk(i);
+            if (otherChunk == null) {
+                this.chunks[i] = null;
+                continue;
+            }
+
+            int chunkCardinality = 0;
+            for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                chunk[word] &= otherChunk[word];
+                chunkCardinality += Long.bitCount(chunk[word]);
+            }
+
+            if (chunkCardinality == 0) {
+                this.chunks[i] = null;
+            }
+
+            cardinality += chunkCardinality;
+        }
+
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Adds all rows in the given bitmap to this bitmap.
+     *
+     * @param other The other bitmap
+     */
+    public void or(RowBitmap other) {
+        if (other.chunks.length > this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, other.chunks.length);
+        }
+
+        int cardinality = 0;
+        for (int i = 0; i < this.chunks.length; i++) {
+            long[] otherChunk = other.getChunk(i);
+            long[] chunk = this.chunks[i];
+            if (otherChunk != null) {
+                if (chunk == null) {
+                    chunk = this.chunks[i] = otherChunk.clone();
+                } else {
+                    for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                        chunk[word] |= otherChunk[word];
+                    }
+                }
+            }
+
+            if (chunk != null) {
+                for (long word : chunk) {
+                    cardinality += Long.bitCount(word);
+                }
+            }
+        }
+
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @return The rows in this bitmap, in ascending order
+     */
+    public int[] toArray() {
+        int[] rows = new int[this.cardinality];
+        int count = 0;
+        for (int i = 0; i < this.chunks.length; i++) {
+            long[] chunk = this.chunks[i];
+            if (chunk == null) {
+                continue;
+            }
+
+            for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                long bits = chunk[word];
+                while (bits != 0) {
+                    rows[count++] = (i << CHUNK_SHIFT) | (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * @return The rows in this bitmap, in ascending order
+     */
+    public List<Integer> toList() {
+        List<Integer> rows = Lists.newArrayListWithCapacity(this.cardinality);
+        for (int i = 0; i < this.chunks.length; i++) {
+            long[] chunk = this.chunks[i];
+            if (chunk == null) {
+                continue;
+            }
+
+            for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                long bits = chunk[word];
+                while (bits != 0) {
+                    rows.add((i << CHUNK_SHIFT) | (word << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    // Internals
+
+    private long[] getChunk(int chunkIndex) {
+        return chunkIndex < this.chunks.length ? this.chunks[chunkIndex] : null;
+    }
+}
@@ -0,0 +1,179 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a {@link MemoryTable} within its {@link MemoryOptions#maximumWeight() maximum
+ * weight}, by having a {@link TinyLfuPolicy W-TinyLFU policy} decide which keys to
+ * evict. Reads are recorded by the policy through a buffer, and dropped if the buffer
+ * is full, so that readers never wait for it. Does nothing if the table has no maximum
+ * weight.
+ */
+class RowEviction {
+
+    private static final int READ_BUFFER_SIZE = 256;
+
+    // Decides which keys to evict, or null if the table has no maximum weight. Guarded by the lock
+    private final TinyLfuPolicy<ValueContainer> policy;
+    private final RowWeigher weigher;
+    private final Lock lock;
+    // Keys read, waiting to be recorded by the policy
+    private final Queue<ValueContainer> readBuffer;
+    // Keys evicted by the policy, waiting for their rows to be deleted
+    private final Queue<ValueContainer> evictedKeys;
+
+    /**
+     * @param maximumWeight The maximum weight of the table, in bytes, or 0 if it has none
+     */
+    RowEviction(long maximumWeight, RowWeigher weigher) {
+        this.policy = maximumWeight <= 0 ? null : new TinyLfuPolicy<>(maximumWeight);
+        this.weigher = weigher;
+        this.lock = new ReentrantLock();
+        this.readBuffer = new ArrayBlockingQueue<>(READ_BUFFER_SIZE);
+        this.evictedKeys = new ConcurrentLinkedQueue<>();
+    }
+
+    boolean isEnabled() {
+        return this.policy != null;
+    }
+
+    /**
+     * @return The maximum weight of the table, in bytes, or 0 if it has none
+     */
+    long getMaximum() {
+        return this.policy == null ? 0 : this.policy.getMaximum();
+    }
+
+    /**
+     * @return The estimated size of the rows kept, in bytes, or 0 if the table has no maximum weight
+     */
+    long getWeight() {
+        if (this.policy == null) {
+            return 0;
+        }
+
+        this.lock.lock();
+        try {
+            return this.policy.getWeight();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Records a write of the given key. Keys evicted to make room are queued, and their
+     * rows deleted once the stripes held by the writer are released.
+     *
+     * @see #pollEvicted()
+     */
+    void recordWrite(ValueContainer key, Object[] values) {
+        if (this.policy == null) {
+            return;
+        }
+
+        long weight = this.weigher.weigh(values);
+        this.lock.lock();
+        try {
+            this.drainReads();
+            this.evictedKeys.addAll(this.policy.recordWrite(key, weight));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void recordRemoval(ValueContainer key) {
+        if (this.policy == null) {
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            this.policy.remove(key);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Buffers a read of the given key, to be recorded by the policy later.
+     */
+    void recordRead(ValueContainer key) {
+        if (this.policy != null) {
+            // Dropped if full, the policy only needs a sample of the reads
+            this.readBuffer.offer(key);
+        }
+    }
+
+    /**
+     * Records the buffered reads by the policy, unless another thread is using it.
+     */
+    void drainReadBuffer() {
+        if (this.policy == null || this.readBuffer.isEmpty() || !this.lock.tryLock()) {
+            return;
+        }
+
+        try {
+            this.drainReads();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The keys evicted by the policy since the last time
+     */
+    List<ValueContainer> pollEvicted() {
+        List<ValueContainer> keys = Lists.newArrayList();
+        ValueContainer evicted;
+        while ((evicted = this.evictedKeys.poll()) != null) {
+            keys.add(evicted);
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return If the given key is kept by the policy, having been saved again and
+     * admitted anew since it was evicted
+     */
+    boolean isKept(ValueContainer key) {
+        this.lock.lock();
+        try {
+            return this.policy.contains(key);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void clear() {
+        if (this.policy == null) {
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            this.readBuffer.clear();
+            this.evictedKeys.clear();
+            this.policy.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Internals
+
+    private void drainReads() {
+        ValueContainer key;
+        while ((key = this.readBuffer.poll()) != null) {
+            this.policy.recordAccess(key);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.util.UtilLog;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * The times the expiring rows of a {@link MemoryTable} expire at. Keys are kept in a
+ * {@link TimingWheel timing wheel}, and a background thread has the table delete them
+ * once expired, looking only at the rows expiring.
+ *
+ * @see MemoryOptions#timeToLive()
+ */
+class RowExpiry {
+
+    private static final long TICK_MILLIS = 100;
+
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EasyDB Memory Reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final MemoryTable<?> table;
+    // Default time to live of rows, in milliseconds, or 0 if kept until deleted
+    private final long timeToLive;
+    // The time every expiring key expires at, changed with the stripe of the key locked
+    private final Map<ValueContainer, Long> deadlines;
+    private final TimingWheel<ValueContainer> wheel;
+    private volatile Reaper reaper;
+
+    RowExpiry(MemoryTable<?> table, MemoryOptions options) {
+        this.table = table;
+        this.timeToLive = options == null ? 0 : options.timeToLiveUnit().toMillis(options.timeToLive());
+        this.deadlines = Maps.newConcurrentMap();
+        this.wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    }
+
+    /**
+     * @return The number of keys waiting to expire
+     */
+    int size() {
+        return this.deadlines.size();
+    }
+
+    /**
+     * @param timeToLive The time to live, in milliseconds, or 0 for the default of the table
+     * @return The time a row saved now expires at, or 0 if it does not
+     */
+    long getDeadline(long timeToLive) {
+        if (timeToLive <= 0) {
+            timeToLive = this.timeToLive;
+        }
+
+        return timeToLive <= 0 ? 0 : System.currentTimeMillis() + timeToLive;
+    }
+
+    /**
+     * @return The time the given key expires at, or 0 if it does not
+     */
+    long getDeadline(ValueContainer key) {
+        Long deadline = this.deadlines.get(key);
+        return deadline == null ? 0 : deadline;
+    }
+
+    /**
+     * Sets the time the given key expires at. The stripe of the key must be locked.
+     *
+     * @param deadline The time, or 0 if it does not expire
+     */
+    void schedule(ValueContainer key, long deadline) {
+        if (deadline == 0) {
+            this.deadlines.remove(key);
+            return;
+        }
+
+        // Any earlier deadline of the key is left in the wheel, and ignored when reached
+        this.deadlines.put(key, deadline);
+        this.wheel.schedule(key, deadline);
+
+        if (this.reaper == null) {
+            this.startReaper();
+        }
+    }
+
+    void remove(ValueContainer key) {
+        this.deadlines.remove(key);
+    }
+
+    /**
+     * @return The keys that may have expired since the last time. They may have been
+     * saved again since, so are only expired if {@link #isExpired(ValueContainer, long)}
+     * with their stripes locked.
+     */
+    List<ValueContainer> advance(long now) {
+        return this.wheel.advance(now);
+    }
+
+    /**
+     * @return If the given key has expired at the given time. The stripe of the key
+     * must be locked.
+     */
+    boolean isExpired(ValueContainer key, long now) {
+        Long deadline = this.deadlines.get(key);
+        return deadline != null && deadline <= now;
+    }
+
+    void clear() {
+        this.deadlines.clear();
+        this.wheel.clear();
+    }
+
+    // Internals
+
+    private synchronized void startReaper() {
+        if (this.reaper != null) {
+            return;
+        }
+
+        Reaper reaper = new Reaper(this.table);
+        reaper.future = REAPER.scheduleWithFixedDelay(reaper, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        this.reaper = reaper;
+    }
+
+    /**
+     * Expires the rows of a table every tick. Only holds on to the table weakly, and
+     * stops once it is gone.
+     */
+    private static class Reaper implements Runnable {
+
+        private final WeakReference<MemoryTable<?>> table;
+        private volatile ScheduledFuture<?> future;
+
+        private Reaper(MemoryTable<?> table) {
+            this.table = new WeakReference<>(table);
+        }
+
+        @Override
+        public void run() {
+            MemoryTable<?> table = this.table.get();
+            if (table == null) {
+                this.future.cancel(false);
+                return;
+            }
+
+            try {
+                table.expire();
+            } catch (Throwable t) {
+                UtilLog.log(Level.SEVERE, "Failed to expire rows of table " + table.getName() + "!", t);
+            }
+        }
+    }
+}
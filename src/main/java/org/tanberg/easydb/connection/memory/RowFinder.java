@@ -0,0 +1,276 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import org.apache.commons.lang3.ArrayUtils;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.store.RowVersions;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.query.traverse.RequirementCase;
+import org.tanberg.easydb.query.traverse.RequirementTraverser;
+import org.tanberg.easydb.util.IndexHelper;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the rows of a {@link MemoryTable} matching a requirement, looking them up by
+ * key or in the {@link IndexRegistry index maps} where possible, and {@link RowScanner
+ * scanning} the rows otherwise. Values covered by an index are read from the index
+ * maps alone.
+ */
+class RowFinder<T> {
+
+    private final ItemProfile<T> profile;
+    private final PrimaryKeyIndex keyIndex;
+    private final RowVersions versions;
+    private final IndexRegistry<T> indices;
+    private final RowScanner<T> scanner;
+
+    RowFinder(ItemProfile<T> profile, PrimaryKeyIndex keyIndex, RowVersions versions, IndexRegistry<T> indices, RowScanner<T> scanner) {
+        this.profile = profile;
+        this.keyIndex = keyIndex;
+        this.versions = versions;
+        this.indices = indices;
+        this.scanner = scanner;
+    }
+
+    /**
+     * @return The first row visible in the given version matching the given
+     * requirement, or {@link RowVersions#NO_ROW} if there is none
+     */
+    int getFirstRow(QueryRequirement requirement, long version) {
+        RequirementTraverser traverser = new RequirementTraverser(requirement);
+
+        for (RequirementCase requirementCase : traverser.getCases()) {
+            Collection<Integer> rowsFound = this.getRows(requirementCase.getRequirements(), version);
+            if (rowsFound.isEmpty()) {
+                continue;
+            }
+
+            return Iterables.getFirst(rowsFound, RowVersions.NO_ROW);
+        }
+
+        return RowVersions.NO_ROW;
+    }
+
+    /**
+     * @param version The version, or {@link RowVersions#LATEST} for the latest rows
+     * @return The rows visible in the given version matching the given requirement
+     */
+    Collection<Integer> getRows(QueryRequirement requirement, long version) {
+        RequirementTraverser traverser = new RequirementTraverser(requirement);
+        List<RequirementCase> cases = traverser.getCases();
+
+        // Cases answered by bitmap indices alone are combined a word at a time
+        if (cases.size() > 1 && cases.stream().allMatch(requirementCase -> this.indices.isBitmapCase(requirementCase.getRequirements()))) {
+            RowBitmap bitmap = new RowBitmap();
+            for (RequirementCase requirementCase : cases) {
+                bitmap.or(this.indices.getBitmap(IndexHelper.combineIndices(this.profile, requirementCase.getRequirements()),
+                  requirementCase.getRequirements()));
+            }
+
+            List<Integer> matching = bitmap.toList();
+            matching.removeIf(row -> !this.versions.isVisible(row, version));
+            return matching;
+        }
+
+        // Cases answered by indices are merged as sorted lists, without hashing every row
+        if (cases.size() > 1 && cases.stream().allMatch(requirementCase -> this.indices.isIndexed(requirementCase.getRequirements()))) {
+            List<PostingList> lists = Lists.newArrayListWithCapacity(cases.size());
+            for (RequirementCase requirementCase : cases) {
+                Collection<Integer> rowsFound = this.getRows(requirementCase.getRequirements(), version);
+                lists.add(PostingList.of(rowsFound.stream().mapToInt(Integer::intValue).toArray()));
+            }
+
+            return PostingList.union(lists).toList();
+        }
+
+        Set<Integer> rows = Sets.newLinkedHashSet();
+        for (RequirementCase requirementCase : cases) {
+            Collection<Integer> rowsFound = this.getRows(requirementCase.getRequirements(), version);
+            rows.addAll(rowsFound);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Counts the rows visible in the given version matching the given requirement,
+     * from the index maps alone if an index covers the fields of the requirement.
+     */
+    long count(QueryRequirement requirement, long version) {
+        List<RequirementCase> cases = new RequirementTraverser(requirement).getCases();
+        if (cases.size() == 1) {
+            List<SimpleRequirement> requirements = cases.get(0).getRequirements();
+            MemoryIndexMap<T> indexMap = this.indices.getCoveringIndex(requirements, Collections.emptyList());
+            if (indexMap != null) {
+                long[] count = new long[1];
+                indexMap.forEachEntry(requirements, (values, rows) -> count[0] += this.countVisible(rows, version));
+                return count[0];
+            }
+        }
+
+        // Cases may match the same rows, which must only be counted once
+        return this.getRows(requirement, version).size();
+    }
+
+    /**
+     * Finds the values of the given fields from the index maps alone, if every case of
+     * the given requirement has an index covering its fields and the given fields.
+     *
+     * @return The values, or null if some case has no such index
+     */
+    List<Object[]> findCovered(QueryRequirement requirement, PersistentField<T>[] fields, long version) {
+        List<List<SimpleRequirement>> cases;
+        if (requirement == null) {
+            cases = Collections.singletonList(Collections.emptyList());
+        } else {
+            cases = new RequirementTraverser(requirement).getCases().stream()
+              .map(RequirementCase::getRequirements)
+              .collect(Collectors.toList());
+        }
+
+        List<MemoryIndexMap<T>> indexMaps = Lists.newArrayListWithCapacity(cases.size());
+        for (List<SimpleRequirement> requirements : cases) {
+            MemoryIndexMap<T> indexMap = this.indices.getCoveringIndex(requirements, Arrays.asList(fields));
+            if (indexMap == null) {
+                return null;
+            }
+
+            indexMaps.add(indexMap);
+        }
+
+        List<Object[]> list = Lists.newArrayList();
+        // Cases may match the same rows, which must only be found once
+        Set<Integer> found = cases.size() > 1 ? Sets.newHashSet() : null;
+        for (int i = 0; i < cases.size(); i++) {
+            MemoryIndexMap<T> indexMap = indexMaps.get(i);
+            int[] positions = new int[fields.length];
+            for (int j = 0; j < fields.length; j++) {
+                positions[j] = ArrayUtils.indexOf(indexMap.getIndex().getFields(), fields[j]);
+            }
+
+            indexMap.forEachEntry(cases.get(i), (indexValues, rows) -> {
+                for (int row : rows) {
+                    if (!this.versions.isVisible(row, version) || (found != null && !found.add(row))) {
+                        continue;
+                    }
+
+                    Object[] values = new Object[positions.length];
+                    for (int j = 0; j < positions.length; j++) {
+                        values[j] = indexValues[positions[j]];
+                    }
+
+                    list.add(values);
+                }
+            });
+        }
+
+        return list;
+    }
+
+    // Internals
+
+    private Collection<Integer> getRows(List<SimpleRequirement> requirements, long version) {
+        MemoryIndexMap<T> created = this.indices.getCreatedIndex(requirements);
+        if (created != null) {
+            List<SimpleRequirement> lookup = this.indices.getCreatedLookup(created, requirements);
+            List<Integer> matching = Lists.newArrayList(created.getRows(lookup));
+            matching.removeIf(row -> !this.versions.isVisible(row, version));
+
+            // Computed values may be shared by other values, so the rows found are checked against every requirement
+            List<SimpleRequirement> residual = Lists.newArrayList(requirements);
+            if (created.getIndex().getExpression() == null) {
+                residual.removeAll(lookup);
+            }
+
+            return residual.isEmpty() ? matching : this.scanner.scan(Ints.toArray(matching), residual, version, false);
+        }
+
+        Collection<WrappedIndex<T>> indices = IndexHelper.combineIndices(this.profile, requirements);
+        if (indices == null) {
+            return this.getRowsFromKeys(requirements, version);
+        }
+
+        List<WrappedIndex<T>> chosen = IndexHelper.chooseIndices(indices, requirements,
+          index -> this.indices.estimate(index, requirements), this.keyIndex.size());
+        if (chosen.isEmpty()) {
+            // No index narrows the rows down enough to be worth it
+            return this.scanner.scan(this.keyIndex.getRows(), requirements, version, true);
+        }
+
+        Collection<Integer> matching;
+        if (chosen.size() == 1) {
+            matching = this.indices.getRows(Iterables.getOnlyElement(chosen), requirements);
+        } else {
+            matching = this.indices.getPostingList(chosen, requirements).toList();
+        }
+
+        // The index maps hold every version of a row, so only keep the visible ones
+        matching.removeIf(row -> !this.versions.isVisible(row, version));
+
+        List<SimpleRequirement> residual = IndexHelper.getResidualRequirements(chosen, requirements);
+        if (residual.isEmpty()) {
+            return matching;
+        }
+
+        return this.scanner.scan(matching.stream().mapToInt(Integer::intValue).toArray(), residual, version, false);
+    }
+
+    private Collection<Integer> getRowsFromKeys(List<SimpleRequirement> requirements, long version) {
+        PersistentField<T>[] keys = this.profile.getKeys();
+
+        // Speed up for the most common case, where the query is for a single key with a single field
+        if (keys.length == 1 && requirements.size() == 1 && requirements.get(0).getOperator() == Operator.EQUALS) {
+            // Not wrapped, as the index may keep the keys unboxed
+            int row = this.keyIndex.getSingle(requirements.get(0).getValue());
+            row = row == PrimaryKeyIndex.NO_ROW ? row : this.versions.resolve(row, version);
+            return row == RowVersions.NO_ROW ? Collections.emptyList() : Collections.singletonList(row);
+        }
+
+        // Speed up for a common case, where the query is for a single key
+        if (requirements.size() == keys.length
+          && requirements.stream().allMatch(requirement -> requirement.getOperator() == Operator.EQUALS)) {
+            ValueContainer key = ValueContainer.getKeys(this.profile, (FieldValue<T>[]) requirements.stream()
+              .map(requirement -> new FieldValue<>((PersistentField<T>) requirement.getField(), requirement.getValue()))
+              .toArray(FieldValue[]::new));
+            int row = this.keyIndex.get(key);
+            row = row == PrimaryKeyIndex.NO_ROW ? row : this.versions.resolve(row, version);
+            return row == RowVersions.NO_ROW ? Collections.emptyList() : Collections.singletonList(row);
+        }
+
+        int[] rows;
+        if (this.keyIndex.isOrdered()) {
+            // Keys are ordered field by field, so we can use a range on a leading part of the key
+            rows = this.keyIndex.getRows(MemoryRange.of(keys, requirements));
+        } else {
+            rows = this.keyIndex.getRows();
+        }
+
+        return this.scanner.scan(rows, requirements, version, true);
+    }
+
+    private int countVisible(int[] rows, long version) {
+        int count = 0;
+        for (int row : rows) {
+            if (this.versions.isVisible(row, version)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,253 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps keys to the IDs of the rows holding them, where every row is mapped to at
+ * most one key. Built for the {@link MemoryIndexMap index maps}, where a single key
+ * may be held by a large share of all rows.
+ * <p>
+ * The rows of a key are kept sorted in an array, so that they are read as a
+ * {@link PostingList posting list} without sorting them. Rows are mostly added in
+ * increasing order, which appends them. Every key has its own lock, and readers do
+ * not lock unless the key is changed while they read it.
+ * <p>
+ * A row must not be added and removed by different threads at the same time.
+ */
+public class RowMultimap<K> {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ConcurrentMap<K, Bucket<K>> buckets;
+    private final AtomicInteger size;
+    // The bucket of every row, in chunks
+    private volatile Bucket<K>[][] rowBuckets;
+
+    /**
+     * @param order The order of the keys, or null if not ordered
+     */
+    public RowMultimap(Comparator<? super K> order) {
+        this.buckets = order == null ? Maps.newConcurrentMap() : new ConcurrentSkipListMap<>(order);
+        this.size = new AtomicInteger();
+        this.clear();
+    }
+
+    public void put(K key, int row) {
+        this.ensureCapacity(row + 1);
+
+        while (true) {
+            Bucket<K> bucket = this.buckets.computeIfAbsent(key, Bucket::new);
+            long stamp = bucket.lock.writeLock();
+            try {
+                // Emptied and removed while we waited for the lock
+                if (bucket.removed) {
+                    continue;
+                }
+
+                int size = bucket.size;
+                if (size == bucket.rows.length) {
+                    bucket.rows = Arrays.copyOf(bucket.rows, size * 2);
+                }
+
+                int position = size;
+                if (size > 0 && bucket.rows[size - 1] > row) {
+                    position = -Arrays.binarySearch(bucket.rows, 0, size, row) - 1;
+                }
+
+                System.arraycopy(bucket.rows, position, bucket.rows, position + 1, size - position);
+                bucket.rows[position] = row;
+                bucket.size++;
+                this.rowBuckets[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = bucket;
+                this.size.incrementAndGet();
+                return;
+            } finally {
+                bucket.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Removes the given row from the key holding it.
+     *
+     * @param row The row ID
+     * @return If the row was held by any key
+     */
+    public boolean remove(int row) {
+        Bucket<K>[][] rowBuckets = this.rowBuckets;
+        if ((row >>> CHUNK_SHIFT) >= rowBuckets.length) {
+            return false;
+        }
+
+        Bucket<K> bucket = rowBuckets[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        if (bucket == null) {
+            return false;
+        }
+
+        long stamp = bucket.lock.writeLock();
+        try {
+            int position = Arrays.binarySearch(bucket.rows, 0, bucket.size, row);
+            System.arraycopy(bucket.rows, position + 1, bucket.rows, position, bucket.size - position - 1);
+            bucket.size--;
+            rowBuckets[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = null;
+            this.size.decrementAndGet();
+
+            if (bucket.size == 0) {
+                bucket.removed = true;
+                this.buckets.remove(bucket.key, bucket);
+            }
+
+            return true;
+        } finally {
+            bucket.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param key The key
+     * @return A copy of the rows holding the given key, in increasing order
+     */
+    public int[] get(K key) {
+        Bucket<K> bucket = this.buckets.get(key);
+        if (bucket == null) {
+            return new int[0];
+        }
+
+        long stamp = bucket.lock.tryOptimisticRead();
+        int[] rows = bucket.rows;
+        int size = Math.min(bucket.size, rows.length);
+        int[] copy = Arrays.copyOf(rows, size);
+        if (bucket.lock.validate(stamp)) {
+            return copy;
+        }
+
+        stamp = bucket.lock.readLock();
+        try {
+            return Arrays.copyOf(bucket.rows, bucket.size);
+        } finally {
+            bucket.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds the rows holding the given key to the given list.
+     *
+     * @param key  The key
+     * @param list The list
+     */
+    public void addTo(K key, List<Integer> list) {
+        for (int row : this.get(key)) {
+            list.add(row);
+        }
+    }
+
+    public List<Integer> getList(K key) {
+        List<Integer> list = Lists.newArrayList();
+        this.addTo(key, list);
+        return list;
+    }
+
+    /**
+     * @param key The key
+     * @return The number of rows holding the given key, which may be outdated as soon
+     * as it is returned
+     */
+    public int size(K key) {
+        Bucket<K> bucket = this.buckets.get(key);
+        return bucket == null ? 0 : bucket.size;
+    }
+
+    /**
+     * @return The number of rows in this map
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * @return The number of distinct keys in this map
+     */
+    public int getKeyCount() {
+        return this.buckets.size();
+    }
+
+    public Set<K> keySet() {
+        return this.buckets.keySet();
+    }
+
+    /**
+     * @return A view of the keys of this map, for finding ranges of keys
+     * @throws UnsupportedOperationException If the keys are not ordered
+     */
+    public NavigableMap<K, ?> asNavigableMap() {
+        if (!(this.buckets instanceof NavigableMap)) {
+            throw new UnsupportedOperationException("Keys are not ordered!");
+        }
+
+        return (NavigableMap<K, ?>) this.buckets;
+    }
+
+    /**
+     * Removes all keys and rows. Must not be used while the map is changed.
+     */
+    public synchronized void clear() {
+        for (Bucket<K> bucket : this.buckets.values()) {
+            bucket.removed = true;
+        }
+
+        this.buckets.clear();
+        this.size.set(0);
+        this.rowBuckets = new Bucket[0][];
+    }
+
+    // Internals
+
+    private void ensureCapacity(int rows) {
+        int required = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (this.rowBuckets.length >= required) {
+            return;
+        }
+
+        synchronized (this) {
+            int current = this.rowBuckets.length;
+            if (current >= required) {
+                return;
+            }
+
+            int chunks = Math.max(required, current * 2);
+            Bucket<K>[][] rowBuckets = Arrays.copyOf(this.rowBuckets, chunks);
+            for (int i = current; i < chunks; i++) {
+                rowBuckets[i] = new Bucket[CHUNK_SIZE];
+            }
+
+            this.rowBuckets = rowBuckets;
+        }
+    }
+
+    private static final class Bucket<K> {
+
+        private final K key;
+        private final StampedLock lock;
+        private int[] rows;
+        private volatile int size;
+        private boolean removed;
+
+        private Bucket(K key) {
+            this.key = key;
+            this.lock = new StampedLock();
+            this.rows = new int[4];
+        }
+    }
+}
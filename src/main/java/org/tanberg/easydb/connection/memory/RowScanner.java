@@ -0,0 +1,156 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.ArrayUtils;
+import org.tanberg.easydb.EasyDB;
+import org.tanberg.easydb.configuration.EasyDBConfiguration;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.connection.memory.store.RowVersions;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checks the rows of a {@link MemoryTable} against requirements, a column at a time,
+ * on several threads once there are more rows than the {@link
+ * EasyDBConfiguration#getParallelScanThreshold() parallel scan threshold}.
+ */
+class RowScanner<T> {
+
+    private final ItemProfile<T> profile;
+    private final RowStore store;
+    private final RowVersions versions;
+
+    RowScanner(ItemProfile<T> profile, RowStore store, RowVersions versions) {
+        this.profile = profile;
+        this.store = store;
+        this.versions = versions;
+    }
+
+    /**
+     * Replaces the first {@code count} rows of the given array with the version of
+     * them visible in the given version, removing rows without a visible version.
+     *
+     * @return The rows
+     */
+    int[] resolve(int[] rows, int count, long version) {
+        int visible = 0;
+        for (int i = 0; i < count; i++) {
+            int row = this.versions.resolve(rows[i], version);
+            if (row != RowVersions.NO_ROW) {
+                rows[visible++] = row;
+            }
+        }
+
+        return visible == rows.length ? rows : Arrays.copyOf(rows, visible);
+    }
+
+    /**
+     * Finds the rows visible in the given version that match all the requirements,
+     * on several threads if there are enough rows.
+     *
+     * @param rows    The rows to scan, which are changed in the process
+     * @param resolve If the rows may be of other versions than the given one
+     * @return The matching rows
+     */
+    List<Integer> scan(int[] rows, List<SimpleRequirement> requirements, long version, boolean resolve) {
+        if (!resolve) {
+            int count = rows.length;
+            for (SimpleRequirement requirement : requirements) {
+                count = this.eliminate(rows, count, requirement);
+            }
+
+            rows = Arrays.copyOf(rows, count);
+        } else if (rows.length >= EasyDB.getConfiguration().getParallelScanThreshold()) {
+            rows = ForkJoinPool.commonPool().invoke(new ScanTask(rows, 0, rows.length, requirements, version));
+        } else {
+            rows = this.scan(rows, requirements, version);
+        }
+
+        List<Integer> matching = Lists.newArrayListWithCapacity(rows.length);
+        for (int row : rows) {
+            matching.add(row);
+        }
+
+        return matching;
+    }
+
+    // Internals
+
+    /**
+     * Finds the rows visible in the given version that match all the requirements.
+     *
+     * @param rows The rows to scan, which are changed in the process
+     * @return The matching rows
+     */
+    private int[] scan(int[] rows, List<SimpleRequirement> requirements, long version) {
+        rows = this.resolve(rows, rows.length, version);
+        int count = rows.length;
+        for (SimpleRequirement requirement : requirements) {
+            count = this.eliminate(rows, count, requirement);
+        }
+
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    private int eliminate(int[] rows, int count, SimpleRequirement requirement) {
+        PersistentField<T> field = (PersistentField<T>) requirement.getField();
+        int column = ArrayUtils.indexOf(this.profile.getStoredFields(), field);
+        if (column == -1) {
+            throw new IllegalArgumentException("Couldn't find key " + field + "!");
+        }
+
+        Object reqValue = requirement.getValue();
+        Operator operator = requirement.getOperator();
+        return this.store.filter(rows, count, column, operator, reqValue);
+    }
+
+    /**
+     * Scans a range of rows, splitting it in two until small enough to be scanned on
+     * a single thread. The matching rows are kept in the order they were given.
+     */
+    private class ScanTask extends RecursiveTask<int[]> {
+
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final List<SimpleRequirement> requirements;
+        private final long version;
+
+        private ScanTask(int[] rows, int from, int to, List<SimpleRequirement> requirements, long version) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.requirements = requirements;
+            this.version = version;
+        }
+
+        @Override
+        protected int[] compute() {
+            int length = this.to - this.from;
+            // Split into a few chunks per thread, so that threads finishing early can help out
+            int chunkSize = Math.max(4096, this.rows.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            if (length <= chunkSize) {
+                return scan(Arrays.copyOfRange(this.rows, this.from, this.to), this.requirements, this.version);
+            }
+
+            int middle = this.from + length / 2;
+            ScanTask left = new ScanTask(this.rows, this.from, middle, this.requirements, this.version);
+            ScanTask right = new ScanTask(this.rows, middle, this.to, this.requirements, this.version);
+            left.fork();
+
+            int[] rightRows = right.compute();
+            int[] leftRows = left.join();
+
+            int[] merged = Arrays.copyOf(leftRows, leftRows.length + rightRows.length);
+            System.arraycopy(rightRows, 0, merged, leftRows.length, rightRows.length);
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.DataType;
+import org.tanberg.easydb.connection.memory.store.StringDictionary;
+import org.tanberg.easydb.field.PersistentField;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Estimates the number of bytes a row takes up in memory, from the {@link DataType
+ * types} of its fields. Values are assumed to be kept as objects on the heap, and
+ * the estimate includes the bookkeeping of the row in the key index, its versions
+ * and the index maps. Values of custom types are given a fixed size, and strings of
+ * dictionary encoded columns none, as they are shared.
+ */
+public class RowWeigher {
+
+    private static final long REFERENCE = 8;
+    private static final long OBJECT_HEADER = 16;
+    private static final long ROW_OVERHEAD = 64;
+    private static final long INDEX_ENTRY = 32;
+    private static final long CUSTOM_VALUE = 64;
+
+    private final DataType[] types;
+    private final long overhead;
+
+    /**
+     * @param fields       The stored fields, one for each column
+     * @param dictionaries The dictionary of every column, or null for columns that are not dictionary encoded
+     * @param indices      The number of index maps of the table
+     */
+    public RowWeigher(PersistentField<?>[] fields, StringDictionary[] dictionaries, int indices) {
+        this.types = new DataType[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            // Strings of a dictionary are shared, like enum constants
+            this.types[i] = dictionaries[i] == null ? fields[i].getType() : DataType.ENUM;
+        }
+
+        this.overhead = ROW_OVERHEAD + INDEX_ENTRY * indices;
+    }
+
+    /**
+     * @param values The values of the row, in the order of the fields
+     * @return The estimated size of the row, in bytes
+     */
+    public long weigh(Object[] values) {
+        long weight = this.overhead;
+        for (int i = 0; i < values.length; i++) {
+            weight += REFERENCE + weigh(this.types[i], values[i]);
+        }
+
+        return weight;
+    }
+
+    /**
+     * @return The estimated size of the given value, not counting the reference to it
+     */
+    public static long weigh(DataType type, Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        switch (type) {
+            case BYTE:
+            case BOOLEAN:
+            case SHORT:
+            case INTEGER:
+            case FLOAT:
+                return OBJECT_HEADER;
+            case LONG:
+            case DOUBLE:
+                return OBJECT_HEADER + 8;
+            case STRING:
+                // The string and its backing array, with one byte per character for latin text
+                return 2 * OBJECT_HEADER + 8 + align(((String) value).length());
+            case ENUM:
+                // Constants are shared
+                return 0;
+            case LIST:
+            case SET:
+                // Elements are weighed as if they were small boxed values
+                return 3 * OBJECT_HEADER + ((Collection<?>) value).size() * (REFERENCE + 2 * OBJECT_HEADER);
+            case MAP:
+                return 3 * OBJECT_HEADER + ((Map<?, ?>) value).size() * (2 * REFERENCE + 4 * OBJECT_HEADER);
+            case ARRAY:
+                return OBJECT_HEADER + align(Array.getLength(value) * REFERENCE);
+            default:
+                return CUSTOM_VALUE;
+        }
+    }
+
+    // Internals
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
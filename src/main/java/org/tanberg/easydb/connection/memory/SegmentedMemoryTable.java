@@ -0,0 +1,513 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.CombinedRequirement;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.query.traverse.RequirementCase;
+import org.tanberg.easydb.query.traverse.RequirementTraverser;
+import org.tanberg.easydb.util.UtilCompare;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Items kept in memory, split over a number of {@link MemoryTable segments} by the
+ * hash of their key. Every segment has its own rows, indices and locks, so writes to
+ * different segments never wait for each other. Queries for a single key are sent to
+ * the segment of the key, and other queries are run on all segments in parallel.
+ * <p>
+ * Changes spanning several segments are made segment by segment, so readers may see
+ * them partially applied. An update changing the key of a row moves the row to the
+ * segment of its new key, by deleting it and inserting it again with both keys locked,
+ * so that no other write to either key is made in between.
+ * <p>
+ * Views are made of a view of every segment, and the {@link #getUnsafeAccessor()
+ * unsafe accessor} gives the rows of all segments, while the index maps are reached
+ * through the {@link #getTables() segments}.
+ * <p>
+ * Auto increment values are handed out to every thread in blocks, so that inserts do
+ * not all change the same counter. Values are unique, but not given out in order of
+ * insertion across threads, and values left in the block of a thread are never used.
+ *
+ * @see MemoryOptions#segments()
+ */
+public class SegmentedMemoryTable<T> implements MemoryStorage<T> {
+
+    private static final int AUTO_INCREMENT_BLOCK = 64;
+
+    private final String name;
+    private final ItemProfile<T> profile;
+    private final List<MemoryTable<T>> segments;
+    // The next auto increment value not handed out to a thread, or 0 if not yet read from the segments
+    private final AtomicInteger autoIncrement;
+    // The next value and the end of the block of the current thread
+    private final ThreadLocal<int[]> autoIncrementBlock;
+    // Counted here, as a read of all segments would otherwise be counted as a miss by each segment
+    private final LongAdder misses;
+    private final Map<String, SegmentedMemoryView<T>> views;
+    private final UnsafeMemoryAccessor<T> unsafeAccessor;
+
+    /**
+     * @param segments The number of segments, at least 2
+     */
+    public SegmentedMemoryTable(String name, ItemProfile<T> profile, int segments) {
+        if (segments < 2) {
+            throw new IllegalArgumentException("A segmented table must have at least 2 segments!");
+        }
+
+        this.name = name;
+        this.profile = profile;
+        this.segments = Lists.newArrayListWithCapacity(segments);
+        for (int i = 0; i < segments; i++) {
+            this.segments.add(new MemoryTable<>(name + "-" + i, profile, segments));
+        }
+
+        this.autoIncrement = new AtomicInteger();
+        this.autoIncrementBlock = ThreadLocal.withInitial(() -> new int[2]);
+        this.misses = new LongAdder();
+        this.views = Maps.newConcurrentMap();
+        this.unsafeAccessor = new UnsafeMemoryAccessor<>(new KeyToValueView(), null);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ItemProfile<T> getProfile() {
+        return profile;
+    }
+
+    @Override
+    public List<MemoryTable<T>> getTables() {
+        return Collections.unmodifiableList(this.segments);
+    }
+
+    @Override
+    public UnsafeMemoryAccessor<T> getUnsafeAccessor() {
+        return unsafeAccessor;
+    }
+
+    @Override
+    public long getOffHeapUsage() {
+        return this.segments.stream().mapToLong(MemoryTable::getOffHeapUsage).sum();
+    }
+
+    @Override
+    public double getLockContention() {
+        return this.segments.stream().mapToDouble(MemoryTable::getLockContention).average().orElse(0);
+    }
+
+    @Override
+    public long getHits() {
+        return this.segments.stream().mapToLong(MemoryTable::getHits).sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.segments.stream().mapToLong(MemoryTable::getEvictions).sum();
+    }
+
+    @Override
+    public int getSpilledRows() {
+        return this.segments.stream().mapToInt(MemoryTable::getSpilledRows).sum();
+    }
+
+    @Override
+    public long getWeight() {
+        return this.segments.stream().mapToLong(MemoryTable::getWeight).sum();
+    }
+
+    @Override
+    public FieldValue<T>[] findFirst(QueryRequirement requirement) {
+        return this.findFirst(requirement, MemoryTable::findFirst);
+    }
+
+    @Override
+    public Object[] findFirstRow(QueryRequirement requirement) {
+        return this.findFirst(requirement, MemoryTable::findFirstRow);
+    }
+
+    @Override
+    public List<FieldValue<T>[]> findAll(QueryRequirement requirement) {
+        return this.findInSegments(requirement, segment -> segment.findAll(requirement));
+    }
+
+    @Override
+    public <R> List<R> findAll(QueryRequirement requirement, Function<Object[], R> mapper) {
+        return this.findInSegments(requirement, segment -> segment.findAll(requirement, mapper));
+    }
+
+    @Override
+    public List<Object[]> findValues(QueryRequirement requirement, PersistentField<T>[] fields) {
+        return this.findInSegments(requirement, segment -> segment.findValues(requirement, fields));
+    }
+
+    @Override
+    public long count(QueryRequirement requirement) {
+        List<MemoryTable<T>> segments = this.getSegments(requirement);
+        if (segments.size() == 1) {
+            return segments.get(0).count(requirement);
+        }
+
+        return segments.parallelStream().mapToLong(segment -> segment.count(requirement)).sum();
+    }
+
+    @Override
+    public void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement) {
+        this.save(instance, values, requirement, 0);
+    }
+
+    @Override
+    public void save(Optional<T> instance, FieldValue<T>[] values, QueryRequirement requirement, long timeToLive) {
+        if (requirement == null) {
+            PersistentField<T> autoIncField = this.profile.getAutoIncrementField();
+            if (autoIncField != null) {
+                // Handed out here, as the key decides the segment
+                FieldValue<T> autoIncVal = ValueHelper.getValue(values, autoIncField);
+                autoIncVal.setValue(this.nextAutoIncrement());
+
+                instance.ifPresent(value -> autoIncField.set(value, autoIncVal.getValue()));
+            }
+
+            this.getSegment(values).save(instance, values, null, timeToLive);
+            return;
+        }
+
+        if (Arrays.stream(values).noneMatch(value -> value.getField().isStorageKey())) {
+            MemoryTable<T> segment = this.getSegment(requirement);
+            if (segment != null) {
+                segment.save(instance, values, requirement, timeToLive);
+            } else {
+                this.segments.parallelStream().forEach(table -> table.save(instance, values, requirement, timeToLive));
+            }
+
+            return;
+        }
+
+        // The new key may belong to another segment, so every row is moved on its own. Rows
+        // are found up front, so that rows moved to a later segment are not moved again.
+        List<FieldValue<T>[]> rows = this.findInSegments(requirement, segment -> segment.findAll(requirement));
+        for (FieldValue<T>[] row : rows) {
+            this.move(row, this.update(row, values), timeToLive);
+        }
+    }
+
+    @Override
+    public void delete(QueryRequirement requirement) {
+        if (requirement == null) {
+            this.drop();
+            return;
+        }
+
+        MemoryTable<T> segment = this.getSegment(requirement);
+        if (segment != null) {
+            segment.delete(requirement);
+        } else {
+            this.segments.parallelStream().forEach(table -> table.delete(requirement));
+        }
+    }
+
+    @Override
+    public void drop() {
+        this.segments.parallelStream().forEach(MemoryTable::drop);
+    }
+
+    @Override
+    public boolean isSearchable(PersistentField<T> field) {
+        return this.segments.get(0).isSearchable(field);
+    }
+
+    @Override
+    @SafeVarargs
+    public final synchronized MemoryView<T> createView(String name, QueryRequirement requirement, PersistentField<T> groupBy,
+                                                       PersistentField<T>... summed) {
+        if (this.views.containsKey(name)) {
+            throw new IllegalArgumentException("View " + name + " already exists!");
+        }
+
+        List<MemoryView<T>> views = Lists.newArrayListWithCapacity(this.segments.size());
+        for (MemoryTable<T> segment : this.segments) {
+            views.add(segment.createView(name, requirement, groupBy, summed));
+        }
+
+        SegmentedMemoryView<T> view = new SegmentedMemoryView<>(name, this.profile, requirement, groupBy, summed, views);
+        this.views.put(name, view);
+        return view;
+    }
+
+    @Override
+    public MemoryView<T> getView(String name) {
+        return this.views.get(name);
+    }
+
+    @Override
+    public synchronized void dropView(String name) {
+        this.views.remove(name);
+        this.segments.forEach(segment -> segment.dropView(name));
+    }
+
+    @Override
+    public void createIndex(WrappedIndex<T> index) {
+        this.segments.forEach(segment -> segment.createIndex(index));
+    }
+
+    @Override
+    public void dropIndex(WrappedIndex<T> index) {
+        this.segments.forEach(segment -> segment.dropIndex(index));
+    }
+
+    @Override
+    public List<IndexBuild<T>> getIndexBuilds() {
+        List<IndexBuild<T>> builds = Lists.newArrayList();
+        this.segments.forEach(segment -> builds.addAll(segment.getIndexBuilds()));
+        return builds;
+    }
+
+    @Override
+    public void close() {
+        this.segments.forEach(MemoryTable::close);
+    }
+
+    @Override
+    public <R> List<R> findByIndex(WrappedIndex<T> index, Object[] values, Function<Object[], R> mapper) {
+        return this.findInSegments(null, segment -> segment.findByIndex(index, values, mapper));
+    }
+
+    // Internals
+
+    private <R> R findFirst(QueryRequirement requirement, FirstFinder<T, R> finder) {
+        for (MemoryTable<T> segment : this.getSegments(requirement)) {
+            R found = finder.find(segment, requirement);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        this.misses.increment();
+        return null;
+    }
+
+    private <R> List<R> findInSegments(QueryRequirement requirement, Function<MemoryTable<T>, List<R>> finder) {
+        List<MemoryTable<T>> segments = this.getSegments(requirement);
+
+        List<R> list;
+        if (segments.size() == 1) {
+            list = finder.apply(segments.get(0));
+        } else {
+            list = segments.parallelStream()
+              .map(finder)
+              .flatMap(List::stream)
+              .collect(Collectors.toList());
+        }
+
+        if (list.isEmpty()) {
+            this.misses.increment();
+        }
+
+        return list;
+    }
+
+    private int nextAutoIncrement() {
+        int[] block = this.autoIncrementBlock.get();
+        if (block[0] == block[1]) {
+            int start;
+            while (true) {
+                int current = this.autoIncrement.get();
+                // Segments restored from disk know the values already used
+                start = current != 0 ? current : this.segments.stream().mapToInt(MemoryTable::getAutoIncrement).max().orElse(1);
+                if (this.autoIncrement.compareAndSet(current, start + AUTO_INCREMENT_BLOCK)) {
+                    break;
+                }
+            }
+
+            block[0] = start;
+            block[1] = start + AUTO_INCREMENT_BLOCK;
+        }
+
+        return block[0]++;
+    }
+
+    /**
+     * @return The segments that may hold rows matching the given requirement
+     */
+    private List<MemoryTable<T>> getSegments(QueryRequirement requirement) {
+        MemoryTable<T> segment = requirement == null ? null : this.getSegment(requirement);
+        return segment == null ? this.segments : Collections.singletonList(segment);
+    }
+
+    /**
+     * @return The only segment that may hold rows matching the given requirement, or
+     * null if it is not a query for a single key
+     */
+    private MemoryTable<T> getSegment(QueryRequirement requirement) {
+        List<RequirementCase> cases = new RequirementTraverser(requirement).getCases();
+        if (cases.size() != 1) {
+            return null;
+        }
+
+        PersistentField<T>[] keys = this.profile.getKeys();
+        Object[] key = new Object[keys.length];
+        boolean[] found = new boolean[keys.length];
+        for (SimpleRequirement simple : cases.get(0).getRequirements()) {
+            int index = Arrays.asList(keys).indexOf(simple.getField());
+            if (index != -1 && simple.getOperator() == Operator.EQUALS) {
+                key[index] = simple.getValue();
+                found[index] = true;
+            }
+        }
+
+        for (boolean keyFound : found) {
+            if (!keyFound) {
+                return null;
+            }
+        }
+
+        return this.getSegment(key);
+    }
+
+    private MemoryTable<T> getSegment(FieldValue<T>[] values) {
+        PersistentField<T>[] keys = this.profile.getKeys();
+        Object[] key = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            key[i] = ValueHelper.getValue(values, keys[i]).getValue();
+        }
+
+        return this.getSegment(key);
+    }
+
+    private MemoryTable<T> getSegment(Object[] key) {
+        int hash = 1;
+        for (Object value : key) {
+            // Numbers of different types with the same value must end up in the same segment
+            int valueHash = UtilCompare.isIntegral(value) ? Long.hashCode(((Number) value).longValue()) : Objects.hashCode(value);
+            hash = 31 * hash + valueHash;
+        }
+
+        // Spread, as keys are often sequential
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return this.segments.get(Math.floorMod(hash, this.segments.size()));
+    }
+
+    /**
+     * Moves a row to the segment of its new key. Both keys are locked until the row is
+     * moved, taking the locks of the segments in order, so that rows moved the other
+     * way do not wait for this in a cycle.
+     */
+    private void move(FieldValue<T>[] row, FieldValue<T>[] updated, long timeToLive) {
+        MemoryTable<T> from = this.getSegment(row);
+        MemoryTable<T> to = this.getSegment(updated);
+
+        int[] fromStripes;
+        int[] toStripes;
+        if (from == to) {
+            fromStripes = from.lockKeys(Lists.newArrayList(row, updated));
+            toStripes = new int[0];
+        } else if (this.segments.indexOf(from) < this.segments.indexOf(to)) {
+            fromStripes = from.lockKeys(Collections.singletonList(row));
+            toStripes = to.lockKeys(Collections.singletonList(updated));
+        } else {
+            toStripes = to.lockKeys(Collections.singletonList(updated));
+            fromStripes = from.lockKeys(Collections.singletonList(row));
+        }
+
+        try {
+            from.delete(this.getKeyRequirement(row));
+            to.save(Optional.empty(), updated, null, timeToLive);
+        } finally {
+            to.unlockKeys(toStripes);
+            from.unlockKeys(fromStripes);
+        }
+    }
+
+    /**
+     * @return The values of the given row, with the given values applied
+     */
+    private FieldValue<T>[] update(FieldValue<T>[] row, FieldValue<T>[] values) {
+        FieldValue<T>[] updated = new FieldValue[row.length];
+        for (int i = 0; i < row.length; i++) {
+            PersistentField<T> field = row[i].getField();
+            FieldValue<T> value = ValueHelper.getValue(values, field);
+            Object newValue = (value == null ? row[i] : value).getValue();
+            updated[i] = newValue == null ? new FieldValue<>(field) : new FieldValue<>(field, newValue);
+        }
+
+        return updated;
+    }
+
+    private QueryRequirement getKeyRequirement(FieldValue<T>[] row) {
+        QueryRequirement requirement = null;
+        for (PersistentField<T> key : this.profile.getKeys()) {
+            SimpleRequirement simple = new SimpleRequirement(key, Operator.EQUALS, ValueHelper.getValue(row, key).getValue());
+            requirement = requirement == null ? simple : new CombinedRequirement(requirement, Operator.AND, simple);
+        }
+
+        return requirement;
+    }
+
+    /**
+     * The rows of all segments, looking up keys in the segment of the key
+     */
+    private class KeyToValueView extends AbstractMap<ValueContainer, ValueContainer> {
+
+        @Override
+        public ValueContainer get(Object key) {
+            if (!(key instanceof ValueContainer)) {
+                return null;
+            }
+
+            return getSegment(((ValueContainer) key).getValues()).getUnsafeAccessor().getKeyToValueMap().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return segments.stream().mapToInt(segment -> segment.getUnsafeAccessor().getKeyToValueMap().size()).sum();
+        }
+
+        @Override
+        public Set<Entry<ValueContainer, ValueContainer>> entrySet() {
+            Set<Entry<ValueContainer, ValueContainer>> entries = Sets.newLinkedHashSet();
+            segments.forEach(segment -> entries.addAll(segment.getUnsafeAccessor().getKeyToValueMap().entrySet()));
+            return Collections.unmodifiableSet(entries);
+        }
+    }
+
+    @FunctionalInterface
+    private interface FirstFinder<T, R> {
+
+        R find(MemoryTable<T> segment, QueryRequirement requirement);
+    }
+}
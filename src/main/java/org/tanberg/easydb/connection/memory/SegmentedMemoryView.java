@@ -0,0 +1,61 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * A view of a {@link SegmentedMemoryTable}, made of a view of every segment. Reads
+ * combine the views of the segments, each read as it is at the time, so a change
+ * spanning several segments may be seen partially applied.
+ */
+public class SegmentedMemoryView<T> extends MemoryView<T> {
+
+    private final List<MemoryView<T>> views;
+
+    SegmentedMemoryView(String name, ItemProfile<T> profile, QueryRequirement requirement, PersistentField<T> groupBy,
+                        PersistentField<T>[] summed, List<MemoryView<T>> views) {
+        super(name, profile, requirement, groupBy, summed);
+        this.views = views;
+    }
+
+    @Override
+    public int size() {
+        return this.views.stream().mapToInt(MemoryView::size).sum();
+    }
+
+    @Override
+    public List<Object[]> getRows() {
+        List<Object[]> rows = Lists.newArrayList();
+        this.views.forEach(view -> rows.addAll(view.getRows()));
+        return rows;
+    }
+
+    @Override
+    public Map<Object, Long> getCounts() {
+        return this.combine(MemoryView::getCounts, Long::sum);
+    }
+
+    @Override
+    public Map<Object, Double> getSums(PersistentField<T> field) {
+        return this.combine(view -> view.getSums(field), Double::sum);
+    }
+
+    // Internals
+
+    private <V> Map<Object, V> combine(Function<MemoryView<T>, Map<Object, V>> reader, BinaryOperator<V> merger) {
+        Map<Object, V> combined = Maps.newHashMap();
+        for (MemoryView<T> view : this.views) {
+            reader.apply(view).forEach((group, value) -> combined.merge(group, value, merger));
+        }
+
+        return combined;
+    }
+}
@@ -0,0 +1,408 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.connection.memory.store.RowVersions;
+import org.tanberg.easydb.exception.PersistenceException;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Rows of a {@link MemoryTable memory table} moved out of the heap, to a temporary
+ * file read and written through memory-mapped regions. Only the key of every row,
+ * and where its encoded values are in the file, is kept on the heap.
+ * <p>
+ * Like the rows of the table, spilled rows are versioned. A row is visible from the
+ * version it was spilled in until the version it was deleted, or moved back to the
+ * heap, in, so that readers see either the row on the heap or the spilled row, never
+ * both or neither. Rows no longer visible to any reader are removed by {@link
+ * #vacuum(long)}, and the file is compacted once most of it is unused.
+ * <p>
+ * The file is deleted when closed, and is not meant to survive a restart. The write-ahead
+ * log and snapshots of the table keep spilled rows like any other row.
+ */
+public class SpillFile implements Closeable {
+
+    private static final int REGION_SHIFT = 24;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final int RECORD_HEADER_SIZE = 4;
+
+    private final Path directory;
+    private final String name;
+    private final Map<ValueContainer, Record> records;
+    private final ReadWriteLock lock;
+    private Path path;
+    private FileChannel channel;
+    private List<MappedByteBuffer> regions;
+    private long position;
+    private long usedBytes;
+    private int liveRows;
+
+    /**
+     * @param directory The directory to keep the file in
+     * @param name      Used in the name of the file
+     */
+    public SpillFile(Path directory, String name) {
+        this.directory = directory;
+        this.name = name;
+        this.records = Maps.newHashMap();
+        this.lock = new ReentrantReadWriteLock();
+        this.open();
+    }
+
+    /**
+     * @return The number of rows spilled and not deleted
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.liveRows;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return If there are no spilled rows visible to any reader
+     */
+    public boolean isEmpty() {
+        this.lock.readLock().lock();
+        try {
+            return this.records.isEmpty();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of bytes written to the file, including rows no longer used
+     */
+    public long getFileSize() {
+        this.lock.readLock().lock();
+        try {
+            return this.position;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key The key
+     * @return If a row with the given key is spilled and not deleted
+     */
+    public boolean contains(ValueContainer key) {
+        this.lock.readLock().lock();
+        try {
+            Record record = this.records.get(key);
+            return record != null && record.deleted == RowVersions.NEVER;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Spills a row, visible from the given version.
+     *
+     * @param key     The key of the row
+     * @param row     The encoded values of the row
+     * @param version The version
+     * @return If the row was spilled, which it is not if it is too large
+     */
+    public boolean write(ValueContainer key, byte[] row, long version) {
+        if (RECORD_HEADER_SIZE + row.length > REGION_SIZE) {
+            return false;
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            Record previous = this.records.get(key);
+            if (previous != null && previous.deleted == RowVersions.NEVER) {
+                previous.deleted = version;
+                this.liveRows--;
+            }
+
+            Record record = new Record(this.append(row), row.length, version, previous);
+            this.records.put(key, record);
+            this.usedBytes += RECORD_HEADER_SIZE + row.length;
+            this.liveRows++;
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the spilled row with the given key, from the given version.
+     *
+     * @return If a row with the given key was spilled and not deleted
+     */
+    public boolean delete(ValueContainer key, long version) {
+        this.lock.writeLock().lock();
+        try {
+            Record record = this.records.get(key);
+            if (record == null || record.deleted != RowVersions.NEVER) {
+                return false;
+            }
+
+            record.deleted = version;
+            this.liveRows--;
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes all spilled rows, from the given version.
+     */
+    public void deleteAll(long version) {
+        this.lock.writeLock().lock();
+        try {
+            for (Record record : this.records.values()) {
+                if (record.deleted == RowVersions.NEVER) {
+                    record.deleted = version;
+                }
+            }
+
+            this.liveRows = 0;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key     The key
+     * @param version The version
+     * @return The encoded values of the row with the given key visible in the given
+     * version, or null if there is none
+     */
+    public byte[] read(ValueContainer key, long version) {
+        this.lock.readLock().lock();
+        try {
+            Record record = this.records.get(key);
+            while (record != null && !record.isVisible(version)) {
+                record = record.previous;
+            }
+
+            return record == null ? null : this.read(record);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands the key and the encoded values of every row visible in the given version
+     * to the given consumer.
+     */
+    public void forEach(long version, BiConsumer<ValueContainer, byte[]> consumer) {
+        this.lock.readLock().lock();
+        try {
+            for (Entry<ValueContainer, Record> entry : this.records.entrySet()) {
+                Record record = entry.getValue();
+                while (record != null && !record.isVisible(version)) {
+                    record = record.previous;
+                }
+
+                if (record != null) {
+                    consumer.accept(entry.getKey(), this.read(record));
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the rows deleted in the given version or earlier, and compacts the file
+     * if less than half of it is used.
+     *
+     * @param horizon The oldest version that may still be read
+     */
+    public void vacuum(long horizon) {
+        this.lock.writeLock().lock();
+        try {
+            Iterator<Record> iterator = this.records.values().iterator();
+            while (iterator.hasNext()) {
+                Record record = iterator.next();
+                if (record.deleted <= horizon) {
+                    // Older versions were deleted before this one
+                    for (Record version = record; version != null; version = version.previous) {
+                        this.release(version);
+                    }
+
+                    iterator.remove();
+                    continue;
+                }
+
+                // Older versions are only needed by readers before this one was spilled
+                while (record.previous != null && record.previous.deleted <= horizon) {
+                    this.release(record.previous);
+                    record.previous = record.previous.previous;
+                }
+            }
+
+            if (this.position > REGION_SIZE && this.usedBytes < this.position / 2) {
+                this.compact();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all rows. Must not be used while the file is read.
+     */
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.records.clear();
+            this.liveRows = 0;
+            this.usedBytes = 0;
+            this.closeChannel();
+            this.open();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            this.records.clear();
+            this.liveRows = 0;
+            this.closeChannel();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Internals
+
+    private void open() {
+        try {
+            Files.createDirectories(this.directory);
+            this.path = Files.createTempFile(this.directory, this.name + "-", ".spill");
+            this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+            this.regions = Lists.newArrayList();
+            this.position = 0;
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to create spill file for table " + this.name + "!", e);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to close spill file " + this.path + "!", e);
+        }
+    }
+
+    /**
+     * Appends a record to the file. Records never span two regions, so a record not
+     * fitting in the current region starts the next one.
+     *
+     * @return The offset of the record
+     */
+    private long append(byte[] row) {
+        int size = RECORD_HEADER_SIZE + row.length;
+        long regionEnd = (this.position | (REGION_SIZE - 1)) + 1;
+        if (this.position + size > regionEnd) {
+            this.position = regionEnd;
+        }
+
+        long offset = this.position;
+        ByteBuffer region = this.getRegion(offset).duplicate();
+        region.position((int) (offset & (REGION_SIZE - 1)));
+        region.putInt(row.length).put(row);
+        this.position += size;
+        return offset;
+    }
+
+    private byte[] read(Record record) {
+        ByteBuffer region = this.getRegion(record.offset).duplicate();
+        region.position((int) (record.offset & (REGION_SIZE - 1)) + RECORD_HEADER_SIZE);
+        byte[] row = new byte[record.length];
+        region.get(row);
+        return row;
+    }
+
+    private ByteBuffer getRegion(long offset) {
+        int index = (int) (offset >>> REGION_SHIFT);
+        try {
+            // Mapping a region for writing grows the file to fit it
+            while (this.regions.size() <= index) {
+                this.regions.add(this.channel.map(MapMode.READ_WRITE, this.regions.size() * REGION_SIZE, REGION_SIZE));
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to map spill file " + this.path + "!", e);
+        }
+
+        return this.regions.get(index);
+    }
+
+    private void release(Record record) {
+        this.usedBytes -= RECORD_HEADER_SIZE + record.length;
+    }
+
+    /**
+     * Copies the records still in use to a new file, and replaces the current file
+     * with it.
+     */
+    private void compact() {
+        List<Record> kept = Lists.newArrayList();
+        List<byte[]> rows = Lists.newArrayList();
+        for (Record record : this.records.values()) {
+            for (Record version = record; version != null; version = version.previous) {
+                kept.add(version);
+                rows.add(this.read(version));
+            }
+        }
+
+        this.closeChannel();
+        this.open();
+        for (int i = 0; i < kept.size(); i++) {
+            kept.get(i).offset = this.append(rows.get(i));
+        }
+    }
+
+    private static final class Record {
+
+        private long offset;
+        private final int length;
+        private final long created;
+        private long deleted;
+        // The version of the row spilled before this one, kept for readers of older versions
+        private Record previous;
+
+        private Record(long offset, int length, long created, Record previous) {
+            this.offset = offset;
+            this.length = length;
+            this.created = created;
+            this.deleted = RowVersions.NEVER;
+            this.previous = previous;
+        }
+
+        private boolean isVisible(long version) {
+            return this.created <= version && version < this.deleted;
+        }
+    }
+}
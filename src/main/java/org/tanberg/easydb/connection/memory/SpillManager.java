@@ -0,0 +1,187 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.ArrayUtils;
+import org.tanberg.easydb.connection.memory.store.RowCodec;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.query.traverse.RequirementCase;
+import org.tanberg.easydb.query.traverse.RequirementTraverser;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The rows of a {@link MemoryTable} over its maximum weight, kept in a {@link SpillFile
+ * spill file} rather than evicted. Rows are encoded with a {@link RowCodec} of the
+ * stored fields, and found by checking the requirements of a query on every spilled
+ * row, unless the query is for a single key.
+ *
+ * @see MemoryOptions#spill()
+ */
+class SpillManager<T> {
+
+    private final ItemProfile<T> profile;
+    private final SpillFile file;
+    private final RowCodec codec;
+
+    SpillManager(String name, ItemProfile<T> profile, MemoryOptions options) {
+        String directory = options.spillDirectory().isEmpty() ? System.getProperty("java.io.tmpdir") : options.spillDirectory();
+        this.profile = profile;
+        this.file = new SpillFile(Paths.get(directory), name);
+        this.codec = new RowCodec(profile.getStoredFields());
+    }
+
+    int size() {
+        return this.file.size();
+    }
+
+    boolean isEmpty() {
+        return this.file.isEmpty();
+    }
+
+    /**
+     * @return The values of the row with the given key visible in the given version, or
+     * null if there is none
+     */
+    Object[] read(ValueContainer key, long version) {
+        byte[] row = this.file.read(key, version);
+        return row == null ? null : this.codec.decode(ByteBuffer.wrap(row), 0);
+    }
+
+    /**
+     * @return If the row was spilled, which it is not if it is too large
+     */
+    boolean write(ValueContainer key, Object[] values, long version) {
+        return this.file.write(key, this.codec.encode(values), version);
+    }
+
+    /**
+     * @return If a row with the given key was spilled and not deleted
+     */
+    boolean delete(ValueContainer key, long version) {
+        return this.file.delete(key, version);
+    }
+
+    void deleteAll(long version) {
+        this.file.deleteAll(version);
+    }
+
+    void vacuum(long horizon) {
+        this.file.vacuum(horizon);
+    }
+
+    void clear() {
+        this.file.clear();
+    }
+
+    /**
+     * Gets the encoded values of the rows visible in the given version, in the layout
+     * of a {@link RowCodec} of the stored fields.
+     */
+    List<byte[]> copy(long version) {
+        List<byte[]> rows = Lists.newArrayList();
+        this.file.forEach(version, (key, row) -> rows.add(row));
+        return rows;
+    }
+
+    /**
+     * Finds the rows matching the given requirement. A requirement for a single key is
+     * looked up directly, other requirements are checked on every spilled row.
+     *
+     * @param requirement The requirement, or null for every row
+     * @param version     The version
+     * @return The values of the matching rows, by their keys
+     */
+    Map<ValueContainer, Object[]> find(QueryRequirement requirement, long version) {
+        if (this.file.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<RequirementCase> cases = requirement == null ? null : new RequirementTraverser(requirement).getCases();
+        Map<ValueContainer, Object[]> rows = Maps.newLinkedHashMap();
+        ValueContainer key = this.getRequestedKey(cases);
+        if (key != null) {
+            Object[] values = this.read(key, version);
+            if (values != null && this.matches(values, cases)) {
+                rows.put(key, values);
+            }
+
+            return rows;
+        }
+
+        this.file.forEach(version, (rowKey, row) -> {
+            Object[] values = this.codec.decode(ByteBuffer.wrap(row), 0);
+            if (cases == null || this.matches(values, cases)) {
+                rows.put(rowKey, values);
+            }
+        });
+
+        return rows;
+    }
+
+    /**
+     * @return If the given requirement is for a single key
+     */
+    boolean isKeyLookup(QueryRequirement requirement) {
+        return requirement != null && this.getRequestedKey(new RequirementTraverser(requirement).getCases()) != null;
+    }
+
+    // Internals
+
+    /**
+     * @return The key required by the given cases, if there is a single case requiring
+     * every key field to be equal to a value, or null
+     */
+    private ValueContainer getRequestedKey(List<RequirementCase> cases) {
+        if (cases == null || cases.size() != 1) {
+            return null;
+        }
+
+        PersistentField<T>[] keys = this.profile.getKeys();
+        Object[] keyValues = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            PersistentField<T> field = keys[i];
+            Optional<SimpleRequirement> equals = cases.get(0).getRequirements().stream()
+              .filter(requirement -> requirement.getField().equals(field) && requirement.getOperator() == Operator.EQUALS)
+              .findFirst();
+            if (!equals.isPresent()) {
+                return null;
+            }
+
+            keyValues[i] = equals.get().getValue();
+        }
+
+        return new CompositeKey(keyValues);
+    }
+
+    private boolean matches(Object[] values, List<RequirementCase> cases) {
+        PersistentField<T>[] storedFields = this.profile.getStoredFields();
+        for (RequirementCase requirementCase : cases) {
+            boolean matches = true;
+            for (SimpleRequirement requirement : requirementCase.getRequirements()) {
+                Object value = values[ArrayUtils.indexOf(storedFields, requirement.getField())];
+                if (!ValueHelper.matches(value, requirement.getValue(), requirement.getOperator())) {
+                    matches = false;
+                    break;
+                }
+            }
+
+            if (matches) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
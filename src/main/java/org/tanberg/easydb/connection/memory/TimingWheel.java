@@ -0,0 +1,176 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel, keeping elements until a deadline has passed. Time
+ * is split into ticks, and every level of the wheel has 64 slots, each covering 64
+ * times as many ticks as a slot of the level below. Elements are put in the lowest
+ * level their deadline fits in, and are moved down a level whenever the wheel
+ * reaches their slot, so scheduling an element and finding the expired ones costs
+ * the same no matter how many elements are waiting.
+ * <p>
+ * Elements are handed out within a tick after their deadline. Deadlines further away
+ * than the wheel covers are put in the last slot, and moved on from there.
+ * <p>
+ * Thread safe.
+ *
+ * @param <E> The type of the elements
+ */
+public class TimingWheel<E> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<Timer<E>>[][] wheel;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis The length of a tick, in milliseconds
+     * @param now        The current time, in milliseconds
+     */
+    public TimingWheel(long tickMillis, long now) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be at least 1 millisecond!");
+        }
+
+        this.tickMillis = tickMillis;
+        this.currentTick = now / tickMillis;
+        this.wheel = new List[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                this.wheel[level][slot] = new ArrayList<>(0);
+            }
+        }
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return The number of elements waiting
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds an element, to be handed out once the given time has passed.
+     *
+     * @param element  The element
+     * @param deadline The time, in milliseconds
+     */
+    public synchronized void schedule(E element, long deadline) {
+        // Rounded up, so that elements are never handed out early
+        long tick = (deadline + this.tickMillis - 1) / this.tickMillis;
+
+        // The slot of the current tick has already been handed out
+        this.place(new Timer<>(element, tick), Math.max(tick, this.currentTick + 1));
+        this.size++;
+    }
+
+    /**
+     * Moves the wheel forward to the given time.
+     *
+     * @param now The current time, in milliseconds
+     * @return The elements with a deadline at or before the given time
+     */
+    public synchronized List<E> advance(long now) {
+        long target = now / this.tickMillis;
+        List<E> expired = Lists.newArrayList();
+        while (this.currentTick < target) {
+            if (this.size == 0) {
+                // Nothing to move down or hand out on the way
+                this.currentTick = target;
+                break;
+            }
+
+            this.currentTick++;
+
+            // Move down the elements of any slot of the upper levels starting at this tick,
+            // highest level first, so that they end up in the right slot of the lowest level
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((this.currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    continue;
+                }
+
+                List<Timer<E>> slot = this.wheel[level][this.getSlot(this.currentTick, level)];
+                if (slot.isEmpty()) {
+                    continue;
+                }
+
+                this.wheel[level][this.getSlot(this.currentTick, level)] = new ArrayList<>(0);
+                for (Timer<E> timer : slot) {
+                    this.place(timer, Math.max(timer.tick, this.currentTick));
+                }
+            }
+
+            int index = this.getSlot(this.currentTick, 0);
+            List<Timer<E>> slot = this.wheel[0][index];
+            if (slot.isEmpty()) {
+                continue;
+            }
+
+            this.wheel[0][index] = new ArrayList<>(0);
+            for (Timer<E> timer : slot) {
+                expired.add(timer.element);
+            }
+
+            this.size -= slot.size();
+        }
+
+        return expired;
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public synchronized void clear() {
+        for (List<Timer<E>>[] level : this.wheel) {
+            for (List<Timer<E>> slot : level) {
+                slot.clear();
+            }
+        }
+
+        this.size = 0;
+    }
+
+    // Internals
+
+    private void place(Timer<E> timer, long tick) {
+        long ticks = tick - this.currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (ticks < 1L << (SLOT_BITS * (level + 1))) {
+                this.wheel[level][this.getSlot(tick, level)].add(timer);
+                return;
+            }
+        }
+
+        // Beyond the range of the wheel, so kept in the furthest slot until it comes closer
+        long furthest = this.currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+        this.wheel[LEVELS - 1][this.getSlot(furthest, LEVELS - 1)].add(timer);
+    }
+
+    private int getSlot(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    private static final class Timer<E> {
+
+        private final E element;
+        private final long tick;
+
+        private Timer(E element, long tick) {
+            this.element = element;
+            this.tick = tick;
+        }
+    }
+}
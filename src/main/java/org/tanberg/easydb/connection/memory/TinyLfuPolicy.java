@@ -0,0 +1,237 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which keys to evict to keep the total weight of a table within a maximum,
+ * using W-TinyLFU. New keys enter a small window ordered by least recent use. Keys
+ * leaving the window only get into the main space if they have been used more often
+ * than the key they would push out, as estimated by a {@link FrequencySketch}. The
+ * main space is split in a probation part and a protected part for keys used again
+ * while on probation.
+ * <p>
+ * Not thread safe.
+ *
+ * @param <K> The type of the keys
+ */
+public class TinyLfuPolicy<K> {
+
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+    private final Map<K, Node<K>> nodes;
+    // Every queue is ordered from least to most recently used
+    private final List<LinkedHashMap<K, Node<K>>> queues;
+    private final long[] weights;
+
+    /**
+     * @param maximum The maximum total weight
+     */
+    public TinyLfuPolicy(long maximum) {
+        if (maximum < 1) {
+            throw new IllegalArgumentException("Maximum weight must be positive!");
+        }
+
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, (long) (maximum * WINDOW_SHARE));
+        this.protectedMaximum = (long) ((maximum - this.windowMaximum) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch();
+        this.nodes = Maps.newHashMap();
+        this.queues = Lists.newArrayList(new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>());
+        this.weights = new long[3];
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * @return The total weight of the keys kept
+     */
+    public long getWeight() {
+        return this.weights[WINDOW] + this.weights[PROBATION] + this.weights[PROTECTED];
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    public boolean contains(K key) {
+        return this.nodes.containsKey(key);
+    }
+
+    /**
+     * Records a read of the given key, whether it is kept or not.
+     *
+     * @param key The key
+     */
+    public void recordAccess(K key) {
+        this.sketch.increment(key.hashCode());
+
+        Node<K> node = this.nodes.get(key);
+        if (node != null) {
+            this.onAccess(node);
+        }
+    }
+
+    /**
+     * Records a write of the given key, adding it if not kept already.
+     *
+     * @param key    The key
+     * @param weight The weight of the key
+     * @return The keys evicted to make room
+     */
+    public List<K> recordWrite(K key, long weight) {
+        this.sketch.increment(key.hashCode());
+
+        Node<K> node = this.nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key, weight);
+            this.nodes.put(key, node);
+            this.sketch.ensureCapacity(this.nodes.size());
+            this.add(node, WINDOW);
+        } else {
+            this.weights[node.queue] += weight - node.weight;
+            node.weight = weight;
+            this.onAccess(node);
+        }
+
+        return this.evict();
+    }
+
+    /**
+     * Forgets the given key, which has been removed by other means than eviction.
+     *
+     * @param key The key
+     */
+    public void remove(K key) {
+        Node<K> node = this.nodes.remove(key);
+        if (node != null) {
+            this.unlink(node);
+        }
+    }
+
+    public void clear() {
+        this.nodes.clear();
+        this.queues.forEach(Map::clear);
+        this.weights[WINDOW] = this.weights[PROBATION] = this.weights[PROTECTED] = 0;
+    }
+
+    // Internals
+
+    private void onAccess(Node<K> node) {
+        switch (node.queue) {
+            case WINDOW:
+            case PROTECTED:
+                this.unlink(node);
+                this.add(node, node.queue);
+                break;
+            case PROBATION:
+                // Used again, so worth protecting. Keys pushed out of the protected part get another chance on probation
+                this.unlink(node);
+                this.add(node, PROTECTED);
+                while (this.weights[PROTECTED] > this.protectedMaximum && this.queues.get(PROTECTED).size() > 1) {
+                    Node<K> demoted = this.first(PROTECTED);
+                    this.unlink(demoted);
+                    this.add(demoted, PROBATION);
+                }
+                break;
+        }
+    }
+
+    private List<K> evict() {
+        // Keys leaving the window are candidates for the main space, placed last on probation
+        Deque<Node<K>> candidates = new ArrayDeque<>();
+        while (this.weights[WINDOW] > this.windowMaximum && this.queues.get(WINDOW).size() > 1) {
+            Node<K> node = this.first(WINDOW);
+            this.unlink(node);
+            this.add(node, PROBATION);
+            node.candidate = true;
+            candidates.add(node);
+        }
+
+        List<K> evicted = Lists.newArrayList();
+        while (this.getWeight() > this.maximum) {
+            Node<K> victim = this.getVictim();
+            Node<K> candidate = candidates.peekFirst();
+
+            Node<K> removed;
+            if (candidate == null) {
+                removed = victim == null ? this.first(WINDOW) : victim;
+            } else if (victim == null) {
+                removed = candidates.pollFirst();
+            } else if (this.sketch.frequency(candidate.key.hashCode()) > this.sketch.frequency(victim.key.hashCode())) {
+                removed = victim;
+            } else {
+                removed = candidates.pollFirst();
+            }
+
+            this.nodes.remove(removed.key);
+            this.unlink(removed);
+            evicted.add(removed.key);
+        }
+
+        for (Node<K> candidate : candidates) {
+            candidate.candidate = false;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * @return The least recently used key of the main space that is not a candidate, or null if none
+     */
+    private Node<K> getVictim() {
+        Node<K> victim = this.first(PROBATION);
+        if (victim != null && !victim.candidate) {
+            return victim;
+        }
+
+        return this.first(PROTECTED);
+    }
+
+    private Node<K> first(int queue) {
+        Iterator<Node<K>> iterator = this.queues.get(queue).values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private void add(Node<K> node, int queue) {
+        node.queue = queue;
+        this.queues.get(queue).put(node.key, node);
+        this.weights[queue] += node.weight;
+    }
+
+    private void unlink(Node<K> node) {
+        this.queues.get(node.queue).remove(node.key);
+        this.weights[node.queue] -= node.weight;
+    }
+
+    private static final class Node<K> {
+
+        private final K key;
+        private long weight;
+        private int queue;
+        private boolean candidate;
+
+        private Node(K key, long weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
@@ -5,11 +5,17 @@ import org.tanberg.easydb.util.ValueContainer;
 
 import java.util.Map;
 
+/**
+ * Direct access to the maps of a memory table, bypassing its versions and locks.
+ */
 public class UnsafeMemoryAccessor<T> {
 
     private final Map<ValueContainer, ValueContainer> keyToValueMap;
     private final Map<WrappedIndex<T>, MemoryIndexMap<T>> indexMaps;
 
+    /**
+     * @param indexMaps The index maps, or null if kept by every segment of the table
+     */
     public UnsafeMemoryAccessor(Map<ValueContainer, ValueContainer> keyToValueMap, Map<WrappedIndex<T>, MemoryIndexMap<T>> indexMaps) {
         this.keyToValueMap = keyToValueMap;
         this.indexMaps = indexMaps;
@@ -19,7 +25,17 @@ public class UnsafeMemoryAccessor<T> {
         return keyToValueMap;
     }
 
+    /**
+     * @return The index maps of the table
+     * @throws UnsupportedOperationException If the table is split into segments, which
+     *                                       all have their own index maps
+     * @see MemoryStorage#getTables()
+     */
     public Map<WrappedIndex<T>, MemoryIndexMap<T>> getIndexMaps() {
+        if (this.indexMaps == null) {
+            throw new UnsupportedOperationException("Index maps are kept by every segment of the table!");
+        }
+
         return indexMaps;
     }
 }
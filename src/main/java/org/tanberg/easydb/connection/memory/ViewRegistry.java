@@ -0,0 +1,95 @@
+package org.tanberg.easydb.connection.memory;
+
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.util.ValueContainer;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The {@link MemoryView views} of a {@link MemoryTable}. Changes to the rows are
+ * buffered by the thread making them, and applied to the views once committed, so
+ * that views never show changes that readers of the table can not see yet.
+ */
+class ViewRegistry<T> {
+
+    private final Map<String, MemoryView<T>> views;
+    // The changes made by the current change of every thread, by key, or null if removed
+    private final ThreadLocal<Map<ValueContainer, Object[]>> changes;
+
+    ViewRegistry() {
+        this.views = Maps.newConcurrentMap();
+        this.changes = ThreadLocal.withInitial(Maps::newLinkedHashMap);
+    }
+
+    boolean isEmpty() {
+        return this.views.isEmpty();
+    }
+
+    boolean contains(String name) {
+        return this.views.containsKey(name);
+    }
+
+    MemoryView<T> get(String name) {
+        return this.views.get(name);
+    }
+
+    /**
+     * Adds the given view, filled with the rows of the table. Writers of the table must
+     * be blocked, so that no change is missed.
+     */
+    void add(MemoryView<T> view) {
+        this.views.put(view.getName(), view);
+    }
+
+    void drop(String name) {
+        this.views.remove(name);
+    }
+
+    /**
+     * Adds the given row to the views it matches once the change is committed, replacing
+     * any row with the same key. The stripe of the key must be locked.
+     */
+    void put(ValueContainer key, Object[] values) {
+        if (!this.views.isEmpty()) {
+            this.changes.get().put(key, values);
+        }
+    }
+
+    void remove(ValueContainer key) {
+        if (!this.views.isEmpty()) {
+            this.changes.get().put(key, null);
+        }
+    }
+
+    /**
+     * Applies the changes buffered by this thread to the views. The stripes of the
+     * changed keys must still be locked, so that later changes to the same keys are
+     * applied after these.
+     */
+    void apply() {
+        Map<ValueContainer, Object[]> changes = this.changes.get();
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        for (MemoryView<T> view : this.views.values()) {
+            for (Entry<ValueContainer, Object[]> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    view.remove(change.getKey());
+                } else {
+                    view.put(change.getKey(), change.getValue());
+                }
+            }
+        }
+
+        changes.clear();
+    }
+
+    /**
+     * Removes all rows from the views.
+     */
+    void clear() {
+        this.views.values().forEach(MemoryView::clear);
+    }
+}
@@ -0,0 +1,233 @@
+package org.tanberg.easydb.connection.memory;
+
+import org.tanberg.easydb.exception.PersistenceException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of changes to a {@link MemoryTable memory table}. Every record
+ * is prefixed by its length and a checksum, so that a record only partially written
+ * before a crash is detected and discarded when reading the log.
+ * <p>
+ * Appending a record does not flush it to disk. Call {@link #sync(long)} with the
+ * position returned when appending to wait until the record is durable. Concurrent
+ * calls are grouped, so that a single flush covers all records appended before it.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final int MAGIC = 0x4544424C;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long base;
+    private final Object syncLock;
+    private volatile long position;
+    private volatile long synced;
+
+    /**
+     * Opens a log for appending, creating it if it does not exist.
+     *
+     * @param path        The file of the log
+     * @param fingerprint Identifies the layout of the records. Checked when reading the log.
+     * @param base        The position of the first record. Positions returned by this log
+     *                    are offset by this, letting positions keep increasing across logs.
+     * @param length      The length of the valid part of the file, as returned by
+     *                    {@link #read(Path, int, BiConsumer)}. Anything after it is discarded.
+     */
+    public WriteAheadLog(Path path, int fingerprint, long base, long length) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.base = base;
+        this.syncLock = new Object();
+
+        if (length < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(fingerprint).flip();
+            this.channel.truncate(0);
+            this.channel.write(header, 0);
+            length = HEADER_SIZE;
+        }
+
+        this.channel.truncate(length);
+        this.channel.position(length);
+        this.channel.force(true);
+
+        this.position = base + length;
+        this.synced = this.position;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return If any records have been appended to this log
+     */
+    public boolean isEmpty() {
+        return this.position == this.base + HEADER_SIZE;
+    }
+
+    /**
+     * Appends a record to this log.
+     *
+     * @param type    The type of the record
+     * @param payload The contents of the record
+     * @return The position after the record, to be given to {@link #sync(long)}
+     */
+    public synchronized long append(byte type, byte[] payload) {
+        CRC32 checksum = new CRC32();
+        checksum.update(type);
+        checksum.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + 1 + payload.length);
+        buffer.putInt(payload.length + 1);
+        buffer.putInt((int) checksum.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.flip();
+
+        try {
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Failed to append to " + this.path + "!", e);
+        }
+
+        this.position += buffer.limit();
+        return this.position;
+    }
+
+    /**
+     * Waits until everything up to the given position has been flushed to disk.
+     *
+     * @param position The position, as returned by {@link #append(byte, byte[])}
+     */
+    public void sync(long position) {
+        if (this.synced >= position) {
+            return;
+        }
+
+        synchronized (this.syncLock) {
+            // Someone else may have flushed while we were waiting
+            if (this.synced >= position) {
+                return;
+            }
+
+            long target = this.position;
+            try {
+                this.channel.force(false);
+            } catch (IOException e) {
+                throw new PersistenceException("Failed to flush " + this.path + "!", e);
+            }
+
+            this.synced = target;
+        }
+    }
+
+    /**
+     * Flushes everything appended so far to disk.
+     */
+    public void sync() {
+        this.sync(this.position);
+    }
+
+    /**
+     * @return The position after the last record appended
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.channel.isOpen()) {
+            return;
+        }
+
+        this.sync();
+        this.channel.close();
+    }
+
+    /**
+     * Reads all complete records of the given log, stopping at the first record that
+     * is incomplete or corrupt.
+     *
+     * @param path        The file of the log
+     * @param fingerprint The fingerprint the log is expected to have
+     * @param consumer    Given the type and contents of every record
+     * @return The length of the valid part of the file
+     */
+    public static long read(Path path, int fingerprint, BiConsumer<Byte, byte[]> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (readFully(channel, header, 0) < HEADER_SIZE) {
+                return 0;
+            }
+
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new PersistenceException(path + " is not a log!");
+            }
+
+            if (header.getInt() != fingerprint) {
+                throw new PersistenceException("Log " + path + " was written for a different version of the item!");
+            }
+
+            long position = HEADER_SIZE;
+            ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            while (true) {
+                recordHeader.clear();
+                if (readFully(channel, recordHeader, position) < RECORD_HEADER_SIZE) {
+                    return position;
+                }
+
+                recordHeader.flip();
+                int length = recordHeader.getInt();
+                int expected = recordHeader.getInt();
+                if (length < 1 || position + RECORD_HEADER_SIZE + length > channel.size()) {
+                    return position;
+                }
+
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(channel, body, position + RECORD_HEADER_SIZE);
+
+                CRC32 checksum = new CRC32();
+                checksum.update(body.array());
+                if ((int) checksum.getValue() != expected) {
+                    return position;
+                }
+
+                byte[] payload = new byte[length - 1];
+                System.arraycopy(body.array(), 1, payload, 0, payload.length);
+                consumer.accept(body.get(0), payload);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+    }
+
+    // Internals
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + read);
+            if (count < 0) {
+                break;
+            }
+
+            read += count;
+        }
+
+        return read;
+    }
+}
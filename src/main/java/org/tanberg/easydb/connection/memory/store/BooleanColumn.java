@@ -0,0 +1,75 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.query.Operator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A column of {@code boolean} values, stored as a bitset.
+ */
+public class BooleanColumn extends Column {
+
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+    @Override
+    public int filter(int[] rows, int count, Operator operator, Object value) {
+        if (!(value instanceof Boolean) || (operator != Operator.EQUALS && operator != Operator.NOT_EQUALS)) {
+            return super.filter(rows, count, operator, value);
+        }
+
+        boolean expected = (Boolean) value == (operator == Operator.EQUALS);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            boolean keep;
+            if (this.isNull(row)) {
+                keep = operator == Operator.NOT_EQUALS;
+            } else {
+                keep = this.getBit(row) == expected;
+            }
+
+            if (keep) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    @Override
+    protected void growTo(int chunks) {
+        AtomicLongArray[] grown = Arrays.copyOf(this.chunks, chunks);
+        for (int i = this.chunks.length; i < grown.length; i++) {
+            grown[i] = new AtomicLongArray(CHUNK_SIZE >>> 6);
+        }
+
+        this.chunks = grown;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return this.getBit(row);
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        AtomicLongArray words = this.chunks[row >>> CHUNK_SHIFT];
+        int index = (row & CHUNK_MASK) >>> 6;
+        long bit = 1L << row;
+        boolean set = (Boolean) value;
+
+        long current;
+        long updated;
+        do {
+            current = words.get(index);
+            updated = set ? current | bit : current & ~bit;
+        } while (current != updated && !words.compareAndSet(index, current, updated));
+    }
+
+    // Internals
+
+    private boolean getBit(int row) {
+        return (this.chunks[row >>> CHUNK_SHIFT].get((row & CHUNK_MASK) >>> 6) & (1L << row)) != 0;
+    }
+}
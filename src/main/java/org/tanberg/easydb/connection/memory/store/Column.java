@@ -0,0 +1,171 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.util.ValueHelper;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A single column in a {@link ColumnarRowStore}. Values are kept in fixed size chunks
+ * indexed by row ID, so growing a column never moves values that are already stored.
+ * Which rows hold a value is tracked in a separate bitmap, so primitive columns do not
+ * need a special value to represent {@code null}.
+ */
+public abstract class Column {
+
+    protected static final int CHUNK_SHIFT = 10;
+    protected static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Creates a column suitable for the {@link org.tanberg.easydb.DataType type} of the given field.
+     *
+     * @param field The field
+     * @return The column
+     */
+    public static Column of(PersistentField<?> field) {
+        return of(field, null);
+    }
+
+    /**
+     * Creates a column suitable for the {@link org.tanberg.easydb.DataType type} of the given field.
+     *
+     * @param field      The field
+     * @param dictionary The dictionary to encode the strings of the column with, or null if not encoded
+     * @return The column
+     */
+    public static Column of(PersistentField<?> field, StringDictionary dictionary) {
+        if (dictionary != null) {
+            return new DictionaryColumn(dictionary);
+        }
+
+        switch (field.getType()) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case ENUM:
+                return new IntColumn(field.getType(), field.getTypeClass());
+            case LONG:
+                return new LongColumn();
+            case FLOAT:
+            case DOUBLE:
+                return new DoubleColumn(field.getType());
+            case BOOLEAN:
+                return new BooleanColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    // A set bit means the row holds a value, so new rows start out as null
+    private volatile AtomicLongArray[] present = new AtomicLongArray[0];
+
+    public final void ensureCapacity(int rows) {
+        int required = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (this.present.length >= required) {
+            return;
+        }
+
+        synchronized (this) {
+            AtomicLongArray[] current = this.present;
+            if (current.length >= required) {
+                return;
+            }
+
+            int chunks = Math.max(required, current.length * 2);
+            // Grow the values first, so that any row marked as present can be read
+            this.growTo(chunks);
+
+            AtomicLongArray[] grown = Arrays.copyOf(current, chunks);
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = new AtomicLongArray(CHUNK_SIZE >>> 6);
+            }
+
+            this.present = grown;
+        }
+    }
+
+    public boolean isNull(int row) {
+        AtomicLongArray words = this.present[row >>> CHUNK_SHIFT];
+        return (words.get((row & CHUNK_MASK) >>> 6) & (1L << row)) == 0;
+    }
+
+    public Object get(int row) {
+        return this.isNull(row) ? null : this.getValue(row);
+    }
+
+    public void set(int row, Object value) {
+        if (value == null) {
+            this.setPresent(row, false);
+            return;
+        }
+
+        this.setValue(row, value);
+        this.setPresent(row, true);
+    }
+
+    /**
+     * Same as {@link RowStore#filter(int[], int, int, Operator, Object)}, but for this column.
+     */
+    public int filter(int[] rows, int count, Operator operator, Object value) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (ValueHelper.matches(this.get(row), value, operator)) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    protected abstract void growTo(int chunks);
+
+    protected abstract Object getValue(int row);
+
+    protected abstract void setValue(int row, Object value);
+
+    /**
+     * Checks if the result of comparing a stored value with the value of a requirement
+     * matches the given operator.
+     *
+     * @param comparison The result of the comparison, as in {@link Comparable#compareTo(Object)}
+     * @param operator   The {@link Operator operator}
+     * @return If it matches
+     */
+    protected static boolean matches(int comparison, Operator operator) {
+        switch (operator) {
+            case EQUALS:
+                return comparison == 0;
+            case NOT_EQUALS:
+                return comparison != 0;
+            case LESS_THAN:
+                return comparison < 0;
+            case LESS_THAN_OR_EQUAL_TO:
+                return comparison <= 0;
+            case GREATER_THAN:
+                return comparison > 0;
+            case GREATER_THAN_OR_EQUAL_TO:
+                return comparison >= 0;
+            default:
+                throw new UnsupportedOperationException("Unsupported operator " + operator.name());
+        }
+    }
+
+    // Internals
+
+    private void setPresent(int row, boolean value) {
+        AtomicLongArray words = this.present[row >>> CHUNK_SHIFT];
+        int index = (row & CHUNK_MASK) >>> 6;
+        long bit = 1L << row;
+
+        long current;
+        long updated;
+        do {
+            current = words.get(index);
+            updated = value ? current | bit : current & ~bit;
+        } while (current != updated && !words.compareAndSet(index, current, updated));
+    }
+}
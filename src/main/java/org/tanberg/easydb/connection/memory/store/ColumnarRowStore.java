@@ -0,0 +1,98 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.query.Operator;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Keeps every stored field in its own {@link Column column}. Primitive values are
+ * kept in primitive arrays instead of being boxed, and filtering a column reads
+ * these arrays directly.
+ */
+public class ColumnarRowStore implements RowStore {
+
+    private final PersistentField<?>[] fields;
+    private final StringDictionary[] dictionaries;
+    private final RowAllocator allocator;
+    private volatile Column[] columns;
+
+    public ColumnarRowStore(PersistentField<?>[] fields) {
+        this(fields, new StringDictionary[fields.length]);
+    }
+
+    /**
+     * @param fields       The stored fields, one for each column
+     * @param dictionaries The dictionary of every column, or null for columns that are not
+     *                     {@link DictionaryColumn dictionary encoded}
+     */
+    public ColumnarRowStore(PersistentField<?>[] fields, StringDictionary[] dictionaries) {
+        this.fields = fields;
+        this.dictionaries = dictionaries;
+        this.allocator = new RowAllocator();
+        this.columns = this.createColumns();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return this.fields.length;
+    }
+
+    @Override
+    public int size() {
+        return this.allocator.size();
+    }
+
+    @Override
+    public int allocate() {
+        int row = this.allocator.allocate();
+        for (Column column : this.columns) {
+            column.ensureCapacity(row + 1);
+        }
+
+        return row;
+    }
+
+    @Override
+    public void free(int row) {
+        for (Column column : this.columns) {
+            column.set(row, null);
+        }
+
+        this.allocator.free(row);
+    }
+
+    @Override
+    public Object get(int row, int column) {
+        return this.columns[column].get(row);
+    }
+
+    @Override
+    public void set(int row, int column, Object value) {
+        this.columns[column].set(row, value);
+    }
+
+    @Override
+    public int filter(int[] rows, int count, int column, Operator operator, Object value) {
+        return this.columns[column].filter(rows, count, operator, value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.allocator.clear();
+        this.columns = this.createColumns();
+        Arrays.stream(this.dictionaries).filter(Objects::nonNull).distinct().forEach(StringDictionary::clear);
+    }
+
+    // Internals
+
+    private Column[] createColumns() {
+        Column[] columns = new Column[this.fields.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.of(this.fields[i], this.dictionaries[i]);
+        }
+
+        return columns;
+    }
+}
@@ -0,0 +1,79 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.query.Operator;
+
+import java.util.Arrays;
+
+/**
+ * A column of strings, kept as their codes in a {@link StringDictionary dictionary}.
+ * Comparing the column with a string for equality looks up the code of the string
+ * once, and then only compares codes. Codes are released once replaced or removed.
+ */
+public class DictionaryColumn extends Column {
+
+    private final StringDictionary dictionary;
+    private volatile int[][] chunks = new int[0][];
+
+    public DictionaryColumn(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        int previous = this.isNull(row) ? StringDictionary.NO_CODE : this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        super.set(row, value);
+        // Released after holding the new code, so that a string set again is kept
+        if (previous != StringDictionary.NO_CODE) {
+            this.dictionary.release(previous);
+        }
+    }
+
+    @Override
+    public int filter(int[] rows, int count, Operator operator, Object value) {
+        if (!(value instanceof String) || (operator != Operator.EQUALS && operator != Operator.NOT_EQUALS)) {
+            return super.filter(rows, count, operator, value);
+        }
+
+        // A string without a code is not stored in any row
+        int expected = this.dictionary.lookup((String) value);
+        boolean equals = operator == Operator.EQUALS;
+
+        int[][] chunks = this.chunks;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            boolean keep;
+            if (this.isNull(row)) {
+                keep = !equals;
+            } else {
+                keep = (chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] == expected) == equals;
+            }
+
+            if (keep) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    @Override
+    protected void growTo(int chunks) {
+        int[][] grown = Arrays.copyOf(this.chunks, chunks);
+        for (int i = this.chunks.length; i < grown.length; i++) {
+            grown[i] = new int[CHUNK_SIZE];
+        }
+
+        this.chunks = grown;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return this.dictionary.decode(this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK]);
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = this.dictionary.encode((String) value);
+    }
+}
@@ -0,0 +1,68 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.DataType;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.util.UtilCompare;
+
+import java.util.Arrays;
+
+/**
+ * A column of {@code double} values. Also used for {@code float} values, which
+ * can be stored as a double without losing precision.
+ */
+public class DoubleColumn extends Column {
+
+    private final boolean floatValues;
+    private volatile double[][] chunks = new double[0][];
+
+    public DoubleColumn(DataType type) {
+        this.floatValues = type == DataType.FLOAT;
+    }
+
+    @Override
+    public int filter(int[] rows, int count, Operator operator, Object value) {
+        if (!UtilCompare.isFloating(value)) {
+            return super.filter(rows, count, operator, value);
+        }
+
+        double expected = ((Number) value).doubleValue();
+        double[][] chunks = this.chunks;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            boolean keep;
+            if (this.isNull(row)) {
+                keep = operator == Operator.NOT_EQUALS;
+            } else {
+                keep = matches(Double.compare(chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK], expected), operator);
+            }
+
+            if (keep) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    @Override
+    protected void growTo(int chunks) {
+        double[][] grown = Arrays.copyOf(this.chunks, chunks);
+        for (int i = this.chunks.length; i < grown.length; i++) {
+            grown[i] = new double[CHUNK_SIZE];
+        }
+
+        this.chunks = grown;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        double value = this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        return this.floatValues ? (Object) (float) value : (Object) value;
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = ((Number) value).doubleValue();
+    }
+}
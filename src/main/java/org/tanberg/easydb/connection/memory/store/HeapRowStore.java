@@ -0,0 +1,178 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.query.Operator;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Keeps every row as an array of objects. Rows are kept in fixed size chunks, so
+ * growing the store never moves rows that are already stored. The array of a row
+ * is never changed once written, changing a value replaces it with a copy, so the
+ * arrays may be shared with readers.
+ * <p>
+ * Strings of columns with a {@link StringDictionary dictionary} are replaced with the
+ * instance kept by the dictionary, so that every distinct string is kept once, and
+ * comparing them for equality only compares references. They are released from the
+ * dictionary once replaced or freed.
+ */
+public class HeapRowStore implements RowStore {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int columns;
+    private final StringDictionary[] dictionaries;
+    private final RowAllocator allocator;
+    private volatile Object[][][] chunks;
+
+    public HeapRowStore(int columns) {
+        this(new StringDictionary[columns]);
+    }
+
+    /**
+     * @param dictionaries The dictionary of every column, or null for columns that are
+     *                     not dictionary encoded
+     */
+    public HeapRowStore(StringDictionary[] dictionaries) {
+        this.columns = dictionaries.length;
+        this.dictionaries = dictionaries;
+        this.allocator = new RowAllocator();
+        this.chunks = new Object[0][][];
+    }
+
+    @Override
+    public int getColumnCount() {
+        return this.columns;
+    }
+
+    @Override
+    public int size() {
+        return this.allocator.size();
+    }
+
+    @Override
+    public int allocate() {
+        int row = this.allocator.allocate();
+        this.ensureCapacity(row + 1);
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = new Object[this.columns];
+        return row;
+    }
+
+    @Override
+    public void free(int row) {
+        this.release(this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK]);
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = null;
+        this.allocator.free(row);
+    }
+
+    @Override
+    public Object get(int row, int column) {
+        return this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK][column];
+    }
+
+    @Override
+    public void set(int row, int column, Object value) {
+        Object[][] chunk = this.chunks[row >>> CHUNK_SHIFT];
+        Object[] values = chunk[row & CHUNK_MASK].clone();
+        Object previous = values[column];
+        values[column] = this.intern(column, value);
+        chunk[row & CHUNK_MASK] = values;
+        this.release(column, previous);
+    }
+
+    @Override
+    public Object[] read(int row) {
+        return this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK].clone();
+    }
+
+    @Override
+    public Object[] view(int row) {
+        return this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    @Override
+    public void write(int row, Object[] values) {
+        Object[] copy = Arrays.copyOf(values, this.columns);
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = this.intern(i, copy[i]);
+        }
+
+        Object[] previous = this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = copy;
+        this.release(previous);
+    }
+
+    @Override
+    public int filter(int[] rows, int count, int column, Operator operator, Object value) {
+        StringDictionary dictionary = this.dictionaries[column];
+        if (dictionary == null || !(value instanceof String) || (operator != Operator.EQUALS && operator != Operator.NOT_EQUALS)) {
+            return RowStore.super.filter(rows, count, column, operator, value);
+        }
+
+        // A string without a code is not stored in any row
+        int code = dictionary.lookup((String) value);
+        String expected = code == StringDictionary.NO_CODE ? null : dictionary.decode(code);
+        boolean equals = operator == Operator.EQUALS;
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            Object stored = this.get(row, column);
+            if ((stored != null && stored == expected) == equals) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.allocator.clear();
+        this.chunks = new Object[0][][];
+        Arrays.stream(this.dictionaries).filter(Objects::nonNull).distinct().forEach(StringDictionary::clear);
+    }
+
+    // Internals
+
+    private Object intern(int column, Object value) {
+        StringDictionary dictionary = this.dictionaries[column];
+        return dictionary == null || value == null ? value : dictionary.intern((String) value);
+    }
+
+    private void release(Object[] values) {
+        for (int i = 0; values != null && i < values.length; i++) {
+            this.release(i, values[i]);
+        }
+    }
+
+    private void release(int column, Object value) {
+        StringDictionary dictionary = this.dictionaries[column];
+        if (dictionary != null && value != null) {
+            dictionary.release(dictionary.lookup((String) value));
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        int required = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (this.chunks.length >= required) {
+            return;
+        }
+
+        synchronized (this) {
+            Object[][][] current = this.chunks;
+            if (current.length >= required) {
+                return;
+            }
+
+            Object[][][] grown = Arrays.copyOf(current, Math.max(required, current.length * 2));
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = new Object[CHUNK_SIZE][];
+            }
+
+            this.chunks = grown;
+        }
+    }
+}
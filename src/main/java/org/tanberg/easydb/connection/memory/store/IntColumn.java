@@ -0,0 +1,84 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.DataType;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.util.UtilCompare;
+
+import java.util.Arrays;
+
+/**
+ * A column of {@code int} values. Also used for {@code byte}, {@code short} and
+ * {@link Enum enum} values, the latter being stored using their ordinal.
+ */
+public class IntColumn extends Column {
+
+    private final DataType type;
+    private final Object[] constants;
+    private volatile int[][] chunks = new int[0][];
+
+    public IntColumn(DataType type, Class<?> typeClass) {
+        this.type = type;
+        this.constants = type == DataType.ENUM ? typeClass.getEnumConstants() : null;
+    }
+
+    @Override
+    public int filter(int[] rows, int count, Operator operator, Object value) {
+        long expected;
+        if (UtilCompare.isIntegral(value)) {
+            expected = ((Number) value).longValue();
+        } else if (value instanceof Enum && this.constants != null) {
+            expected = ((Enum) value).ordinal();
+        } else {
+            return super.filter(rows, count, operator, value);
+        }
+
+        int[][] chunks = this.chunks;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            boolean keep;
+            if (this.isNull(row)) {
+                keep = operator == Operator.NOT_EQUALS;
+            } else {
+                keep = matches(Long.compare(chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK], expected), operator);
+            }
+
+            if (keep) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    @Override
+    protected void growTo(int chunks) {
+        int[][] grown = Arrays.copyOf(this.chunks, chunks);
+        for (int i = this.chunks.length; i < grown.length; i++) {
+            grown[i] = new int[CHUNK_SIZE];
+        }
+
+        this.chunks = grown;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        int value = this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+        switch (this.type) {
+            case BYTE:
+                return (byte) value;
+            case SHORT:
+                return (short) value;
+            case ENUM:
+                return this.constants[value];
+            default:
+                return value;
+        }
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        int intValue = value instanceof Enum ? ((Enum) value).ordinal() : ((Number) value).intValue();
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = intValue;
+    }
+}
@@ -0,0 +1,60 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.util.UtilCompare;
+
+import java.util.Arrays;
+
+/**
+ * A column of {@code long} values.
+ */
+public class LongColumn extends Column {
+
+    private volatile long[][] chunks = new long[0][];
+
+    @Override
+    public int filter(int[] rows, int count, Operator operator, Object value) {
+        if (!UtilCompare.isIntegral(value)) {
+            return super.filter(rows, count, operator, value);
+        }
+
+        long expected = ((Number) value).longValue();
+        long[][] chunks = this.chunks;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            boolean keep;
+            if (this.isNull(row)) {
+                keep = operator == Operator.NOT_EQUALS;
+            } else {
+                keep = matches(Long.compare(chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK], expected), operator);
+            }
+
+            if (keep) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+
+    @Override
+    protected void growTo(int chunks) {
+        long[][] grown = Arrays.copyOf(this.chunks, chunks);
+        for (int i = this.chunks.length; i < grown.length; i++) {
+            grown[i] = new long[CHUNK_SIZE];
+        }
+
+        this.chunks = grown;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = ((Number) value).longValue();
+    }
+}
@@ -0,0 +1,40 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import java.util.Arrays;
+
+/**
+ * A column of any other kind of value, such as strings and collections.
+ */
+public class ObjectColumn extends Column {
+
+    private volatile Object[][] chunks = new Object[0][];
+
+    @Override
+    protected void growTo(int chunks) {
+        Object[][] grown = Arrays.copyOf(this.chunks, chunks);
+        for (int i = this.chunks.length; i < grown.length; i++) {
+            grown[i] = new Object[CHUNK_SIZE];
+        }
+
+        this.chunks = grown;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+        return this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    @Override
+    protected void setValue(int row, Object value) {
+        this.chunks[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = value;
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        super.set(row, value);
+        if (value == null) {
+            // Don't keep the old value reachable
+            this.setValue(row, null);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.field.PersistentField;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Keeps every row serialized in off-heap memory using a {@link RowCodec}. The address
+ * of every row is kept in an off-heap directory indexed by row ID, so the only objects
+ * kept on the heap are the slabs and directory chunks themselves.
+ * <p>
+ * Every value read from this store is deserialized, so this is slower than the
+ * other stores. It is mainly useful for very large tables, where keeping the rows
+ * on the heap would make garbage collection too expensive.
+ */
+public class OffHeapRowStore implements RowStore {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long NO_RECORD = -1;
+
+    private final int columns;
+    private final StringDictionary[] dictionaries;
+    private final RowCodec codec;
+    private final RowAllocator allocator;
+    private final SlabAllocator slabs;
+    private volatile ByteBuffer[] directory;
+
+    public OffHeapRowStore(PersistentField<?>[] fields) {
+        this(fields, new StringDictionary[fields.length]);
+    }
+
+    /**
+     * @param fields       The stored fields, one for each column
+     * @param dictionaries The dictionary of every column, or null for columns that are
+     *                     not dictionary encoded
+     */
+    public OffHeapRowStore(PersistentField<?>[] fields, StringDictionary[] dictionaries) {
+        this.columns = fields.length;
+        this.dictionaries = dictionaries;
+        this.codec = new RowCodec(fields, dictionaries);
+        this.allocator = new RowAllocator();
+        this.slabs = new SlabAllocator();
+        this.directory = new ByteBuffer[0];
+    }
+
+    @Override
+    public int getColumnCount() {
+        return this.columns;
+    }
+
+    @Override
+    public int size() {
+        return this.allocator.size();
+    }
+
+    @Override
+    public int allocate() {
+        int row = this.allocator.allocate();
+        this.ensureCapacity(row + 1);
+        this.setAddress(row, NO_RECORD);
+        return row;
+    }
+
+    @Override
+    public void free(int row) {
+        this.freeRecord(this.getAddress(row));
+        this.setAddress(row, NO_RECORD);
+        this.allocator.free(row);
+    }
+
+    @Override
+    public Object get(int row, int column) {
+        long address = this.getAddress(row);
+        if (address == NO_RECORD) {
+            return null;
+        }
+
+        return this.codec.decode(this.slabs.getBuffer(address), SlabAllocator.getOffset(address) + 4, column);
+    }
+
+    @Override
+    public void set(int row, int column, Object value) {
+        Object[] values = this.read(row);
+        values[column] = value;
+        this.write(row, values);
+    }
+
+    @Override
+    public Object[] read(int row) {
+        long address = this.getAddress(row);
+        if (address == NO_RECORD) {
+            return new Object[this.columns];
+        }
+
+        return this.codec.decode(this.slabs.getBuffer(address), SlabAllocator.getOffset(address) + 4);
+    }
+
+    @Override
+    public void write(int row, Object[] values) {
+        byte[] bytes = this.codec.encode(values);
+        long address = this.slabs.allocate(bytes.length + 4);
+
+        // Records start with their length, so that we know the size of the block when freeing it
+        ByteBuffer out = this.slabs.getBuffer(address).duplicate();
+        out.position(SlabAllocator.getOffset(address));
+        out.putInt(bytes.length);
+        out.put(bytes);
+
+        long previous = this.getAddress(row);
+        this.setAddress(row, address);
+        this.freeRecord(previous);
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.allocator.clear();
+        this.slabs.clear();
+        this.directory = new ByteBuffer[0];
+        Arrays.stream(this.dictionaries).filter(Objects::nonNull).distinct().forEach(StringDictionary::clear);
+    }
+
+    @Override
+    public long getOffHeapBytes() {
+        return this.slabs.getReservedBytes() + (long) this.directory.length * CHUNK_SIZE * 8;
+    }
+
+    // Internals
+
+    private long getAddress(int row) {
+        return this.directory[row >>> CHUNK_SHIFT].getLong((row & CHUNK_MASK) << 3);
+    }
+
+    private void setAddress(int row, long address) {
+        this.directory[row >>> CHUNK_SHIFT].putLong((row & CHUNK_MASK) << 3, address);
+    }
+
+    private void freeRecord(long address) {
+        if (address == NO_RECORD) {
+            return;
+        }
+
+        ByteBuffer buffer = this.slabs.getBuffer(address);
+        int length = buffer.getInt(SlabAllocator.getOffset(address));
+        this.codec.release(buffer, SlabAllocator.getOffset(address) + 4);
+        this.slabs.free(address, length + 4);
+    }
+
+    private void ensureCapacity(int rows) {
+        int required = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (this.directory.length >= required) {
+            return;
+        }
+
+        synchronized (this) {
+            ByteBuffer[] current = this.directory;
+            if (current.length >= required) {
+                return;
+            }
+
+            ByteBuffer[] grown = Arrays.copyOf(current, Math.max(required, current.length * 2));
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = ByteBuffer.allocateDirect(CHUNK_SIZE * 8);
+            }
+
+            this.directory = grown;
+        }
+    }
+}
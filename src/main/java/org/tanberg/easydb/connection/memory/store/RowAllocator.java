@@ -0,0 +1,50 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import java.util.Arrays;
+
+/**
+ * Hands out row IDs, reusing freed IDs before growing. Row IDs are kept as dense
+ * as possible so that they can be used as array indices.
+ */
+public class RowAllocator {
+
+    private int[] free = new int[16];
+    private int freeCount;
+    private int next;
+    private int size;
+
+    public synchronized int allocate() {
+        this.size++;
+        if (this.freeCount > 0) {
+            return this.free[--this.freeCount];
+        }
+
+        return this.next++;
+    }
+
+    public synchronized void free(int row) {
+        if (this.freeCount == this.free.length) {
+            this.free = Arrays.copyOf(this.free, this.free.length * 2);
+        }
+
+        this.free[this.freeCount++] = row;
+        this.size--;
+    }
+
+    /**
+     * @return The highest row ID handed out so far, plus one
+     */
+    public synchronized int getCapacity() {
+        return this.next;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized void clear() {
+        this.freeCount = 0;
+        this.next = 0;
+        this.size = 0;
+    }
+}
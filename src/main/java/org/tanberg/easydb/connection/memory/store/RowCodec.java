@@ -0,0 +1,273 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.field.PersistentField;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Serializes rows to and from a compact binary format. A row starts with a bitmap
+ * of which columns are {@code null}, followed by the values of all other columns in
+ * order. Primitives and enums are written as fixed size values, strings as UTF-8,
+ * or as their code if the column has a {@link StringDictionary dictionary}, and
+ * everything else using the {@link org.tanberg.easydb.DataType data type} of the
+ * field.
+ */
+public class RowCodec {
+
+    private final PersistentField<?>[] fields;
+    private final StringDictionary[] dictionaries;
+    private final Object[][] enumConstants;
+    private final int nullBytes;
+
+    public RowCodec(PersistentField<?>[] fields) {
+        this(fields, new StringDictionary[fields.length]);
+    }
+
+    /**
+     * @param fields       The stored fields, one for each column
+     * @param dictionaries The dictionary of every column, or null for columns that are
+     *                     not dictionary encoded
+     */
+    public RowCodec(PersistentField<?>[] fields, StringDictionary[] dictionaries) {
+        this.fields = fields;
+        this.dictionaries = dictionaries;
+        this.enumConstants = new Object[fields.length][];
+        this.nullBytes = (fields.length + 7) >>> 3;
+
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> typeClass = fields[i].getTypeClass();
+            if (typeClass != null && typeClass.isEnum()) {
+                this.enumConstants[i] = typeClass.getEnumConstants();
+            }
+        }
+    }
+
+    /**
+     * Writes an entire row. Strings of columns with a dictionary hold their code until
+     * the row is {@link #release(ByteBuffer, int) released}.
+     */
+    public byte[] encode(Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.nullBytes + values.length * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            byte[] nulls = new byte[this.nullBytes];
+            for (int i = 0; i < this.fields.length; i++) {
+                if (values[i] == null) {
+                    nulls[i >>> 3] |= 1 << (i & 7);
+                }
+            }
+
+            out.write(nulls);
+            for (int i = 0; i < this.fields.length; i++) {
+                if (values[i] != null) {
+                    this.write(out, i, values[i]);
+                }
+            }
+        } catch (IOException e) {
+            // Never thrown when writing to a byte array
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads an entire row.
+     *
+     * @param buffer The buffer to read from. Its position is not changed.
+     * @param offset The offset of the row in the buffer
+     * @return The values of the row
+     */
+    public Object[] decode(ByteBuffer buffer, int offset) {
+        ByteBuffer in = this.open(buffer, offset);
+        Object[] values = new Object[this.fields.length];
+        for (int i = 0; i < values.length; i++) {
+            if (!this.isNull(buffer, offset, i)) {
+                values[i] = this.read(in, i);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Reads a single column of a row, skipping the columns before it.
+     *
+     * @param buffer The buffer to read from. Its position is not changed.
+     * @param offset The offset of the row in the buffer
+     * @param column The column to read
+     * @return The value of the column
+     */
+    public Object decode(ByteBuffer buffer, int offset, int column) {
+        if (this.isNull(buffer, offset, column)) {
+            return null;
+        }
+
+        ByteBuffer in = this.open(buffer, offset);
+        for (int i = 0; i < column; i++) {
+            if (!this.isNull(buffer, offset, i)) {
+                this.skip(in, i);
+            }
+        }
+
+        return this.read(in, column);
+    }
+
+    /**
+     * Releases the codes held by the strings of the dictionary encoded columns of a row,
+     * once the row is no longer stored.
+     *
+     * @param buffer The buffer to read from. Its position is not changed.
+     * @param offset The offset of the row in the buffer
+     */
+    public void release(ByteBuffer buffer, int offset) {
+        if (Arrays.stream(this.dictionaries).allMatch(Objects::isNull)) {
+            return;
+        }
+
+        ByteBuffer in = this.open(buffer, offset);
+        for (int i = 0; i < this.fields.length; i++) {
+            if (this.isNull(buffer, offset, i)) {
+                continue;
+            }
+
+            if (this.dictionaries[i] != null) {
+                this.dictionaries[i].release(in.getInt());
+            } else {
+                this.skip(in, i);
+            }
+        }
+    }
+
+    // Internals
+
+    private ByteBuffer open(ByteBuffer buffer, int offset) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + this.nullBytes);
+        return in;
+    }
+
+    private boolean isNull(ByteBuffer buffer, int offset, int column) {
+        return (buffer.get(offset + (column >>> 3)) & (1 << (column & 7))) != 0;
+    }
+
+    private void write(DataOutputStream out, int column, Object value) throws IOException {
+        if (this.dictionaries[column] != null) {
+            out.writeInt(this.dictionaries[column].encode((String) value));
+            return;
+        }
+
+        PersistentField<?> field = this.fields[column];
+        switch (field.getType()) {
+            case BYTE:
+                out.writeByte((Byte) value);
+                break;
+            case SHORT:
+                out.writeShort((Short) value);
+                break;
+            case INTEGER:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case ENUM:
+                out.writeInt(((Enum) value).ordinal());
+                break;
+            case STRING:
+                this.writeString(out, (String) value);
+                break;
+            default:
+                this.writeString(out, field.getType().toString(null, field, value));
+                break;
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Object read(ByteBuffer in, int column) {
+        if (this.dictionaries[column] != null) {
+            return this.dictionaries[column].decode(in.getInt());
+        }
+
+        PersistentField<?> field = this.fields[column];
+        switch (field.getType()) {
+            case BYTE:
+                return in.get();
+            case SHORT:
+                return in.getShort();
+            case INTEGER:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case FLOAT:
+                return in.getFloat();
+            case DOUBLE:
+                return in.getDouble();
+            case BOOLEAN:
+                return in.get() != 0;
+            case ENUM:
+                return this.enumConstants[column][in.getInt()];
+            case STRING:
+                return this.readString(in);
+            default:
+                return field.getType().fromString(null, field, this.readString(in));
+        }
+    }
+
+    private String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void skip(ByteBuffer in, int column) {
+        if (this.dictionaries[column] != null) {
+            in.position(in.position() + 4);
+            return;
+        }
+
+        switch (this.fields[column].getType()) {
+            case BYTE:
+            case BOOLEAN:
+                in.position(in.position() + 1);
+                break;
+            case SHORT:
+                in.position(in.position() + 2);
+                break;
+            case INTEGER:
+            case FLOAT:
+            case ENUM:
+                in.position(in.position() + 4);
+                break;
+            case LONG:
+            case DOUBLE:
+                in.position(in.position() + 8);
+                break;
+            default:
+                int length = in.getInt();
+                in.position(in.position() + length);
+                break;
+        }
+    }
+}
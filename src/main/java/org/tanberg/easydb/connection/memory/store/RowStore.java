@@ -0,0 +1,99 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.util.ValueHelper;
+
+/**
+ * Storage for the rows of a memory table. Every row is identified by an integer
+ * row ID handed out by {@link #allocate()}, and every column corresponds to a stored
+ * field of the profile, in the same order.
+ */
+public interface RowStore {
+
+    /**
+     * @return The number of columns in this store
+     */
+    int getColumnCount();
+
+    /**
+     * @return The number of rows currently allocated
+     */
+    int size();
+
+    /**
+     * Allocates a new row. The values of the row are all {@code null} until they are set.
+     *
+     * @return The ID of the new row
+     */
+    int allocate();
+
+    /**
+     * Frees the given row, allowing its ID to be reused.
+     *
+     * @param row The row ID
+     */
+    void free(int row);
+
+    Object get(int row, int column);
+
+    void set(int row, int column, Object value);
+
+    /**
+     * Removes all rows from this store.
+     */
+    void clear();
+
+    /**
+     * @return The number of bytes of off-heap memory used by this store
+     */
+    default long getOffHeapBytes() {
+        return 0;
+    }
+
+    default Object[] read(int row) {
+        Object[] values = new Object[this.getColumnCount()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.get(row, i);
+        }
+
+        return values;
+    }
+
+    /**
+     * Reads an entire row, without copying it if the store can avoid it. The array
+     * returned must not be changed, and is never changed by the store afterwards.
+     */
+    default Object[] view(int row) {
+        return this.read(row);
+    }
+
+    default void write(int row, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            this.set(row, i, values[i]);
+        }
+    }
+
+    /**
+     * Removes all rows that do not match the given operator and value from the first
+     * {@code count} elements of the given array. The matching rows are moved to the start
+     * of the array, keeping their order.
+     *
+     * @param rows     The row IDs
+     * @param count    The number of row IDs in the array to check
+     * @param column   The column to check
+     * @param operator The {@link Operator operator}
+     * @param value    The value to compare with
+     * @return The number of matching rows, now at the start of the array
+     */
+    default int filter(int[] rows, int count, int column, Operator operator, Object value) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (ValueHelper.matches(this.get(row, column), value, operator)) {
+                rows[kept++] = row;
+            }
+        }
+
+        return kept;
+    }
+}
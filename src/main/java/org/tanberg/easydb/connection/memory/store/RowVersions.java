@@ -0,0 +1,142 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps track of which versions of a table every row is visible in. A row is
+ * created in one version and deleted in a later one, and is visible to readers of
+ * any version in between. Every row also points to the previous version of the
+ * same key, letting readers find the version of a key visible to them.
+ */
+public class RowVersions {
+
+    /**
+     * The deletion version of rows that are not deleted.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * A version that sees every row that is not deleted, including rows created by
+     * changes that are not yet committed.
+     */
+    public static final long LATEST = Long.MAX_VALUE - 1;
+
+    /**
+     * The previous version of rows that have none.
+     */
+    public static final int NO_ROW = -1;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicLongArray[] created = new AtomicLongArray[0];
+    private volatile AtomicLongArray[] deleted = new AtomicLongArray[0];
+    private volatile AtomicIntegerArray[] previous = new AtomicIntegerArray[0];
+
+    /**
+     * Marks the given row as created in the given version.
+     *
+     * @param row      The row ID
+     * @param version  The version
+     * @param previous The row holding the previous version of the same key, or {@link #NO_ROW}
+     */
+    public void begin(int row, long version, int previous) {
+        this.ensureCapacity(row + 1);
+
+        this.previous[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, previous);
+        // Written before the deletion version, which readers check first, so that a reader
+        // never sees the deletion version of this row with the creation version of an old one
+        this.created[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, version);
+        this.deleted[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, NEVER);
+    }
+
+    /**
+     * Marks the given row as deleted in the given version.
+     *
+     * @param row     The row ID
+     * @param version The version
+     */
+    public void end(int row, long version) {
+        this.deleted[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, version);
+    }
+
+    public boolean isVisible(int row, long version) {
+        long deleted = this.deleted[row >>> CHUNK_SHIFT].get(row & CHUNK_MASK);
+        return version < deleted && this.created[row >>> CHUNK_SHIFT].get(row & CHUNK_MASK) <= version;
+    }
+
+    /**
+     * @return If the given row is not deleted
+     */
+    public boolean isLive(int row) {
+        return this.getDeleted(row) == NEVER;
+    }
+
+    public long getDeleted(int row) {
+        return this.deleted[row >>> CHUNK_SHIFT].get(row & CHUNK_MASK);
+    }
+
+    public int getPrevious(int row) {
+        return this.previous[row >>> CHUNK_SHIFT].get(row & CHUNK_MASK);
+    }
+
+    public void setPrevious(int row, int previous) {
+        this.previous[row >>> CHUNK_SHIFT].set(row & CHUNK_MASK, previous);
+    }
+
+    /**
+     * Follows the previous versions of the given row until one visible in the given
+     * version is found.
+     *
+     * @param row     The row ID of the newest version
+     * @param version The version
+     * @return The visible row, or {@link #NO_ROW} if none of the versions are visible
+     */
+    public int resolve(int row, long version) {
+        while (row != NO_ROW && !this.isVisible(row, version)) {
+            row = this.getPrevious(row);
+        }
+
+        return row;
+    }
+
+    public synchronized void clear() {
+        this.created = new AtomicLongArray[0];
+        this.deleted = new AtomicLongArray[0];
+        this.previous = new AtomicIntegerArray[0];
+    }
+
+    // Internals
+
+    private void ensureCapacity(int rows) {
+        int required = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (this.deleted.length >= required) {
+            return;
+        }
+
+        synchronized (this) {
+            int current = this.deleted.length;
+            if (current >= required) {
+                return;
+            }
+
+            int chunks = Math.max(required, current * 2);
+            AtomicLongArray[] created = Arrays.copyOf(this.created, chunks);
+            AtomicLongArray[] deleted = Arrays.copyOf(this.deleted, chunks);
+            AtomicIntegerArray[] previous = Arrays.copyOf(this.previous, chunks);
+            for (int i = current; i < chunks; i++) {
+                created[i] = new AtomicLongArray(CHUNK_SIZE);
+                deleted[i] = new AtomicLongArray(CHUNK_SIZE);
+                previous[i] = new AtomicIntegerArray(CHUNK_SIZE);
+            }
+
+            // The deletion versions are published last, as its length is checked above
+            this.created = created;
+            this.previous = previous;
+            this.deleted = deleted;
+        }
+    }
+}
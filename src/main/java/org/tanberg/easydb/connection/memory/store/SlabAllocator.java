@@ -0,0 +1,132 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hands out blocks of off-heap memory, carved out of large direct {@link ByteBuffer
+ * buffers} called slabs. Block sizes are rounded up to the nearest power of two, and
+ * freed blocks are kept in a free list for their size, linked through the blocks
+ * themselves, so that keeping track of free memory does not use the heap.
+ * <p>
+ * Blocks are identified by an address, where the upper 32 bits is the index of the
+ * slab and the lower 32 bits is the offset in that slab.
+ */
+public class SlabAllocator {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 22;
+
+    private static final int MIN_BLOCK_SHIFT = 4;
+    private static final long NO_BLOCK = -1;
+
+    private final int slabSize;
+    private final long[] freeBlocks;
+    private volatile ByteBuffer[] slabs;
+    private int position;
+    private long usedBytes;
+
+    public SlabAllocator() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    public SlabAllocator(int slabSize) {
+        if (Integer.bitCount(slabSize) != 1 || slabSize < (1 << MIN_BLOCK_SHIFT)) {
+            throw new IllegalArgumentException("Slab size must be a power of two, and at least " + (1 << MIN_BLOCK_SHIFT) + "!");
+        }
+
+        this.slabSize = slabSize;
+        this.freeBlocks = new long[Integer.numberOfTrailingZeros(slabSize) - MIN_BLOCK_SHIFT + 1];
+        this.clear();
+    }
+
+    public static int getSlab(long address) {
+        return (int) (address >>> 32);
+    }
+
+    public static int getOffset(long address) {
+        return (int) address;
+    }
+
+    public ByteBuffer getBuffer(long address) {
+        return this.slabs[getSlab(address)];
+    }
+
+    /**
+     * Allocates a block of at least the given size.
+     *
+     * @param size The size of the block, in bytes
+     * @return The address of the block
+     */
+    public synchronized long allocate(int size) {
+        int sizeClass = this.getSizeClass(size);
+        int blockSize = 1 << (sizeClass + MIN_BLOCK_SHIFT);
+        this.usedBytes += blockSize;
+
+        long address = this.freeBlocks[sizeClass];
+        if (address != NO_BLOCK) {
+            // The first bytes of a free block point to the next free block
+            this.freeBlocks[sizeClass] = this.getBuffer(address).getLong(getOffset(address));
+            return address;
+        }
+
+        ByteBuffer[] slabs = this.slabs;
+        if (slabs.length == 0 || this.position + blockSize > this.slabSize) {
+            slabs = Arrays.copyOf(slabs, slabs.length + 1);
+            slabs[slabs.length - 1] = ByteBuffer.allocateDirect(this.slabSize);
+            this.slabs = slabs;
+            this.position = 0;
+        }
+
+        address = ((long) (slabs.length - 1) << 32) | this.position;
+        this.position += blockSize;
+        return address;
+    }
+
+    /**
+     * Frees a block, allowing it to be reused.
+     *
+     * @param address The address of the block
+     * @param size    The size given when the block was allocated
+     */
+    public synchronized void free(long address, int size) {
+        int sizeClass = this.getSizeClass(size);
+        this.usedBytes -= 1 << (sizeClass + MIN_BLOCK_SHIFT);
+        this.getBuffer(address).putLong(getOffset(address), this.freeBlocks[sizeClass]);
+        this.freeBlocks[sizeClass] = address;
+    }
+
+    /**
+     * @return The number of bytes in blocks currently handed out
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * @return The number of bytes reserved by slabs
+     */
+    public long getReservedBytes() {
+        return (long) this.slabs.length * this.slabSize;
+    }
+
+    /**
+     * Frees all blocks. The slabs themselves are released once they are garbage collected.
+     */
+    public synchronized void clear() {
+        Arrays.fill(this.freeBlocks, NO_BLOCK);
+        this.slabs = new ByteBuffer[0];
+        this.position = 0;
+        this.usedBytes = 0;
+    }
+
+    // Internals
+
+    private int getSizeClass(int size) {
+        if (size > this.slabSize) {
+            throw new IllegalArgumentException("Can not allocate " + size + " bytes, as it is larger than the slab size " + this.slabSize + "!");
+        }
+
+        int blockSize = Math.max(size, 1 << MIN_BLOCK_SHIFT);
+        return 32 - Integer.numberOfLeadingZeros(blockSize - 1) - MIN_BLOCK_SHIFT;
+    }
+}
@@ -0,0 +1,183 @@
+package org.tanberg.easydb.connection.memory.store;
+
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Gives every distinct string a code, so that columns of repetitive strings can be
+ * kept as codes, and every distinct string is kept only once. Every code is counted
+ * by the values holding it: {@link #encode(String) encoding} a string holds its code,
+ * and {@link #release(int) releasing} the code drops the hold. A string is removed
+ * once no value holds it, and its code reused for the next new string, so the
+ * dictionary only grows with the number of distinct strings stored at the same time.
+ * <p>
+ * Thread safe. Finding the string of a code never locks, and neither does encoding a
+ * string that already has a code.
+ */
+public class StringDictionary {
+
+    public static final int NO_CODE = -1;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Map<String, Integer> codes;
+    private volatile String[][] strings;
+    // The number of values holding every code, only raised from 0 while holding the lock
+    private volatile AtomicIntegerArray[] counts;
+    // Codes of removed strings, to be handed out again. Guarded by this
+    private final Deque<Integer> freeCodes;
+    private int size;
+
+    public StringDictionary() {
+        this.codes = Maps.newConcurrentMap();
+        this.strings = new String[0][];
+        this.counts = new AtomicIntegerArray[0];
+        this.freeCodes = new ArrayDeque<>();
+    }
+
+    /**
+     * Holds the code of the given string, until it is {@link #release(int) released}.
+     *
+     * @param value The string
+     * @return The code of the given string, given a new code if it has none yet
+     */
+    public int encode(String value) {
+        Integer code = this.codes.get(value);
+        if (code != null && this.retain(code)) {
+            // The code may have been reused for another string since it was found
+            if (value.equals(this.decode(code))) {
+                return code;
+            }
+
+            this.release(code);
+        }
+
+        synchronized (this) {
+            code = this.codes.get(value);
+            if (code != null) {
+                // May be held by no value, but is only removed while holding the lock
+                this.counts[code >>> CHUNK_SHIFT].incrementAndGet(code & CHUNK_MASK);
+                return code;
+            }
+
+            int next = this.freeCodes.isEmpty() ? this.size++ : this.freeCodes.pop();
+            this.ensureCapacity(next + 1);
+            // Stored before the code is handed out, so that any code found can be decoded
+            this.strings[next >>> CHUNK_SHIFT][next & CHUNK_MASK] = value;
+            this.counts[next >>> CHUNK_SHIFT].set(next & CHUNK_MASK, 1);
+            this.codes.put(value, next);
+            return next;
+        }
+    }
+
+    /**
+     * Drops a hold of the given code, removing its string once no value holds it.
+     *
+     * @param code The code, as given by {@link #encode(String)}
+     */
+    public void release(int code) {
+        if (this.counts[code >>> CHUNK_SHIFT].decrementAndGet(code & CHUNK_MASK) > 0) {
+            return;
+        }
+
+        synchronized (this) {
+            String value = this.strings[code >>> CHUNK_SHIFT][code & CHUNK_MASK];
+            // May have been held again, or removed by another release, since
+            if (value == null || this.counts[code >>> CHUNK_SHIFT].get(code & CHUNK_MASK) != 0) {
+                return;
+            }
+
+            this.codes.remove(value);
+            this.strings[code >>> CHUNK_SHIFT][code & CHUNK_MASK] = null;
+            this.freeCodes.push(code);
+        }
+    }
+
+    /**
+     * @param value The string
+     * @return The code of the given string, or {@link #NO_CODE} if it has none
+     */
+    public int lookup(String value) {
+        Integer code = this.codes.get(value);
+        return code == null ? NO_CODE : code;
+    }
+
+    public String decode(int code) {
+        return this.strings[code >>> CHUNK_SHIFT][code & CHUNK_MASK];
+    }
+
+    /**
+     * Holds the code of the given string, like {@link #encode(String)}.
+     *
+     * @param value The string
+     * @return The instance of the given string kept by this dictionary
+     */
+    public String intern(String value) {
+        return this.decode(this.encode(value));
+    }
+
+    /**
+     * @return The number of distinct strings in this dictionary
+     */
+    public int size() {
+        return this.codes.size();
+    }
+
+    /**
+     * Removes all strings, for when no value holds any code anymore.
+     */
+    public synchronized void clear() {
+        this.codes.clear();
+        this.freeCodes.clear();
+        this.strings = new String[0][];
+        this.counts = new AtomicIntegerArray[0];
+        this.size = 0;
+    }
+
+    // Internals
+
+    /**
+     * Holds the given code, unless no value holds it.
+     *
+     * @return If the code was held
+     */
+    private boolean retain(int code) {
+        AtomicIntegerArray counts = this.counts[code >>> CHUNK_SHIFT];
+        int index = code & CHUNK_MASK;
+        int count;
+        do {
+            count = counts.get(index);
+            if (count == 0) {
+                return false;
+            }
+        } while (!counts.compareAndSet(index, count, count + 1));
+
+        return true;
+    }
+
+    private void ensureCapacity(int size) {
+        int required = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (this.strings.length >= required) {
+            return;
+        }
+
+        int chunks = Math.max(required, this.strings.length * 2);
+        String[][] grown = Arrays.copyOf(this.strings, chunks);
+        AtomicIntegerArray[] grownCounts = Arrays.copyOf(this.counts, chunks);
+        for (int i = this.strings.length; i < grown.length; i++) {
+            grown[i] = new String[CHUNK_SIZE];
+            grownCounts[i] = new AtomicIntegerArray(CHUNK_SIZE);
+        }
+
+        // Counts first, so that any code found has a count
+        this.counts = grownCounts;
+        this.strings = grown;
+    }
+}
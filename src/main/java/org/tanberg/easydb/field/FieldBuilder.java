@@ -2,6 +2,7 @@ package org.tanberg.easydb.field;
 
 import org.tanberg.easydb.DataType;
 import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
 import org.tanberg.easydb.ItemRepository;
 import org.tanberg.easydb.Key;
 import org.tanberg.easydb.Options;
@@ -31,8 +32,10 @@ public class FieldBuilder<T> {
     private Class<? extends FieldSerializer> serializerClass;
     private boolean key;
     private boolean autoIncr;
+    private boolean orderedKey;
     private boolean index;
     private boolean uniqueIndex;
+    private IndexType indexType = IndexType.HASH;
     private boolean externalStore;
     private String joinTable;
     private String joinLocalField;
@@ -105,6 +108,7 @@ public class FieldBuilder<T> {
 
         this.key = true;
         this.autoIncr = keyAnnot.autoIncrement();
+        this.orderedKey = keyAnnot.ordered();
         return this;
     }
 
@@ -248,6 +252,17 @@ public class FieldBuilder<T> {
         return this;
     }
 
+    /**
+     * Sets if the keys should be kept in sorted order, as in {@link Key#ordered()}.
+     *
+     * @param value If the keys should be kept in sorted order
+     * @return This
+     */
+    public FieldBuilder<T> setOrderedKey(boolean value) {
+        this.orderedKey = value;
+        return this;
+    }
+
     /**
      * Sets the {@link Index index} data based on the annotations on the
      * given field.
@@ -264,6 +279,7 @@ public class FieldBuilder<T> {
 
         this.uniqueIndex = indexAnnot.unique();
         this.indexIds = indexAnnot.value();
+        this.indexType = indexAnnot.type();
         return this;
     }
 
@@ -297,6 +313,17 @@ public class FieldBuilder<T> {
         return this.setIndex(true);
     }
 
+    /**
+     * Sets the {@link IndexType type} of the index, as in {@link Index#type()}.
+     *
+     * @param indexType The {@link IndexType type}
+     * @return This
+     */
+    public FieldBuilder<T> setIndexType(IndexType indexType) {
+        this.indexType = indexType;
+        return this;
+    }
+
     /**
      * Sets the index IDs, as in {@link Index#value()}.
      *
@@ -460,6 +487,6 @@ public class FieldBuilder<T> {
 
         return new PersistentField<>(fieldIndex, tClass, field, name, type, size, typeParams, serializerClass, key,
           autoIncr, index, uniqueIndex, externalStore, joinTable, joinLocalField, joinExternalField, tableStore,
-          transientField, keyFields, repository, indexIds, typeClass);
+          transientField, keyFields, repository, indexIds, typeClass, orderedKey, indexType);
     }
 }
@@ -2,6 +2,7 @@ package org.tanberg.easydb.field;
 
 import org.tanberg.easydb.DataType;
 import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
 import org.tanberg.easydb.ItemRepository;
 import org.tanberg.easydb.Key;
 import org.tanberg.easydb.Options;
@@ -29,8 +30,10 @@ public class PersistentField<T> {
     private Class<? extends FieldSerializer> serializerClass;
     private boolean key;
     private boolean autoIncr;
+    private boolean orderedKey;
     private boolean index;
     private boolean uniqueIndex;
+    private IndexType indexType = IndexType.HASH;
     private boolean externalStore;
     private String joinTable;
     private String joinLocalField;
@@ -46,7 +49,7 @@ public class PersistentField<T> {
                               boolean autoIncr, boolean index, boolean uniqueIndex, boolean externalStore,
                               String joinTable, String joinLocalField, String joinExternalField, String tableStore,
                               boolean transientSaving, String[] keyFields, Class<? extends ItemRepository> repository,
-                              int[] indexIds, Class<?> typeClass) {
+                              int[] indexIds, Class<?> typeClass, boolean orderedKey, IndexType indexType) {
         this.fieldIndex = fieldIndex;
         this.tClass = tClass;
         this.field = field;
@@ -69,6 +72,8 @@ public class PersistentField<T> {
         this.repository = repository;
         this.indexIds = indexIds;
         this.typeClass = typeClass;
+        this.orderedKey = orderedKey;
+        this.indexType = indexType == null ? IndexType.HASH : indexType;
     }
 
     public PersistentField(int fieldIndex, Class<T> tClass, Field field) {
@@ -97,6 +102,7 @@ public class PersistentField<T> {
             Index indexAnnot = field.getAnnotation(Index.class);
             this.uniqueIndex = indexAnnot.unique();
             this.indexIds = indexAnnot.value();
+            this.indexType = indexAnnot.type();
         }
 
         Join joinData = field.getAnnotation(Join.class);
@@ -129,6 +135,7 @@ public class PersistentField<T> {
 
         this.key = true;
         this.autoIncr = keyAnnot.autoIncrement();
+        this.orderedKey = keyAnnot.ordered();
     }
 
     public Object getRawFieldValue(T object) {
@@ -172,7 +179,7 @@ public class PersistentField<T> {
             throw new NullPointerException("Field tagged as not-null \"" + this.field.getName() + "\" is null in given object!");
         }
 
-        return new FieldValue<>(this, value);
+        return value == null ? new FieldValue<>(this) : new FieldValue<>(this, value);
     }
 
     public void set(ItemRepository<T> manager, T object, String value) {
@@ -241,6 +248,10 @@ public class PersistentField<T> {
         return autoIncr;
     }
 
+    public boolean isOrderedKey() {
+        return orderedKey;
+    }
+
     public boolean isIndex() {
         return index;
     }
@@ -249,6 +260,10 @@ public class PersistentField<T> {
         return uniqueIndex;
     }
 
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
     public int[] getIndexIds() {
         return indexIds;
     }
@@ -343,8 +358,10 @@ public class PersistentField<T> {
           ", serializerClass=" + serializerClass +
           ", key=" + key +
           ", autoIncr=" + autoIncr +
+          ", orderedKey=" + orderedKey +
           ", index=" + index +
           ", uniqueIndex=" + uniqueIndex +
+          ", indexType=" + indexType +
           ", externalStore=" + externalStore +
           ", joinTable='" + joinTable + '\'' +
           ", joinLocalField='" + joinLocalField + '\'' +
@@ -13,7 +13,12 @@ public enum Operator {
     LESS_THAN("<"),
     LESS_THAN_OR_EQUAL_TO("<="),
     GREATER_THAN(">"),
-    GREATER_THAN_OR_EQUAL_TO(">=");
+    GREATER_THAN_OR_EQUAL_TO(">="),
+
+    // String Operators
+
+    STARTS_WITH("LIKE"),
+    MATCHES("MATCH");
 
     private String str; // This is actually just the SQL operator
 
@@ -17,13 +17,21 @@ public class Query<T> implements ValueHolder<T> {
     // into a single object, which then branches on to the other ones
     private QueryRequirement req;
 
+    // Milliseconds, or 0 for the default of the table
+    private long timeToLive;
+
     // TODO: Limit/order functionality?
 
     public Query(Class<T> typeClass, T instance, FieldValue<T>[] values, QueryRequirement req) {
+        this(typeClass, instance, values, req, 0);
+    }
+
+    public Query(Class<T> typeClass, T instance, FieldValue<T>[] values, QueryRequirement req, long timeToLive) {
         this.typeClass = typeClass;
         this.instance = instance == null ? Optional.empty() : Optional.of(instance);
         this.values = values;
         this.req = req;
+        this.timeToLive = timeToLive;
     }
 
     public Class<T> getTypeClass() {
@@ -43,6 +51,14 @@ public class Query<T> implements ValueHolder<T> {
         return values;
     }
 
+    /**
+     * @return How long the saved values are kept, in milliseconds, or 0 for the default
+     * of the table. Only used by {@link org.tanberg.easydb.DatabaseType#MEMORY memory storage}.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -54,7 +70,8 @@ public class Query<T> implements ValueHolder<T> {
         }
 
         Query<?> query = (Query<?>) o;
-        return Objects.equals(typeClass, query.typeClass) &&
+        return timeToLive == query.timeToLive &&
+          Objects.equals(typeClass, query.typeClass) &&
           Objects.equals(instance, query.instance) &&
           Arrays.equals(values, query.values) &&
           Objects.equals(req, query.req);
@@ -62,7 +79,7 @@ public class Query<T> implements ValueHolder<T> {
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(typeClass, instance, req);
+        int result = Objects.hash(typeClass, instance, req, timeToLive);
         result = 31 * result + Arrays.hashCode(values);
         return result;
     }
@@ -74,6 +91,7 @@ public class Query<T> implements ValueHolder<T> {
           ", instance=" + instance +
           ", values=" + Arrays.toString(values) +
           ", req=" + req +
+          ", timeToLive=" + timeToLive +
           '}';
     }
 }
@@ -9,6 +9,7 @@ import org.tanberg.easydb.query.response.Response;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class QueryBuilder<T> {
 
@@ -20,6 +21,7 @@ public class QueryBuilder<T> {
     // We don't pass a type param here because Java doesn't like type params and arrays
     private FieldValue[] values;
     private QueryRequirement req;
+    private long timeToLive;
 
     public QueryBuilder(ItemRepository<T> manager) {
         this.manager = manager;
@@ -69,8 +71,26 @@ public class QueryBuilder<T> {
         return this;
     }
 
+    /**
+     * Sets how long the saved values are kept before they are deleted, overriding
+     * the {@link org.tanberg.easydb.connection.memory.MemoryOptions#timeToLive() default}
+     * of the table. Only supported by {@link org.tanberg.easydb.DatabaseType#MEMORY memory storage}.
+     *
+     * @param duration The duration
+     * @param unit     The unit of the duration
+     * @return This builder
+     */
+    public QueryBuilder<T> expireAfter(long duration, TimeUnit unit) {
+        if (duration < 1) {
+            throw new IllegalArgumentException("Duration must be positive!");
+        }
+
+        this.timeToLive = Math.max(1, unit.toMillis(duration));
+        return this;
+    }
+
     public Query<T> build() {
-        return new Query<>(this.manager.getTypeClass(), this.instance, this.values, this.req);
+        return new Query<>(this.manager.getTypeClass(), this.instance, this.values, this.req, this.timeToLive);
     }
 
     // Shortcut methods
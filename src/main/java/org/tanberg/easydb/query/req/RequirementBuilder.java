@@ -245,6 +245,66 @@ public class RequirementBuilder<T> {
         return this.or(new SimpleRequirement(field, Operator.EQUALS, value));
     }
 
+    //
+
+    public RequirementBuilder<T> startsWith(String fieldName, String prefix) {
+        return this.startsWith(this.resolve(fieldName), prefix);
+    }
+
+    public RequirementBuilder<T> andStartsWith(String fieldName, String prefix) {
+        return this.andStartsWith(this.resolve(fieldName), prefix);
+    }
+
+    public RequirementBuilder<T> orStartsWith(String fieldName, String prefix) {
+        return this.orStartsWith(this.resolve(fieldName), prefix);
+    }
+
+    //
+
+    public RequirementBuilder<T> startsWith(PersistentField<T> field, String prefix) {
+        return this.set(new SimpleRequirement(field, Operator.STARTS_WITH, prefix));
+    }
+
+    public RequirementBuilder<T> andStartsWith(PersistentField<T> field, String prefix) {
+        return this.and(new SimpleRequirement(field, Operator.STARTS_WITH, prefix));
+    }
+
+    public RequirementBuilder<T> orStartsWith(PersistentField<T> field, String prefix) {
+        return this.or(new SimpleRequirement(field, Operator.STARTS_WITH, prefix));
+    }
+
+    //
+
+    public RequirementBuilder<T> matches(String fieldName, String search) {
+        return this.matches(this.resolve(fieldName), search);
+    }
+
+    public RequirementBuilder<T> andMatches(String fieldName, String search) {
+        return this.andMatches(this.resolve(fieldName), search);
+    }
+
+    public RequirementBuilder<T> orMatches(String fieldName, String search) {
+        return this.orMatches(this.resolve(fieldName), search);
+    }
+
+    //
+
+    /**
+     * Requires the value of the given field to match a full-text search, as described by
+     * {@link org.tanberg.easydb.util.UtilText}. Only supported by the in-memory database.
+     */
+    public RequirementBuilder<T> matches(PersistentField<T> field, String search) {
+        return this.set(new SimpleRequirement(field, Operator.MATCHES, search));
+    }
+
+    public RequirementBuilder<T> andMatches(PersistentField<T> field, String search) {
+        return this.and(new SimpleRequirement(field, Operator.MATCHES, search));
+    }
+
+    public RequirementBuilder<T> orMatches(PersistentField<T> field, String search) {
+        return this.or(new SimpleRequirement(field, Operator.MATCHES, search));
+    }
+
     // Slightly different naming to avoid some varargs fun
 
     public RequirementBuilder<T> keysAreSameAs(T object) {
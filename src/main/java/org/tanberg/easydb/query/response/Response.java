@@ -51,7 +51,7 @@ public class Response<T> implements ValueHolder<T> {
         }
 
         value = new FieldValue<>(field);
-        this.values = Arrays.copyOf(this.values, this.values.length + 1);
+        this.values = Arrays.copyOf(this.getValues(), this.values.length + 1);
         this.values[this.values.length - 1] = value;
         return value;
     }
@@ -101,7 +101,7 @@ public class Response<T> implements ValueHolder<T> {
                 for (int i = 0; i < fields.length; i++) {
                     PersistentField<T> field = fields[i];
                     UtilLog.info("Using field \"" + field.getName() + "@" + field.getTypeClass().getSimpleName() + "\" as key!");
-                    fieldValues[i] = this.getArrayValue(fields[i], values);
+                    fieldValues[i] = this.get(fields[i]);
                 }
 
                 UtilLog.info("Creating instance of " + className + " using " + Arrays.toString(fieldValues));
@@ -112,7 +112,7 @@ public class Response<T> implements ValueHolder<T> {
                 throw new RuntimeException("Missing constructor for StoredItem class " + this.profile.getTypeClass().getSimpleName() + "!");
             }
 
-            this.injectArrayValues(instance, values);
+            this.injectValues(instance);
 
             this.createdInstance = Optional.of(instance);
 
@@ -129,35 +129,48 @@ public class Response<T> implements ValueHolder<T> {
         return values;
     }
 
+    /**
+     * @param field The field
+     * @return The value of the given field, or null if it has none
+     */
+    public Object get(PersistentField<T> field) {
+        FieldValue<T> value = this.getValue(field);
+        return value == null ? null : value.getValue();
+    }
+
     @Override
     public String toString() {
         return "Response{" +
           "profile=" + profile +
-          ", values=" + UtilLog.format(this.values) +
+          ", values=" + UtilLog.format(this.getValues()) +
           ", createdInstance=" + createdInstance +
           '}';
     }
 
+    protected void setValues(FieldValue<T>[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Sets the fields of the given instance to the values of this response.
+     */
+    protected void injectFields(T instance) {
+        for (FieldValue<T> value : this.getValues()) {
+            value.getField().set(instance, value.getValue());
+        }
+    }
+
     // Internals
 
-    private void injectArrayValues(T instance, FieldValue<T>[] values) {
+    private void injectValues(T instance) {
         if (instance instanceof StoredItem) {
             ((StoredItem) instance).preInject();
         }
 
-        for (FieldValue<T> value : values) {
-            value.getField().set(instance, value.getValue());
-        }
+        this.injectFields(instance);
 
         if (instance instanceof StoredItem) {
             ((StoredItem) instance).postInject();
         }
     }
-
-    private Object getArrayValue(PersistentField<T> field, FieldValue<T>[] values) {
-        return Arrays.stream(values)
-          .filter(value -> value.getField().equals(field))
-          .map(FieldValue::getValue)
-          .findFirst().orElse(null);
-    }
 }
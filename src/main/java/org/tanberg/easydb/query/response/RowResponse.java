@@ -0,0 +1,77 @@
+package org.tanberg.easydb.query.response;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+
+/**
+ * A {@link Response} backed by the values of a stored row, in the order of the
+ * {@link ItemProfile#getStoredFields() stored fields}. Values and instances are read
+ * straight from the row, and {@link FieldValue field values}, which may be changed,
+ * are only created once asked for. The row itself is never changed, so it may be
+ * shared with the store it was read from.
+ *
+ * @param <T> The type of the repository
+ */
+public class RowResponse<T> extends Response<T> {
+
+    private final Object[] row;
+    private boolean copied;
+
+    public RowResponse(ItemProfile<T> profile, Object[] row) {
+        super(profile);
+        this.row = row;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    @Override
+    public FieldValue<T>[] getValues() {
+        if (!this.copied) {
+            this.copied = true;
+            this.setValues(this.toValues());
+        }
+
+        return super.getValues();
+    }
+
+    @Override
+    public Object get(PersistentField<T> field) {
+        if (this.copied) {
+            return super.get(field);
+        }
+
+        int column = ArrayUtils.indexOf(this.getProfile().getStoredFields(), field);
+        return column == ArrayUtils.INDEX_NOT_FOUND ? null : this.row[column];
+    }
+
+    @Override
+    protected void injectFields(T instance) {
+        if (this.copied) {
+            super.injectFields(instance);
+            return;
+        }
+
+        PersistentField<T>[] fields = this.getProfile().getStoredFields();
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].set(instance, this.row[i]);
+        }
+    }
+
+    // Internals
+
+    private FieldValue<T>[] toValues() {
+        PersistentField<T>[] fields = this.getProfile().getStoredFields();
+        FieldValue<T>[] values = new FieldValue[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Object value = this.row[i];
+            values[i] = value == null ? new FieldValue<>(fields[i]) : new FieldValue<>(fields[i], value);
+        }
+
+        return values;
+    }
+}
@@ -1,17 +1,23 @@
 package org.tanberg.easydb.util;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.tanberg.easydb.WrappedIndex;
 import org.tanberg.easydb.field.FieldValue;
 import org.tanberg.easydb.field.PersistentField;
 import org.tanberg.easydb.profile.ItemProfile;
 import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 public class IndexHelper {
 
@@ -34,6 +40,9 @@ public class IndexHelper {
     }
 
     public static <T> Collection<WrappedIndex<T>> combineFieldIndices(ItemProfile<T> profile, PersistentField<T>[] fields) {
+        // The same field may be used several times, e. g. for a range
+        fields = Arrays.stream(fields).distinct().toArray(PersistentField[]::new);
+
         if (profile.areKeys(fields)) {
             return null;
         }
@@ -43,30 +52,153 @@ public class IndexHelper {
             return Lists.newArrayList(potentialIndex);
         }
 
+        // Any index with a leading part of its fields queried can be used, and the
+        // remaining fields are checked on the rows found
         List<WrappedIndex<T>> indices = Lists.newArrayList();
-        Set<PersistentField<T>> usedFields = Sets.newHashSet();
         for (WrappedIndex<T> index : profile.getIndices()) {
-            List<PersistentField<T>> contains = Lists.newArrayList();
-            for (PersistentField<T> field : fields) {
-                if (!index.isField(field)) {
-                    continue;
-                }
+            if (!getPrefixFields(index, fields).isEmpty()) {
+                indices.add(index);
+            }
+        }
+
+        if (indices.isEmpty()) {
+            throw new IllegalArgumentException("Attempted query on un-indexed field!");
+        }
 
-                contains.add(field);
+        return indices;
+    }
+
+    /**
+     * Finds the longest run of fields of the given index, starting with the first
+     * one, that are all among the given fields. An index can be used for a query on
+     * any such prefix of its fields, as index values are kept ordered field by field.
+     *
+     * @param index  The index
+     * @param fields The fields queried
+     * @return The leading fields of the index that are queried
+     */
+    @SafeVarargs
+    public static <T> List<PersistentField<T>> getPrefixFields(WrappedIndex<T> index, PersistentField<T>... fields) {
+        List<PersistentField<T>> prefix = Lists.newArrayList();
+        for (PersistentField<T> field : index.getFields()) {
+            if (!ArrayUtils.contains(fields, field)) {
+                break;
             }
 
-            if (!index.areFields(contains)) {
+            prefix.add(field);
+        }
+
+        return prefix;
+    }
+
+    /**
+     * @param index        The index
+     * @param requirements The requirements
+     * @return The requirements that can be looked up in the given index
+     * @see #getPrefixFields(WrappedIndex, PersistentField[])
+     */
+    public static <T> List<SimpleRequirement> getIndexRequirements(WrappedIndex<T> index, Collection<SimpleRequirement> requirements) {
+        List<PersistentField<T>> prefix = getPrefixFields(index, toFields(requirements));
+        return requirements.stream()
+          .filter(requirement -> prefix.contains(requirement.getField()))
+          .collect(Collectors.toList());
+    }
+
+    public static <T> List<WrappedIndex<T>> chooseIndices(Collection<WrappedIndex<T>> indices, FieldValue<T>[] values,
+                                                          ToLongFunction<WrappedIndex<T>> estimates, long rows) {
+        return chooseFieldIndices(indices, Arrays.stream(values)
+          .map(FieldValue::getField)
+          .toArray(PersistentField[]::new), estimates, rows);
+    }
+
+    public static <T> List<WrappedIndex<T>> chooseIndices(Collection<WrappedIndex<T>> indices, Collection<SimpleRequirement> requirements,
+                                                          ToLongFunction<WrappedIndex<T>> estimates, long rows) {
+        return chooseFieldIndices(indices, requirements.stream()
+          .map(SimpleRequirement::getField)
+          .toArray(PersistentField[]::new), estimates, rows);
+    }
+
+    /**
+     * Chooses which of the given indices to use, from the number of rows each of them
+     * is expected to match. Indices are added most selective first, for as long as
+     * looking up and intersecting another index is cheaper than checking the fields
+     * it covers on the rows found so far. Costs are counted in rows touched, and rows
+     * are assumed to match the indices independently.
+     *
+     * @param indices   The indices covering the fields, as found by {@link #combineFieldIndices(ItemProfile, PersistentField[])}
+     * @param fields    The fields queried, once for every requirement on them
+     * @param estimates The expected number of rows matching the query in each index
+     * @param rows      The number of rows in the table
+     * @return The indices to use, or an empty list if scanning the table is cheaper
+     */
+    public static <T> List<WrappedIndex<T>> chooseFieldIndices(Collection<WrappedIndex<T>> indices, PersistentField<T>[] fields,
+                                                               ToLongFunction<WrappedIndex<T>> estimates, long rows) {
+        Map<WrappedIndex<T>, Long> estimated = Maps.newHashMap();
+        for (WrappedIndex<T> index : indices) {
+            estimated.put(index, estimates.applyAsLong(index));
+        }
+
+        List<WrappedIndex<T>> candidates = Lists.newArrayList(indices);
+        candidates.sort(Comparator.comparingLong(estimated::get));
+
+        List<WrappedIndex<T>> chosen = Lists.newArrayList();
+        double bestCost = (double) rows * fields.length;
+        double lookupCost = 0;
+        double matching = rows;
+        for (WrappedIndex<T> index : candidates) {
+            long estimate = estimated.get(index);
+            double newMatching = chosen.isEmpty() ? estimate : matching * estimate / Math.max(rows, 1);
+
+            chosen.add(index);
+            double cost = lookupCost + estimate + newMatching * getResidualFields(chosen, fields).size();
+            if (cost >= bestCost) {
+                chosen.remove(chosen.size() - 1);
                 continue;
             }
 
-            usedFields.addAll(contains);
-            indices.add(index);
+            bestCost = cost;
+            lookupCost += estimate;
+            matching = newMatching;
         }
 
-        if (usedFields.size() != fields.length) {
-            throw new IllegalArgumentException("Attempted query on un-indexed field!");
+        return chosen;
+    }
+
+    /**
+     * @param indices      The indices used
+     * @param requirements The requirements
+     * @return The requirements on fields not looked up in any of the indices used,
+     * which have to be checked on the rows found
+     */
+    public static <T> List<SimpleRequirement> getResidualRequirements(Collection<WrappedIndex<T>> indices,
+                                                                      Collection<SimpleRequirement> requirements) {
+        List<PersistentField<T>> residual = getResidualFields(indices, toFields(requirements));
+        return requirements.stream()
+          .filter(requirement -> residual.contains(requirement.getField()))
+          .collect(Collectors.toList());
+    }
+
+    // Internals
+
+    private static <T> PersistentField<T>[] toFields(Collection<SimpleRequirement> requirements) {
+        return requirements.stream()
+          .map(SimpleRequirement::getField)
+          .toArray(PersistentField[]::new);
+    }
+
+    private static <T> List<PersistentField<T>> getResidualFields(Collection<WrappedIndex<T>> indices, PersistentField<T>[] fields) {
+        Set<PersistentField<T>> covered = Sets.newHashSet();
+        for (WrappedIndex<T> index : indices) {
+            covered.addAll(getPrefixFields(index, fields));
         }
 
-        return indices;
+        List<PersistentField<T>> residual = Lists.newArrayList();
+        for (PersistentField<T> field : fields) {
+            if (!covered.contains(field)) {
+                residual.add(field);
+            }
+        }
+
+        return residual;
     }
 }
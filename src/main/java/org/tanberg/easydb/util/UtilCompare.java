@@ -1,13 +1,81 @@
 package org.tanberg.easydb.util;
 
 import java.math.BigDecimal;
+import java.util.Comparator;
 
 public class UtilCompare {
 
+    /**
+     * Orders {@link ValueContainer value containers} by their values, comparing one
+     * value at a time. If one container is a prefix of the other, the shorter one is
+     * ordered first.
+     */
+    public static final Comparator<ValueContainer> CONTAINER_ORDER = UtilCompare::compare;
+
     public static int compare(Number number1, Number number2) {
+        if (isIntegral(number1) && isIntegral(number2)) {
+            return Long.compare(number1.longValue(), number2.longValue());
+        }
+
+        if (isFloating(number1) && isFloating(number2)) {
+            return Double.compare(number1.doubleValue(), number2.doubleValue());
+        }
+
         // Probably not the best performance wise
         BigDecimal decimal1 = new BigDecimal(number1.toString());
         BigDecimal decimal2 = new BigDecimal(number2.toString());
         return decimal1.compareTo(decimal2);
     }
+
+    public static int compare(Object value1, Object value2) {
+        if (value1 == value2) {
+            return 0;
+        }
+
+        // Nulls are ordered first
+        if (value1 == null) {
+            return -1;
+        }
+
+        if (value2 == null) {
+            return 1;
+        }
+
+        if (value1 instanceof Number && value2 instanceof Number) {
+            return compare((Number) value1, (Number) value2);
+        }
+
+        if (value1 instanceof Enum && value2 instanceof Enum) {
+            return Integer.compare(((Enum) value1).ordinal(), ((Enum) value2).ordinal());
+        }
+
+        if (value1 instanceof Comparable && value1.getClass() == value2.getClass()) {
+            return ((Comparable) value1).compareTo(value2);
+        }
+
+        throw new IllegalArgumentException("Can not compare " + value1 + " and " + value2 + "!");
+    }
+
+    public static int compare(ValueContainer container1, ValueContainer container2) {
+        Object[] values1 = container1.getValues();
+        Object[] values2 = container2.getValues();
+
+        int length = Math.min(values1.length, values2.length);
+        for (int i = 0; i < length; i++) {
+            int result = compare(values1[i], values2[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return Integer.compare(values1.length, values2.length);
+    }
+
+    public static boolean isIntegral(Object number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    public static boolean isFloating(Object number) {
+        return number instanceof Double || number instanceof Float;
+    }
 }
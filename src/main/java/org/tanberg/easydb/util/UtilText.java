@@ -0,0 +1,84 @@
+package org.tanberg.easydb.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into terms for full-text search, and parses and evaluates the searches
+ * of {@link org.tanberg.easydb.query.Operator#MATCHES}.
+ * <p>
+ * Terms are the runs of letters and digits of a text, in lower case. A search is a
+ * number of alternatives split by {@code OR}, each being a number of terms that
+ * all have to be in the text. The search {@code "red shoes OR boots"} matches texts
+ * with both "red" and "shoes", and texts with "boots".
+ */
+public class UtilText {
+
+    private static final String OR = "OR";
+
+    /**
+     * @param text The text
+     * @return The distinct terms of the given text, in the order they first appear
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> terms = Sets.newLinkedHashSet();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (termChar && start == -1) {
+                start = i;
+            } else if (!termChar && start != -1) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * @param search The search
+     * @return The alternatives of the given search, each being the terms required by
+     * it. Alternatives without any terms are left out.
+     */
+    public static List<Set<String>> parse(String search) {
+        List<Set<String>> alternatives = Lists.newArrayList();
+        Set<String> terms = Sets.newLinkedHashSet();
+        for (String word : search.trim().split("\\s+")) {
+            if (word.equals(OR)) {
+                if (!terms.isEmpty()) {
+                    alternatives.add(terms);
+                }
+
+                terms = Sets.newLinkedHashSet();
+                continue;
+            }
+
+            terms.addAll(tokenize(word));
+        }
+
+        if (!terms.isEmpty()) {
+            alternatives.add(terms);
+        }
+
+        return alternatives;
+    }
+
+    /**
+     * @param text   The text, or null
+     * @param search The search
+     * @return If the given text matches the given search
+     */
+    public static boolean matches(String text, String search) {
+        if (text == null) {
+            return false;
+        }
+
+        Set<String> terms = tokenize(text);
+        return parse(search).stream().anyMatch(terms::containsAll);
+    }
+}
@@ -38,19 +38,31 @@ public class ValueHelper {
             case EQUALS:
                 return Objects.equals(value1, value2);
             case LESS_THAN:
-                UtilType.assertNumbers(value1, value2);
-                return UtilCompare.compare((Number) value1, (Number) value2) < 0;
+                return compare(value1, value2) < 0;
             case LESS_THAN_OR_EQUAL_TO:
-                UtilType.assertNumbers(value1, value2);
-                return UtilCompare.compare((Number) value1, (Number) value2) <= 0;
+                return compare(value1, value2) <= 0;
             case GREATER_THAN:
-                UtilType.assertNumbers(value1, value2);
-                return UtilCompare.compare((Number) value1, (Number) value2) > 0;
+                return compare(value1, value2) > 0;
             case GREATER_THAN_OR_EQUAL_TO:
-                UtilType.assertNumbers(value1, value2);
-                return UtilCompare.compare((Number) value1, (Number) value2) >= 0;
+                return compare(value1, value2) >= 0;
+            case STARTS_WITH:
+                return value1 instanceof String && ((String) value1).startsWith((String) value2);
+            case MATCHES:
+                return value1 instanceof String && UtilText.matches((String) value1, (String) value2);
             default:
                 throw new UnsupportedOperationException("Unsupported operator " + operator.name());
         }
     }
+
+    // Internals
+
+    private static int compare(Object value1, Object value2) {
+        // Strings and other comparable values of the same type have a natural order
+        if (value1 instanceof Comparable && !(value1 instanceof Number) && value2 != null && value1.getClass() == value2.getClass()) {
+            return UtilCompare.compare(value1, value2);
+        }
+
+        UtilType.assertNumbers(value1, value2);
+        return UtilCompare.compare((Number) value1, (Number) value2);
+    }
 }
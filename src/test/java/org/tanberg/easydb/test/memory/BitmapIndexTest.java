@@ -0,0 +1,137 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.BitmapIndexMap;
+import org.tanberg.easydb.connection.memory.MemoryIndexMap;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.query.req.SimpleRequirement;
+import org.tanberg.easydb.test.mock.item.FlagItem;
+import org.tanberg.easydb.test.mock.item.FlagItem.Status;
+import org.tanberg.easydb.util.IndexHelper;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class BitmapIndexTest {
+
+    private static final ItemProfile<FlagItem> PROFILE = new ItemProfile<>(FlagItem.class);
+    private static final PersistentField<FlagItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<FlagItem> ACTIVE_FIELD = PROFILE.resolveField("active");
+    private static final PersistentField<FlagItem> STATUS_FIELD = PROFILE.resolveField("status");
+    private static final PersistentField<FlagItem> REGION_FIELD = PROFILE.resolveField("region");
+
+    private static final int ROWS = 10000;
+
+    private MemoryTable<FlagItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("flags", PROFILE);
+        for (int i = 0; i < ROWS; i++) {
+            FlagItem item = new FlagItem(i, i % 2 == 0, Status.values()[i % 3], i % 5);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @Test
+    public void bitmapTypeTest() {
+        assertThat(this.table.getUnsafeAccessor().getIndexMaps().values().stream()
+          .allMatch(indexMap -> indexMap instanceof BitmapIndexMap)).isTrue();
+    }
+
+    @Test
+    public void andTest() {
+        assertThat(this.find(new RequirementBuilder<FlagItem>(null, null)
+          .andEquals(ACTIVE_FIELD, true)
+          .andEquals(STATUS_FIELD, Status.OPEN)
+          .andEquals(REGION_FIELD, 3)
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 2 == 0 && i % 3 == 1 && i % 5 == 3));
+
+        assertThat(this.find(new RequirementBuilder<FlagItem>(null, null)
+          .andEquals(ACTIVE_FIELD, false)
+          .andGreaterThan(REGION_FIELD, 2)
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 2 == 1 && i % 5 > 2));
+    }
+
+    @Test
+    public void orTest() {
+        assertThat(this.find(new RequirementBuilder<FlagItem>(null, null)
+          .andEquals(STATUS_FIELD, Status.CLOSED)
+          .orEquals(REGION_FIELD, 0)
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 3 == 2 || i % 5 == 0));
+    }
+
+    @Test
+    public void updateTest() {
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(STATUS_FIELD, Status.CLOSED)},
+          new RequirementBuilder<FlagItem>(null, null)
+            .andEquals(STATUS_FIELD, Status.PENDING)
+            .andEquals(ACTIVE_FIELD, true)
+            .build());
+        this.table.delete(new RequirementBuilder<FlagItem>(null, null)
+          .andEquals(REGION_FIELD, 4)
+          .build());
+
+        assertThat(this.find(new RequirementBuilder<FlagItem>(null, null)
+          .andEquals(STATUS_FIELD, Status.PENDING)
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 3 == 0 && i % 2 == 1 && i % 5 != 4));
+        assertThat(this.find(new RequirementBuilder<FlagItem>(null, null)
+          .andEquals(STATUS_FIELD, Status.CLOSED)
+          .andEquals(ACTIVE_FIELD, true)
+          .build())).containsExactlyElementsIn(this.expected(i -> (i % 3 == 2 || i % 3 == 0) && i % 2 == 0 && i % 5 != 4));
+    }
+
+    @Test
+    public void plannerTest() {
+        Map<WrappedIndex<FlagItem>, MemoryIndexMap<FlagItem>> indexMaps = this.table.getUnsafeAccessor().getIndexMaps();
+        WrappedIndex<FlagItem> regionIndex = PROFILE.getIndex(REGION_FIELD);
+        MemoryIndexMap<FlagItem> regionMap = indexMaps.get(regionIndex);
+        assertThat(regionMap.getCardinality()).isEqualTo(5);
+        assertThat(regionMap.getSize()).isEqualTo(ROWS);
+
+        List<SimpleRequirement> requirements = Lists.newArrayList(new SimpleRequirement(REGION_FIELD, Operator.EQUALS, 3),
+          new SimpleRequirement(ACTIVE_FIELD, Operator.EQUALS, true));
+        assertThat(regionMap.estimate(requirements.subList(0, 1))).isEqualTo((long) ROWS / 5);
+
+        // Intersecting with half of the rows costs more than checking them
+        List<WrappedIndex<FlagItem>> chosen = IndexHelper.chooseIndices(indexMaps.keySet().stream()
+            .filter(index -> index.isField(REGION_FIELD) || index.isField(ACTIVE_FIELD)).collect(Collectors.toList()),
+          requirements, index -> index == regionIndex ? ROWS / 5 : ROWS / 2, ROWS);
+        assertThat(chosen).containsExactly(regionIndex);
+
+        // An index matching every row is worse than a scan
+        assertThat(IndexHelper.chooseIndices(Lists.newArrayList(regionIndex), requirements.subList(0, 1),
+          index -> ROWS, ROWS)).isEmpty();
+    }
+
+    // Internals
+
+    private List<Object> expected(IntPredicate predicate) {
+        return IntStream.range(0, ROWS).filter(predicate).boxed().collect(Collectors.toList());
+    }
+
+    private List<Object> find(QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<FlagItem>[] values : this.table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
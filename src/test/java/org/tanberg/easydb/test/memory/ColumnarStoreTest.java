@@ -0,0 +1,111 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.ColumnarItem;
+import org.tanberg.easydb.test.mock.item.ColumnarItem.Rank;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ColumnarStoreTest {
+
+    private static final ItemProfile<ColumnarItem> PROFILE = new ItemProfile<>(ColumnarItem.class);
+    private static final PersistentField<ColumnarItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<ColumnarItem> BALANCE_FIELD = PROFILE.resolveField("balance");
+    private static final PersistentField<ColumnarItem> RATIO_FIELD = PROFILE.resolveField("ratio");
+    private static final PersistentField<ColumnarItem> ACTIVE_FIELD = PROFILE.resolveField("active");
+    private static final PersistentField<ColumnarItem> RANK_FIELD = PROFILE.resolveField("rank");
+    private static final PersistentField<ColumnarItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    private MemoryTable<ColumnarItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("columnar", PROFILE);
+        // Enough rows to span several chunks
+        for (int i = 0; i < 3000; i++) {
+            this.save(new ColumnarItem(i, i * 100L, i / 10D, i % 2 == 0, Rank.values()[i % 3], i % 7 == 0 ? null : "name" + i));
+        }
+    }
+
+    @Test
+    public void valuesTest() {
+        FieldValue<ColumnarItem>[] values = this.table.findFirst(new RequirementBuilder<ColumnarItem>(null, null)
+          .andEquals(ID_FIELD, 2500)
+          .build());
+
+        assertThat(ValueHelper.getValue(values, BALANCE_FIELD).getValue()).isEqualTo(250000L);
+        assertThat(ValueHelper.getValue(values, RATIO_FIELD).getValue()).isEqualTo(250D);
+        assertThat(ValueHelper.getValue(values, ACTIVE_FIELD).getValue()).isEqualTo(true);
+        assertThat(ValueHelper.getValue(values, RANK_FIELD).getValue()).isEqualTo(Rank.MODERATOR);
+        assertThat(ValueHelper.getValue(values, NAME_FIELD).getValue()).isEqualTo("name2500");
+
+        values = this.table.findFirst(new RequirementBuilder<ColumnarItem>(null, null)
+          .andEquals(ID_FIELD, 2107)
+          .build());
+        assertThat(ValueHelper.getValue(values, NAME_FIELD).getValue()).isNull();
+    }
+
+    @Test
+    public void scanTest() {
+        assertThat(this.find(new RequirementBuilder<ColumnarItem>(null, null)
+          .andGreaterThanOrEqualTo(ID_FIELD, 2995)
+          .build())).containsExactly(2995, 2996, 2997, 2998, 2999);
+
+        assertThat(this.find(new RequirementBuilder<ColumnarItem>(null, null)
+          .andLessThan(ID_FIELD, 4)
+          .andNotEquals(ID_FIELD, 2)
+          .build())).containsExactly(0, 1, 3);
+    }
+
+    @Test
+    public void updateTest() {
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(BALANCE_FIELD, -1L)},
+          new RequirementBuilder<ColumnarItem>(null, null)
+            .andLessThan(ID_FIELD, 10)
+            .build());
+        this.table.delete(new RequirementBuilder<ColumnarItem>(null, null)
+          .andGreaterThanOrEqualTo(ID_FIELD, 5)
+          .build());
+
+        List<FieldValue<ColumnarItem>[]> all = this.table.findAll(null);
+        assertThat(all).hasSize(5);
+        for (FieldValue<ColumnarItem>[] values : all) {
+            assertThat(ValueHelper.getValue(values, BALANCE_FIELD).getValue()).isEqualTo(-1L);
+        }
+
+        // Freed rows are reused, and must not keep any old values
+        this.save(new ColumnarItem(10, 5L, 0.5D, false, Rank.ADMIN, null));
+        FieldValue<ColumnarItem>[] values = this.table.findFirst(new RequirementBuilder<ColumnarItem>(null, null)
+          .andEquals(ID_FIELD, 10)
+          .build());
+        assertThat(ValueHelper.getValue(values, BALANCE_FIELD).getValue()).isEqualTo(5L);
+        assertThat(ValueHelper.getValue(values, NAME_FIELD).getValue()).isNull();
+    }
+
+    // Internals
+
+    private void save(ColumnarItem item) {
+        MemoryFixtures.save(this.table, PROFILE, item);
+    }
+
+    private List<Object> find(QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<ColumnarItem>[] values : this.table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,80 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.connection.memory.CommitClock;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CommitClockTest {
+
+    @Test
+    public void horizonTest() {
+        CommitClock clock = new CommitClock();
+        this.commit(clock, 3);
+
+        long read = clock.beginRead();
+        assertThat(read).isEqualTo(3L);
+        this.commit(clock, 2);
+
+        // Nested reads are held by the outer read
+        long nested = clock.beginRead();
+        assertThat(nested).isEqualTo(5L);
+        clock.endRead(nested);
+        assertThat(clock.getHorizon()).isEqualTo(3L);
+
+        clock.endRead(read);
+        assertThat(clock.getHorizon()).isEqualTo(5L);
+    }
+
+    @Test
+    public void separateClockTest() {
+        CommitClock first = new CommitClock();
+        CommitClock second = new CommitClock();
+
+        // A version never committed on one table does not hold back the other
+        first.begin();
+        this.commit(second, 1);
+        assertThat(first.getCommitted()).isEqualTo(0L);
+        assertThat(second.getCommitted()).isEqualTo(1L);
+    }
+
+    @Test
+    public void pinTest() {
+        CommitClock clock = new CommitClock();
+        this.commit(clock, 1);
+
+        long pinned = clock.pin();
+        this.commit(clock, 1);
+        assertThat(clock.getHorizon()).isEqualTo(1L);
+
+        // Released by another thread, like an index build
+        CompletableFuture.runAsync(() -> clock.unpin(pinned)).join();
+        assertThat(clock.getHorizon()).isEqualTo(2L);
+    }
+
+    @Test
+    public void commitOrderTest() throws InterruptedException {
+        CommitClock clock = new CommitClock();
+        long first = clock.begin();
+        long second = clock.begin();
+
+        Thread thread = new Thread(() -> clock.commit(second));
+        thread.start();
+        Thread.sleep(50);
+        assertThat(clock.getCommitted()).isEqualTo(0L);
+
+        clock.commit(first);
+        thread.join();
+        assertThat(clock.getCommitted()).isEqualTo(2L);
+    }
+
+    // Internals
+
+    private void commit(CommitClock clock, int count) {
+        for (int i = 0; i < count; i++) {
+            clock.commit(clock.begin());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.SimpleFieldsItem;
+import org.tanberg.easydb.util.IndexHelper;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CompositeIndexTest {
+
+    private static final ItemProfile<SimpleFieldsItem> PROFILE = new ItemProfile<>(SimpleFieldsItem.class);
+    private static final PersistentField<SimpleFieldsItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<SimpleFieldsItem> USERNAME_FIELD = PROFILE.resolveField("username");
+    private static final PersistentField<SimpleFieldsItem> FIRST_NAME_FIELD = PROFILE.resolveField("firstName");
+    private static final PersistentField<SimpleFieldsItem> LAST_NAME_FIELD = PROFILE.resolveField("lastName");
+
+    private static final int ROWS = 1000;
+
+    private MemoryTable<SimpleFieldsItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("composite", PROFILE);
+        for (int i = 1; i <= ROWS; i++) {
+            SimpleFieldsItem item = new SimpleFieldsItem(i, "user" + (i % 10), "first" + (i % 4), "last" + (i % 7), i + "@mail", 0);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @Test
+    public void prefixTest() {
+        WrappedIndex<SimpleFieldsItem> nameIndex = PROFILE.getIndex(FIRST_NAME_FIELD, LAST_NAME_FIELD);
+        assertThat(IndexHelper.getPrefixFields(nameIndex, FIRST_NAME_FIELD)).containsExactly(FIRST_NAME_FIELD);
+        assertThat(IndexHelper.getPrefixFields(nameIndex, LAST_NAME_FIELD)).isEmpty();
+
+        assertThat(this.find(new RequirementBuilder<SimpleFieldsItem>(null, null)
+          .andEquals(FIRST_NAME_FIELD, "first1")
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 4 == 1));
+
+        assertThat(this.find(new RequirementBuilder<SimpleFieldsItem>(null, null)
+          .andEquals(FIRST_NAME_FIELD, "first1")
+          .andEquals(LAST_NAME_FIELD, "last3")
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 4 == 1 && i % 7 == 3));
+
+        assertThat(this.find(new RequirementBuilder<SimpleFieldsItem>(null, null)
+          .andEquals(FIRST_NAME_FIELD, "first2")
+          .andGreaterThan(LAST_NAME_FIELD, "last4")
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 4 == 2 && i % 7 > 4));
+    }
+
+    @Test
+    public void residualTest() {
+        // The last name is not a leading field of any index, so it is checked on the rows found
+        assertThat(this.find(new RequirementBuilder<SimpleFieldsItem>(null, null)
+          .andEquals(USERNAME_FIELD, "user3")
+          .andEquals(LAST_NAME_FIELD, "last2")
+          .build())).containsExactlyElementsIn(this.expected(i -> i % 10 == 3 && i % 7 == 2));
+    }
+
+    // Internals
+
+    private List<Object> expected(IntPredicate predicate) {
+        return IntStream.rangeClosed(1, ROWS).filter(predicate).boxed().collect(Collectors.toList());
+    }
+
+    private List<Object> find(QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<SimpleFieldsItem>[] values : this.table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,78 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.RankedItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ConcurrentUpdateTest {
+
+    private static final ItemProfile<RankedItem> PROFILE = new ItemProfile<>(RankedItem.class);
+    private static final PersistentField<RankedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<RankedItem> SCORE_FIELD = PROFILE.resolveField("score");
+
+    private static final int KEYS = 16;
+    private static final int SCORES = 10;
+
+    private MemoryTable<RankedItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("concurrent", PROFILE);
+        for (int i = 0; i < KEYS; i++) {
+            RankedItem item = new RankedItem(i, 0, "name" + i, 0);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @Test
+    public void indexConsistencyTest() throws InterruptedException {
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 2000; j++) {
+                    this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(SCORE_FIELD, random.nextInt(SCORES))},
+                      new RequirementBuilder<RankedItem>(null, null)
+                        .andEquals(ID_FIELD, random.nextInt(KEYS))
+                        .build());
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Every row must be found through the index exactly once, under its current score
+        int found = 0;
+        for (int score = 0; score < SCORES; score++) {
+            for (FieldValue<RankedItem>[] values : this.table.findAll(new RequirementBuilder<RankedItem>(null, null)
+              .andEquals(SCORE_FIELD, score)
+              .build())) {
+                assertThat(ValueHelper.getValue(values, SCORE_FIELD).getValue()).isEqualTo(score);
+                found++;
+            }
+        }
+
+        assertThat(found).isEqualTo(KEYS);
+        assertThat(this.table.findAll(null)).hasSize(KEYS);
+        assertThat(this.table.getLocks().getAcquisitions()).isAtLeast(8 * 2000L);
+        assertThat(this.table.getLocks().getCollisions()).isAtMost(this.table.getLocks().getAcquisitions());
+    }
+}
@@ -0,0 +1,123 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.SimpleFieldsItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CoveringIndexTest {
+
+    private static final ItemProfile<SimpleFieldsItem> PROFILE = new ItemProfile<>(SimpleFieldsItem.class);
+    private static final PersistentField<SimpleFieldsItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<SimpleFieldsItem> USERNAME_FIELD = PROFILE.resolveField("username");
+    private static final PersistentField<SimpleFieldsItem> FIRST_NAME_FIELD = PROFILE.resolveField("firstName");
+    private static final PersistentField<SimpleFieldsItem> LAST_NAME_FIELD = PROFILE.resolveField("lastName");
+
+    private static final int ROWS = 1000;
+
+    private MemoryTable<SimpleFieldsItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("covering", PROFILE);
+        for (int i = 1; i <= ROWS; i++) {
+            SimpleFieldsItem item = new SimpleFieldsItem(i, "user" + (i % 10), "first" + (i % 4), "last" + (i % 7), i + "@mail", 0);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @Test
+    public void findValuesTest() {
+        List<Object[]> values = this.table.findValues(this.builder()
+          .andEquals(FIRST_NAME_FIELD, "first1")
+          .build(), this.fields(LAST_NAME_FIELD));
+        assertThat(values).hasSize(250);
+        assertThat(values.stream().map(value -> value[0]).distinct().count()).isEqualTo(7L);
+
+        // Fields out of order, and all cases covered by the same index
+        values = this.table.findValues(this.builder()
+          .equals(LAST_NAME_FIELD, "last3")
+          .orEquals(FIRST_NAME_FIELD, "first2")
+          .build(), this.fields(LAST_NAME_FIELD, FIRST_NAME_FIELD));
+        assertThat(values).hasSize((int) this.count(i -> i % 7 == 3 || i % 4 == 2));
+
+        // Without a requirement the whole index is read
+        values = this.table.findValues(null, this.fields(USERNAME_FIELD));
+        assertThat(values).hasSize(ROWS);
+
+        // The id is not part of any index, so the rows are read
+        values = this.table.findValues(this.builder()
+          .andEquals(USERNAME_FIELD, "user3")
+          .build(), this.fields(ID_FIELD, USERNAME_FIELD));
+        assertThat(values.stream().map(value -> value[0]).collect(Collectors.toList()))
+          .containsExactlyElementsIn(this.expected(i -> i % 10 == 3));
+        assertThat(values.stream().allMatch(value -> value[1].equals("user3"))).isTrue();
+    }
+
+    @Test
+    public void countTest() {
+        assertThat(this.table.count(null)).isEqualTo((long) ROWS);
+        assertThat(this.table.count(this.builder()
+          .andEquals(FIRST_NAME_FIELD, "first1")
+          .andGreaterThan(LAST_NAME_FIELD, "last4")
+          .build())).isEqualTo(this.count(i -> i % 4 == 1 && i % 7 > 4));
+        assertThat(this.table.count(this.builder()
+          .andEquals(LAST_NAME_FIELD, "last0")
+          .build())).isEqualTo(this.count(i -> i % 7 == 0));
+        assertThat(this.table.count(this.builder()
+          .equals(USERNAME_FIELD, "user1")
+          .orEquals(FIRST_NAME_FIELD, "first1")
+          .build())).isEqualTo(this.count(i -> i % 10 == 1 || i % 4 == 1));
+        assertThat(this.table.count(this.builder()
+          .andEquals(USERNAME_FIELD, "user1")
+          .andEquals(LAST_NAME_FIELD, "last1")
+          .build())).isEqualTo(this.count(i -> i % 10 == 1 && i % 7 == 1));
+    }
+
+    @Test
+    public void changeTest() {
+        // Index maps keep the earlier versions of rows, which must not be found
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(FIRST_NAME_FIELD, "first9")},
+          this.builder().andEquals(FIRST_NAME_FIELD, "first0").build());
+        assertThat(this.table.count(this.builder().andEquals(FIRST_NAME_FIELD, "first0").build())).isEqualTo(0L);
+        assertThat(this.table.count(this.builder().andEquals(FIRST_NAME_FIELD, "first9").build())).isEqualTo(250L);
+
+        this.table.delete(this.builder().andEquals(USERNAME_FIELD, "user0").build());
+        assertThat(this.table.findValues(null, this.fields(FIRST_NAME_FIELD, LAST_NAME_FIELD))).hasSize(900);
+        assertThat(this.table.count(this.builder().andEquals(FIRST_NAME_FIELD, "first9").build()))
+          .isEqualTo(this.count(i -> i % 4 == 0 && i % 10 != 0));
+    }
+
+    // Internals
+
+    private RequirementBuilder<SimpleFieldsItem> builder() {
+        return new RequirementBuilder<>(null, null);
+    }
+
+    private PersistentField<SimpleFieldsItem>[] fields(PersistentField<SimpleFieldsItem>... fields) {
+        return fields;
+    }
+
+    private long count(IntPredicate predicate) {
+        return this.expected(predicate).size();
+    }
+
+    private List<Integer> expected(IntPredicate predicate) {
+        return IntStream.rangeClosed(1, ROWS)
+          .filter(predicate)
+          .boxed()
+          .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,180 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.store.ColumnarRowStore;
+import org.tanberg.easydb.connection.memory.store.HeapRowStore;
+import org.tanberg.easydb.connection.memory.store.OffHeapRowStore;
+import org.tanberg.easydb.connection.memory.store.RowStore;
+import org.tanberg.easydb.connection.memory.store.StringDictionary;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.Operator;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.ServerItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DictionaryTest {
+
+    private static final ItemProfile<ServerItem> PROFILE = new ItemProfile<>(ServerItem.class);
+    private static final PersistentField<ServerItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<ServerItem> COUNTRY_FIELD = PROFILE.resolveField("country");
+    private static final PersistentField<ServerItem> SERVER_FIELD = PROFILE.resolveField("server");
+    private static final String[] COUNTRIES = {"NO", "SE", "DK", "FI", "IS"};
+
+    @Test
+    public void tableTest() {
+        MemoryTable<ServerItem> table = new MemoryTable<>("servers", PROFILE);
+        for (int i = 0; i < 3000; i++) {
+            // New string instances, so that sharing is up to the dictionary
+            this.save(table, new ServerItem(i, new String(COUNTRIES[i % 5]), i % 100 == 0 ? null : "server" + (i % 20)));
+        }
+
+        assertThat(table.getDictionarySize()).isEqualTo(25);
+
+        List<FieldValue<ServerItem>[]> rows = table.findAll(new RequirementBuilder<ServerItem>(null, null)
+          .andEquals(COUNTRY_FIELD, "SE")
+          .build());
+        assertThat(rows).hasSize(600);
+        Object first = ValueHelper.getValue(rows.get(0), COUNTRY_FIELD).getValue();
+        assertThat(rows.stream().allMatch(values -> ValueHelper.getValue(values, COUNTRY_FIELD).getValue() == first)).isTrue();
+
+        // Filtered by comparing codes
+        assertThat(this.find(table, new RequirementBuilder<ServerItem>(null, null)
+          .andEquals(COUNTRY_FIELD, "SE")
+          .andEquals(SERVER_FIELD, "server1")
+          .build())).hasSize(150);
+        assertThat(this.find(table, new RequirementBuilder<ServerItem>(null, null)
+          .andEquals(COUNTRY_FIELD, "SE")
+          .andEquals(SERVER_FIELD, "unknown")
+          .build())).isEmpty();
+        assertThat(this.find(table, new RequirementBuilder<ServerItem>(null, null)
+          .andEquals(COUNTRY_FIELD, "NO")
+          .andNotEquals(SERVER_FIELD, "server0")
+          .build())).hasSize(480);
+    }
+
+    @Test
+    public void storeTest() {
+        PersistentField<ServerItem>[] fields = PROFILE.getStoredFields();
+        List<RowStore> stores = Lists.newArrayList(
+          new HeapRowStore(this.getDictionaries(fields)),
+          new ColumnarRowStore(fields, this.getDictionaries(fields)),
+          new OffHeapRowStore(fields, this.getDictionaries(fields)));
+
+        int column = Arrays.asList(fields).indexOf(SERVER_FIELD);
+        for (RowStore store : stores) {
+            for (int i = 0; i < 100; i++) {
+                Object[] values = new Object[fields.length];
+                values[Arrays.asList(fields).indexOf(ID_FIELD)] = i;
+                values[Arrays.asList(fields).indexOf(COUNTRY_FIELD)] = COUNTRIES[i % 5];
+                values[column] = i % 10 == 0 ? null : "server" + (i % 4);
+                store.write(store.allocate(), values);
+            }
+
+            assertThat(store.get(5, column)).isEqualTo("server1");
+            assertThat(store.get(10, column)).isNull();
+            assertThat(this.filter(store, column, Operator.EQUALS, "server2")).isEqualTo(20);
+            assertThat(this.filter(store, column, Operator.EQUALS, "unknown")).isEqualTo(0);
+            assertThat(this.filter(store, column, Operator.NOT_EQUALS, "server2")).isEqualTo(80);
+        }
+    }
+
+    @Test
+    public void churnTest() {
+        MemoryTable<ServerItem> table = new MemoryTable<>("servers", PROFILE);
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 100; i++) {
+                this.save(table, new ServerItem(i, COUNTRIES[i % 5], "server" + round + "-" + (i % 10)));
+            }
+
+            // Only the strings of rows that may still be read are kept
+            assertThat(table.getDictionarySize()).isAtMost(5 + 10 * 3);
+        }
+
+        table.delete(null);
+        this.save(table, new ServerItem(0, "NO", "last"));
+        assertThat(table.getDictionarySize()).isAtMost(5 + 10 * 3);
+        assertThat(this.find(table, new RequirementBuilder<ServerItem>(null, null)
+          .andEquals(COUNTRY_FIELD, "NO")
+          .andEquals(SERVER_FIELD, "last")
+          .build())).containsExactly(0);
+    }
+
+    @Test
+    public void releaseTest() {
+        PersistentField<ServerItem>[] fields = PROFILE.getStoredFields();
+        int column = Arrays.asList(fields).indexOf(SERVER_FIELD);
+        for (int layout = 0; layout < 3; layout++) {
+            StringDictionary[] dictionaries = this.getDictionaries(fields);
+            StringDictionary dictionary = dictionaries[column];
+            RowStore store = layout == 0 ? new HeapRowStore(dictionaries)
+              : layout == 1 ? new ColumnarRowStore(fields, dictionaries)
+              : new OffHeapRowStore(fields, dictionaries);
+
+            for (int i = 0; i < 100; i++) {
+                Object[] values = new Object[fields.length];
+                values[Arrays.asList(fields).indexOf(ID_FIELD)] = i;
+                values[Arrays.asList(fields).indexOf(COUNTRY_FIELD)] = COUNTRIES[i % 5];
+                values[column] = "server" + i;
+                store.write(store.allocate(), values);
+            }
+
+            assertThat(dictionary.size()).isEqualTo(105);
+
+            // Replaced and freed strings are removed, and their codes handed out again
+            for (int i = 0; i < 50; i++) {
+                store.set(i, column, "server" + (i % 2));
+            }
+
+            for (int i = 50; i < 100; i++) {
+                store.free(i);
+            }
+
+            assertThat(dictionary.size()).isEqualTo(7);
+            assertThat(dictionary.lookup("server2")).isEqualTo(StringDictionary.NO_CODE);
+            assertThat(dictionary.encode("new")).isLessThan(105);
+            assertThat(store.get(3, column)).isEqualTo("server1");
+
+            store.clear();
+            assertThat(dictionary.size()).isEqualTo(0);
+        }
+    }
+
+    // Internals
+
+    private StringDictionary[] getDictionaries(PersistentField<ServerItem>[] fields) {
+        StringDictionary dictionary = new StringDictionary();
+        StringDictionary[] dictionaries = new StringDictionary[fields.length];
+        dictionaries[Arrays.asList(fields).indexOf(COUNTRY_FIELD)] = dictionary;
+        dictionaries[Arrays.asList(fields).indexOf(SERVER_FIELD)] = dictionary;
+        return dictionaries;
+    }
+
+    private int filter(RowStore store, int column, Operator operator, String value) {
+        int[] rows = IntStream.range(0, store.size()).toArray();
+        return store.filter(rows, rows.length, column, operator, value);
+    }
+
+    private void save(MemoryTable<ServerItem> table, ServerItem item) {
+        MemoryFixtures.save(table, PROFILE, item);
+    }
+
+    private List<Object> find(MemoryTable<ServerItem> table, QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<ServerItem>[] values : table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,103 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.TinyLfuPolicy;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.BoundedItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class EvictionTest {
+
+    private static final ItemProfile<BoundedItem> PROFILE = new ItemProfile<>(BoundedItem.class);
+    private static final PersistentField<BoundedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<BoundedItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    @Test
+    public void policyTest() {
+        TinyLfuPolicy<Integer> policy = new TinyLfuPolicy<>(100);
+        for (int i = 0; i < 10; i++) {
+            assertThat(policy.recordWrite(i, 10)).isEmpty();
+        }
+
+        // Keys used often are kept over new keys used once
+        for (int i = 0; i < 5; i++) {
+            for (int key = 0; key < 5; key++) {
+                policy.recordAccess(key);
+            }
+        }
+
+        List<Integer> evicted = Lists.newArrayList();
+        for (int i = 10; i < 100; i++) {
+            evicted.addAll(policy.recordWrite(i, 10));
+            assertThat(policy.getWeight()).isAtMost(100L);
+        }
+
+        for (int key = 0; key < 5; key++) {
+            assertThat(policy.contains(key)).isTrue();
+        }
+
+        assertThat(evicted).hasSize(90);
+    }
+
+    @Test
+    public void evictTest() {
+        MemoryTable<BoundedItem> table = new MemoryTable<>("bounded", PROFILE);
+        for (int i = 0; i < 1000; i++) {
+            this.save(table, new BoundedItem(i, "name" + (i % 5)));
+            if (i == 20) {
+                // Read the first rows often, so that they are kept
+                for (int read = 0; read < 5; read++) {
+                    for (int id = 0; id < 10; id++) {
+                        this.find(table, new RequirementBuilder<BoundedItem>(null, null).andEquals(ID_FIELD, id).build());
+                    }
+                }
+            }
+        }
+
+        assertThat(table.getWeight()).isAtMost(table.getMaximumWeight());
+
+        List<Object> kept = this.find(table, null);
+        assertThat(kept.size()).isLessThan(1000);
+        assertThat(table.getEvictions()).isEqualTo((long) (1000 - kept.size()));
+        for (int id = 0; id < 10; id++) {
+            assertThat(kept).contains(id);
+        }
+
+        // Evicted rows are gone from the index maps as well
+        int indexed = 0;
+        for (int i = 0; i < 5; i++) {
+            indexed += this.find(table, new RequirementBuilder<BoundedItem>(null, null).andEquals(NAME_FIELD, "name" + i).build()).size();
+        }
+
+        assertThat(indexed).isEqualTo(kept.size());
+
+        assertThat(this.find(table, new RequirementBuilder<BoundedItem>(null, null).andEquals(ID_FIELD, -1).build())).isEmpty();
+        assertThat(table.getMisses()).isEqualTo(1L);
+        assertThat(table.getHits()).isAtLeast(50L);
+    }
+
+    // Internals
+
+    private void save(MemoryTable<BoundedItem> table, BoundedItem item) {
+        MemoryFixtures.save(table, PROFILE, item);
+    }
+
+    private List<Object> find(MemoryTable<BoundedItem> table, QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<BoundedItem>[] values : table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
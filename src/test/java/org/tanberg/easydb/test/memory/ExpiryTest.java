@@ -0,0 +1,99 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.TimingWheel;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.RankedItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ExpiryTest {
+
+    private static final ItemProfile<RankedItem> PROFILE = new ItemProfile<>(RankedItem.class);
+    private static final PersistentField<RankedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<RankedItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    @Test
+    public void wheelTest() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 0);
+        Random random = new Random(42);
+        List<Long> waiting = Lists.newArrayList();
+        for (int i = 0; i < 5000; i++) {
+            // Spread over all levels, and beyond the range of the wheel
+            long deadline = (long) Math.pow(10, random.nextDouble() * 10);
+            waiting.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+
+        long now = 0;
+        while (!waiting.isEmpty()) {
+            now += 1 + random.nextInt(100000);
+            for (long deadline : wheel.advance(now)) {
+                // Never early
+                assertThat(deadline).isAtMost(now);
+                waiting.remove(deadline);
+            }
+
+            // Never later than the tick of the deadline
+            long tickStart = now / 10 * 10;
+            assertThat(waiting.stream().allMatch(deadline -> deadline > tickStart)).isTrue();
+        }
+
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void expireTest() throws InterruptedException {
+        MemoryTable<RankedItem> table = new MemoryTable<>("expiring", PROFILE);
+        for (int i = 0; i < 100; i++) {
+            this.save(table, new RankedItem(i, i, "name" + (i % 5), 0), i % 2 == 0 ? 200 : 0);
+        }
+
+        // Saving again without a time to live keeps the row
+        this.save(table, new RankedItem(10, 10, "name0", 0), 0);
+        assertThat(table.getExpiringRows()).isEqualTo(49);
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (table.getExpiringRows() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+
+        List<Object> expected = IntStream.range(0, 100)
+          .filter(i -> i % 2 == 1 || i == 10)
+          .boxed()
+          .collect(Collectors.toList());
+        assertThat(this.find(table, null)).containsExactlyElementsIn(expected);
+
+        // Expired rows are gone from the index maps as well
+        assertThat(this.find(table, new RequirementBuilder<RankedItem>(null, null)
+          .andEquals(NAME_FIELD, "name0")
+          .build())).containsExactly(5, 10, 15, 25, 35, 45, 55, 65, 75, 85, 95);
+    }
+
+    // Internals
+
+    private void save(MemoryTable<RankedItem> table, RankedItem item, long timeToLive) {
+        MemoryFixtures.save(table, PROFILE, item, timeToLive);
+    }
+
+    private List<Object> find(MemoryTable<RankedItem> table, QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<RankedItem>[] values : table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,108 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.connection.memory.FullTextIndexMap;
+import org.tanberg.easydb.connection.memory.MemoryIndexMap;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.ArticleItem;
+import org.tanberg.easydb.util.UtilText;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class FullTextIndexTest {
+
+    private static final ItemProfile<ArticleItem> PROFILE = new ItemProfile<>(ArticleItem.class);
+    private static final PersistentField<ArticleItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<ArticleItem> DESCRIPTION_FIELD = PROFILE.resolveField("description");
+    private static final PersistentField<ArticleItem> CATEGORY_FIELD = PROFILE.resolveField("category");
+
+    private static final String[] COLORS = {"Red", "blue", "green"};
+    private static final String[] PRODUCTS = {"shoes", "boots", "hat", "scarf"};
+
+    private MemoryTable<ArticleItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("articles", PROFILE);
+        for (int i = 0; i < 1200; i++) {
+            String description = "A " + COLORS[i % 3] + " pair of " + PRODUCTS[i % 4] + ", size " + (i % 10) + ".";
+            this.save(new ArticleItem(i, description, i % 2 == 0 ? "sale" : "new"));
+        }
+    }
+
+    @Test
+    public void tokenizeTest() {
+        assertThat(UtilText.tokenize("Hello, World! hello 42x")).containsExactly("hello", "world", "42x");
+        assertThat(UtilText.parse("red shoes OR blue")).hasSize(2);
+        assertThat(UtilText.matches("A red pair of shoes", "SHOES red")).isTrue();
+        assertThat(UtilText.matches("A red pair of shoes", "shoe")).isFalse();
+        assertThat(UtilText.matches("A red pair of shoes", "boots OR pair")).isTrue();
+    }
+
+    @Test
+    public void searchTest() {
+        assertThat(this.table.getUnsafeAccessor().getIndexMaps().values().stream()
+          .anyMatch(indexMap -> indexMap instanceof FullTextIndexMap)).isTrue();
+
+        assertThat(this.table.findAll(this.search("red"))).hasSize(400);
+        assertThat(this.table.findAll(this.search("red shoes"))).hasSize(100);
+        assertThat(this.table.findAll(this.search("red shoes OR hat"))).hasSize(400);
+        assertThat(this.table.findAll(this.search("purple"))).isEmpty();
+        assertThat(this.table.findAll(this.search("red purple"))).isEmpty();
+
+        // Combined with requirements on the same and another field
+        assertThat(this.table.findAll(this.builder()
+          .matches(DESCRIPTION_FIELD, "blue")
+          .andMatches(DESCRIPTION_FIELD, "size 3")
+          .build())).hasSize(40);
+        assertThat(this.table.findAll(this.builder()
+          .matches(DESCRIPTION_FIELD, "boots")
+          .andEquals(CATEGORY_FIELD, "new")
+          .build())).hasSize(300);
+        assertThat(this.table.findAll(this.builder()
+          .matches(DESCRIPTION_FIELD, "boots")
+          .orMatches(DESCRIPTION_FIELD, "scarf")
+          .build())).hasSize(600);
+    }
+
+    @Test
+    public void changeTest() {
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(DESCRIPTION_FIELD, "A purple umbrella")},
+          this.builder().equals(ID_FIELD, 0).build());
+        assertThat(this.table.findAll(this.search("purple umbrella"))).hasSize(1);
+        assertThat(this.table.findAll(this.search("red shoes"))).hasSize(99);
+
+        this.table.delete(this.search("hat"));
+        assertThat(this.table.findAll(this.search("hat"))).isEmpty();
+        assertThat(this.table.findAll(null)).hasSize(900);
+
+        // Old versions of the rows are removed from the index once vacuumed
+        assertThat(this.table.getUnsafeAccessor().getIndexMaps().values().stream()
+          .filter(indexMap -> indexMap instanceof FullTextIndexMap)
+          .mapToInt(MemoryIndexMap::getSize)
+          .sum()).isEqualTo(900);
+
+        this.table.drop();
+        assertThat(this.table.findAll(this.search("red"))).isEmpty();
+    }
+
+    private void save(ArticleItem item) {
+        MemoryFixtures.save(this.table, PROFILE, item);
+    }
+
+    private QueryRequirement search(String search) {
+        return this.builder().matches(DESCRIPTION_FIELD, search).build();
+    }
+
+    private RequirementBuilder<ArticleItem> builder() {
+        return new RequirementBuilder<>(null, null);
+    }
+}
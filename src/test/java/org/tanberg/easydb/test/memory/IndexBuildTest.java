@@ -0,0 +1,134 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.IndexBuild;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.ArchivableItem;
+import org.tanberg.easydb.test.mock.item.ThrottledItem;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class IndexBuildTest {
+
+    private static final ItemProfile<ArchivableItem> PROFILE = new ItemProfile<>(ArchivableItem.class);
+    private static final PersistentField<ArchivableItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    @Test
+    public void buildTest() throws InterruptedException {
+        MemoryTable<ArchivableItem> table = this.createTable();
+        WrappedIndex<ArchivableItem> index = new WrappedIndex<>(100, false, IndexType.HASH, NAME_FIELD);
+        table.createIndex(index);
+
+        // Writes continue while the index is built
+        for (int i = 5000; i < 5100; i++) {
+            this.save(table, new ArchivableItem(i, "name" + (i % 10), false));
+        }
+
+        IndexBuild<ArchivableItem> build = table.getIndexBuild(index);
+        build.await();
+        assertThat(build.isBuilt()).isTrue();
+        assertThat(build.getTotalRows()).isEqualTo(5000);
+        assertThat(build.getBuiltRows()).isEqualTo(5000);
+        assertThat(build.getProgress()).isEqualTo(1.0);
+        assertThat(table.getIndexBuilds()).hasSize(1);
+
+        assertThat(table.getUnsafeAccessor().getIndexMaps().get(index).getSize()).isEqualTo(5100);
+        QueryRequirement requirement = new RequirementBuilder<ArchivableItem>(null, null).andEquals(NAME_FIELD, "name4").build();
+        assertThat(table.findAll(requirement)).hasSize(510);
+    }
+
+    @Test
+    public void dropTest() throws InterruptedException {
+        MemoryTable<ArchivableItem> table = this.createTable();
+        WrappedIndex<ArchivableItem> index = new WrappedIndex<>(100, false, IndexType.HASH, NAME_FIELD);
+        table.createIndex(index);
+
+        IndexBuild<ArchivableItem> build = table.getIndexBuild(index);
+        table.dropIndex(index);
+        build.await();
+
+        assertThat(build.isDone()).isTrue();
+        assertThat(table.getIndexBuilds()).isEmpty();
+        assertThat(table.getUnsafeAccessor().getIndexMaps().containsKey(index)).isFalse();
+    }
+
+    @Test
+    public void pausedTest() throws InterruptedException {
+        ItemProfile<ThrottledItem> profile = new ItemProfile<>(ThrottledItem.class);
+        PersistentField<ThrottledItem> archived = profile.resolveField("archived");
+        MemoryTable<ThrottledItem> table = new MemoryTable<>("throttled", profile);
+        for (int i = 0; i < 1000; i++) {
+            ThrottledItem item = new ThrottledItem(i, i % 4 == 0);
+            MemoryFixtures.save(table, profile, item);
+        }
+
+        // Only the first batch is in the index while the build pauses
+        WrappedIndex<ThrottledItem> index = new WrappedIndex<>(100, false, IndexType.HASH, archived);
+        table.createIndex(index);
+        IndexBuild<ThrottledItem> build = table.getIndexBuild(index);
+        assertThat(build.isDone()).isFalse();
+
+        QueryRequirement requirement = new RequirementBuilder<ThrottledItem>(null, null).andEquals(archived, true).build();
+        assertThat(table.count(requirement)).isEqualTo(250L);
+        assertThat(table.findValues(requirement, new PersistentField[]{archived})).hasSize(250);
+
+        table.dropIndex(index);
+        build.await();
+    }
+
+    @Test
+    public void closeTest() throws InterruptedException {
+        ItemProfile<ThrottledItem> profile = new ItemProfile<>(ThrottledItem.class);
+        PersistentField<ThrottledItem> id = profile.resolveField("id");
+        PersistentField<ThrottledItem> archived = profile.resolveField("archived");
+        MemoryTable<ThrottledItem> table = new MemoryTable<>("throttled", profile);
+        for (int i = 0; i < 1000; i++) {
+            MemoryFixtures.save(table, profile, new ThrottledItem(i, i % 4 == 0));
+        }
+
+        WrappedIndex<ThrottledItem> running = new WrappedIndex<>(100, false, IndexType.HASH, archived);
+        WrappedIndex<ThrottledItem> pending = new WrappedIndex<>(100, false, IndexType.ORDERED, id);
+        table.createIndex(running);
+        table.createIndex(pending);
+
+        // A build waiting behind another is cancelled as soon as its index is dropped
+        IndexBuild<ThrottledItem> pendingBuild = table.getIndexBuild(pending);
+        table.dropIndex(pending);
+        assertThat(pendingBuild.isDone()).isTrue();
+        assertThat(pendingBuild.getFailure()).isInstanceOf(CancellationException.class);
+
+        // A running build stops before its next batch once the table is closed
+        IndexBuild<ThrottledItem> runningBuild = table.getIndexBuild(running);
+        table.close();
+        assertThat(runningBuild.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(runningBuild.getFailure()).isInstanceOf(CancellationException.class);
+        assertThat(runningBuild.getBuiltRows()).isLessThan(1000);
+
+        table.createIndex(pending);
+        assertThat(table.getIndexBuild(pending).getFailure()).isInstanceOf(IllegalStateException.class);
+    }
+
+    // Internals
+
+    private MemoryTable<ArchivableItem> createTable() {
+        MemoryTable<ArchivableItem> table = new MemoryTable<>("archivable", PROFILE);
+        for (int i = 0; i < 5000; i++) {
+            this.save(table, new ArchivableItem(i, "name" + (i % 10), i % 4 != 0));
+        }
+
+        return table;
+    }
+
+    private void save(MemoryTable<ArchivableItem> table, ArchivableItem item) {
+        MemoryFixtures.save(table, PROFILE, item);
+    }
+}
@@ -0,0 +1,265 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.access.memory.MemoryConfiguration;
+import org.tanberg.easydb.connection.memory.MemoryJournal;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.WriteAheadLog;
+import org.tanberg.easydb.exception.PersistenceException;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.JournalItem;
+import org.tanberg.easydb.test.mock.item.ReindexedJournalItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class JournalTest {
+
+    private static final ItemProfile<JournalItem> PROFILE = new ItemProfile<>(JournalItem.class);
+    private static final PersistentField<JournalItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<JournalItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    private static final ItemProfile<ReindexedJournalItem> REINDEXED_PROFILE = new ItemProfile<>(ReindexedJournalItem.class);
+    private static final PersistentField<ReindexedJournalItem> REINDEXED_ID_FIELD = REINDEXED_PROFILE.resolveField("id");
+    private static final PersistentField<ReindexedJournalItem> REINDEXED_SCORE_FIELD = REINDEXED_PROFILE.resolveField("score");
+
+    private Path directory;
+    private MemoryConfiguration configuration;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("easydb-journal");
+        // Every change is flushed before returning, and snapshots are only taken when asked
+        this.configuration = new MemoryConfiguration(this.directory.toString(), 0, 0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void uncleanCloseTest() {
+        MemoryTable<JournalItem> table = this.open();
+        for (int i = 0; i < 100; i++) {
+            this.save(table, new JournalItem(i, "name" + (i % 10), i));
+        }
+
+        table.getJournal().snapshot();
+
+        // Changes after the snapshot are only in the log
+        for (int i = 100; i < 150; i++) {
+            this.save(table, new JournalItem(i, "name" + (i % 10), i));
+        }
+
+        this.save(table, new JournalItem(5, "renamed", -5));
+        table.delete(this.byName("name3"));
+
+        // The journal is never closed, as if the process was killed
+        MemoryTable<JournalItem> restored = this.open();
+        assertThat(restored.count(null)).isEqualTo(135L);
+        assertThat(this.find(restored, this.byName("name3"))).isEmpty();
+        assertThat(this.find(restored, this.byName("name1"))).hasSize(15);
+        assertThat(this.find(restored, this.byName("renamed"))).containsExactly(5);
+        assertThat(this.find(restored, this.byId(149))).containsExactly(149);
+        assertThat(this.find(restored, this.byId(143))).isEmpty();
+
+        // Restored tables keep logging where the old log ended
+        this.save(restored, new JournalItem(150, "name0", 150));
+        MemoryTable<JournalItem> reopened = this.open();
+        assertThat(reopened.count(null)).isEqualTo(136L);
+        assertThat(this.find(reopened, this.byName("name0"))).hasSize(16);
+    }
+
+    @Test
+    public void changedIndexTest() throws IOException {
+        MemoryTable<JournalItem> table = this.open();
+        for (int i = 0; i < 100; i++) {
+            this.save(table, new JournalItem(i, "name" + (i % 10), i % 7));
+        }
+
+        table.getJournal().close();
+
+        // Same stored fields, so the snapshot is read, but its index entries are for another index
+        MemoryTable<ReindexedJournalItem> restored = new MemoryTable<>("journal", REINDEXED_PROFILE);
+        MemoryJournal.open(restored, this.configuration);
+        assertThat(restored.count(null)).isEqualTo(100L);
+
+        List<FieldValue<ReindexedJournalItem>[]> found = restored.findAll(new RequirementBuilder<ReindexedJournalItem>(null, null)
+          .andEquals(REINDEXED_SCORE_FIELD, 3)
+          .build());
+        assertThat(found).hasSize(14);
+        for (FieldValue<ReindexedJournalItem>[] values : found) {
+            assertThat((int) ValueHelper.getValue(values, REINDEXED_ID_FIELD).getValue() % 7).isEqualTo(3);
+        }
+
+        assertThat(restored.findAll(new RequirementBuilder<ReindexedJournalItem>(null, null)
+          .andGreaterThanOrEqualTo(REINDEXED_SCORE_FIELD, 6)
+          .build())).hasSize(14);
+    }
+
+    @Test
+    public void tornRecordTest() throws IOException {
+        MemoryTable<JournalItem> table = this.open();
+        for (int i = 0; i < 20; i++) {
+            this.save(table, new JournalItem(i, "name" + i, i));
+        }
+
+        // The last record is cut short, as if the process died while appending it
+        Path log = this.getLog();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        MemoryTable<JournalItem> restored = this.open();
+        assertThat(restored.count(null)).isEqualTo(19L);
+        assertThat(this.find(restored, this.byId(19))).isEmpty();
+        assertThat(this.find(restored, this.byId(18))).containsExactly(18);
+
+        // The torn record is discarded, so new records follow the last complete one
+        this.save(restored, new JournalItem(20, "name20", 20));
+        MemoryTable<JournalItem> reopened = this.open();
+        assertThat(reopened.count(null)).isEqualTo(20L);
+        assertThat(this.find(reopened, this.byId(20))).containsExactly(20);
+    }
+
+    @Test
+    public void corruptRecordTest() throws IOException {
+        MemoryTable<JournalItem> table = this.open();
+        for (int i = 0; i < 20; i++) {
+            this.save(table, new JournalItem(i, "name" + i, i));
+        }
+
+        // The last record is complete, but does not match its checksum
+        Path log = this.getLog();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) ~last.get(0));
+            last.rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        MemoryTable<JournalItem> restored = this.open();
+        assertThat(restored.count(null)).isEqualTo(19L);
+        assertThat(this.find(restored, this.byId(19))).isEmpty();
+    }
+
+    @Test
+    public void logTest() throws IOException {
+        Path path = this.directory.resolve("test.wal");
+        List<Integer> lengths = Lists.newArrayList();
+        try (WriteAheadLog log = new WriteAheadLog(path, 42, 1000, 0)) {
+            assertThat(log.isEmpty()).isTrue();
+            long position = 0;
+            for (int i = 0; i < 10; i++) {
+                position = log.append((byte) i, new byte[i * 3]);
+            }
+
+            log.sync(position);
+            assertThat(log.isEmpty()).isFalse();
+            assertThat(log.getPosition()).isEqualTo(position);
+        }
+
+        long length = WriteAheadLog.read(path, 42, (type, payload) -> {
+            assertThat(payload.length).isEqualTo(type * 3);
+            lengths.add(payload.length);
+        });
+        assertThat(lengths).hasSize(10);
+        assertThat(length).isEqualTo(Files.size(path));
+
+        // Anything after the given length is discarded when opened again
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 100, 1, 2}));
+        }
+
+        assertThat(WriteAheadLog.read(path, 42, (type, payload) -> {
+        })).isEqualTo(length);
+        new WriteAheadLog(path, 42, 0, length).close();
+        assertThat(Files.size(path)).isEqualTo(length);
+
+        try {
+            WriteAheadLog.read(path, 43, (type, payload) -> {
+            });
+            throw new AssertionError("Read a log written for another fingerprint");
+        } catch (PersistenceException expected) {
+        }
+    }
+
+    @Test
+    public void configurationTest() {
+        MemoryConfiguration configuration = new MemoryConfiguration(this.directory.toString(), 10, 20);
+        assertThat(configuration.getDirectory()).isEqualTo(this.directory.toString());
+        assertThat(configuration.getSyncInterval()).isEqualTo(10L);
+        assertThat(configuration.getSnapshotInterval()).isEqualTo(20L);
+
+        try {
+            new MemoryConfiguration(this.directory.toString(), -1, 0);
+            throw new AssertionError("Created a configuration with a negative sync interval");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    // Internals
+
+    private MemoryTable<JournalItem> open() {
+        MemoryTable<JournalItem> table = new MemoryTable<>("journal", PROFILE);
+        MemoryJournal.open(table, this.configuration);
+        return table;
+    }
+
+    private Path getLog() throws IOException {
+        try (Stream<Path> paths = Files.list(this.directory)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".wal"))
+              .max(Comparator.comparing(Path::toString))
+              .orElseThrow(() -> new AssertionError("No log written"));
+        }
+    }
+
+    private void save(MemoryTable<JournalItem> table, JournalItem item) {
+        MemoryFixtures.save(table, PROFILE, item);
+    }
+
+    private QueryRequirement byId(int id) {
+        return new RequirementBuilder<JournalItem>(null, null)
+          .andEquals(ID_FIELD, id)
+          .build();
+    }
+
+    private QueryRequirement byName(String name) {
+        return new RequirementBuilder<JournalItem>(null, null)
+          .andEquals(NAME_FIELD, name)
+          .build();
+    }
+
+    private List<Object> find(MemoryTable<JournalItem> table, QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<JournalItem>[] values : table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,98 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.ImmutableMap;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.MemoryView;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.RankedItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MaterializedViewTest {
+
+    private static final ItemProfile<RankedItem> PROFILE = new ItemProfile<>(RankedItem.class);
+    private static final PersistentField<RankedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<RankedItem> SCORE_FIELD = PROFILE.resolveField("score");
+    private static final PersistentField<RankedItem> NAME_FIELD = PROFILE.resolveField("name");
+    private static final PersistentField<RankedItem> EXPIRES_FIELD = PROFILE.resolveField("expires");
+
+    private MemoryTable<RankedItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("views", PROFILE);
+        for (int i = 0; i < 100; i++) {
+            this.save(new RankedItem(i, i, "name" + (i % 3), i % 2));
+        }
+    }
+
+    @Test
+    public void viewTest() {
+        MemoryView<RankedItem> view = this.table.createView("high", this.builder()
+          .andGreaterThan(SCORE_FIELD, 89)
+          .build(), null);
+        assertThat(view.size()).isEqualTo(10);
+        assertThat(this.table.getView("high")).isEqualTo(view);
+
+        // Inserted, moved into and out of the view, and deleted
+        this.save(new RankedItem(100, 100, "name1", 0));
+        this.save(new RankedItem(5, 95, "name2", 1));
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(SCORE_FIELD, 0)},
+          this.builder().andEquals(ID_FIELD, 99).build());
+        this.table.delete(this.builder().andEquals(ID_FIELD, 98).build());
+        assertThat(view.size()).isEqualTo(10);
+        assertThat(view.getRows().stream().map(row -> (int) row[0]).sorted().collect(Collectors.toList()))
+          .isEqualTo(Arrays.asList(5, 90, 91, 92, 93, 94, 95, 96, 97, 100));
+
+        // The key of a row is changed
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(ID_FIELD, 200)},
+          this.builder().andEquals(ID_FIELD, 100).build());
+        assertThat(view.getRows().stream().mapToInt(row -> (int) row[0]).max().getAsInt()).isEqualTo(200);
+        assertThat(view.size()).isEqualTo(10);
+
+        this.table.drop();
+        assertThat(view.size()).isEqualTo(0);
+
+        this.table.dropView("high");
+        assertThat(this.table.getView("high")).isNull();
+    }
+
+    @Test
+    public void groupTest() {
+        MemoryView<RankedItem> view = this.table.createView("names", this.builder()
+          .andEquals(EXPIRES_FIELD, 1L)
+          .build(), NAME_FIELD, SCORE_FIELD);
+        assertThat(view.getCounts()).isEqualTo(ImmutableMap.of("name0", 17L, "name1", 17L, "name2", 16L));
+
+        // Odd numbers, grouped by the remainder of 3
+        Map<Object, Double> sums = view.getSums(SCORE_FIELD);
+        assertThat(sums.get("name0")).isEqualTo(867.0);
+        assertThat(sums.get("name1")).isEqualTo(833.0);
+        assertThat(sums.get("name2")).isEqualTo(800.0);
+
+        this.table.delete(this.builder().andEquals(NAME_FIELD, "name0").build());
+        this.save(new RankedItem(1, 1000, "name2", 1));
+        assertThat(view.getCounts()).isEqualTo(ImmutableMap.of("name1", 16L, "name2", 17L));
+        assertThat(view.getSums(SCORE_FIELD).get("name2")).isEqualTo(1800.0);
+    }
+
+    // Internals
+
+    private void save(RankedItem item) {
+        MemoryFixtures.save(this.table, PROFILE, item);
+    }
+
+    private RequirementBuilder<RankedItem> builder() {
+        return new RequirementBuilder<>(null, null);
+    }
+}
@@ -0,0 +1,37 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.connection.memory.MemoryStorage;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.profile.ItemProfile;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Saves items to the memory tables of the tests.
+ */
+final class MemoryFixtures {
+
+    private MemoryFixtures() {
+    }
+
+    /**
+     * @return The values of every field of the given item
+     */
+    static <T> FieldValue<T>[] getValues(ItemProfile<T> profile, T item) {
+        return Arrays.stream(profile.getFields())
+          .map(field -> field.getValue(item))
+          .toArray(FieldValue[]::new);
+    }
+
+    static <T> void save(MemoryStorage<T> table, ItemProfile<T> profile, T item) {
+        table.save(Optional.empty(), getValues(profile, item), null);
+    }
+
+    /**
+     * @param timeToLive The time to live, in milliseconds, or 0 for the default of the table
+     */
+    static <T> void save(MemoryStorage<T> table, ItemProfile<T> profile, T item, long timeToLive) {
+        table.save(Optional.empty(), getValues(profile, item), null, timeToLive);
+    }
+}
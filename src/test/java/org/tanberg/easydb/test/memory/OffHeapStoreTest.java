@@ -0,0 +1,266 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.OffHeapPrimaryKeyIndex;
+import org.tanberg.easydb.connection.memory.PrimaryKeyIndex;
+import org.tanberg.easydb.connection.memory.store.OffHeapRowStore;
+import org.tanberg.easydb.connection.memory.store.SlabAllocator;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.OffHeapItem;
+import org.tanberg.easydb.test.mock.item.OffHeapItem.Kind;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class OffHeapStoreTest {
+
+    private static final ItemProfile<OffHeapItem> PROFILE = new ItemProfile<>(OffHeapItem.class);
+    private static final PersistentField<OffHeapItem>[] FIELDS = PROFILE.getStoredFields();
+    private static final PersistentField<OffHeapItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<OffHeapItem> NAME_FIELD = PROFILE.resolveField("name");
+    private static final PersistentField<OffHeapItem> TAGS_FIELD = PROFILE.resolveField("tags");
+
+    @Test
+    public void roundTripTest() {
+        OffHeapRowStore store = new OffHeapRowStore(FIELDS);
+        Object[] values = this.getValues(new OffHeapItem(7, (byte) -3, (short) 1234, Long.MIN_VALUE, 0.25F, Math.PI, true,
+          Kind.TRIAL, "n\u00e5me", Lists.newArrayList("a", "b")));
+        int row = store.allocate();
+        store.write(row, values);
+
+        assertThat(Arrays.asList(store.read(row))).isEqualTo(Arrays.asList(values));
+        for (int column = 0; column < FIELDS.length; column++) {
+            assertThat(store.get(row, column)).isEqualTo(values[column]);
+        }
+
+        // Every column may be null, and nulls of other columns must not shift the values
+        for (int column = 0; column < FIELDS.length; column++) {
+            Object[] withNull = values.clone();
+            withNull[column] = null;
+            store.write(row, withNull);
+            assertThat(Arrays.asList(store.read(row))).isEqualTo(Arrays.asList(withNull));
+        }
+
+        // Rows allocated but never written read as all null
+        int empty = store.allocate();
+        assertThat(Arrays.asList(store.read(empty))).isEqualTo(Arrays.asList(new Object[FIELDS.length]));
+        assertThat(store.get(empty, 0)).isNull();
+    }
+
+    @Test
+    public void tableTest() {
+        MemoryTable<OffHeapItem> table = new MemoryTable<>("offheap", PROFILE);
+        for (int i = 0; i < 2000; i++) {
+            MemoryFixtures.save(table, PROFILE, this.getItem(i, "name" + i));
+        }
+
+        FieldValue<OffHeapItem>[] values = table.findFirst(new RequirementBuilder<OffHeapItem>(null, null)
+          .andEquals(ID_FIELD, 1500)
+          .build());
+        Object[] expected = this.getValues(this.getItem(1500, "name1500"));
+        for (int i = 0; i < FIELDS.length; i++) {
+            assertThat(ValueHelper.getValue(values, FIELDS[i]).getValue()).isEqualTo(expected[i]);
+        }
+
+        assertThat(ValueHelper.getValue(values, TAGS_FIELD).getValue()).isEqualTo(Lists.newArrayList("tag0"));
+        assertThat(table.getOffHeapUsage()).isGreaterThan(0L);
+    }
+
+    @Test
+    public void growTest() {
+        OffHeapRowStore store = new OffHeapRowStore(FIELDS);
+        int column = Arrays.asList(FIELDS).indexOf(NAME_FIELD);
+        // Enough rows for the largest records to take up more than a slab
+        int[] rows = new int[500];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = store.allocate();
+            store.write(rows[i], this.getValues(this.getItem(i, "")));
+        }
+
+        // Every update moves the record to a larger block, leaving the other columns as they were
+        for (int length = 1; length <= 4096; length *= 4) {
+            for (int i = 0; i < rows.length; i++) {
+                store.set(rows[i], column, "x".repeat(length) + i);
+            }
+
+            for (int i = 0; i < rows.length; i++) {
+                Object[] expected = this.getValues(this.getItem(i, "x".repeat(length) + i));
+                assertThat(Arrays.asList(store.read(rows[i]))).isEqualTo(Arrays.asList(expected));
+            }
+        }
+
+        // Updates of the same size reuse the blocks freed by the previous records
+        long reserved = store.getOffHeapBytes();
+        for (int i = 0; i < rows.length; i++) {
+            store.set(rows[i], column, "y".repeat(4096) + i);
+        }
+
+        assertThat(store.getOffHeapBytes()).isEqualTo(reserved);
+
+        // Shrinking again reuses the blocks freed by the smaller records
+        for (int i = 0; i < rows.length; i++) {
+            store.set(rows[i], column, "short" + i);
+        }
+
+        assertThat(store.getOffHeapBytes()).isEqualTo(reserved);
+        assertThat(store.get(rows[42], column)).isEqualTo("short42");
+    }
+
+    @Test
+    public void reuseTest() {
+        OffHeapRowStore store = new OffHeapRowStore(FIELDS);
+        for (int i = 0; i < 5000; i++) {
+            store.write(store.allocate(), this.getValues(this.getItem(i, "name" + i)));
+        }
+
+        long reserved = store.getOffHeapBytes();
+        assertThat(store.size()).isEqualTo(5000);
+
+        // Records of the same size replace each other in freed blocks
+        for (int round = 0; round < 10; round++) {
+            for (int row = 0; row < 5000; row++) {
+                store.write(row, this.getValues(this.getItem(row, "name" + (row + round % 2))));
+            }
+        }
+
+        assertThat(store.getOffHeapBytes()).isEqualTo(reserved);
+
+        // Deleted rows and their records are reused by new rows
+        for (int row = 0; row < 5000; row += 2) {
+            store.free(row);
+        }
+
+        for (int i = 0; i < 2500; i++) {
+            int row = store.allocate();
+            assertThat(row % 2).isEqualTo(0);
+            assertThat(store.get(row, 0)).isNull();
+            store.write(row, this.getValues(this.getItem(row, "name" + row)));
+        }
+
+        assertThat(store.size()).isEqualTo(5000);
+        assertThat(store.getOffHeapBytes()).isEqualTo(reserved);
+
+        store.clear();
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.getOffHeapBytes()).isEqualTo(0L);
+    }
+
+    @Test
+    public void slabTest() {
+        SlabAllocator slabs = new SlabAllocator(1024);
+        assertThat(slabs.getReservedBytes()).isEqualTo(0L);
+
+        // Sizes are rounded up to a power of two, of at least 16 bytes
+        long first = slabs.allocate(20);
+        long second = slabs.allocate(1);
+        assertThat(slabs.getUsedBytes()).isEqualTo(48L);
+        assertThat(slabs.getReservedBytes()).isEqualTo(1024L);
+        assertThat(SlabAllocator.getOffset(second)).isEqualTo(SlabAllocator.getOffset(first) + 32);
+
+        // Freed blocks are reused by blocks of the same size only
+        slabs.free(first, 20);
+        assertThat(slabs.getUsedBytes()).isEqualTo(16L);
+        long other = slabs.allocate(64);
+        assertThat(other).isNotEqualTo(first);
+        assertThat(slabs.allocate(32)).isEqualTo(first);
+        assertThat(slabs.getUsedBytes()).isEqualTo(112L);
+
+        // Blocks not fitting in the current slab go in a new one
+        long large = slabs.allocate(1024);
+        assertThat(SlabAllocator.getSlab(large)).isEqualTo(1);
+        assertThat(SlabAllocator.getOffset(large)).isEqualTo(0);
+        assertThat(slabs.getBuffer(large) != slabs.getBuffer(first)).isTrue();
+        assertThat(slabs.getReservedBytes()).isEqualTo(2048L);
+
+        try {
+            slabs.allocate(1025);
+            throw new AssertionError("Allocated a block larger than a slab");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        slabs.clear();
+        assertThat(slabs.getUsedBytes()).isEqualTo(0L);
+        assertThat(slabs.getReservedBytes()).isEqualTo(0L);
+
+        try {
+            new SlabAllocator(1000);
+            throw new AssertionError("Created a slab allocator with a slab size not a power of two");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void keyIndexTest() {
+        OffHeapRowStore store = new OffHeapRowStore(FIELDS);
+        int[] keyColumns = {Arrays.asList(FIELDS).indexOf(ID_FIELD)};
+        OffHeapPrimaryKeyIndex index = new OffHeapPrimaryKeyIndex(store, keyColumns);
+        long initial = index.getOffHeapBytes();
+
+        // Enough keys to grow the table several times
+        for (int i = 0; i < 10000; i++) {
+            int row = store.allocate();
+            store.write(row, this.getValues(this.getItem(i, null)));
+            assertThat(index.put(this.getKey(i), row)).isEqualTo(PrimaryKeyIndex.NO_ROW);
+        }
+
+        assertThat(index.size()).isEqualTo(10000);
+        assertThat(index.getOffHeapBytes()).isGreaterThan(initial);
+        assertThat(index.getRows().length).isEqualTo(10000);
+        for (int i = 0; i < 10000; i += 7) {
+            assertThat(index.get(this.getKey(i))).isEqualTo(i);
+        }
+
+        assertThat(index.get(this.getKey(10000))).isEqualTo(PrimaryKeyIndex.NO_ROW);
+
+        // Replacing the row of a key gives the previous row
+        int moved = store.allocate();
+        store.write(moved, this.getValues(this.getItem(5, null)));
+        assertThat(index.put(this.getKey(5), moved)).isEqualTo(5);
+        assertThat(index.get(this.getKey(5))).isEqualTo(moved);
+        assertThat(index.size()).isEqualTo(10000);
+
+        // Only the current row of a key removes it
+        assertThat(index.remove(this.getKey(5), 5)).isFalse();
+        assertThat(index.remove(this.getKey(5), moved)).isTrue();
+        assertThat(index.get(this.getKey(5))).isEqualTo(PrimaryKeyIndex.NO_ROW);
+
+        for (int i = 0; i < 10000; i += 2) {
+            if (i != 4 && i != 6) {
+                index.remove(this.getKey(i), i);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(5001);
+        assertThat(index.get(this.getKey(4))).isEqualTo(4);
+        assertThat(index.get(this.getKey(8))).isEqualTo(PrimaryKeyIndex.NO_ROW);
+        assertThat(index.get(this.getKey(9))).isEqualTo(9);
+
+        index.clear();
+        assertThat(index.size()).isEqualTo(0);
+        assertThat(index.getOffHeapBytes()).isEqualTo(initial);
+        assertThat(index.get(this.getKey(9))).isEqualTo(PrimaryKeyIndex.NO_ROW);
+    }
+
+    // Internals
+
+    private OffHeapItem getItem(int id, String name) {
+        return new OffHeapItem(id, (byte) id, (short) (id * 3), id * 1000L, id / 4F, id / 3D, id % 2 == 0, Kind.values()[id % 3],
+          name, Lists.newArrayList("tag" + (id % 4)));
+    }
+
+    private Object[] getValues(OffHeapItem item) {
+        return Arrays.stream(FIELDS).map(field -> field.getValue(item).getValue()).toArray();
+    }
+
+    private ValueContainer getKey(int id) {
+        return ValueContainer.getKeys(PROFILE, new FieldValue[]{new FieldValue<>(ID_FIELD, id)});
+    }
+}
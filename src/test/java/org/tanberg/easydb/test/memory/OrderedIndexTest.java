@@ -0,0 +1,85 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.RankedItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class OrderedIndexTest {
+
+    private static final ItemProfile<RankedItem> PROFILE = new ItemProfile<>(RankedItem.class);
+    private static final PersistentField<RankedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<RankedItem> SCORE_FIELD = PROFILE.resolveField("score");
+    private static final PersistentField<RankedItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    private MemoryTable<RankedItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("ranked", PROFILE);
+        for (int i = 0; i < 100; i++) {
+            this.save(new RankedItem(i, i * 10, "name" + (i % 5), i));
+        }
+    }
+
+    @Test
+    public void indexRangeTest() {
+        assertThat(this.find(new RequirementBuilder<RankedItem>(null, null)
+          .andGreaterThanOrEqualTo(SCORE_FIELD, 950)
+          .build())).containsExactly(95, 96, 97, 98, 99);
+
+        assertThat(this.find(new RequirementBuilder<RankedItem>(null, null)
+          .andGreaterThan(SCORE_FIELD, 100)
+          .andLessThanOrEqualTo(SCORE_FIELD, 130)
+          .build())).containsExactly(11, 12, 13);
+    }
+
+    @Test
+    public void keyRangeTest() {
+        assertThat(this.find(new RequirementBuilder<RankedItem>(null, null)
+          .andLessThan(ID_FIELD, 3)
+          .build())).containsExactly(0, 1, 2);
+
+        assertThat(this.find(new RequirementBuilder<RankedItem>(null, null)
+          .andEquals(ID_FIELD, 42)
+          .build())).containsExactly(42);
+    }
+
+    @Test
+    public void rangeAfterUpdateTest() {
+        this.table.delete(new RequirementBuilder<RankedItem>(null, null)
+          .andEquals(NAME_FIELD, "name1")
+          .build());
+        this.save(new RankedItem(95, 5, "name0", 95));
+
+        assertThat(this.find(new RequirementBuilder<RankedItem>(null, null)
+          .andGreaterThanOrEqualTo(SCORE_FIELD, 950)
+          .build())).containsExactly(97, 98, 99);
+    }
+
+    // Internals
+
+    private void save(RankedItem item) {
+        MemoryFixtures.save(this.table, PROFILE, item);
+    }
+
+    private List<Object> find(QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<RankedItem>[] values : this.table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
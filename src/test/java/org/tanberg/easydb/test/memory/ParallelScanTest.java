@@ -0,0 +1,74 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.EasyDB;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.RankedItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ParallelScanTest {
+
+    private static final ItemProfile<RankedItem> PROFILE = new ItemProfile<>(RankedItem.class);
+    private static final PersistentField<RankedItem> ID_FIELD = PROFILE.resolveField("id");
+
+    private MemoryTable<RankedItem> table;
+    private int threshold;
+
+    @Before
+    public void setUp() {
+        this.threshold = EasyDB.getConfiguration().getParallelScanThreshold();
+
+        this.table = new MemoryTable<>("parallel", PROFILE);
+        for (int i = 0; i < 50000; i++) {
+            RankedItem item = new RankedItem(i, i % 100, "name" + i, i % 7);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        EasyDB.getConfiguration().setParallelScanThreshold(this.threshold);
+    }
+
+    @Test
+    public void scanTest() {
+        // The keys are ordered, and the order must be kept when scanning in parallel
+        QueryRequirement requirement = new RequirementBuilder<RankedItem>(null, null)
+          .andGreaterThanOrEqualTo(ID_FIELD, 1000)
+          .andLessThan(ID_FIELD, 40000)
+          .andNotEquals(ID_FIELD, 20000)
+          .build();
+
+        EasyDB.getConfiguration().setParallelScanThreshold(Integer.MAX_VALUE);
+        List<Object> sequential = this.find(requirement);
+
+        EasyDB.getConfiguration().setParallelScanThreshold(1000);
+        List<Object> parallel = this.find(requirement);
+
+        assertThat(sequential).hasSize(38999);
+        assertThat(parallel).isEqualTo(sequential);
+    }
+
+    // Internals
+
+    private List<Object> find(QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<RankedItem>[] values : this.table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
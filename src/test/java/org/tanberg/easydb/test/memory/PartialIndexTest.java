@@ -0,0 +1,102 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.WrappedIndex;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.ArchivableItem;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PartialIndexTest {
+
+    private static final ItemProfile<ArchivableItem> PROFILE = new ItemProfile<>(ArchivableItem.class);
+    private static final PersistentField<ArchivableItem> NAME_FIELD = PROFILE.resolveField("name");
+    private static final PersistentField<ArchivableItem> ARCHIVED_FIELD = PROFILE.resolveField("archived");
+
+    @Test
+    public void partialTest() throws InterruptedException {
+        MemoryTable<ArchivableItem> table = this.createTable(false);
+        QueryRequirement active = new RequirementBuilder<ArchivableItem>(null, null).andEquals(ARCHIVED_FIELD, false).build();
+        WrappedIndex<ArchivableItem> index = new WrappedIndex<>(100, false, IndexType.HASH, active, null, NAME_FIELD);
+        table.createIndex(index);
+        table.getIndexBuild(index).await();
+
+        // Only the rows matching the filter are indexed
+        assertThat(table.getUnsafeAccessor().getIndexMaps().get(index).getSize()).isEqualTo(250);
+        assertThat(table.findAll(this.activeByName("name4"))).hasSize(50);
+
+        this.save(table, new ArchivableItem(4, "name4", true));
+        assertThat(table.getUnsafeAccessor().getIndexMaps().get(index).getSize()).isEqualTo(249);
+        assertThat(table.findAll(this.activeByName("name4"))).hasSize(49);
+
+        QueryRequirement either = new RequirementBuilder<ArchivableItem>(null, null)
+          .andEquals(NAME_FIELD, "name4").andEquals(ARCHIVED_FIELD, false)
+          .or(this.activeByName("name6"))
+          .build();
+        assertThat(table.findAll(either)).hasSize(99);
+
+        table.dropIndex(index);
+        assertThat(table.getUnsafeAccessor().getIndexMaps().containsKey(index)).isFalse();
+    }
+
+    @Test
+    public void expressionTest() throws InterruptedException {
+        MemoryTable<ArchivableItem> table = this.createTable(true);
+        WrappedIndex<ArchivableItem> index = new WrappedIndex<>(100, false, IndexType.HASH, null,
+          value -> ((String) value).toLowerCase(Locale.ROOT), NAME_FIELD);
+        table.createIndex(index);
+        table.getIndexBuild(index).await();
+
+        // Found by the computed value in any case
+        assertThat(table.findByIndex(index, new Object[]{"name4"}, row -> row[0])).hasSize(100);
+
+        // Queries of the field find only the exact value
+        QueryRequirement requirement = new RequirementBuilder<ArchivableItem>(null, null).andEquals(NAME_FIELD, "NAME4").build();
+        assertThat(table.findAll(requirement)).hasSize(33);
+    }
+
+    @Test
+    public void coveringTest() throws InterruptedException {
+        MemoryTable<ArchivableItem> table = this.createTable(true);
+        QueryRequirement active = new RequirementBuilder<ArchivableItem>(null, null).andEquals(ARCHIVED_FIELD, false).build();
+        WrappedIndex<ArchivableItem> partial = new WrappedIndex<>(100, false, IndexType.HASH, active, null, NAME_FIELD);
+        WrappedIndex<ArchivableItem> expression = new WrappedIndex<>(100, false, IndexType.HASH, null,
+          value -> ((String) value).toLowerCase(Locale.ROOT), NAME_FIELD);
+        table.createIndex(partial);
+        table.createIndex(expression);
+        table.getIndexBuild(partial).await();
+        table.getIndexBuild(expression).await();
+
+        // Neither index covers the name, so counts include the archived rows and only the exact value
+        QueryRequirement requirement = new RequirementBuilder<ArchivableItem>(null, null).andEquals(NAME_FIELD, "name4").build();
+        assertThat(table.count(requirement)).isEqualTo(67L);
+        assertThat(table.count(null)).isEqualTo(1000L);
+    }
+
+    // Internals
+
+    private MemoryTable<ArchivableItem> createTable(boolean mixedCase) {
+        MemoryTable<ArchivableItem> table = new MemoryTable<>("archivable", PROFILE);
+        for (int i = 0; i < 1000; i++) {
+            String name = (mixedCase && i % 3 == 0 ? "NAME" : "name") + (i % 10);
+            this.save(table, new ArchivableItem(i, name, i % 4 != 0));
+        }
+
+        return table;
+    }
+
+    private QueryRequirement activeByName(String name) {
+        return new RequirementBuilder<ArchivableItem>(null, null).andEquals(NAME_FIELD, name).andEquals(ARCHIVED_FIELD, false).build();
+    }
+
+    private void save(MemoryTable<ArchivableItem> table, ArchivableItem item) {
+        MemoryFixtures.save(table, PROFILE, item);
+    }
+}
@@ -0,0 +1,71 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.tanberg.easydb.connection.memory.PostingList;
+import org.tanberg.easydb.connection.memory.RowBitmap;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PostingListTest {
+
+    @Test
+    public void intersectTest() {
+        Random random = new Random(42);
+        List<Set<Integer>> sets = Lists.newArrayList(this.randomSet(random, 50000, 100000),
+          this.randomSet(random, 200, 100000), this.randomSet(random, 20000, 100000));
+
+        Set<Integer> expected = Sets.newTreeSet(sets.get(0));
+        sets.forEach(expected::retainAll);
+
+        List<Integer> actual = PostingList.intersect(this.toLists(sets)).toList();
+        assertThat(actual).isEqualTo(Lists.newArrayList(expected));
+    }
+
+    @Test
+    public void unionTest() {
+        Random random = new Random(42);
+        List<Set<Integer>> sets = Lists.newArrayList(this.randomSet(random, 500, 5000),
+          this.randomSet(random, 2000, 5000), new TreeSet<>(), this.randomSet(random, 10, 5000));
+
+        Set<Integer> expected = Sets.newTreeSet();
+        sets.forEach(expected::addAll);
+
+        List<Integer> actual = PostingList.union(this.toLists(sets)).toList();
+        assertThat(actual).isEqualTo(Lists.newArrayList(expected));
+    }
+
+    @Test
+    public void retainTest() {
+        PostingList list = PostingList.of(new int[]{9000, 3, 70, 4096});
+        RowBitmap bitmap = RowBitmap.of(Lists.newArrayList(3, 4096, 12));
+        assertThat(list.retain(bitmap).toList()).isEqualTo(Lists.newArrayList(3, 4096));
+        assertThat(PostingList.of(bitmap).toList()).isEqualTo(Lists.newArrayList(3, 12, 4096));
+    }
+
+    // Internals
+
+    private Set<Integer> randomSet(Random random, int size, int bound) {
+        Set<Integer> set = Sets.newTreeSet();
+        while (set.size() < size) {
+            set.add(random.nextInt(bound));
+        }
+
+        return set;
+    }
+
+    private List<PostingList> toLists(List<Set<Integer>> sets) {
+        List<PostingList> lists = Lists.newArrayList();
+        for (Set<Integer> set : sets) {
+            lists.add(PostingList.of(set.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        return lists;
+    }
+}
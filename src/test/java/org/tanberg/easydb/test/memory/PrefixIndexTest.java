@@ -0,0 +1,136 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.connection.memory.MemoryRange;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.PrefixIndexMap;
+import org.tanberg.easydb.connection.memory.RadixTrie;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.PathItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PrefixIndexTest {
+
+    private static final ItemProfile<PathItem> PROFILE = new ItemProfile<>(PathItem.class);
+    private static final PersistentField<PathItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<PathItem> PATH_FIELD = PROFILE.resolveField("path");
+    private static final PersistentField<PathItem> OWNER_FIELD = PROFILE.resolveField("owner");
+
+    private static final String[] DIRECTORIES = {"/usr/bin/", "/usr/lib/", "/usr/", "/home/anna/", "/home/andy/", "/"};
+
+    private MemoryTable<PathItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("paths", PROFILE);
+        for (int i = 0; i < 600; i++) {
+            this.save(new PathItem(i, DIRECTORIES[i % DIRECTORIES.length] + "file" + i, i % 2 == 0 ? "root" : "rob"));
+        }
+    }
+
+    @Test
+    public void trieTest() {
+        RadixTrie trie = new RadixTrie();
+        Map<Integer, String> values = Maps.newHashMap();
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            int row = random.nextInt(500);
+            String value = values.get(row);
+            if (value != null) {
+                assertThat(trie.remove(value, row)).isTrue();
+                values.remove(row);
+                continue;
+            }
+
+            value = Integer.toString(random.nextInt(2000), 3);
+            assertThat(trie.add(value, row)).isTrue();
+            values.put(row, value);
+        }
+
+        assertThat(trie.size()).isEqualTo(values.size());
+        assertThat(trie.getKeyCount()).isEqualTo((int) values.values().stream().distinct().count());
+        for (String prefix : new String[]{"", "1", "12", "201", "2222", "0"}) {
+            long expected = values.values().stream().filter(value -> value.startsWith(prefix)).count();
+            assertThat(trie.count(prefix)).isEqualTo((int) expected);
+
+            List<String> found = Lists.newArrayList();
+            trie.forEach(prefix, (value, rows) -> {
+                for (int row : rows) {
+                    assertThat(values.get(row)).isEqualTo(value);
+                }
+
+                found.add(value);
+            });
+
+            List<String> sorted = Lists.newArrayList(found);
+            sorted.sort(String::compareTo);
+            assertThat(found).isEqualTo(sorted);
+            assertThat(found.stream().allMatch(value -> value.startsWith(prefix))).isTrue();
+        }
+    }
+
+    @Test
+    public void tableTest() {
+        assertThat(this.table.getUnsafeAccessor().getIndexMaps().values().stream()
+          .anyMatch(indexMap -> indexMap instanceof PrefixIndexMap)).isTrue();
+
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/usr/").build())).hasSize(300);
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/usr/b").build())).hasSize(100);
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/home/an").build())).hasSize(200);
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/home/anna/file1").build())).hasSize(17);
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/var").build())).isEmpty();
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/").build())).hasSize(600);
+
+        // Combined with a requirement on the same field, and on another field
+        assertThat(this.table.findAll(this.builder()
+          .startsWith(PATH_FIELD, "/usr/")
+          .andStartsWith(PATH_FIELD, "/usr/lib/")
+          .build())).hasSize(100);
+        assertThat(this.table.findAll(this.builder()
+          .startsWith(PATH_FIELD, "/usr/")
+          .andEquals(OWNER_FIELD, "rob")
+          .build())).hasSize(100);
+
+        // Prefixes on an ordered index are looked up as a range
+        assertThat(this.table.findAll(this.builder().startsWith(OWNER_FIELD, "ro").build())).hasSize(600);
+        assertThat(this.table.findAll(this.builder().startsWith(OWNER_FIELD, "roo").build())).hasSize(300);
+
+        // Changes are reflected in the trie
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(PATH_FIELD, "/usr/local/moved")},
+          this.builder().equals(ID_FIELD, 0).build());
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/usr/local").build())).hasSize(1);
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/usr/bin/").build())).hasSize(99);
+
+        this.table.delete(this.builder().startsWith(PATH_FIELD, "/home/").build());
+        assertThat(this.table.findAll(null)).hasSize(400);
+        assertThat(this.table.findAll(this.builder().startsWith(PATH_FIELD, "/home").build())).isEmpty();
+    }
+
+    @Test
+    public void prefixEndTest() {
+        assertThat(MemoryRange.getPrefixEnd("abc")).isEqualTo("abd");
+        assertThat(MemoryRange.getPrefixEnd("ab" + Character.MAX_VALUE)).isEqualTo("ac");
+        assertThat(MemoryRange.getPrefixEnd("" + Character.MAX_VALUE)).isNull();
+        assertThat(MemoryRange.getPrefixEnd("")).isNull();
+    }
+
+    private void save(PathItem item) {
+        MemoryFixtures.save(this.table, PROFILE, item);
+    }
+
+    private RequirementBuilder<PathItem> builder() {
+        return new RequirementBuilder<>(null, null);
+    }
+}
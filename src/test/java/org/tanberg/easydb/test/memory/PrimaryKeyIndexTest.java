@@ -0,0 +1,80 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Maps;
+import org.tanberg.easydb.connection.memory.CompositeKey;
+import org.tanberg.easydb.connection.memory.IntPrimaryKeyIndex;
+import org.tanberg.easydb.connection.memory.LongPrimaryKeyIndex;
+import org.tanberg.easydb.connection.memory.PrimaryKeyIndex;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PrimaryKeyIndexTest {
+
+    @Test
+    public void intIndexTest() {
+        this.test(new IntPrimaryKeyIndex(), key -> (int) key);
+    }
+
+    @Test
+    public void longIndexTest() {
+        // Spread over the whole range, so that keys differ in the upper half only
+        this.test(new LongPrimaryKeyIndex(), key -> key << 40);
+    }
+
+    @Test
+    public void compositeKeyTest() {
+        CompositeKey key = new CompositeKey(1, "a");
+        assertThat(key).isEqualTo(new CompositeKey(1, "a"));
+        assertThat(key.hashCode()).isEqualTo(new CompositeKey(1, "a").hashCode());
+        assertThat(key).isNotEqualTo(new CompositeKey(1, "b"));
+    }
+
+    // Internals
+
+    private void test(PrimaryKeyIndex index, LongFunction<Object> keys) {
+        Map<Object, Integer> expected = Maps.newHashMap();
+        Random random = new Random(42);
+
+        // Removing and reinserting many colliding keys, compared against a hash map
+        for (int i = 0; i < 20000; i++) {
+            Object key = keys.apply(random.nextInt(2000) - 1000);
+            if (random.nextInt(3) == 0) {
+                Integer row = expected.get(key);
+                boolean removed = index.remove(new CompositeKey(key), row == null ? 0 : row);
+                assertThat(removed).isEqualTo(row != null);
+                expected.remove(key);
+            } else {
+                int previous = index.put(new CompositeKey(key), i);
+                Integer expectedPrevious = expected.put(key, i);
+                assertThat(previous).isEqualTo(expectedPrevious == null ? PrimaryKeyIndex.NO_ROW : expectedPrevious);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (int key = -1000; key < 1000; key++) {
+            Object keyValue = keys.apply(key);
+            Integer row = expected.get(keyValue);
+            assertThat(index.getSingle(keyValue)).isEqualTo(row == null ? PrimaryKeyIndex.NO_ROW : row);
+        }
+
+        List<Integer> rows = Arrays.stream(index.getRows()).boxed().collect(Collectors.toList());
+        assertThat(rows).containsExactlyElementsIn(expected.values());
+
+        // Removing with another row must not remove the key
+        Object key = expected.keySet().iterator().next();
+        assertThat(index.remove(new CompositeKey(key), -5)).isFalse();
+        assertThat(index.getSingle(key)).isEqualTo(expected.get(key));
+
+        index.clear();
+        assertThat(index.size()).isEqualTo(0);
+        assertThat(index.getSingle(key)).isEqualTo(PrimaryKeyIndex.NO_ROW);
+    }
+}
@@ -0,0 +1,95 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.tanberg.easydb.connection.memory.RowMultimap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RowMultimapTest {
+
+    @Test
+    public void largeBucketTest() {
+        RowMultimap<String> map = new RowMultimap<>(null);
+        Set<Integer> expected = Sets.newHashSet();
+        for (int row = 0; row < 100000; row++) {
+            map.put("shared", row);
+            expected.add(row);
+        }
+
+        for (int row = 0; row < 100000; row += 3) {
+            assertThat(map.remove(row)).isTrue();
+            expected.remove(row);
+        }
+
+        assertThat(map.remove(0)).isFalse();
+        assertThat(this.toList(map.get("shared"))).containsExactlyElementsIn(expected);
+    }
+
+    @Test
+    public void orderTest() {
+        RowMultimap<String> map = new RowMultimap<>(null);
+        for (int row : new int[]{5, 1, 9, 3, 7, 2}) {
+            map.put("shared", row);
+        }
+
+        map.remove(3);
+        map.put("shared", 4);
+        assertThat(this.toList(map.get("shared"))).isEqualTo(Lists.newArrayList(1, 2, 4, 5, 7, 9));
+    }
+
+    @Test
+    public void emptyBucketTest() {
+        RowMultimap<String> map = new RowMultimap<>(String::compareTo);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        map.remove(2);
+
+        assertThat(map.keySet()).containsExactly("a", "c");
+        assertThat(map.asNavigableMap().headMap("c").keySet()).containsExactly("a");
+
+        // Keys emptied and added again must still be found
+        map.put("b", 2);
+        assertThat(this.toList(map.get("b"))).containsExactly(2);
+    }
+
+    @Test
+    public void concurrentTest() throws InterruptedException {
+        RowMultimap<Integer> map = new RowMultimap<>(null);
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                // Every thread moves its own rows between two shared keys
+                for (int j = 0; j < 20000; j++) {
+                    int row = thread * 1000 + j % 1000;
+                    map.remove(row);
+                    map.put(j % 2, row);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<Integer> rows = Lists.newArrayList(this.toList(map.get(0)));
+        rows.addAll(this.toList(map.get(1)));
+        assertThat(rows).hasSize(4000);
+        assertThat(Sets.newHashSet(rows)).hasSize(4000);
+    }
+
+    // Internals
+
+    private List<Integer> toList(int[] rows) {
+        return Arrays.stream(rows).boxed().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,71 @@
+package org.tanberg.easydb.test.memory;
+
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.query.response.Response;
+import org.tanberg.easydb.query.response.RowResponse;
+import org.tanberg.easydb.test.mock.item.RankedItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RowResponseTest {
+
+    private static final ItemProfile<RankedItem> PROFILE = new ItemProfile<>(RankedItem.class);
+    private static final PersistentField<RankedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<RankedItem> NAME_FIELD = PROFILE.resolveField("name");
+
+    private MemoryTable<RankedItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("responses", PROFILE);
+        for (int i = 0; i < 100; i++) {
+            RankedItem item = new RankedItem(i, i * 10, "name" + i, 0);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @Test
+    public void viewTest() {
+        QueryRequirement requirement = new RequirementBuilder<RankedItem>(null, null)
+          .andLessThan(ID_FIELD, 10)
+          .build();
+        List<Response<RankedItem>> responses = this.table.findAll(requirement, row -> new RowResponse<>(PROFILE, row));
+        assertThat(responses).hasSize(10);
+
+        Response<RankedItem> response = responses.get(3);
+        assertThat(response.isEmpty()).isFalse();
+        assertThat(response.get(NAME_FIELD)).isEqualTo("name3");
+
+        RankedItem item = response.getInstance();
+        assertThat(item.getId()).isEqualTo(3);
+        assertThat(item.getScore()).isEqualTo(30);
+        assertThat(item.getName()).isEqualTo("name3");
+
+        // Rows are shared with the store, not copied
+        List<Object[]> rows = this.table.findAll(requirement, row -> row);
+        assertThat(rows.get(3) == this.table.findAll(requirement, row -> row).get(3)).isTrue();
+    }
+
+    @Test
+    public void changeTest() {
+        QueryRequirement requirement = new RequirementBuilder<RankedItem>(null, null)
+          .andEquals(ID_FIELD, 5)
+          .build();
+        Response<RankedItem> response = this.table.findAll(requirement, row -> new RowResponse<>(PROFILE, row)).get(0);
+        response.getValue(NAME_FIELD).setValue("changed");
+        assertThat(response.get(NAME_FIELD)).isEqualTo("changed");
+        assertThat(response.getInstance().getName()).isEqualTo("changed");
+
+        // The stored row is left as it was
+        Object[] row = this.table.findFirstRow(requirement);
+        assertThat(new RowResponse<>(PROFILE, row).get(NAME_FIELD)).isEqualTo("name5");
+    }
+}
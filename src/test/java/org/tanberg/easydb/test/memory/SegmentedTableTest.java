@@ -0,0 +1,183 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.connection.memory.MemoryView;
+import org.tanberg.easydb.connection.memory.SegmentedMemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.SegmentedItem;
+import org.tanberg.easydb.util.ValueContainer;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SegmentedTableTest {
+
+    private static final ItemProfile<SegmentedItem> PROFILE = new ItemProfile<>(SegmentedItem.class);
+    private static final PersistentField<SegmentedItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<SegmentedItem> GROUP_FIELD = PROFILE.resolveField("group");
+
+    private SegmentedMemoryTable<SegmentedItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new SegmentedMemoryTable<>("segmented", PROFILE, 4);
+    }
+
+    @Test
+    public void spreadTest() {
+        for (int i = 0; i < 400; i++) {
+            this.insert(new SegmentedItem("group" + (i % 4)));
+        }
+
+        for (MemoryTable<SegmentedItem> segment : this.table.getTables()) {
+            assertThat(segment.findAll(null).size()).isGreaterThan(50);
+        }
+
+        assertThat(this.table.findAll(null)).hasSize(400);
+        assertThat(this.table.findAll(this.groupRequirement("group1"))).hasSize(100);
+
+        FieldValue<SegmentedItem>[] found = this.table.findFirst(this.idRequirement(123));
+        assertThat(found).isNotNull();
+        assertThat(ValueHelper.getValue(found, GROUP_FIELD).getValue()).isEqualTo("group2");
+        assertThat(this.table.findFirst(this.idRequirement(1000))).isNull();
+    }
+
+    @Test
+    public void updateTest() {
+        for (int i = 0; i < 100; i++) {
+            this.insert(new SegmentedItem("group" + (i % 2)));
+        }
+
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(GROUP_FIELD, "moved")}, this.groupRequirement("group0"));
+        assertThat(this.table.findAll(this.groupRequirement("group0"))).isEmpty();
+        assertThat(this.table.findAll(this.groupRequirement("moved"))).hasSize(50);
+
+        // Changes the key, which moves the row to another segment
+        this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(ID_FIELD, 5000)}, this.idRequirement(2));
+        assertThat(this.table.findFirst(this.idRequirement(2))).isNull();
+        assertThat(ValueHelper.getValue(this.table.findFirst(this.idRequirement(5000)), GROUP_FIELD).getValue()).isEqualTo("group1");
+        assertThat(this.table.findAll(null)).hasSize(100);
+
+        this.table.delete(this.groupRequirement("moved"));
+        assertThat(this.table.findAll(null)).hasSize(50);
+    }
+
+    @Test
+    public void autoIncrementTest() throws InterruptedException {
+        Set<Integer> ids = Collections.synchronizedSet(Sets.newHashSet());
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    SegmentedItem item = new SegmentedItem("group");
+                    this.insert(item);
+                    ids.add(item.getId());
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(ids).hasSize(8 * 500);
+        assertThat(this.table.findAll(null)).hasSize(8 * 500);
+    }
+
+    @Test
+    public void viewTest() {
+        for (int i = 0; i < 100; i++) {
+            this.insert(new SegmentedItem("group" + (i % 4)));
+        }
+
+        MemoryView<SegmentedItem> view = this.table.createView("grouped", this.builder().andNotEquals(GROUP_FIELD, "group3").build(),
+          GROUP_FIELD);
+        assertThat(this.table.getView("grouped")).isEqualTo(view);
+        assertThat(view.size()).isEqualTo(75);
+        assertThat(view.getCounts().get("group1")).isEqualTo(25L);
+
+        this.table.delete(this.groupRequirement("group1"));
+        assertThat(view.size()).isEqualTo(50);
+        assertThat(view.getCounts().containsKey("group1")).isFalse();
+
+        this.table.dropView("grouped");
+        assertThat(this.table.getView("grouped")).isNull();
+        for (MemoryTable<SegmentedItem> segment : this.table.getTables()) {
+            assertThat(segment.getView("grouped")).isNull();
+        }
+    }
+
+    @Test
+    public void unsafeAccessorTest() {
+        for (int i = 0; i < 100; i++) {
+            this.insert(new SegmentedItem("group"));
+        }
+
+        Map<ValueContainer, ValueContainer> rows = this.table.getUnsafeAccessor().getKeyToValueMap();
+        assertThat(rows.size()).isEqualTo(100);
+        assertThat(rows.get(new ValueContainer(new Object[]{42}))).isNotNull();
+        assertThat(rows.get(new ValueContainer(new Object[]{1000}))).isNull();
+    }
+
+    @Test
+    public void concurrentMoveTest() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            this.insert(new SegmentedItem("group"));
+        }
+
+        // Every thread moves its own rows back and forth between keys of other segments
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    int id = 1 + thread * 25 + j % 25;
+                    int from = j % 50 < 25 ? id : id + 10000;
+                    int to = j % 50 < 25 ? id + 10000 : id;
+                    this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(ID_FIELD, to)}, this.idRequirement(from));
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(this.table.findAll(null)).hasSize(100);
+        assertThat(this.table.count(this.builder().andLessThan(ID_FIELD, 10000).build())).isEqualTo(100L);
+    }
+
+    private void insert(SegmentedItem item) {
+        this.table.save(Optional.of(item), MemoryFixtures.getValues(PROFILE, item), null);
+    }
+
+    private RequirementBuilder<SegmentedItem> builder() {
+        return new RequirementBuilder<>(null, null);
+    }
+
+    private QueryRequirement idRequirement(int id) {
+        return this.builder().andEquals(ID_FIELD, id).build();
+    }
+
+    private QueryRequirement groupRequirement(String group) {
+        return this.builder().andEquals(GROUP_FIELD, group).build();
+    }
+}
@@ -0,0 +1,97 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Sets;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.ColumnarItem;
+import org.tanberg.easydb.test.mock.item.ColumnarItem.Rank;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SnapshotReadTest {
+
+    private static final ItemProfile<ColumnarItem> PROFILE = new ItemProfile<>(ColumnarItem.class);
+    private static final PersistentField<ColumnarItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<ColumnarItem> BALANCE_FIELD = PROFILE.resolveField("balance");
+
+    private static final int ROWS = 200;
+
+    private MemoryTable<ColumnarItem> table;
+
+    @Before
+    public void setUp() {
+        this.table = new MemoryTable<>("snapshot", PROFILE);
+        for (int i = 0; i < ROWS; i++) {
+            ColumnarItem item = new ColumnarItem(i, 0L, 0D, true, Rank.MEMBER, "name" + i);
+            MemoryFixtures.save(this.table, PROFILE, item);
+        }
+    }
+
+    @Test
+    public void consistentReadTest() throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (long balance = 1; running.get(); balance++) {
+                // Every row gets the same balance in a single change
+                this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(BALANCE_FIELD, balance)},
+                  new RequirementBuilder<ColumnarItem>(null, null)
+                    .andLessThan(ID_FIELD, ROWS)
+                    .build());
+            }
+        });
+        writer.start();
+
+        try {
+            for (int i = 0; i < 500; i++) {
+                List<FieldValue<ColumnarItem>[]> all = this.table.findAll(null);
+                assertThat(all).hasSize(ROWS);
+
+                Set<Object> balances = Sets.newHashSet();
+                for (FieldValue<ColumnarItem>[] values : all) {
+                    balances.add(ValueHelper.getValue(values, BALANCE_FIELD).getValue());
+                }
+
+                assertThat(balances).hasSize(1);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void deleteTest() {
+        this.table.delete(new RequirementBuilder<ColumnarItem>(null, null)
+          .andGreaterThanOrEqualTo(ID_FIELD, 100)
+          .build());
+        assertThat(this.table.findAll(null)).hasSize(100);
+        assertThat(this.table.findFirst(new RequirementBuilder<ColumnarItem>(null, null)
+          .andEquals(ID_FIELD, 150)
+          .build())).isNull();
+
+        // Old versions of rows must not be visible after a key is reused
+        for (int i = 0; i < 10; i++) {
+            this.table.save(Optional.empty(), new FieldValue[]{new FieldValue<>(BALANCE_FIELD, (long) i)},
+              new RequirementBuilder<ColumnarItem>(null, null)
+                .andEquals(ID_FIELD, 5)
+                .build());
+        }
+
+        FieldValue<ColumnarItem>[] values = this.table.findFirst(new RequirementBuilder<ColumnarItem>(null, null)
+          .andEquals(ID_FIELD, 5)
+          .build());
+        assertThat(ValueHelper.getValue(values, BALANCE_FIELD).getValue()).isEqualTo(9L);
+        assertThat(this.table.findAll(null)).hasSize(100);
+    }
+}
@@ -0,0 +1,93 @@
+package org.tanberg.easydb.test.memory;
+
+import com.google.common.collect.Lists;
+import org.tanberg.easydb.connection.memory.MemoryTable;
+import org.tanberg.easydb.field.FieldValue;
+import org.tanberg.easydb.field.PersistentField;
+import org.tanberg.easydb.profile.ItemProfile;
+import org.tanberg.easydb.query.req.QueryRequirement;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.test.mock.item.SpilledItem;
+import org.tanberg.easydb.util.ValueHelper;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SpillTest {
+
+    private static final ItemProfile<SpilledItem> PROFILE = new ItemProfile<>(SpilledItem.class);
+    private static final PersistentField<SpilledItem> ID_FIELD = PROFILE.resolveField("id");
+    private static final PersistentField<SpilledItem> NAME_FIELD = PROFILE.resolveField("name");
+    private static final PersistentField<SpilledItem> SCORE_FIELD = PROFILE.resolveField("score");
+
+    @Test
+    public void spillTest() {
+        MemoryTable<SpilledItem> table = new MemoryTable<>("spilled", PROFILE);
+        for (int i = 0; i < 1000; i++) {
+            this.save(table, new SpilledItem(i, "name" + (i % 5), i));
+        }
+
+        assertThat(table.getWeight()).isAtMost(table.getMaximumWeight());
+        assertThat(table.getSpilledRows()).isGreaterThan(0);
+
+        // Rows over the maximum weight are still found, by key and by scans
+        assertThat(this.find(table, null)).hasSize(1000);
+        assertThat(table.count(null)).isEqualTo(1000L);
+        assertThat(this.find(table, this.byName("name3"))).hasSize(200);
+        for (int id = 0; id < 1000; id += 7) {
+            assertThat(this.find(table, new RequirementBuilder<SpilledItem>(null, null).andEquals(ID_FIELD, id).build()))
+              .containsExactly(id);
+        }
+
+        assertThat(this.find(table, new RequirementBuilder<SpilledItem>(null, null).andEquals(ID_FIELD, 1000).build())).isEmpty();
+    }
+
+    @Test
+    public void changeTest() {
+        MemoryTable<SpilledItem> table = new MemoryTable<>("spilled", PROFILE);
+        for (int i = 0; i < 1000; i++) {
+            this.save(table, new SpilledItem(i, "name" + (i % 5), i));
+        }
+
+        table.delete(this.byName("name0"));
+        assertThat(table.count(null)).isEqualTo(800L);
+        assertThat(this.find(table, this.byName("name0"))).isEmpty();
+
+        @SuppressWarnings("unchecked")
+        FieldValue<SpilledItem>[] values = new FieldValue[]{new FieldValue<>(SCORE_FIELD, -1)};
+        table.save(Optional.empty(), values, this.byName("name1"));
+        List<FieldValue<SpilledItem>[]> updated = table.findAll(this.byName("name1"));
+        assertThat(updated).hasSize(200);
+        for (FieldValue<SpilledItem>[] row : updated) {
+            assertThat(ValueHelper.getValue(row, SCORE_FIELD).getValue()).isEqualTo(-1);
+        }
+
+        assertThat(table.count(null)).isEqualTo(800L);
+
+        table.drop();
+        assertThat(table.count(null)).isEqualTo(0L);
+        assertThat(table.getSpilledRows()).isEqualTo(0);
+    }
+
+    // Internals
+
+    private QueryRequirement byName(String name) {
+        return new RequirementBuilder<SpilledItem>(null, null).andEquals(NAME_FIELD, name).build();
+    }
+
+    private void save(MemoryTable<SpilledItem> table, SpilledItem item) {
+        MemoryFixtures.save(table, PROFILE, item);
+    }
+
+    private List<Object> find(MemoryTable<SpilledItem> table, QueryRequirement requirement) {
+        List<Object> ids = Lists.newArrayList();
+        for (FieldValue<SpilledItem>[] values : table.findAll(requirement)) {
+            ids.add(ValueHelper.getValue(values, ID_FIELD).getValue());
+        }
+
+        return ids;
+    }
+}
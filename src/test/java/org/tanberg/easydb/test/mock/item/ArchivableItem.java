@@ -0,0 +1,36 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+
+public class ArchivableItem {
+
+    @Key
+    private int id;
+
+    private String name;
+
+    @Index
+    private boolean archived;
+
+    public ArchivableItem() {
+    }
+
+    public ArchivableItem(int id, String name, boolean archived) {
+        this.id = id;
+        this.name = name;
+        this.archived = archived;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+}
@@ -0,0 +1,38 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.Key;
+
+public class ArticleItem {
+
+    @Key
+    private int id;
+
+    @Index(type = IndexType.FULL_TEXT)
+    private String description;
+
+    @Index
+    private String category;
+
+    public ArticleItem() {
+    }
+
+    public ArticleItem(int id, String description, String category) {
+        this.id = id;
+        this.description = description;
+        this.category = category;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+}
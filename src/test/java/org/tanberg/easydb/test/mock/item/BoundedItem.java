@@ -0,0 +1,31 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+@MemoryOptions(maximumWeight = 20000)
+public class BoundedItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private String name;
+
+    public BoundedItem() {
+    }
+
+    public BoundedItem(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
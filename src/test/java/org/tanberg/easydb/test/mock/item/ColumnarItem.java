@@ -0,0 +1,64 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.connection.memory.MemoryLayout;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+@MemoryOptions(layout = MemoryLayout.COLUMNS)
+public class ColumnarItem {
+
+    @Key
+    private int id;
+
+    private long balance;
+
+    private double ratio;
+
+    private boolean active;
+
+    private Rank rank;
+
+    private String name;
+
+    public ColumnarItem() {
+    }
+
+    public ColumnarItem(int id, long balance, double ratio, boolean active, Rank rank, String name) {
+        this.id = id;
+        this.balance = balance;
+        this.ratio = ratio;
+        this.active = active;
+        this.rank = rank;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Rank getRank() {
+        return rank;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public enum Rank {
+        MEMBER,
+        MODERATOR,
+        ADMIN
+    }
+}
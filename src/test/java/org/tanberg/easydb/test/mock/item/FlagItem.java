@@ -0,0 +1,52 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.Key;
+
+public class FlagItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private boolean active;
+
+    @Index
+    private Status status;
+
+    @Index(type = IndexType.BITMAP)
+    private int region;
+
+    public FlagItem() {
+    }
+
+    public FlagItem(int id, boolean active, Status status, int region) {
+        this.id = id;
+        this.active = active;
+        this.status = status;
+        this.region = region;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getRegion() {
+        return region;
+    }
+
+    public enum Status {
+        PENDING,
+        OPEN,
+        CLOSED
+    }
+}
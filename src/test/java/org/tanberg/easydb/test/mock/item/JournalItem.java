@@ -0,0 +1,36 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+
+public class JournalItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private String name;
+
+    private int score;
+
+    public JournalItem() {
+    }
+
+    public JournalItem(int id, String name, int score) {
+        this.id = id;
+        this.name = name;
+        this.score = score;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,97 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.Options;
+import org.tanberg.easydb.connection.memory.MemoryLayout;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+import java.util.List;
+
+@MemoryOptions(layout = MemoryLayout.OFF_HEAP)
+public class OffHeapItem {
+
+    @Key
+    private int id;
+
+    private byte level;
+
+    private short rating;
+
+    private long balance;
+
+    private float ratio;
+
+    private double score;
+
+    private boolean active;
+
+    private Kind kind;
+
+    private String name;
+
+    @Options(typeParams = String.class)
+    private List<String> tags;
+
+    public OffHeapItem() {
+    }
+
+    public OffHeapItem(int id, byte level, short rating, long balance, float ratio, double score, boolean active, Kind kind,
+                       String name, List<String> tags) {
+        this.id = id;
+        this.level = level;
+        this.rating = rating;
+        this.balance = balance;
+        this.ratio = ratio;
+        this.score = score;
+        this.active = active;
+        this.kind = kind;
+        this.name = name;
+        this.tags = tags;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public byte getLevel() {
+        return level;
+    }
+
+    public short getRating() {
+        return rating;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public float getRatio() {
+        return ratio;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public enum Kind {
+        FREE,
+        PAID,
+        TRIAL
+    }
+}
@@ -0,0 +1,38 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.Key;
+
+public class PathItem {
+
+    @Key
+    private int id;
+
+    @Index(type = IndexType.PREFIX)
+    private String path;
+
+    @Index(type = IndexType.ORDERED)
+    private String owner;
+
+    public PathItem() {
+    }
+
+    public PathItem(int id, String path, String owner) {
+        this.id = id;
+        this.path = path;
+        this.owner = owner;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,45 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.Key;
+
+public class RankedItem {
+
+    @Key(ordered = true)
+    private int id;
+
+    @Index(type = IndexType.ORDERED)
+    private int score;
+
+    @Index
+    private String name;
+
+    private long expires;
+
+    public RankedItem() {
+    }
+
+    public RankedItem(int id, int score, String name, long expires) {
+        this.id = id;
+        this.score = score;
+        this.name = name;
+        this.expires = expires;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getExpires() {
+        return expires;
+    }
+}
@@ -0,0 +1,37 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+
+public class RankedRedisItem {
+
+    @Key
+    private int id;
+
+    @Index(1)
+    private String group;
+
+    @Index(1)
+    private int rank;
+
+    public RankedRedisItem() {
+    }
+
+    public RankedRedisItem(int id, String group, int rank) {
+        this.id = id;
+        this.group = group;
+        this.rank = rank;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+}
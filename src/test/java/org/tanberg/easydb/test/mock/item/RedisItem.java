@@ -0,0 +1,29 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+
+public class RedisItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private String name;
+
+    public RedisItem() {
+    }
+
+    public RedisItem(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,40 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.IndexType;
+import org.tanberg.easydb.Key;
+
+/**
+ * Has the same fields as {@link JournalItem}, but a different index.
+ */
+public class ReindexedJournalItem {
+
+    @Key
+    private int id;
+
+    private String name;
+
+    @Index(type = IndexType.ORDERED)
+    private int score;
+
+    public ReindexedJournalItem() {
+    }
+
+    public ReindexedJournalItem(int id, String name, int score) {
+        this.id = id;
+        this.name = name;
+        this.score = score;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,30 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+@MemoryOptions(segments = 4)
+public class SegmentedItem {
+
+    @Key(autoIncrement = true)
+    private int id;
+
+    @Index
+    private String group;
+
+    public SegmentedItem() {
+    }
+
+    public SegmentedItem(String group) {
+        this.group = group;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+}
@@ -0,0 +1,38 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+@MemoryOptions(dictionaryEncoded = {"country", "server"})
+public class ServerItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private String country;
+
+    private String server;
+
+    public ServerItem() {
+    }
+
+    public ServerItem(int id, String country, String server) {
+        this.id = id;
+        this.country = country;
+        this.server = server;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getServer() {
+        return server;
+    }
+}
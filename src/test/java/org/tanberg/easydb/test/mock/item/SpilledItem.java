@@ -0,0 +1,38 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+@MemoryOptions(maximumWeight = 20000, spill = true)
+public class SpilledItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private String name;
+
+    private int score;
+
+    public SpilledItem() {
+    }
+
+    public SpilledItem(int id, String name, int score) {
+        this.id = id;
+        this.name = name;
+        this.score = score;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,31 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Index;
+import org.tanberg.easydb.Key;
+import org.tanberg.easydb.connection.memory.MemoryOptions;
+
+@MemoryOptions(indexBuildBatchSize = 10, indexBuildPauseMillis = 50)
+public class ThrottledItem {
+
+    @Key
+    private int id;
+
+    @Index
+    private boolean archived;
+
+    public ThrottledItem() {
+    }
+
+    public ThrottledItem(int id, boolean archived) {
+        this.id = id;
+        this.archived = archived;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+}
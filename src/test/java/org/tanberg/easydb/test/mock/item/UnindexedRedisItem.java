@@ -0,0 +1,30 @@
+package org.tanberg.easydb.test.mock.item;
+
+import org.tanberg.easydb.Key;
+
+/**
+ * Has the same fields as {@link RedisItem}, but no index.
+ */
+public class UnindexedRedisItem {
+
+    @Key
+    private int id;
+
+    private String name;
+
+    public UnindexedRedisItem() {
+    }
+
+    public UnindexedRedisItem(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
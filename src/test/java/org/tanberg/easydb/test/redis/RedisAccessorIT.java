@@ -0,0 +1,436 @@
+package org.tanberg.easydb.test.redis;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.tanberg.easydb.DatabaseType;
+import org.tanberg.easydb.SimpleRepository;
+import org.tanberg.easydb.access.redis.RedisAccessor;
+import org.tanberg.easydb.access.redis.RedisConfiguration;
+import org.tanberg.easydb.connection.ConnectionRegistry;
+import org.tanberg.easydb.query.req.RequirementBuilder;
+import org.tanberg.easydb.query.response.Response;
+import org.tanberg.easydb.test.mock.item.RankedRedisItem;
+import org.tanberg.easydb.test.mock.item.RedisItem;
+import org.tanberg.easydb.test.mock.item.UnindexedRedisItem;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Runs the Redis accessor against an embedded Redis server, checking the keys it keeps
+ * next to the values stored: the index hashes, their statistics and sorted sets, and the
+ * row count.
+ */
+public class RedisAccessorIT {
+
+    private static final String TABLE = "items";
+    private static final String INDEX_KEY = TABLE + ":index:(fields[name])";
+    private static final String STATS_KEY = INDEX_KEY + ":stats";
+    private static final String SORTED_KEY = INDEX_KEY + ":sorted";
+    private static final String COUNT_KEY = TABLE + ":count";
+
+    // Enough keys for building an index to take several batches
+    private static final int BUILD_KEYS = 10000;
+
+    private static RedisServer server;
+    private static int port;
+
+    private SimpleRepository<RedisItem> repository;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        server = new RedisServer(port);
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        ConnectionRegistry.getInstance().closeAllAndReset();
+        server.stop();
+    }
+
+    @Before
+    public void setUp() {
+        try (Jedis jedis = this.getJedis()) {
+            jedis.flushAll();
+        }
+
+        this.repository = this.newRepository();
+    }
+
+    @After
+    public void tearDown() {
+        ((RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor()).close();
+    }
+
+    @Test
+    public void concurrentWritersTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int thread = 0; thread < 8; thread++) {
+            Random random = new Random(thread);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 300; i++) {
+                    // Few keys and names, so that writers keep replacing and deleting the same keys
+                    RedisItem item = new RedisItem(random.nextInt(40), "name" + random.nextInt(5));
+                    if (random.nextInt(3) == 0) {
+                        this.repository.delete(item);
+                    } else {
+                        this.repository.save(item);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+
+        // Whatever order the writers ran in, the statistics and the sorted set agree with the index
+        this.assertConsistent();
+
+        // Once the writers are done, every key is indexed by its name
+        for (int id = 0; id < 40; id++) {
+            this.repository.save(new RedisItem(id, "name" + (id % 4)));
+        }
+
+        this.assertConsistent();
+        try (Jedis jedis = this.getJedis()) {
+            assertThat(jedis.hgetAll(STATS_KEY)).isEqualTo(Map.of("name0", "10", "name1", "10", "name2", "10", "name3", "10"));
+            assertThat(jedis.get(COUNT_KEY)).isEqualTo("40");
+        }
+
+        assertThat(this.findIds("name", "name2")).isEqualTo(Set.of(2, 6, 10, 14, 18, 22, 26, 30, 34, 38));
+    }
+
+    @Test
+    public void startsWithTest() {
+        List<String> names = Lists.newArrayList("a", "aa", "ab", "abc", "abz", "ab~", "ab\u00e9", "ac", "b");
+        for (int id = 0; id < names.size(); id++) {
+            this.repository.save(new RedisItem(id, names.get(id)));
+        }
+
+        // Members are the name and the key split by a null character, ordered byte by byte
+        try (Jedis jedis = this.getJedis()) {
+            List<String> members = Lists.newArrayList(jedis.zrange(SORTED_KEY, 0, -1));
+            List<String> expected = Lists.newArrayList();
+            for (int id = 0; id < names.size(); id++) {
+                expected.add(names.get(id) + '\u0000' + TABLE + ":value(" + id + ")");
+            }
+
+            assertThat(members).isEqualTo(expected);
+        }
+
+        // The range of a prefix ends after every value with the prefix, including multi-byte ones
+        assertThat(this.findNames("ab")).isEqualTo(Set.of("ab", "abc", "abz", "ab~", "ab\u00e9"));
+        assertThat(this.findNames("a")).isEqualTo(Set.of("a", "aa", "ab", "abc", "abz", "ab~", "ab\u00e9", "ac"));
+        assertThat(this.findNames("ab\u00e9")).isEqualTo(Set.of("ab\u00e9"));
+        assertThat(this.findNames("abd")).isEmpty();
+        assertThat(this.findNames("c")).isEmpty();
+
+        // A value is not found by the values it is a prefix of
+        assertThat(this.findIds("name", "ab")).isEqualTo(Set.of(2));
+        assertThat(this.findIds("name", "a")).isEqualTo(Set.of(0));
+
+        // Renaming a key moves its member
+        this.repository.save(new RedisItem(2, "b"));
+        assertThat(this.findNames("ab")).isEqualTo(Set.of("abc", "abz", "ab~", "ab\u00e9"));
+        assertThat(this.findIds("name", "b")).isEqualTo(Set.of(2, 8));
+        this.assertConsistent();
+    }
+
+    @Test
+    public void rowCountTest() {
+        try (Jedis jedis = this.getJedis()) {
+            for (int id = 0; id < 2500; id++) {
+                this.repository.save(new RedisItem(id, "name" + (id % 10)));
+            }
+
+            assertThat(jedis.get(COUNT_KEY)).isEqualTo("2500");
+
+            // Replacing a value does not count it again, and neither does deleting it twice
+            this.repository.save(new RedisItem(5, "other"));
+            this.repository.delete(new RedisItem(6, null));
+            this.repository.delete(new RedisItem(6, null));
+            assertThat(jedis.get(COUNT_KEY)).isEqualTo("2499");
+
+            // Values are scanned and fetched in several batches
+            List<Response<RedisItem>> responses = this.repository.newQuery().findAll();
+            assertThat(responses.size()).isEqualTo(2499);
+            assertThat(responses.stream().map(response -> response.getInstance().getId()).collect(Collectors.toSet()).size())
+              .isEqualTo(2499);
+
+            // A count lost by an older version is restored from the values stored
+            jedis.del(COUNT_KEY);
+            ((RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor()).close();
+            this.repository = this.newRepository();
+            assertThat(jedis.get(COUNT_KEY)).isEqualTo("2499");
+        }
+
+        this.assertConsistent();
+    }
+
+    @Test
+    public void compositeIndexTest() {
+        SimpleRepository<RankedRedisItem> ranked = new SimpleRepository<>(new RedisConfiguration("localhost", null, port), "ranked",
+          RankedRedisItem.class, DatabaseType.REDIS);
+        ranked.save(new RankedRedisItem(0, "a", 1));
+        ranked.save(new RankedRedisItem(1, "a", 10));
+        ranked.save(new RankedRedisItem(2, "a", 2));
+        ranked.save(new RankedRedisItem(3, "ab", 1));
+        ranked.save(new RankedRedisItem(4, "ab", 10));
+        ranked.save(new RankedRedisItem(5, "b", 1));
+
+        // Members hold the values of every field of the index, split by colons
+        try (Jedis jedis = this.getJedis()) {
+            String indexKey = "ranked:index:(fields[group.rank])";
+            assertThat(jedis.zrange(indexKey + ":sorted", 0, 1)).containsExactly("a:1\u0000ranked:value(0)", "a:10\u0000ranked:value(1)")
+              .inOrder();
+            assertThat(jedis.hget(indexKey + ":stats", "a:1")).isEqualTo("1");
+        }
+
+        // A full value is not found by the values it is a prefix of
+        assertThat(this.findRankedIds(ranked, "a", 1)).isEqualTo(Set.of(0));
+        assertThat(this.findRankedIds(ranked, "ab", 10)).isEqualTo(Set.of(4));
+        assertThat(this.findRankedIds(ranked, "b", 10)).isEmpty();
+
+        // Neither is a value of a leading field of the index
+        assertThat(this.findRankedIds(ranked, "a", null)).isEqualTo(Set.of(0, 1, 2));
+        assertThat(this.findRankedIds(ranked, "ab", null)).isEqualTo(Set.of(3, 4));
+        assertThat(this.findRankedIds(ranked, "c", null)).isEmpty();
+
+        // Prefixes of a leading field are checked again, as the members hold the other fields as well
+        assertThat(ranked.newQuery()
+          .where().startsWith("group", "a").closeAll()
+          .findAll().stream()
+          .map(response -> response.getInstance().getId())
+          .collect(Collectors.toSet())).isEqualTo(Set.of(0, 1, 2, 3, 4));
+
+        // Moving a key within the index keeps it out of the range of its previous value
+        ranked.save(new RankedRedisItem(0, "ab", 2));
+        assertThat(this.findRankedIds(ranked, "a", 1)).isEmpty();
+        assertThat(this.findRankedIds(ranked, "a", null)).isEqualTo(Set.of(1, 2));
+        assertThat(this.findRankedIds(ranked, "ab", null)).isEqualTo(Set.of(0, 3, 4));
+
+        ((RedisAccessor<RankedRedisItem>) ranked.getDatabaseAccessor()).close();
+    }
+
+    @Test
+    public void sortedSetUpTest() {
+        for (int id = 0; id < 100; id++) {
+            this.repository.save(new RedisItem(id, "name" + (id % 10)));
+        }
+
+        try (Jedis jedis = this.getJedis()) {
+            Set<String> members = jedis.zrange(SORTED_KEY, 0, -1);
+
+            // Sorted sets missing for values stored by an older version are filled when set up
+            jedis.del(SORTED_KEY);
+            ((RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor()).close();
+            this.repository = this.newRepository();
+            assertThat(jedis.zrange(SORTED_KEY, 0, -1)).isEqualTo(members);
+        }
+
+        assertThat(this.findIds("name", "name3")).isEqualTo(Set.of(3, 13, 23, 33, 43, 53, 63, 73, 83, 93));
+        assertThat(this.findNames("name1")).isEqualTo(Set.of("name1"));
+        this.assertConsistent();
+    }
+
+    @Test
+    public void indexBuildTest() throws InterruptedException {
+        this.storeUnindexed();
+
+        // The index is filled in the background, while queries scan the values and writers keep it up to date
+        RedisAccessor<RedisItem> accessor = (RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor();
+        assertThat(accessor.isIndexBuilding()).isTrue();
+        assertThat(accessor.getIndexBuildProgress()).isAtMost(1D);
+        this.repository.save(new RedisItem(1, "renamed"));
+        this.repository.delete(new RedisItem(2, null));
+        this.repository.save(new RedisItem(BUILD_KEYS, "name3"));
+        assertThat(this.findIds("name", "renamed")).isEqualTo(Set.of(1));
+
+        this.awaitIndexBuild(accessor);
+        assertThat(accessor.getIndexBuildFailure()).isNull();
+        assertThat(accessor.getIndexBuildProgress()).isEqualTo(1D);
+        this.assertConsistent();
+        try (Jedis jedis = this.getJedis()) {
+            assertThat(jedis.hlen(INDEX_KEY)).isEqualTo((long) BUILD_KEYS);
+            assertThat(jedis.hget(INDEX_KEY, TABLE + ":value(1)")).isEqualTo("renamed");
+            assertThat(jedis.hget(INDEX_KEY, TABLE + ":value(2)")).isNull();
+        }
+
+        Set<Integer> expected = Sets.newHashSet();
+        for (int id = 3; id <= BUILD_KEYS; id += 10) {
+            expected.add(id);
+        }
+
+        expected.add(BUILD_KEYS);
+        assertThat(this.findIds("name", "name3")).isEqualTo(expected);
+        assertThat(this.findNames("renamed")).isEqualTo(Set.of("renamed"));
+    }
+
+    @Test
+    public void closeIndexBuildTest() throws InterruptedException {
+        this.storeUnindexed();
+
+        // Closing the accessor stops the build, and the index is left unused
+        RedisAccessor<RedisItem> accessor = (RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor();
+        accessor.close();
+        try (Jedis jedis = this.getJedis()) {
+            // A batch sent before closing may still be added
+            Thread.sleep(200);
+            long indexed = jedis.hlen(INDEX_KEY);
+            Thread.sleep(500);
+            assertThat(jedis.hlen(INDEX_KEY)).isEqualTo(indexed);
+            assertThat(indexed).isLessThan((long) BUILD_KEYS);
+        }
+
+        assertThat(accessor.isIndexBuilding()).isTrue();
+
+        assertThat(this.findIds("name", "name7")).hasSize(BUILD_KEYS / 10);
+
+        // The next accessor set up fills in the keys still missing
+        this.repository = this.newRepository();
+        accessor = (RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor();
+        this.awaitIndexBuild(accessor);
+        assertThat(accessor.getIndexBuildFailure()).isNull();
+        this.assertConsistent();
+        try (Jedis jedis = this.getJedis()) {
+            assertThat(jedis.hlen(INDEX_KEY)).isEqualTo((long) BUILD_KEYS);
+        }
+
+        assertThat(this.findIds("name", "name7")).hasSize(BUILD_KEYS / 10);
+    }
+
+    // Internals
+
+    private Jedis getJedis() {
+        return new Jedis("localhost", port);
+    }
+
+    private SimpleRepository<RedisItem> newRepository() {
+        return new SimpleRepository<>(new RedisConfiguration("localhost", null, port), TABLE, RedisItem.class, DatabaseType.REDIS);
+    }
+
+    /**
+     * Stores values without indexing them, as stored before the index was added, and sets
+     * up the repository again with the index.
+     */
+    private void storeUnindexed() {
+        ((RedisAccessor<RedisItem>) this.repository.getDatabaseAccessor()).close();
+        try (Jedis jedis = this.getJedis()) {
+            jedis.flushAll();
+        }
+
+        SimpleRepository<UnindexedRedisItem> unindexed = new SimpleRepository<>(new RedisConfiguration("localhost", null, port), TABLE,
+          UnindexedRedisItem.class, DatabaseType.REDIS);
+        for (int id = 0; id < BUILD_KEYS; id++) {
+            unindexed.save(new UnindexedRedisItem(id, "name" + (id % 10)));
+        }
+
+        ((RedisAccessor<UnindexedRedisItem>) unindexed.getDatabaseAccessor()).close();
+        this.repository = this.newRepository();
+    }
+
+    private void awaitIndexBuild(RedisAccessor<RedisItem> accessor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (accessor.isIndexBuilding() && accessor.getIndexBuildFailure() == null) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Index build did not finish");
+            }
+
+            Thread.sleep(10);
+        }
+    }
+
+    private Set<Integer> findIds(String field, Object value) {
+        return this.repository.newQuery()
+          .where().equals(field, value).closeAll()
+          .findAll().stream()
+          .map(response -> response.getInstance().getId())
+          .collect(Collectors.toSet());
+    }
+
+    private Set<String> findNames(String prefix) {
+        return this.repository.newQuery()
+          .where().startsWith("name", prefix).closeAll()
+          .findAll().stream()
+          .map(response -> response.getInstance().getName())
+          .collect(Collectors.toSet());
+    }
+
+    /**
+     * Finds the keys with the given group, and the given rank unless it is null.
+     */
+    private Set<Integer> findRankedIds(SimpleRepository<RankedRedisItem> ranked, String group, Integer rank) {
+        RequirementBuilder<RankedRedisItem> builder = ranked.newQuery().where().equals("group", group);
+        if (rank != null) {
+            builder.andEquals("rank", rank);
+        }
+
+        return builder.closeAll()
+          .findAll().stream()
+          .map(response -> response.getInstance().getId())
+          .collect(Collectors.toSet());
+    }
+
+    /**
+     * Checks that the statistics count the keys of every name in the index, that the sorted
+     * set holds exactly the entries of the index, and that the row count counts the keys stored.
+     */
+    private void assertConsistent() {
+        try (Jedis jedis = this.getJedis()) {
+            Map<String, String> index = jedis.hgetAll(INDEX_KEY);
+
+            Map<String, String> counts = Maps.newHashMap();
+            for (String name : index.values()) {
+                counts.merge(name, "1", (count, one) -> String.valueOf(Integer.parseInt(count) + 1));
+            }
+
+            assertThat(jedis.hgetAll(STATS_KEY)).isEqualTo(counts);
+
+            Set<String> members = Sets.newHashSet();
+            for (Map.Entry<String, String> entry : index.entrySet()) {
+                members.add(entry.getValue() + '\u0000' + entry.getKey());
+            }
+
+            assertThat(jedis.zrange(SORTED_KEY, 0, -1)).isEqualTo(members);
+
+            Set<String> stored = Sets.newHashSet();
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> result = jedis.scan(cursor, new ScanParams().match(TABLE + ":value(*)"));
+                stored.addAll(result.getResult());
+                cursor = result.getStringCursor();
+            } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+
+            assertThat(jedis.get(COUNT_KEY)).isEqualTo(String.valueOf(stored.size()));
+        }
+    }
+}